@@ -0,0 +1,234 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.curity.identityserver.plugin.data.access.rest;
+
+import com.google.common.hash.Hashing;
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration;
+import se.curity.identityserver.sdk.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A digest of the values of settings, which is equal for settings with the same values, also when they belong to
+ * different plugin instances.
+ *
+ * <p>Nested configuration is read through the methods of its configuration interface. Services, such as web service
+ * clients and the JSON service, cannot be compared by what they are configured with. They are the same only if they
+ * are the same objects, so that instances never use services that the server gave to another instance, which may
+ * send requests to another host or be closed when that instance is reconfigured.
+ */
+final class ConfigurationFingerprint
+{
+    private static final String CONFIGURATION_PACKAGE = RestDataAccessProviderConfiguration.class.getPackageName();
+
+    private final String _digest;
+    private final List<Object> _services;
+
+    private ConfigurationFingerprint(String digest, List<Object> services)
+    {
+        _digest = digest;
+        _services = services;
+    }
+
+    static ConfigurationFingerprint of(List<?> settings)
+    {
+        StringBuilder builder = new StringBuilder();
+        List<Object> services = new ArrayList<>();
+
+        append(builder, settings, services);
+
+        return new ConfigurationFingerprint(Hashing.sha256().hashString(builder, StandardCharsets.UTF_8).toString(),
+                services);
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other)
+        {
+            return true;
+        }
+
+        if (!(other instanceof ConfigurationFingerprint))
+        {
+            return false;
+        }
+
+        ConfigurationFingerprint fingerprint = (ConfigurationFingerprint) other;
+
+        if (!_digest.equals(fingerprint._digest) || _services.size() != fingerprint._services.size())
+        {
+            return false;
+        }
+
+        for (int i = 0; i < _services.size(); i++)
+        {
+            if (_services.get(i) != fingerprint._services.get(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hashCode = _digest.hashCode();
+
+        for (Object service : _services)
+        {
+            hashCode = 31 * hashCode + System.identityHashCode(service);
+        }
+
+        return hashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        return _digest;
+    }
+
+    private static void append(StringBuilder builder, @Nullable Object value, List<Object> services)
+    {
+        if (value == null)
+        {
+            builder.append("null");
+        }
+        else if (value instanceof Optional)
+        {
+            Optional<?> optional = (Optional<?>) value;
+
+            if (optional.isPresent())
+            {
+                builder.append("some(");
+                append(builder, optional.get(), services);
+                builder.append(')');
+            }
+            else
+            {
+                builder.append("none");
+            }
+        }
+        else if (value instanceof List)
+        {
+            builder.append('[');
+
+            for (Object element : (List<?>) value)
+            {
+                append(builder, element, services);
+                builder.append(',');
+            }
+
+            builder.append(']');
+        }
+        else if (value instanceof String)
+        {
+            // the length keeps strings that contain separators from being mistaken for other settings
+            String string = (String) value;
+
+            builder.append(string.length()).append(':').append(string);
+        }
+        else if (value instanceof Number || value instanceof Boolean || value instanceof Enum)
+        {
+            builder.append(value);
+        }
+        else
+        {
+            @Nullable Class<?> configurationType = configurationType(value.getClass());
+
+            if (configurationType == null)
+            {
+                builder.append("service#").append(services.size());
+                services.add(value);
+            }
+            else
+            {
+                appendConfiguration(builder, configurationType, value, services);
+            }
+        }
+    }
+
+    private static void appendConfiguration(StringBuilder builder, Class<?> type, Object configuration,
+                                            List<Object> services)
+    {
+        builder.append(type.getName()).append('{');
+
+        Method[] settings = Arrays.stream(type.getMethods())
+                .filter(method -> method.getParameterCount() == 0 && !method.isDefault() &&
+                        !Modifier.isStatic(method.getModifiers()) &&
+                        method.getDeclaringClass().getPackageName().equals(CONFIGURATION_PACKAGE))
+                .sorted(Comparator.comparing(Method::getName))
+                .toArray(Method[]::new);
+
+        for (Method setting : settings)
+        {
+            builder.append(setting.getName()).append('=');
+
+            try
+            {
+                append(builder, setting.invoke(configuration), services);
+            }
+            catch (IllegalAccessException | InvocationTargetException e)
+            {
+                throw new IllegalStateException("Could not read the setting " + setting.getName(), e);
+            }
+
+            builder.append(';');
+        }
+
+        builder.append('}');
+    }
+
+    /**
+     * @return the configuration interface that the class implements, or null if it is not configuration
+     */
+    @Nullable
+    private static Class<?> configurationType(@Nullable Class<?> type)
+    {
+        if (type == null)
+        {
+            return null;
+        }
+
+        for (Class<?> implemented : type.getInterfaces())
+        {
+            if (implemented.getPackageName().equals(CONFIGURATION_PACKAGE))
+            {
+                return implemented;
+            }
+
+            @Nullable Class<?> inherited = configurationType(implemented);
+
+            if (inherited != null)
+            {
+                return inherited;
+            }
+        }
+
+        return configurationType(type.getSuperclass());
+    }
+}
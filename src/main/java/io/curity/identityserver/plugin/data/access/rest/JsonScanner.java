@@ -0,0 +1,314 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest;
+
+/**
+ * Validates JSON without building any values, for decoders that build the values themselves.
+ */
+final class JsonScanner
+{
+    static final int MAXIMUM_DEPTH = 512;
+
+    private final String _input;
+    private int _position;
+
+    JsonScanner(String input)
+    {
+        _input = input;
+    }
+
+    int position()
+    {
+        return _position;
+    }
+
+    /**
+     * @return the character at the current position, which is not consumed
+     */
+    char peek()
+    {
+        if (_position >= _input.length())
+        {
+            throw error("Expected a value");
+        }
+
+        return _input.charAt(_position);
+    }
+
+    void skipWhitespace()
+    {
+        while (_position < _input.length())
+        {
+            char c = _input.charAt(_position);
+
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r')
+            {
+                return;
+            }
+
+            _position++;
+        }
+    }
+
+    boolean consume(char expected)
+    {
+        if (_position < _input.length() && _input.charAt(_position) == expected)
+        {
+            _position++;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    void expect(char expected)
+    {
+        if (!consume(expected))
+        {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    String readString()
+    {
+        int start = _position;
+
+        skipString();
+
+        String raw = _input.substring(start + 1, _position - 1);
+
+        return raw.indexOf('\\') < 0 ? raw : unescape(raw);
+    }
+
+    void skipValue(int depth)
+    {
+        if (depth > MAXIMUM_DEPTH)
+        {
+            throw error("The JSON document is nested too deeply");
+        }
+
+        if (_position >= _input.length())
+        {
+            throw error("Expected a value");
+        }
+
+        char c = _input.charAt(_position);
+
+        switch (c)
+        {
+            case '{':
+                _position++;
+                skipWhitespace();
+
+                if (!consume('}'))
+                {
+                    do
+                    {
+                        skipWhitespace();
+                        skipString();
+                        skipWhitespace();
+                        expect(':');
+                        skipWhitespace();
+                        skipValue(depth + 1);
+                        skipWhitespace();
+                    }
+                    while (consume(','));
+
+                    expect('}');
+                }
+                break;
+            case '[':
+                _position++;
+                skipWhitespace();
+
+                if (!consume(']'))
+                {
+                    do
+                    {
+                        skipWhitespace();
+                        skipValue(depth + 1);
+                        skipWhitespace();
+                    }
+                    while (consume(','));
+
+                    expect(']');
+                }
+                break;
+            case '"':
+                skipString();
+                break;
+            case 't':
+                skipLiteral("true");
+                break;
+            case 'f':
+                skipLiteral("false");
+                break;
+            case 'n':
+                skipLiteral("null");
+                break;
+            default:
+                skipNumber();
+        }
+    }
+
+    void skipString()
+    {
+        expect('"');
+
+        while (_position < _input.length())
+        {
+            char c = _input.charAt(_position++);
+
+            if (c == '"')
+            {
+                return;
+            }
+            else if (c == '\\')
+            {
+                if (_position >= _input.length())
+                {
+                    break;
+                }
+
+                char escaped = _input.charAt(_position++);
+
+                if (escaped == 'u')
+                {
+                    for (int i = 0; i < 4; i++)
+                    {
+                        if (_position >= _input.length() || Character.digit(_input.charAt(_position++), 16) < 0)
+                        {
+                            throw error("Invalid unicode escape");
+                        }
+                    }
+                }
+                else if ("\"\\/bfnrt".indexOf(escaped) < 0)
+                {
+                    throw error("Invalid escape");
+                }
+            }
+            else if (c < 0x20)
+            {
+                throw error("Unescaped control character in string");
+            }
+        }
+
+        throw error("Unterminated string");
+    }
+
+    void skipLiteral(String literal)
+    {
+        if (!_input.startsWith(literal, _position))
+        {
+            throw error("Expected " + literal);
+        }
+
+        _position += literal.length();
+    }
+
+    void skipNumber()
+    {
+        consume('-');
+
+        if (!consume('0'))
+        {
+            skipDigits();
+        }
+
+        if (consume('.'))
+        {
+            skipDigits();
+        }
+
+        if (consume('e') || consume('E'))
+        {
+            if (!consume('+'))
+            {
+                consume('-');
+            }
+
+            skipDigits();
+        }
+    }
+
+    private void skipDigits()
+    {
+        int start = _position;
+
+        while (_position < _input.length() && _input.charAt(_position) >= '0' && _input.charAt(_position) <= '9')
+        {
+            _position++;
+        }
+
+        if (_position == start)
+        {
+            throw error("Expected a digit");
+        }
+    }
+
+    static String unescape(String raw)
+    {
+        StringBuilder builder = new StringBuilder(raw.length());
+
+        for (int i = 0; i < raw.length(); i++)
+        {
+            char c = raw.charAt(i);
+
+            if (c != '\\')
+            {
+                builder.append(c);
+
+                continue;
+            }
+
+            char escaped = raw.charAt(++i);
+
+            switch (escaped)
+            {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    builder.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default:
+                    builder.append(escaped);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    IllegalArgumentException error(String message)
+    {
+        return new IllegalArgumentException(message + " at position " + _position);
+    }
+}
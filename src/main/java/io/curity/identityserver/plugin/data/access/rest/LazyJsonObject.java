@@ -0,0 +1,324 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest;
+
+import com.google.common.annotations.VisibleForTesting;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+import se.curity.identityserver.sdk.service.Json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A JSON object whose members are decoded the first time they are read.
+ *
+ * <p>The document is validated and indexed once, recording where each top-level member starts and ends. A member is
+ * decoded by the {@link Json} service of the server when it is first read, from the same text that the service would
+ * have decoded it from as part of the whole document, so the values are the same as those of
+ * {@link Json#fromJson(String)}. Strings without escapes, booleans and null are taken directly from the text. Decoded
+ * values are kept, so that every reader gets the same instance.
+ *
+ * <p>The map cannot be changed.
+ */
+final class LazyJsonObject extends AbstractMap<String, Object> implements ThreadSafe
+{
+    private static final Object NOT_DECODED = new Object();
+
+    private final String _document;
+    private final Json _json;
+    private final String[] _names;
+    // the member of each name, from the quote that starts its name to the end of its value
+    private final int[] _memberStarts;
+    private final int[] _valueStarts;
+    private final int[] _valueEnds;
+    private final Map<String, Integer> _indexes;
+    private final AtomicReferenceArray<Object> _values;
+
+    private LazyJsonObject(String document, Json json, List<String> names, List<int[]> positions)
+    {
+        _document = document;
+        _json = json;
+        _names = names.toArray(new String[0]);
+        _memberStarts = new int[_names.length];
+        _valueStarts = new int[_names.length];
+        _valueEnds = new int[_names.length];
+        _indexes = new HashMap<>(_names.length * 2);
+        _values = new AtomicReferenceArray<>(_names.length);
+
+        for (int i = 0; i < _names.length; i++)
+        {
+            int[] position = positions.get(i);
+
+            _memberStarts[i] = position[0];
+            _valueStarts[i] = position[1];
+            _valueEnds[i] = position[2];
+            _indexes.put(_names[i], i);
+            _values.set(i, NOT_DECODED);
+        }
+    }
+
+    /**
+     * @param json decodes the members when they are read
+     * @throws IllegalArgumentException if the document is not a JSON object
+     */
+    static LazyJsonObject parse(String document, Json json)
+    {
+        JsonScanner scanner = new JsonScanner(document);
+        List<String> names = new ArrayList<>();
+        List<int[]> positions = new ArrayList<>();
+        Map<String, Integer> indexes = new HashMap<>();
+
+        scanner.skipWhitespace();
+        scanner.expect('{');
+        scanner.skipWhitespace();
+
+        if (!scanner.consume('}'))
+        {
+            do
+            {
+                scanner.skipWhitespace();
+
+                int memberStart = scanner.position();
+                String name = scanner.readString();
+
+                scanner.skipWhitespace();
+                scanner.expect(':');
+                scanner.skipWhitespace();
+
+                int valueStart = scanner.position();
+
+                scanner.skipValue(1);
+
+                int[] position = { memberStart, valueStart, scanner.position() };
+                @Nullable Integer previous = indexes.putIfAbsent(name, names.size());
+
+                if (previous == null)
+                {
+                    names.add(name);
+                    positions.add(position);
+                }
+                else
+                {
+                    // like a decoded object, the last of the members with the same name wins
+                    positions.set(previous, position);
+                }
+
+                scanner.skipWhitespace();
+            }
+            while (scanner.consume(','));
+
+            scanner.expect('}');
+        }
+
+        scanner.skipWhitespace();
+
+        if (scanner.position() != document.length())
+        {
+            throw scanner.error("Unexpected content after the JSON object");
+        }
+
+        return new LazyJsonObject(document, json, names, positions);
+    }
+
+    @Override
+    public Object get(Object name)
+    {
+        @Nullable Integer index = _indexes.get(name);
+
+        return index == null ? null : value(index);
+    }
+
+    @Override
+    public boolean containsKey(Object name)
+    {
+        return _indexes.containsKey(name);
+    }
+
+    @Override
+    public int size()
+    {
+        return _names.length;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet()
+    {
+        return new AbstractSet<>()
+        {
+            @Override
+            public Iterator<Entry<String, Object>> iterator()
+            {
+                return new Iterator<>()
+                {
+                    private int _next;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return _next < _names.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next()
+                    {
+                        if (!hasNext())
+                        {
+                            throw new NoSuchElementException();
+                        }
+
+                        int index = _next++;
+
+                        return new LazyEntry(index);
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return _names.length;
+            }
+        };
+    }
+
+    /**
+     * @return the number of members that have been decoded
+     */
+    @VisibleForTesting
+    int decodedCount()
+    {
+        int decoded = 0;
+
+        for (int i = 0; i < _names.length; i++)
+        {
+            if (_values.get(i) != NOT_DECODED)
+            {
+                decoded++;
+            }
+        }
+
+        return decoded;
+    }
+
+    @Nullable
+    private Object value(int index)
+    {
+        Object value = _values.get(index);
+
+        if (value == NOT_DECODED)
+        {
+            // another reader may decode it at the same time, but only one of the results is kept
+            _values.compareAndSet(index, NOT_DECODED, decode(index));
+            value = _values.get(index);
+        }
+
+        return value;
+    }
+
+    @Nullable
+    private Object decode(int index)
+    {
+        int start = _valueStarts[index];
+        int end = _valueEnds[index];
+
+        char first = _document.charAt(start);
+
+        if (first == 't')
+        {
+            return Boolean.TRUE;
+        }
+        else if (first == 'f')
+        {
+            return Boolean.FALSE;
+        }
+        else if (first == 'n')
+        {
+            return null;
+        }
+        else if (first == '"')
+        {
+            String string = _document.substring(start + 1, end - 1);
+
+            if (string.indexOf('\\') < 0)
+            {
+                return string;
+            }
+        }
+
+        // numbers, containers and strings with escapes are decoded like in the whole document
+        Map<String, Object> member = _json.fromJson("{" + _document.substring(_memberStarts[index], end) + "}");
+
+        return member.values().iterator().next();
+    }
+
+    private final class LazyEntry implements Entry<String, Object>
+    {
+        private final int _index;
+
+        private LazyEntry(int index)
+        {
+            _index = index;
+        }
+
+        @Override
+        public String getKey()
+        {
+            return _names[_index];
+        }
+
+        @Override
+        public Object getValue()
+        {
+            return value(_index);
+        }
+
+        @Override
+        public Object setValue(Object value)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Entry))
+            {
+                return false;
+            }
+
+            Entry<?, ?> entry = (Entry<?, ?>) other;
+
+            return getKey().equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return getKey().hashCode() ^ Objects.hashCode(getValue());
+        }
+    }
+}
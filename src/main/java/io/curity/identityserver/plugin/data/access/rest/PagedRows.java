@@ -0,0 +1,444 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest;
+
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration.MultipleRows;
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration.MultipleRows.Pagination;
+import io.curity.identityserver.plugin.data.access.rest.logging.DiagnosticLogger;
+import io.curity.identityserver.plugin.data.access.rest.logging.DiagnosticLogger.Category;
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.service.Json;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * The rows of a lookup whose response is a JSON array, or has one, over all of its pages.
+ *
+ * <p>Pages are requested as the rows are iterated, and the rows of a page are only decoded when the rows before them
+ * have been consumed, so at most the current page and the next one are held at a time. When prefetching, the next
+ * page is requested as soon as the link or cursor to it is known, which is before the rows of the current page are
+ * decoded: the response is only indexed to find it, see {@link LazyJsonObject}.
+ *
+ * <p>If the first page is unsuccessful, there are no rows, like when a single row is looked up. If a later one is,
+ * an exception is thrown rather than returning some of the rows.
+ */
+final class PagedRows implements Iterator<Map<String, Object>>, Closeable
+{
+    private static final Logger _logger = LoggerFactory.getLogger(PagedRows.class);
+
+    private final MultipleRows _configuration;
+    private final Transport _transport;
+    private final Json _json;
+    private final Executor _executor;
+    private final DiagnosticLogger _diagnosticLogger;
+    private final TransportRequest _firstRequest;
+
+    private Iterator<?> _rows = Collections.emptyIterator();
+    @Nullable
+    private Map<String, Object> _nextRow;
+    // the request for the next page, when it is not prefetched
+    @Nullable
+    private TransportRequest _nextRequest;
+    @Nullable
+    private CompletableFuture<TransportResponse> _prefetchedPage;
+    private int _pages;
+
+    /**
+     * @param executor sends the requests of prefetched pages
+     */
+    PagedRows(MultipleRows configuration, TransportRequest firstRequest, Transport transport, Json json,
+              Executor executor, DiagnosticLogger diagnosticLogger)
+    {
+        _configuration = configuration;
+        _transport = transport;
+        _json = json;
+        _executor = executor;
+        _diagnosticLogger = diagnosticLogger;
+        _firstRequest = firstRequest;
+        _nextRequest = firstRequest;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (_nextRow == null)
+        {
+            if (_rows.hasNext())
+            {
+                Object row = _rows.next();
+
+                if (row instanceof Map)
+                {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> nextRow = (Map<String, Object>) row;
+
+                    _nextRow = nextRow;
+                }
+                else
+                {
+                    _logger.debug("Ignoring a row that is not a JSON object: {}", row);
+                }
+            }
+            else if (_prefetchedPage != null)
+            {
+                CompletableFuture<TransportResponse> page = _prefetchedPage;
+
+                _prefetchedPage = null;
+                _rows = decodePage(awaitPage(page));
+            }
+            else if (_nextRequest != null)
+            {
+                TransportRequest request = _nextRequest;
+
+                _nextRequest = null;
+                _rows = decodePage(_transport.send(request));
+            }
+            else
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+
+        Map<String, Object> row = _nextRow;
+
+        _nextRow = null;
+
+        return row;
+    }
+
+    int pages()
+    {
+        return _pages;
+    }
+
+    /**
+     * Stop any prefetching, when the rows are not iterated to the end.
+     */
+    @Override
+    public void close()
+    {
+        _nextRequest = null;
+
+        if (_prefetchedPage != null)
+        {
+            _prefetchedPage.cancel(false);
+            _prefetchedPage = null;
+        }
+    }
+
+    private TransportResponse awaitPage(CompletableFuture<TransportResponse> page)
+    {
+        try
+        {
+            return page.join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    private Iterator<?> decodePage(TransportResponse response)
+    {
+        _pages++;
+
+        if (!WebUtils.hasSuccessStatusCode(response))
+        {
+            if (_pages > 1)
+            {
+                throw new IllegalStateException("The JSON service responded to the request for page " + _pages
+                        + " with status " + response.statusCode());
+            }
+
+            _logger.debug("The JSON service responded to the lookup of rows with status {}", response.statusCode());
+
+            return Collections.emptyIterator();
+        }
+
+        try
+        {
+            @Nullable Object rows;
+
+            if (_configuration.rowsAttribute().isPresent())
+            {
+                LazyJsonObject page = LazyJsonObject.parse(response.body(), _json);
+
+                requestNextPage(response, page);
+                rows = attributeAt(page, _configuration.rowsAttribute().get());
+            }
+            else
+            {
+                requestNextPage(response, null);
+                rows = _json.fromJsonArray(response.body());
+            }
+
+            if (rows instanceof Collection)
+            {
+                return ((Collection<?>) rows).iterator();
+            }
+
+            _logger.warn("The response of the JSON service does not have an array of rows");
+        }
+        catch (IllegalArgumentException | Json.JsonException e)
+        {
+            _diagnosticLogger.log(_logger, Level.WARN, Category.PARSE_FAILURE,
+                    "Could not parse JSON response from server due to '{}': {}", e.getMessage(), response.body());
+        }
+
+        close();
+
+        if (_pages > 1)
+        {
+            throw new IllegalStateException("The JSON service responded to the request for page " + _pages
+                    + " without rows");
+        }
+
+        return Collections.emptyIterator();
+    }
+
+    /**
+     * Find the request for the next page, and send it now if prefetching, or else when the rows of this page run out.
+     *
+     * @param page the indexed response, or null if it is an array
+     */
+    private void requestNextPage(TransportResponse response, @Nullable LazyJsonObject page)
+    {
+        @Nullable TransportRequest nextRequest = _configuration.pagination()
+                .map(pagination -> nextRequest(pagination, response, page))
+                .orElse(null);
+
+        if (nextRequest == null)
+        {
+            return;
+        }
+
+        if (_pages >= _configuration.maximumPages())
+        {
+            _logger.debug("Not requesting more than {} pages of rows", _configuration.maximumPages());
+
+            return;
+        }
+
+        if (_configuration.prefetch())
+        {
+            _prefetchedPage = CompletableFuture.supplyAsync(() -> _transport.send(nextRequest), _executor);
+        }
+        else
+        {
+            _nextRequest = nextRequest;
+        }
+    }
+
+    @Nullable
+    private TransportRequest nextRequest(Pagination pagination, TransportResponse response,
+                                         @Nullable LazyJsonObject page)
+    {
+        if (pagination.linkHeaderRelation().isPresent())
+        {
+            return linkRequest(nextLinkInHeader(response, pagination.linkHeaderRelation().get()));
+        }
+
+        if (page == null)
+        {
+            _logger.warn("A response that is an array cannot refer to its next page, set a rows-attribute");
+
+            return null;
+        }
+
+        if (pagination.nextLinkAttribute().isPresent())
+        {
+            return linkRequest(stringAt(page, pagination.nextLinkAttribute().get()));
+        }
+
+        return pagination.cursor()
+                .map(cursor ->
+                {
+                    @Nullable String nextCursor = stringAt(page, cursor.cursorAttribute());
+
+                    if (nextCursor == null)
+                    {
+                        return null;
+                    }
+
+                    Map<String, Collection<String>> queryParameters =
+                            new LinkedHashMap<>(_firstRequest.queryParameters());
+
+                    queryParameters.put(cursor.cursorParameter(), Collections.singletonList(nextCursor));
+
+                    return TransportRequest.builder(_firstRequest.method(), _firstRequest.path())
+                            .queryParameters(queryParameters)
+                            .headers(_firstRequest.headers())
+                            .accept(_firstRequest.accept())
+                            .build();
+                })
+                .orElse(null);
+    }
+
+    /**
+     * @return a request for the path and query of the link, or null if there is none. The query is sent as query
+     * parameters, since not every transport accepts it as part of the path.
+     */
+    @Nullable
+    private TransportRequest linkRequest(@Nullable String link)
+    {
+        if (link == null)
+        {
+            return null;
+        }
+
+        URI uri;
+
+        try
+        {
+            uri = new URI(link);
+        }
+        catch (URISyntaxException e)
+        {
+            _logger.warn("Not following the invalid link to the next page: {}", link);
+
+            return null;
+        }
+
+        return TransportRequest.builder(_firstRequest.method(), uri.getRawPath())
+                .queryParameters(queryParameters(uri.getRawQuery()))
+                .headers(_firstRequest.headers())
+                .accept(_firstRequest.accept())
+                .build();
+    }
+
+    private static Map<String, Collection<String>> queryParameters(@Nullable String rawQuery)
+    {
+        if (rawQuery == null || rawQuery.isEmpty())
+        {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Collection<String>> queryParameters = new LinkedHashMap<>();
+
+        for (String parameter : rawQuery.split("&"))
+        {
+            if (parameter.isEmpty())
+            {
+                continue;
+            }
+
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : parameter.substring(equals + 1);
+
+            queryParameters.computeIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8), key -> new ArrayList<>())
+                    .add(URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+
+        return queryParameters;
+    }
+
+    @Nullable
+    private static String nextLinkInHeader(TransportResponse response, String relation)
+    {
+        for (String header : response.headerValues("Link"))
+        {
+            for (String link : header.split(","))
+            {
+                String[] parts = link.split(";");
+                String target = parts[0].trim();
+
+                if (!target.startsWith("<") || !target.endsWith(">"))
+                {
+                    continue;
+                }
+
+                for (int i = 1; i < parts.length; i++)
+                {
+                    String parameter = parts[i].trim();
+
+                    if (parameter.equals("rel=\"" + relation + "\"") || parameter.equals("rel=" + relation))
+                    {
+                        return target.substring(1, target.length() - 1);
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Nullable
+    private static String stringAt(Map<String, Object> page, String attribute)
+    {
+        @Nullable Object value = attributeAt(page, attribute);
+
+        return value == null || value.toString().isEmpty() ? null : value.toString();
+    }
+
+    /**
+     * @param attribute the names of nested objects, separated by dots
+     */
+    @Nullable
+    private static Object attributeAt(Map<String, Object> page, String attribute)
+    {
+        @Nullable Object value = page;
+
+        for (String name : attribute.split("\\."))
+        {
+            if (!(value instanceof Map))
+            {
+                return null;
+            }
+
+            value = ((Map<?, ?>) value).get(name);
+        }
+
+        return value;
+    }
+}
@@ -17,14 +17,25 @@
 package io.curity.identityserver.plugin.data.access.rest;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.curity.identityserver.plugin.data.access.rest.cache.AttributeCache;
+import io.curity.identityserver.plugin.data.access.rest.cache.AttributePreloader;
+import io.curity.identityserver.plugin.data.access.rest.cache.PeerCache;
 import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration.MultipleRows;
 import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration.ProvideSubject.Parameter;
 import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.logging.DiagnosticLogger;
+import io.curity.identityserver.plugin.data.access.rest.logging.DiagnosticLogger.Category;
 import io.curity.identityserver.plugin.data.access.rest.parameter.AttributeLookupMapping;
 import io.curity.identityserver.plugin.data.access.rest.parameter.ParameterMapping;
 import io.curity.identityserver.plugin.data.access.rest.parameter.StaticMapping;
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse;
+import io.curity.identityserver.plugin.data.access.rest.transport.WebServiceClientTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
 import se.curity.identityserver.sdk.Nullable;
 import se.curity.identityserver.sdk.ThreadSafe;
 import se.curity.identityserver.sdk.attribute.AttributeName;
@@ -34,21 +45,21 @@ import se.curity.identityserver.sdk.attribute.SubjectAttributes;
 import se.curity.identityserver.sdk.datasource.AttributeDataAccessProvider;
 import se.curity.identityserver.sdk.http.HttpResponse;
 import se.curity.identityserver.sdk.service.Json;
-import se.curity.identityserver.sdk.service.WebServiceClient;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static io.curity.identityserver.plugin.data.access.rest.CollectionUtils.toArray;
 import static io.curity.identityserver.plugin.data.access.rest.CollectionUtils.toMultiMap;
-import static se.curity.identityserver.sdk.http.HttpResponse.asString;
 
 public class RestAttributeDataAccessProvider implements AttributeDataAccessProvider, ThreadSafe
 {
@@ -57,19 +68,70 @@ public class RestAttributeDataAccessProvider implements AttributeDataAccessProvi
     private static final Logger _logger = LoggerFactory.getLogger(RestAttributeDataAccessProvider.class);
 
     private final AttributesConfiguration _configuration;
-    private final WebServiceClient _webServiceClient;
+    private final Transport _transport;
     private final Json _json;
 
+    @Nullable
+    private final AttributeCache _attributeCache;
+
+    @Nullable
+    private final PeerCache _peerCache;
+
+    @Nullable
+    private final AttributePreloader _attributePreloader;
+
+    private final Executor _prefetchExecutor;
+
+    private final DiagnosticLogger _diagnosticLogger;
+
+    @Nullable
+    private final ShapeDecoder _shapeDecoder;
+
     @SuppressWarnings("unused") // used through DI
-    public RestAttributeDataAccessProvider(RestDataAccessProviderConfiguration configuration)
+    public RestAttributeDataAccessProvider(RestDataAccessProviderConfiguration configuration,
+                                           @Nullable RestDataAccessManagedObject managedObject)
+    {
+        this(configuration, managedObject, managedObject == null ?
+                new WebServiceClientTransport(configuration.webServiceClient()) : managedObject.getTransport());
+    }
+
+    @VisibleForTesting
+    RestAttributeDataAccessProvider(RestDataAccessProviderConfiguration configuration)
+    {
+        this(configuration, null);
+    }
+
+    private RestAttributeDataAccessProvider(RestDataAccessProviderConfiguration configuration,
+                                            @Nullable RestDataAccessManagedObject managedObject, Transport transport)
     {
         _configuration = configuration.getAttributesConfiguration();
         _json = configuration.json();
-        _webServiceClient = configuration.webServiceClient();
+        _transport = transport;
+        _attributeCache = managedObject == null ? null : managedObject.getAttributeCache().orElse(null);
+        _peerCache = managedObject == null ? null : managedObject.getPeerCache().orElse(null);
+        _attributePreloader = managedObject == null ? null : managedObject.getAttributePreloader().orElse(null);
+        // without a managed object, the next page is requested before the rows of the current one are decoded
+        _prefetchExecutor = managedObject == null ? Runnable::run :
+                managedObject.getPrefetchExecutor().orElse(Runnable::run);
+        _diagnosticLogger = managedObject == null ? DiagnosticLogger.unrestricted() :
+                managedObject.getDiagnosticLogger();
+        // without a managed object, the shape is learned by this provider only
+        _shapeDecoder = !_configuration.specializedDecoding() ? null : managedObject == null ?
+                new ShapeDecoder(_json) : managedObject.getShapeDecoder().orElseGet(() -> new ShapeDecoder(_json));
 
         _logger.trace("Instantiating Json Attributes data-source plugin with ID={}", configuration.id());
     }
 
+    /**
+     * Create a provider that sends its requests with the given transport and uses none of the state of a managed
+     * object, to warm up the code that builds requests and reads responses, or to preload attributes.
+     */
+    static RestAttributeDataAccessProvider withTransport(RestDataAccessProviderConfiguration configuration,
+                                                         Transport transport)
+    {
+        return new RestAttributeDataAccessProvider(configuration, null, transport);
+    }
+
     @Override
     public AttributeTableView getAttributes(String subject)
     {
@@ -80,25 +142,95 @@ public class RestAttributeDataAccessProvider implements AttributeDataAccessProvi
     @Override
     public AttributeTableView getAttributes(SubjectAttributes subjectAttributes)
     {
+        if (_configuration.multipleRows().isPresent())
+        {
+            return getRows(subjectAttributes, _configuration.multipleRows().get());
+        }
+
+        if (_attributeCache != null)
+        {
+            @Nullable Attributes cachedAttributes = _attributeCache.getIfFresh(subjectAttributes.getSubject());
+
+            if (cachedAttributes != null)
+            {
+                _logger.trace("Using cached attributes of {}", subjectAttributes.getSubject());
+
+                return AttributeTableView.of(Collections.singletonList(cachedAttributes.asMap()));
+            }
+        }
+
+        if (_peerCache != null)
+        {
+            @Nullable Attributes peerAttributes = _peerCache.get(subjectAttributes.getSubject());
+
+            if (peerAttributes != null)
+            {
+                _logger.trace("Using attributes of {} cached by a peer", subjectAttributes.getSubject());
+
+                return AttributeTableView.of(Collections.singletonList(peerAttributes.asMap()));
+            }
+        }
+
         AttributeTableView result = AttributeTableView.empty();
 
-        String requestPath = createRequestPath(subjectAttributes.getSubject());
-        Map<String, String> queryParameters = createQueryParameters(subjectAttributes);
-        Map<String, String> headerParameters = createHeaderParameters(subjectAttributes);
+        // taken before the lookup is sent, so that attributes that are invalidated while it is in flight are not cached
+        long lookupToken = _attributeCache == null ? 0 : _attributeCache.startLookup();
+        long lookupStartedAtMillis = System.currentTimeMillis();
+        TransportResponse response;
 
-        HttpResponse response = _webServiceClient
-                .withQueries(toMultiMap(queryParameters))
-                .withPath(requestPath)
-                .request()
-                .header(toArray(headerParameters))
-                .accept(RestClientRequestContentType.APPLICATION_JSON.toString())
-                .method("GET")
-                .response();
+        try
+        {
+            response = sendLiveLookup(subjectAttributes);
+        }
+        catch (RuntimeException e)
+        {
+            @Nullable Attributes staleAttributes = getStaleAttributes(subjectAttributes.getSubject());
+
+            if (staleAttributes == null)
+            {
+                throw e;
+            }
+
+            _logger.debug("Using expired attributes of {}, as the JSON service could not be reached: {}",
+                    subjectAttributes.getSubject(), e.getMessage());
+
+            return AttributeTableView.of(Collections.singletonList(staleAttributes.asMap()));
+        }
+
+        if (WebUtils.isServerError(response))
+        {
+            @Nullable Attributes staleAttributes = getStaleAttributes(subjectAttributes.getSubject());
+
+            if (staleAttributes != null)
+            {
+                _logger.debug("Using expired attributes of {}, as the JSON service responded with status {}",
+                        subjectAttributes.getSubject(), response.statusCode());
+
+                return AttributeTableView.of(Collections.singletonList(staleAttributes.asMap()));
+            }
+        }
+
+        if (_configuration.lazyDecoding() && _attributeCache == null)
+        {
+            @Nullable Map<String, Object> lazyAttributes = getLazyAttributesFrom(response);
+
+            return lazyAttributes == null ? result : AttributeTableView.of(Collections.singletonList(lazyAttributes));
+        }
 
         @Nullable Attributes attributes = getAttributesFrom(response);
 
         if (attributes != null)
         {
+            if (_attributeCache != null)
+            {
+                _attributeCache.put(subjectAttributes.getSubject(), attributes, lookupToken);
+            }
+
+            if (_peerCache != null)
+            {
+                _peerCache.offer(subjectAttributes.getSubject(), attributes, lookupStartedAtMillis);
+            }
+
             result = AttributeTableView.of(Collections.singletonList(attributes.asMap()));
         }
 
@@ -106,20 +238,152 @@ public class RestAttributeDataAccessProvider implements AttributeDataAccessProvi
 
     }
 
+    /**
+     * Look up the attributes of the subject from the JSON service, without using the cache.
+     */
+    @Nullable
+    Attributes lookUpAttributes(SubjectAttributes subjectAttributes)
+    {
+        return getAttributesFrom(sendLookup(subjectAttributes));
+    }
+
+    /**
+     * Send the lookup of a login, which preloading gives way to.
+     */
+    private TransportResponse sendLiveLookup(SubjectAttributes subjectAttributes)
+    {
+        if (_attributePreloader == null)
+        {
+            return sendLookup(subjectAttributes);
+        }
+
+        _attributePreloader.liveLookupStarted();
+
+        try
+        {
+            return sendLookup(subjectAttributes);
+        }
+        finally
+        {
+            _attributePreloader.liveLookupFinished();
+        }
+    }
+
+    private TransportResponse sendLookup(SubjectAttributes subjectAttributes)
+    {
+        return _transport.send(createLookupRequest(subjectAttributes));
+    }
+
+    private TransportRequest createLookupRequest(SubjectAttributes subjectAttributes)
+    {
+        String requestPath = createRequestPath(subjectAttributes.getSubject());
+        Map<String, String> queryParameters = createQueryParameters(subjectAttributes);
+        Map<String, String> headerParameters = createHeaderParameters(subjectAttributes);
+
+        return TransportRequest.builder("GET", requestPath)
+                .queryParameters(toMultiMap(queryParameters))
+                .headers(toArray(headerParameters))
+                .accept(RestClientRequestContentType.APPLICATION_JSON.toString())
+                .build();
+    }
+
+    /**
+     * Look up one row per element of the array in the response, over all of its pages. Rows are not cached.
+     */
+    private AttributeTableView getRows(SubjectAttributes subjectAttributes, MultipleRows multipleRows)
+    {
+        List<Map<String, Object>> rows = new ArrayList<>();
+
+        try (PagedRows pagedRows = new PagedRows(multipleRows, createLookupRequest(subjectAttributes), _transport,
+                _json, _prefetchExecutor, _diagnosticLogger))
+        {
+            pagedRows.forEachRemaining(rows::add);
+
+            _logger.trace("Looked up {} rows of {} in {} pages", rows.size(), subjectAttributes.getSubject(),
+                    pagedRows.pages());
+        }
+
+        return rows.isEmpty() ? AttributeTableView.empty() : AttributeTableView.of(rows);
+    }
+
+    @Nullable
+    private Attributes getStaleAttributes(String subject)
+    {
+        return _attributeCache == null ? null : _attributeCache.getIfUsableOnError(subject);
+    }
+
     @VisibleForTesting
     @Nullable
     Attributes getAttributesFrom(HttpResponse jsonResponse)
+    {
+        return getAttributesFrom(TransportResponse.of(jsonResponse));
+    }
+
+    @VisibleForTesting
+    @Nullable
+    Attributes getAttributesFrom(TransportResponse jsonResponse)
     {
         @Nullable Attributes responseAttributes = null;
 
-        String responseBody = jsonResponse.body(asString());
+        @Nullable String responseBody = getSuccessfulResponseBody(jsonResponse);
+
+        if (responseBody != null)
+        {
+            try
+            {
+                Map<String, Object> response = _shapeDecoder == null ? _json.fromJson(responseBody) :
+                        _shapeDecoder.decode(responseBody);
+
+                responseAttributes = Attributes.fromMap(response, AttributeName.Format.JSON);
+            }
+            catch (Json.JsonException e)
+            {
+                _diagnosticLogger.log(_logger, Level.WARN, Category.PARSE_FAILURE,
+                        "Could not parse JSON response from server due to '{}': {}", e.getMessage(), responseBody);
+            }
+        }
+
+        return responseAttributes;
+    }
+
+    /**
+     * Like {@link #getAttributesFrom(TransportResponse)}, but only indexes the response, and decodes each attribute
+     * when it is first read.
+     */
+    @VisibleForTesting
+    @Nullable
+    Map<String, Object> getLazyAttributesFrom(TransportResponse jsonResponse)
+    {
+        @Nullable String responseBody = getSuccessfulResponseBody(jsonResponse);
+
+        if (responseBody != null)
+        {
+            try
+            {
+                return LazyJsonObject.parse(responseBody, _json);
+            }
+            catch (IllegalArgumentException e)
+            {
+                _diagnosticLogger.log(_logger, Level.WARN, Category.PARSE_FAILURE,
+                        "Could not parse JSON response from server due to '{}': {}", e.getMessage(), responseBody);
+            }
+        }
+
+        return null;
+    }
+
+    @Nullable
+    private String getSuccessfulResponseBody(TransportResponse jsonResponse)
+    {
+        String responseBody = jsonResponse.body();
 
         if (!WebUtils.isSuccessfulJsonResponse(jsonResponse))
         {
             // Debug level logging, as the response is not reporting OK/success
             if (!responseBody.isEmpty())
             {
-                _logger.debug("Response from JSON data-source:\n{}", responseBody);
+                _diagnosticLogger.log(_logger, Level.DEBUG, Category.RESPONSE_BODY,
+                        "Response from JSON data-source:\n{}", responseBody);
             }
             else
             {
@@ -134,17 +398,10 @@ public class RestAttributeDataAccessProvider implements AttributeDataAccessProvi
         {
             _logger.trace("Processing JSON response from successful response");
 
-            try
-            {
-                responseAttributes = Attributes.fromMap(_json.fromJson(responseBody), AttributeName.Format.JSON);
-            }
-            catch (Json.JsonException e)
-            {
-                _logger.warn("Could not parse JSON response from server due to '{}': {}", e.getMessage(), responseBody);
-            }
+            return responseBody;
         }
 
-        return responseAttributes;
+        return null;
     }
 
     @VisibleForTesting
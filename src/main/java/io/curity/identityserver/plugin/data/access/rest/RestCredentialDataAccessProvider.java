@@ -18,10 +18,22 @@ package io.curity.identityserver.plugin.data.access.rest;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import io.curity.identityserver.plugin.data.access.rest.cache.AttributeCache;
+import io.curity.identityserver.plugin.data.access.rest.cache.PeerCache;
+import io.curity.identityserver.plugin.data.access.rest.cache.VerificationSeeder;
+import io.curity.identityserver.plugin.data.access.rest.cache.VerifiedCredentialCache;
 import io.curity.identityserver.plugin.data.access.rest.config.CredentialAccessConfiguration;
 import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.lockout.FailureTracker;
+import io.curity.identityserver.plugin.data.access.rest.logging.DiagnosticLogger;
+import io.curity.identityserver.plugin.data.access.rest.logging.DiagnosticLogger.Category;
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse;
+import io.curity.identityserver.plugin.data.access.rest.transport.WebServiceClientTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
 import se.curity.identityserver.sdk.Nullable;
 import se.curity.identityserver.sdk.ThreadSafe;
 import se.curity.identityserver.sdk.attribute.AttributeName;
@@ -31,15 +43,14 @@ import se.curity.identityserver.sdk.attribute.ContextAttributes;
 import se.curity.identityserver.sdk.attribute.SubjectAttributes;
 import se.curity.identityserver.sdk.datasource.CredentialDataAccessProviderFactory;
 import se.curity.identityserver.sdk.datasource.CredentialVerifyingDataAccessProvider;
-import se.curity.identityserver.sdk.http.HttpRequest;
 import se.curity.identityserver.sdk.http.HttpResponse;
 import se.curity.identityserver.sdk.service.Json;
-import se.curity.identityserver.sdk.service.WebServiceClient;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 import static io.curity.identityserver.plugin.data.access.rest.CollectionUtils.toMultiMap;
+import static io.curity.identityserver.plugin.data.access.rest.WebUtils.isClientError;
 import static io.curity.identityserver.plugin.data.access.rest.WebUtils.isSuccessfulJsonResponse;
 import static io.curity.identityserver.plugin.data.access.rest.WebUtils.urlEncode;
 import static io.curity.identityserver.plugin.data.access.rest.WebUtils.urlEncodedFormData;
@@ -53,14 +64,63 @@ public class RestCredentialDataAccessProvider implements CredentialVerifyingData
 
     private final CredentialAccessConfiguration _configuration;
     private final Json _json;
-    private final WebServiceClient _webServiceClient;
+    private final Transport _transport;
+
+    @Nullable
+    private final AttributeCache _attributeCache;
+
+    @Nullable
+    private final PeerCache _peerCache;
+
+    @Nullable
+    private final VerificationSeeder _verificationSeeder;
+
+    @Nullable
+    private final VerifiedCredentialCache _verifiedCredentialCache;
+
+    @Nullable
+    private final FailureTracker _failureTracker;
+
+    private final DiagnosticLogger _diagnosticLogger;
 
     @SuppressWarnings("unused") // used through DI
-    public RestCredentialDataAccessProvider(RestDataAccessProviderConfiguration configuration)
+    public RestCredentialDataAccessProvider(RestDataAccessProviderConfiguration configuration,
+                                            @Nullable RestDataAccessManagedObject managedObject)
+    {
+        this(configuration, managedObject, managedObject == null ?
+                new WebServiceClientTransport(configuration.webServiceClient()) : managedObject.getTransport());
+    }
+
+    @VisibleForTesting
+    RestCredentialDataAccessProvider(RestDataAccessProviderConfiguration configuration)
+    {
+        this(configuration, null);
+    }
+
+    private RestCredentialDataAccessProvider(RestDataAccessProviderConfiguration configuration,
+                                             @Nullable RestDataAccessManagedObject managedObject, Transport transport)
     {
         _configuration = configuration.getCredentialAccessConfiguration();
         _json = configuration.json();
-        _webServiceClient = configuration.webServiceClient();
+        _transport = transport;
+        _attributeCache = managedObject == null ? null : managedObject.getAttributeCache().orElse(null);
+        _peerCache = managedObject == null ? null : managedObject.getPeerCache().orElse(null);
+        _verificationSeeder = managedObject == null ? null : managedObject.getVerificationSeeder().orElse(null);
+        _verifiedCredentialCache = managedObject == null ? null :
+                managedObject.getVerifiedCredentialCache().orElse(null);
+        _failureTracker = managedObject == null ? null : managedObject.getFailureTracker().orElse(null);
+        _diagnosticLogger = managedObject == null ? DiagnosticLogger.unrestricted() :
+                managedObject.getDiagnosticLogger();
+    }
+
+    /**
+     * Create a provider that sends its requests with the given transport and uses none of the state of a managed
+     * object, to warm up the code that builds requests and reads responses.
+     */
+    static RestCredentialDataAccessProvider withTransport(RestDataAccessProviderConfiguration configuration,
+                                                          Transport transport)
+    {
+        return new RestCredentialDataAccessProvider(configuration, null, transport);
     }
 
     @Override
@@ -78,18 +138,32 @@ public class RestCredentialDataAccessProvider implements CredentialVerifyingData
         Map<String, String> requestParameterMap = createRequestParameterMap(subjectId, password);
 
         // updatePassword must use HTTP PUT.
-        HttpResponse jsonResponse = _webServiceClient
-                .withPath(requestPath)
-                .request()
+        TransportResponse jsonResponse = _transport.send(TransportRequest.builder("PUT", requestPath)
                 .accept(RestClientRequestContentType.APPLICATION_JSON.toString())
-                .contentType(RestClientRequestContentType.APPLICATION_JSON.toString())
-                .body(HttpRequest.fromString(_json.toJson(requestParameterMap), StandardCharsets.UTF_8))
-                .method("PUT")
-                .response();
+                .body(_json.toJson(requestParameterMap), RestClientRequestContentType.APPLICATION_JSON.toString(),
+                        StandardCharsets.UTF_8)
+                .build());
 
         if (isSuccessfulJsonResponse(jsonResponse))
         {
             _logger.debug("The update password request for {} reported success.", subjectId);
+
+            if (_verifiedCredentialCache != null)
+            {
+                _verifiedCredentialCache.invalidate(subjectId);
+            }
+
+            // the attributes may include some that depend on the password, such as when it was last changed
+            if (_attributeCache != null)
+            {
+                _attributeCache.invalidate(subjectId);
+            }
+
+            if (_peerCache != null)
+            {
+                _peerCache.invalidate(subjectId);
+            }
+
             return SetResult.Accepted.INSTANCE;
         }
         else
@@ -97,11 +171,12 @@ public class RestCredentialDataAccessProvider implements CredentialVerifyingData
             _logger.info("The update password request for {} reported failure (HTTP response {})",
                     subjectId, jsonResponse.statusCode());
 
-            String responseBody = jsonResponse.body(HttpResponse.asString());
+            String responseBody = jsonResponse.body();
 
             if (!responseBody.isEmpty())
             {
-                _logger.trace("Message returned in response body:\n{}", responseBody);
+                _diagnosticLogger.log(_logger, Level.TRACE, Category.RESPONSE_BODY,
+                        "Message returned in response body:\n{}", responseBody);
             }
             else
             {
@@ -116,26 +191,67 @@ public class RestCredentialDataAccessProvider implements CredentialVerifyingData
     public VerifyResult verify(SubjectAttributes subject, String password)
     {
         String userName = subject.getSubject();
+
+        if (_failureTracker != null && _failureTracker.isLockedOut(userName, password))
+        {
+            _logger.debug("Rejecting verification of {} without calling the JSON data-source, " +
+                    "after repeated rejections", userName);
+
+            return VerifyResult.Rejected.withoutReason();
+        }
+
+        if (_verifiedCredentialCache == null)
+        {
+            return verifyWithService(userName, password);
+        }
+
+        @Nullable VerifyResult.Accepted cachedResult = _verifiedCredentialCache.getIfVerified(userName, password);
+
+        if (cachedResult != null)
+        {
+            _logger.debug("Using cached verification of {}", userName);
+
+            return cachedResult;
+        }
+
+        long verificationToken = _verifiedCredentialCache.startVerification();
+        VerifyResult result = verifyWithService(userName, password);
+
+        if (result instanceof VerifyResult.Accepted)
+        {
+            _verifiedCredentialCache.put(userName, password, (VerifyResult.Accepted) result, verificationToken);
+        }
+
+        return result;
+    }
+
+    private VerifyResult verifyWithService(String userName, String password)
+    {
         String requestPath = createRequestPath(userName, password);
         Map<String, String> requestParameterMap;
 
         requestParameterMap = createRequestParameterMap(userName, password);
 
-        WebServiceClient webServiceClient = _webServiceClient.withPath(requestPath);
+        long seedToken = _verificationSeeder == null ? 0 : _verificationSeeder.startVerification();
+        TransportResponse jsonResponse = _transport.send(createVerifyRequest(requestPath, requestParameterMap));
 
-        HttpRequest request = getHttpRequestToVerifyPassword(requestParameterMap, webServiceClient);
+        _logger.debug("JSON data-source responds with status: {}", jsonResponse.statusCode());
 
-        HttpResponse jsonResponse = request.response();
+        VerifyResult result = getVerifyResult(jsonResponse, userName, seedToken);
 
-        _logger.debug("JSON data-source responds with status: {}", jsonResponse.statusCode());
+        // server errors are not the fault of the subject, so only rejections with a client error status are counted
+        if (_failureTracker != null && result instanceof VerifyResult.Rejected && isClientError(jsonResponse))
+        {
+            _failureTracker.recordRejection(userName, password);
+        }
 
-        return getVerifyResult(jsonResponse, userName);
+        return result;
     }
 
     @VisibleForTesting
     AuthenticationAttributes getAuthenticationAttributesFrom(HttpResponse jsonResponse, String userName)
     {
-        VerifyResult result = getVerifyResult(jsonResponse, userName);
+        VerifyResult result = getVerifyResult(TransportResponse.of(jsonResponse), userName);
 
         if (result instanceof VerifyResult.Accepted)
         {
@@ -147,9 +263,25 @@ public class RestCredentialDataAccessProvider implements CredentialVerifyingData
         }
     }
 
-    private VerifyResult getVerifyResult(HttpResponse jsonResponse, String userName)
+    @VisibleForTesting
+    VerifyResult getVerifyResult(HttpResponse jsonResponse, String userName)
+    {
+        return getVerifyResult(TransportResponse.of(jsonResponse), userName);
+    }
+
+    @VisibleForTesting
+    VerifyResult getVerifyResult(TransportResponse jsonResponse, String userName)
+    {
+        return getVerifyResult(jsonResponse, userName,
+                _verificationSeeder == null ? 0 : _verificationSeeder.startVerification());
+    }
+
+    /**
+     * @param seedToken the token that the verification seeder gave before the verification was sent, if there is one
+     */
+    private VerifyResult getVerifyResult(TransportResponse jsonResponse, String userName, long seedToken)
     {
-        String responseBody = jsonResponse.body(HttpResponse.asString());
+        String responseBody = jsonResponse.body();
 
         boolean isHttpSuccessResponse = isSuccessfulJsonResponse(jsonResponse);
 
@@ -162,7 +294,8 @@ public class RestCredentialDataAccessProvider implements CredentialVerifyingData
             }
             else
             {
-                _logger.debug("Response from JSON data-source:\n{}", responseBody);
+                _diagnosticLogger.log(_logger, Level.DEBUG, Category.RESPONSE_BODY,
+                        "Response from JSON data-source:\n{}", responseBody);
 
                 return new VerifyResult.Rejected(readErrorFromJsonResponse(responseBody));
             }
@@ -175,39 +308,48 @@ public class RestCredentialDataAccessProvider implements CredentialVerifyingData
         {
             _logger.trace("Processing JSON response from successful response");
 
+            Attributes attributes = readFromJsonResponse(responseBody);
+
+            if (_verificationSeeder != null)
+            {
+                _verificationSeeder.seed(userName, attributes, seedToken);
+            }
+
             // Let all the returned JSON-attributes be categorized as subject-attributes
             return new VerifyResult.Accepted(AuthenticationAttributes.of(
-                    SubjectAttributes.of(userName, readFromJsonResponse(responseBody)),
+                    SubjectAttributes.of(userName, attributes),
                     ContextAttributes.empty()));
         }
 
         return VerifyResult.Rejected.withoutReason();
     }
 
-    private HttpRequest getHttpRequestToVerifyPassword(Map<String, String> requestParameterMap,
-                                                       WebServiceClient webServiceClient)
+    @VisibleForTesting
+    TransportRequest createVerifyRequest(String requestPath, Map<String, String> requestParameterMap)
     {
         switch (_configuration.submitAs())
         {
             case POST_AS_JSON:
-                return webServiceClient.request()
+                return TransportRequest.builder("POST", requestPath)
                         .withoutAlarm(EXTERNAL_SERVICE_FAILED_AUTHENTICATION)
-                        .contentType(RestClientRequestContentType.APPLICATION_JSON.toString())
                         .accept(RestClientRequestContentType.APPLICATION_JSON.toString())
-                        .body(HttpRequest.fromString(_json.toJson(requestParameterMap), StandardCharsets.UTF_8))
-                        .method("POST");
+                        .body(_json.toJson(requestParameterMap),
+                                RestClientRequestContentType.APPLICATION_JSON.toString(), StandardCharsets.UTF_8)
+                        .build();
             case POST_AS_URLENCODED_FORMDATA:
-                return webServiceClient.request()
+                return TransportRequest.builder("POST", requestPath)
                         .withoutAlarm(EXTERNAL_SERVICE_FAILED_AUTHENTICATION)
-                        .contentType(RestClientRequestContentType.APPLICATION_WWW_FORM_URLENCODED.toString())
                         .accept(RestClientRequestContentType.APPLICATION_JSON.toString())
-                        .body(HttpRequest.fromString(urlEncodedFormData(requestParameterMap), StandardCharsets.ISO_8859_1))
-                        .method("POST");
+                        .body(urlEncodedFormData(requestParameterMap),
+                                RestClientRequestContentType.APPLICATION_WWW_FORM_URLENCODED.toString(),
+                                StandardCharsets.ISO_8859_1)
+                        .build();
             case GET_AS_QUERYSTRING:
-                return webServiceClient.withQueries(toMultiMap(requestParameterMap)).request()
+                return TransportRequest.builder("GET", requestPath)
                         .withoutAlarm(EXTERNAL_SERVICE_FAILED_AUTHENTICATION)
+                        .queryParameters(toMultiMap(requestParameterMap))
                         .accept(RestClientRequestContentType.APPLICATION_JSON.toString())
-                        .method("GET");
+                        .build();
             default:
                 throw new IllegalStateException("unknown value for submit-as: " + _configuration.submitAs());
         }
@@ -229,7 +371,8 @@ public class RestCredentialDataAccessProvider implements CredentialVerifyingData
         }
         catch (Json.JsonException e)
         {
-            _logger.warn("Could not parse JSON response from server due to '{}': {}", e.getMessage(), responseBody);
+            _diagnosticLogger.log(_logger, Level.WARN, Category.PARSE_FAILURE,
+                    "Could not parse JSON response from server due to '{}': {}", e.getMessage(), responseBody);
 
             return null;
         }
@@ -247,7 +390,8 @@ public class RestCredentialDataAccessProvider implements CredentialVerifyingData
                 .replaceAll(PASSWORD_PLACEHOLDER, urlEncode(password));
     }
 
-    private Map<String, String> createRequestParameterMap(String subjectId, @Nullable String password)
+    @VisibleForTesting
+    Map<String, String> createRequestParameterMap(String subjectId, @Nullable String password)
     {
         ImmutableMap.Builder<String, String> builder = new ImmutableMap.Builder<String, String>()
                 .put(_configuration.usernameParameter(), subjectId);
@@ -0,0 +1,579 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.curity.identityserver.plugin.data.access.rest.balancing.LoadBalancer;
+import io.curity.identityserver.plugin.data.access.rest.cache.AttributeCache;
+import io.curity.identityserver.plugin.data.access.rest.cache.AttributePreloader;
+import io.curity.identityserver.plugin.data.access.rest.cache.ChangeFeedPoller;
+import io.curity.identityserver.plugin.data.access.rest.cache.PeerCache;
+import io.curity.identityserver.plugin.data.access.rest.cache.VerificationSeeder;
+import io.curity.identityserver.plugin.data.access.rest.cache.VerifiedCredentialCache;
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.lockout.FailureTracker;
+import io.curity.identityserver.plugin.data.access.rest.logging.DiagnosticLogger;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import io.curity.identityserver.plugin.data.access.rest.transport.JdkHttpClientTransport;
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport;
+import io.curity.identityserver.plugin.data.access.rest.transport.WebServiceClientTransport;
+import io.curity.identityserver.plugin.data.access.rest.warmup.SyntheticTransport;
+import io.curity.identityserver.plugin.data.access.rest.warmup.WarmUp;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.attribute.Attributes;
+import se.curity.identityserver.sdk.attribute.SubjectAttributes;
+import se.curity.identityserver.sdk.plugin.ManagedObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * State that lives as long as the plugin instance and is shared by its credential and attribute providers.
+ *
+ * <p>If a shared backend is configured, the state is also shared with the other instances that use the same backend
+ * and have the same settings for it, through a {@link SharedBackendRegistry}.
+ */
+public final class RestDataAccessManagedObject extends ManagedObject<RestDataAccessProviderConfiguration>
+{
+    @VisibleForTesting
+    static final SharedBackendRegistry SHARED_BACKENDS = new SharedBackendRegistry();
+
+    // released in the reverse order, so that the parts that use others are released first
+    private final List<SharedBackendRegistry.Lease<?>> _leases = new ArrayList<>();
+
+    private final Metrics _metrics;
+
+    @Nullable
+    private final AttributeCache _attributeCache;
+
+    @Nullable
+    private final PeerCache _peerCache;
+
+    @Nullable
+    private final VerificationSeeder _verificationSeeder;
+
+    @Nullable
+    private final VerifiedCredentialCache _verifiedCredentialCache;
+
+    @Nullable
+    private final FailureTracker _failureTracker;
+
+    private final Transport _transport;
+
+    private final DiagnosticLogger _diagnosticLogger;
+
+    @Nullable
+    private final AttributePreloader _attributePreloader;
+
+    @Nullable
+    private final ExecutorService _prefetchExecutor;
+
+    @Nullable
+    private final ShapeDecoder _shapeDecoder;
+
+    public RestDataAccessManagedObject(RestDataAccessProviderConfiguration configuration)
+    {
+        super(configuration);
+
+        try
+        {
+            // the settings of the backend are part of the others, so that parts are only shared with instances that
+            // also share the backend part that they were built with. The web service client is only a setting when it
+            // is used, so that instances with the built-in HTTP client can share it whatever client they are given
+            List<Object> backendSettings = List.of(
+                    configuration.httpClientTransport().isPresent() ?
+                            Optional.empty() : Optional.ofNullable(configuration.webServiceClient()),
+                    configuration.json(), configuration.httpClientTransport(), configuration.loadBalancing(),
+                    configuration.warmUp());
+
+            _metrics = lease(configuration, "metrics", List.of(),
+                    () -> new Metrics(configuration.sharedBackend().orElse(configuration.id())), Metrics::close);
+
+            BackendResources backend = lease(configuration, "backend", backendSettings,
+                    () -> new BackendResources(configuration, _metrics.scope()), BackendResources::close);
+            CredentialResources credentials = lease(configuration, "credentials",
+                    settings(backendSettings, configuration.getCredentialAccessConfiguration()),
+                    () -> new CredentialResources(configuration, _metrics.scope()), CredentialResources::close);
+            AttributeResources attributes = lease(configuration, "attributes",
+                    settings(backendSettings, configuration.getAttributesConfiguration()),
+                    () -> new AttributeResources(configuration, backend._transport, _metrics.scope()),
+                    AttributeResources::close);
+
+            _transport = backend._transport;
+            _verifiedCredentialCache = credentials._verifiedCredentialCache;
+            _failureTracker = credentials._failureTracker;
+            _attributeCache = attributes._attributeCache;
+            _peerCache = attributes._peerCache;
+            _verificationSeeder = attributes._verificationSeeder;
+            _attributePreloader = attributes._attributePreloader;
+            _prefetchExecutor = attributes._prefetchExecutor;
+            _shapeDecoder = attributes._shapeDecoder;
+        }
+        catch (RuntimeException e)
+        {
+            // shared parts must be let go of, or they would never be released
+            close();
+
+            throw e;
+        }
+
+        // each instance limits its own logging
+        _diagnosticLogger = configuration.diagnosticLogging()
+                .map(diagnosticLoggingConfiguration -> new DiagnosticLogger(diagnosticLoggingConfiguration, _metrics))
+                .orElseGet(DiagnosticLogger::unrestricted);
+    }
+
+    /**
+     * Acquire a part of the state from the shared backend if one is configured, or create one for this instance only.
+     */
+    private <T> T lease(RestDataAccessProviderConfiguration configuration, String part, List<Object> settings,
+                        Supplier<T> create, Consumer<? super T> release)
+    {
+        SharedBackendRegistry.Lease<T> lease = configuration.sharedBackend()
+                .map(backend -> SHARED_BACKENDS.acquire(backend, part, settings, create, release))
+                .orElseGet(() -> SharedBackendRegistry.Lease.unshared(create.get(), release));
+
+        _leases.add(lease);
+
+        return lease.get();
+    }
+
+    private static List<Object> settings(List<Object> backendSettings, Object partSettings)
+    {
+        List<Object> settings = new ArrayList<>(backendSettings);
+
+        settings.add(partSettings);
+
+        return settings;
+    }
+
+    /**
+     * The transport to the JSON service, and the warm-up that opens its connections and keeps them open.
+     */
+    private static final class BackendResources
+    {
+        private final Metrics _metrics;
+
+        private final Transport _transport;
+
+        @Nullable
+        private final WarmUp _warmUp;
+
+        private BackendResources(RestDataAccessProviderConfiguration configuration, Metrics metrics)
+        {
+            _metrics = metrics;
+            _transport = createTransport(configuration, metrics);
+
+            try
+            {
+                _warmUp = configuration.warmUp()
+                        .map(warmUpConfiguration -> new WarmUp(warmUpConfiguration, _transport,
+                                warmUpExercise(configuration), configuration.id(), metrics))
+                        .orElse(null);
+            }
+            catch (RuntimeException e)
+            {
+                _transport.close();
+                _metrics.close();
+
+                throw e;
+            }
+
+            if (_warmUp != null)
+            {
+                _warmUp.run();
+            }
+        }
+
+        private void close()
+        {
+            if (_warmUp != null)
+            {
+                _warmUp.close();
+            }
+
+            _transport.close();
+            _metrics.close();
+        }
+    }
+
+    /**
+     * The caches and failure tracking of credential verification.
+     */
+    private static final class CredentialResources
+    {
+        private final Metrics _metrics;
+
+        @Nullable
+        private final VerifiedCredentialCache _verifiedCredentialCache;
+
+        @Nullable
+        private final FailureTracker _failureTracker;
+
+        private CredentialResources(RestDataAccessProviderConfiguration configuration, Metrics metrics)
+        {
+            _metrics = metrics;
+            _verifiedCredentialCache = configuration.getCredentialAccessConfiguration().verifiedCredentialCache()
+                    .map(credentialCacheConfiguration -> new VerifiedCredentialCache(credentialCacheConfiguration,
+                            metrics))
+                    .orElse(null);
+            _failureTracker = configuration.getCredentialAccessConfiguration().failureTracking()
+                    .map(failureTrackingConfiguration -> new FailureTracker(failureTrackingConfiguration, metrics))
+                    .orElse(null);
+        }
+
+        private void close()
+        {
+            // nothing runs in the background, the caches are simply dropped
+            _metrics.close();
+        }
+    }
+
+    /**
+     * The attribute cache and what fills and invalidates it, and the state of reading attribute responses.
+     */
+    private static final class AttributeResources
+    {
+        @Nullable
+        private final AttributeCache _attributeCache;
+
+        @Nullable
+        private final PeerCache _peerCache;
+
+        @Nullable
+        private final VerificationSeeder _verificationSeeder;
+
+        @Nullable
+        private final ExecutorService _prefetchExecutor;
+
+        @Nullable
+        private final ShapeDecoder _shapeDecoder;
+
+        private final Transport _transport;
+
+        private final Metrics _metrics;
+
+        @Nullable
+        private ChangeFeedPoller _changeFeedPoller;
+
+        @Nullable
+        private AttributePreloader _attributePreloader;
+
+        private AttributeResources(RestDataAccessProviderConfiguration configuration, Transport transport,
+                                   Metrics metrics)
+        {
+            _transport = transport;
+            _metrics = metrics;
+
+            Optional<AttributesConfiguration.AttributeCache> cacheConfiguration = configuration
+                    .getAttributesConfiguration().attributeCache();
+
+            if (cacheConfiguration.isPresent())
+            {
+                requireLookupsBySubjectOnly(configuration.getAttributesConfiguration());
+            }
+
+            _attributeCache = cacheConfiguration
+                    .map(attributeCacheConfiguration -> new AttributeCache(attributeCacheConfiguration, metrics))
+                    .orElse(null);
+            _peerCache = cacheConfiguration
+                    .flatMap(AttributesConfiguration.AttributeCache::peerCache)
+                    .map(peerCacheConfiguration -> new PeerCache(peerCacheConfiguration, _attributeCache,
+                            configuration.id(), metrics))
+                    .orElse(null);
+            _verificationSeeder = cacheConfiguration
+                    .flatMap(AttributesConfiguration.AttributeCache::seedFromVerification)
+                    .map(seedConfiguration -> new VerificationSeeder(_attributeCache, seedConfiguration))
+                    .orElse(null);
+            _prefetchExecutor = configuration.getAttributesConfiguration().multipleRows()
+                    .filter(AttributesConfiguration.MultipleRows::prefetch)
+                    .map(multipleRows -> Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                            .setNameFormat("rest-data-access-prefetch-" + configuration.id() + "-%d")
+                            .setDaemon(true)
+                            .build()))
+                    .orElse(null);
+            _shapeDecoder = configuration.getAttributesConfiguration().specializedDecoding() ?
+                    new ShapeDecoder(configuration.json(), metrics) : null;
+
+            try
+            {
+                if (_peerCache != null)
+                {
+                    _peerCache.start();
+                }
+
+                _attributePreloader = cacheConfiguration
+                        .flatMap(attributeCacheConfiguration -> attributeCacheConfiguration.preload()
+                                .map(preloadConfiguration -> createAttributePreloader(configuration,
+                                        preloadConfiguration, attributeCacheConfiguration.maximumSize(), metrics)))
+                        .orElse(null);
+                _changeFeedPoller = cacheConfiguration
+                        .flatMap(AttributesConfiguration.AttributeCache::changeFeed)
+                        .map(changeFeedConfiguration -> createChangeFeedPoller(configuration, changeFeedConfiguration,
+                                metrics))
+                        .orElse(null);
+
+                if (_changeFeedPoller != null)
+                {
+                    // the first poll clears the cache if it has no cursor, which would discard what was preloaded
+                    _changeFeedPoller.start(_attributePreloader == null ? () -> { } : _attributePreloader::start);
+                }
+                else if (_attributePreloader != null)
+                {
+                    _attributePreloader.start();
+                }
+            }
+            catch (RuntimeException e)
+            {
+                close();
+
+                throw e;
+            }
+        }
+
+        private AttributePreloader createAttributePreloader(
+                RestDataAccessProviderConfiguration configuration,
+                AttributesConfiguration.AttributeCache.Preload preloadConfiguration, int maximumSize, Metrics metrics)
+        {
+            AttributesConfiguration.AttributeCache.Preload.HotSubjects hotSubjects = preloadConfiguration
+                    .hotSubjects();
+            Supplier<List<String>> subjects = hotSubjects.file()
+                    .map(AttributePreloader::fromFile)
+                    .orElseGet(() -> AttributePreloader.fromJsonService(hotSubjects.urlPath()
+                            .orElseThrow(() -> new IllegalStateException("One-of was not set to any value")),
+                            _transport, configuration.json()));
+            // preloading requests are built the same way as the ones of logins, but do not count as live lookups
+            RestAttributeDataAccessProvider provider = RestAttributeDataAccessProvider.withTransport(configuration,
+                    _transport);
+
+            return new AttributePreloader(preloadConfiguration, _attributeCache, maximumSize, subjects,
+                    subject -> provider.lookUpAttributes(SubjectAttributes.of(subject, Attributes.empty())),
+                    configuration.id(), metrics);
+        }
+
+        private ChangeFeedPoller createChangeFeedPoller(
+                RestDataAccessProviderConfiguration configuration,
+                AttributesConfiguration.AttributeCache.ChangeFeed changeFeedConfiguration, Metrics metrics)
+        {
+            // refreshing requests are built the same way as the ones of logins, but do not count as live lookups
+            RestAttributeDataAccessProvider provider = RestAttributeDataAccessProvider.withTransport(configuration,
+                    _transport);
+
+            return new ChangeFeedPoller(changeFeedConfiguration, _attributeCache, _transport, configuration.json(),
+                    subject -> provider.lookUpAttributes(SubjectAttributes.of(subject, Attributes.empty())),
+                    configuration.id(), metrics);
+        }
+
+        private void close()
+        {
+            if (_attributePreloader != null)
+            {
+                _attributePreloader.close();
+            }
+
+            if (_changeFeedPoller != null)
+            {
+                _changeFeedPoller.close();
+            }
+
+            if (_peerCache != null)
+            {
+                _peerCache.close();
+            }
+
+            if (_attributeCache != null)
+            {
+                _attributeCache.invalidateAll();
+                _attributeCache.close();
+            }
+
+            if (_prefetchExecutor != null)
+            {
+                _prefetchExecutor.shutdownNow();
+            }
+
+            _metrics.close();
+        }
+    }
+
+    /**
+     * The attribute cache is keyed by subject only, and preloading and the change feed look subjects up without any
+     * attributes, so the attributes of one lookup must not be returned for another one with other attributes.
+     *
+     * @throws IllegalArgumentException if a parameter mapping takes its value from an attribute
+     */
+    private static void requireLookupsBySubjectOnly(AttributesConfiguration configuration)
+    {
+        for (AttributesConfiguration.ParameterMappingConfiguration mapping :
+                configuration.parameterMappings().parameterMapping())
+        {
+            boolean usesAttribute = mapping.value()
+                    .map(value -> value.useValueOfAttribute().isPresent())
+                    .orElse(true);
+
+            if (usesAttribute)
+            {
+                throw new IllegalArgumentException("The attribute-cache cannot be used together with the "
+                        + "parameter-mapping '" + mapping.parameterName() + "', which takes its value from an "
+                        + "attribute, as cached attributes are only keyed by subject");
+            }
+        }
+    }
+
+    /**
+     * Create the transport of the configuration: the web service client or the built-in HTTP client, balanced over
+     * all configured endpoints if load balancing is configured.
+     */
+    static Transport createTransport(RestDataAccessProviderConfiguration configuration, Metrics metrics)
+    {
+        Optional<RestDataAccessProviderConfiguration.LoadBalancing> loadBalancing = configuration.loadBalancing();
+        List<Transport> transports = configuration.httpClientTransport()
+                .map(httpClientTransport -> JdkHttpClientTransport.forAllBaseUrls(httpClientTransport, metrics))
+                .orElseGet(() -> webServiceClientTransports(configuration));
+
+        if (!loadBalancing.isPresent() || transports.size() == 1)
+        {
+            // without load balancing, the additional endpoints are not used
+            transports.subList(1, transports.size()).forEach(Transport::close);
+
+            return transports.get(0);
+        }
+
+        return new LoadBalancer(transports, loadBalancing.get(), metrics);
+    }
+
+    /**
+     * Verify a made-up password and look up the attributes of a made-up subject, with providers that get their
+     * responses from a {@link SyntheticTransport} and do not use the caches of this managed object.
+     */
+    private static IntConsumer warmUpExercise(RestDataAccessProviderConfiguration configuration)
+    {
+        Transport syntheticTransport = new SyntheticTransport(configuration.json(),
+                configuration.getAttributesConfiguration().multipleRows());
+        RestCredentialDataAccessProvider credentialProvider = RestCredentialDataAccessProvider
+                .withTransport(configuration, syntheticTransport);
+        RestAttributeDataAccessProvider attributeProvider = RestAttributeDataAccessProvider
+                .withTransport(configuration, syntheticTransport);
+
+        return iteration ->
+        {
+            SubjectAttributes subject = SubjectAttributes.of("warm-up-" + iteration, Attributes.empty());
+
+            credentialProvider.verify(subject, "warm-up-password-" + iteration);
+            attributeProvider.getAttributes(subject);
+        };
+    }
+
+    private static List<Transport> webServiceClientTransports(RestDataAccessProviderConfiguration configuration)
+    {
+        List<Transport> transports = new ArrayList<>();
+
+        transports.add(new WebServiceClientTransport(configuration.webServiceClient()));
+        configuration.loadBalancing().ifPresent(loadBalancing -> loadBalancing.additionalWebServiceClient()
+                .forEach(webServiceClient -> transports.add(new WebServiceClientTransport(webServiceClient))));
+
+        return transports;
+    }
+
+    public Metrics getMetrics()
+    {
+        return _metrics;
+    }
+
+    public Optional<AttributeCache> getAttributeCache()
+    {
+        return Optional.ofNullable(_attributeCache);
+    }
+
+    /**
+     * @return the caches of the other nodes of the cluster, if a peer cache is configured
+     */
+    public Optional<PeerCache> getPeerCache()
+    {
+        return Optional.ofNullable(_peerCache);
+    }
+
+    public Optional<AttributePreloader> getAttributePreloader()
+    {
+        return Optional.ofNullable(_attributePreloader);
+    }
+
+    public Optional<VerificationSeeder> getVerificationSeeder()
+    {
+        return Optional.ofNullable(_verificationSeeder);
+    }
+
+    public Optional<VerifiedCredentialCache> getVerifiedCredentialCache()
+    {
+        return Optional.ofNullable(_verifiedCredentialCache);
+    }
+
+    public Optional<FailureTracker> getFailureTracker()
+    {
+        return Optional.ofNullable(_failureTracker);
+    }
+
+    /**
+     * @return the executor that requests the next pages of rows, if prefetching is configured
+     */
+    public Optional<Executor> getPrefetchExecutor()
+    {
+        return Optional.ofNullable(_prefetchExecutor);
+    }
+
+    /**
+     * @return the decoder of attribute responses that learns their shape, if specialized decoding is configured
+     */
+    Optional<ShapeDecoder> getShapeDecoder()
+    {
+        return Optional.ofNullable(_shapeDecoder);
+    }
+
+    /**
+     * @return the transport that the providers send their requests with
+     */
+    public Transport getTransport()
+    {
+        return _transport;
+    }
+
+    /**
+     * @return the logger of response bodies, which logs them in full if diagnostic logging is not configured
+     */
+    public DiagnosticLogger getDiagnosticLogger()
+    {
+        return _diagnosticLogger;
+    }
+
+    @Override
+    public void close()
+    {
+        for (int i = _leases.size() - 1; i >= 0; i--)
+        {
+            _leases.get(i).close();
+        }
+    }
+}
@@ -0,0 +1,670 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+import se.curity.identityserver.sdk.service.Json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decodes the JSON objects that the JSON service responds with by their shape: the names of their members and the
+ * kinds of their values, which are learned from the objects that the {@link Json} service of the server decodes.
+ *
+ * <p>The members of an object are matched by the hashes of their names, computed from the text without building the
+ * name, against a table of the known names, whose instances are then used as the keys of the decoded map. Strings,
+ * booleans, nested objects and arrays are built directly from the text, as are numbers if the Json service decodes
+ * them in a way that can be reproduced, which is probed when the decoder is created. Values of a member that has been
+ * seen with values of different kinds are decoded by the Json service from their own text.
+ *
+ * <p>Decoded objects equal those of {@link Json#fromJson(String)}. An object that does not match the shape, such as
+ * one with a member that has not been seen before, is decoded by the Json service instead, and its shape is added to
+ * the learned one, up to a maximum number of members.
+ */
+final class ShapeDecoder implements ThreadSafe
+{
+    private static final Logger _logger = LoggerFactory.getLogger(ShapeDecoder.class);
+
+    // members of all objects of the shape, beyond which no more are learned
+    @VisibleForTesting
+    static final int MAXIMUM_MEMBERS = 512;
+    private static final int MAXIMUM_LEARNED_DEPTH = 16;
+
+    private static final Mismatch MISMATCH = new Mismatch();
+
+    private final Json _json;
+    @Nullable
+    private final Numbers _numbers;
+    private final AtomicReference<Kind> _shape = new AtomicReference<>();
+    private final LongAdder _specialized;
+    private final LongAdder _fallbacks;
+
+    ShapeDecoder(Json json)
+    {
+        this(json, new LongAdder(), new LongAdder());
+    }
+
+    ShapeDecoder(Json json, Metrics metrics)
+    {
+        this(json, metrics.counter("specializedDecoding.specialized"),
+                metrics.counter("specializedDecoding.fallbacks"));
+    }
+
+    private ShapeDecoder(Json json, LongAdder specialized, LongAdder fallbacks)
+    {
+        _json = json;
+        _numbers = Numbers.probe(json);
+        _specialized = specialized;
+        _fallbacks = fallbacks;
+    }
+
+    /**
+     * @return the object, as {@link Json#fromJson(String)} would decode it
+     * @throws Json.JsonException like {@link Json#fromJson(String)}, if the document is not a JSON object
+     */
+    Map<String, Object> decode(String document)
+    {
+        @Nullable Kind shape = _shape.get();
+
+        if (shape != null)
+        {
+            try
+            {
+                JsonScanner scanner = new JsonScanner(document);
+
+                scanner.skipWhitespace();
+
+                Map<String, Object> decoded = readObject(shape, scanner, document);
+
+                scanner.skipWhitespace();
+
+                if (scanner.position() == document.length())
+                {
+                    _specialized.increment();
+
+                    return decoded;
+                }
+            }
+            catch (Mismatch | IllegalArgumentException | Json.JsonException e)
+            {
+                // decoded by the Json service below, which also reports documents that are not valid
+            }
+
+            _fallbacks.increment();
+        }
+
+        Map<String, Object> decoded = _json.fromJson(document);
+
+        learn(shape, decoded);
+
+        return decoded;
+    }
+
+    /**
+     * @return the number of members of the learned shape, 0 if none has been learned
+     */
+    @VisibleForTesting
+    int learnedMembers()
+    {
+        @Nullable Kind shape = _shape.get();
+
+        return shape == null ? 0 : shape.memberCount();
+    }
+
+    @VisibleForTesting
+    boolean decodesNumbers()
+    {
+        return _numbers != null;
+    }
+
+    private void learn(@Nullable Kind shape, Map<String, Object> decoded)
+    {
+        Kind learned = Kind.of(decoded, _numbers != null, 0);
+        Kind merged = shape == null ? learned : shape.merge(learned);
+
+        if (merged.memberCount() <= MAXIMUM_MEMBERS)
+        {
+            // a concurrent update may be lost, which is learned again from a later response
+            _shape.set(merged);
+        }
+        else
+        {
+            _logger.debug("Not learning the shape of the response, as the shape would have more than {} members",
+                    MAXIMUM_MEMBERS);
+        }
+    }
+
+    private Map<String, Object> readObject(Kind kind, JsonScanner scanner, String document)
+    {
+        if (kind._tag != Tag.OBJECT)
+        {
+            throw MISMATCH;
+        }
+
+        Members members = kind._members;
+        Map<String, Object> object = new LinkedHashMap<>(members._names.length * 4 / 3 + 1);
+
+        scanner.expect('{');
+        scanner.skipWhitespace();
+
+        if (!scanner.consume('}'))
+        {
+            do
+            {
+                scanner.skipWhitespace();
+
+                int index = readName(members, scanner, document);
+
+                scanner.skipWhitespace();
+                scanner.expect(':');
+                scanner.skipWhitespace();
+                object.put(members._names[index], readValue(members._kinds[index], scanner, document));
+                scanner.skipWhitespace();
+            }
+            while (scanner.consume(','));
+
+            scanner.expect('}');
+        }
+
+        return object;
+    }
+
+    /**
+     * @return the index of the member whose name is at the position of the scanner
+     */
+    private static int readName(Members members, JsonScanner scanner, String document)
+    {
+        int start = scanner.position() + 1;
+
+        scanner.skipString();
+
+        int end = scanner.position() - 1;
+        int hash = 0;
+
+        for (int i = start; i < end; i++)
+        {
+            char c = document.charAt(i);
+
+            if (c == '\\')
+            {
+                String name = JsonScanner.unescape(document.substring(start, end));
+
+                return members.indexOf(name, 0, name.length(), name.hashCode());
+            }
+
+            // the hash of String, so that it equals the one of the name in the table
+            hash = 31 * hash + c;
+        }
+
+        return members.indexOf(document, start, end - start, hash);
+    }
+
+    @Nullable
+    private Object readValue(Kind kind, JsonScanner scanner, String document)
+    {
+        char first = scanner.peek();
+
+        if (first == 'n')
+        {
+            scanner.skipLiteral("null");
+
+            return null;
+        }
+
+        switch (kind._tag)
+        {
+            case STRING:
+                if (first != '"')
+                {
+                    throw MISMATCH;
+                }
+
+                return scanner.readString();
+            case BOOLEAN:
+                if (first == 't')
+                {
+                    scanner.skipLiteral("true");
+
+                    return Boolean.TRUE;
+                }
+                else if (first == 'f')
+                {
+                    scanner.skipLiteral("false");
+
+                    return Boolean.FALSE;
+                }
+
+                throw MISMATCH;
+            case NUMBER:
+                if (_numbers == null || (first != '-' && (first < '0' || first > '9')))
+                {
+                    throw MISMATCH;
+                }
+
+                int numberStart = scanner.position();
+
+                scanner.skipNumber();
+
+                return _numbers.decode(document.substring(numberStart, scanner.position()));
+            case OBJECT:
+                return readObject(kind, scanner, document);
+            case ARRAY:
+                return readArray(kind, scanner, document);
+            case ANY:
+                int valueStart = scanner.position();
+
+                scanner.skipValue(1);
+
+                return _json.fromJson("{\"value\":" + document.substring(valueStart, scanner.position()) + "}")
+                        .get("value");
+            default:
+                // only null has been seen, so the kind of other values is not known
+                throw MISMATCH;
+        }
+    }
+
+    private List<Object> readArray(Kind kind, JsonScanner scanner, String document)
+    {
+        List<Object> array = new ArrayList<>();
+
+        scanner.expect('[');
+        scanner.skipWhitespace();
+
+        if (!scanner.consume(']'))
+        {
+            do
+            {
+                scanner.skipWhitespace();
+                array.add(readValue(kind._element, scanner, document));
+                scanner.skipWhitespace();
+            }
+            while (scanner.consume(','));
+
+            scanner.expect(']');
+        }
+
+        return array;
+    }
+
+    private enum Tag
+    {
+        // only null has been seen
+        UNKNOWN,
+        // values of different kinds have been seen
+        ANY,
+        STRING,
+        BOOLEAN,
+        NUMBER,
+        OBJECT,
+        ARRAY
+    }
+
+    /**
+     * The kind of a value, with the members of an object, or the kind of the elements of an array.
+     */
+    private static final class Kind
+    {
+        private static final Kind UNKNOWN = new Kind(Tag.UNKNOWN, null, null);
+        private static final Kind ANY = new Kind(Tag.ANY, null, null);
+        private static final Kind STRING = new Kind(Tag.STRING, null, null);
+        private static final Kind BOOLEAN = new Kind(Tag.BOOLEAN, null, null);
+        private static final Kind NUMBER = new Kind(Tag.NUMBER, null, null);
+
+        private final Tag _tag;
+        // only set for objects
+        private final Members _members;
+        // only set for arrays
+        private final Kind _element;
+
+        private Kind(Tag tag, @Nullable Members members, @Nullable Kind element)
+        {
+            _tag = tag;
+            _members = members;
+            _element = element;
+        }
+
+        static Kind of(@Nullable Object value, boolean decodesNumbers, int depth)
+        {
+            if (value == null)
+            {
+                return UNKNOWN;
+            }
+            else if (value instanceof String)
+            {
+                return STRING;
+            }
+            else if (value instanceof Boolean)
+            {
+                return BOOLEAN;
+            }
+            else if (value instanceof Number)
+            {
+                return decodesNumbers ? NUMBER : ANY;
+            }
+            else if (depth >= MAXIMUM_LEARNED_DEPTH)
+            {
+                return ANY;
+            }
+            else if (value instanceof Map)
+            {
+                Map<?, ?> object = (Map<?, ?>) value;
+                List<String> names = new ArrayList<>(object.size());
+                List<Kind> kinds = new ArrayList<>(object.size());
+
+                object.forEach((name, memberValue) ->
+                {
+                    names.add(String.valueOf(name));
+                    kinds.add(of(memberValue, decodesNumbers, depth + 1));
+                });
+
+                return new Kind(Tag.OBJECT, new Members(names, kinds), null);
+            }
+            else if (value instanceof List)
+            {
+                Kind element = UNKNOWN;
+
+                for (Object elementValue : (List<?>) value)
+                {
+                    element = element.merge(of(elementValue, decodesNumbers, depth + 1));
+                }
+
+                return new Kind(Tag.ARRAY, null, element);
+            }
+
+            return ANY;
+        }
+
+        Kind merge(Kind other)
+        {
+            if (_tag == Tag.UNKNOWN || this == other)
+            {
+                return other;
+            }
+            else if (other._tag == Tag.UNKNOWN)
+            {
+                return this;
+            }
+            else if (_tag != other._tag)
+            {
+                return ANY;
+            }
+            else if (_tag == Tag.OBJECT)
+            {
+                return new Kind(Tag.OBJECT, _members.merge(other._members), null);
+            }
+            else if (_tag == Tag.ARRAY)
+            {
+                return new Kind(Tag.ARRAY, null, _element.merge(other._element));
+            }
+
+            return this;
+        }
+
+        int memberCount()
+        {
+            if (_tag == Tag.OBJECT)
+            {
+                int count = _members._names.length;
+
+                for (Kind kind : _members._kinds)
+                {
+                    count += kind.memberCount();
+                }
+
+                return count;
+            }
+
+            return _tag == Tag.ARRAY ? _element.memberCount() : 0;
+        }
+    }
+
+    /**
+     * The members of an object, with an open addressing table from the hashes of their names to their indexes.
+     */
+    private static final class Members
+    {
+        private final String[] _names;
+        private final Kind[] _kinds;
+        private final int[] _hashes;
+        // the index of a member plus one, 0 for an empty slot
+        private final int[] _slots;
+
+        Members(List<String> names, List<Kind> kinds)
+        {
+            _names = names.toArray(new String[0]);
+            _kinds = kinds.toArray(new Kind[0]);
+            _hashes = new int[_names.length];
+            // at most half full, so that a name that is not known is found to be missing after a few slots
+            _slots = new int[Integer.highestOneBit(Math.max(1, _names.length) * 2) * 2];
+
+            for (int i = 0; i < _names.length; i++)
+            {
+                _hashes[i] = _names[i].hashCode();
+
+                int slot = slotOf(_hashes[i]);
+
+                while (_slots[slot] != 0)
+                {
+                    slot = (slot + 1) & (_slots.length - 1);
+                }
+
+                _slots[slot] = i + 1;
+            }
+        }
+
+        /**
+         * @return the index of the member whose name is the given part of the text
+         * @throws Mismatch if there is none
+         */
+        int indexOf(String text, int offset, int length, int hash)
+        {
+            for (int slot = slotOf(hash); _slots[slot] != 0; slot = (slot + 1) & (_slots.length - 1))
+            {
+                int index = _slots[slot] - 1;
+                String name = _names[index];
+
+                if (_hashes[index] == hash && name.length() == length && text.regionMatches(offset, name, 0, length))
+                {
+                    return index;
+                }
+            }
+
+            throw MISMATCH;
+        }
+
+        Members merge(Members other)
+        {
+            List<String> names = new ArrayList<>(List.of(_names));
+            List<Kind> kinds = new ArrayList<>(List.of(_kinds));
+
+            for (int i = 0; i < other._names.length; i++)
+            {
+                int index = names.indexOf(other._names[i]);
+
+                if (index < 0)
+                {
+                    names.add(other._names[i]);
+                    kinds.add(other._kinds[i]);
+                }
+                else
+                {
+                    kinds.set(index, kinds.get(index).merge(other._kinds[i]));
+                }
+            }
+
+            return new Members(names, kinds);
+        }
+
+        private int slotOf(int hash)
+        {
+            return (hash ^ (hash >>> 16)) & (_slots.length - 1);
+        }
+    }
+
+    /**
+     * Builds numbers of the same types as the Json service, which decodes integers and decimals to one of a few
+     * types depending on their size.
+     */
+    private static final class Numbers
+    {
+        private static final String[] INTEGER_PROBES = { "0", "-0", "-7", "2147483647", "-2147483648", "2147483648",
+                "-2147483649", "9223372036854775807", "-9223372036854775808", "9223372036854775808",
+                "-123456789012345678901234567890" };
+        private static final String[] DECIMAL_PROBES = { "1.5", "-0.25", "1.50", "0.1", "1e2", "1E-2", "-2.5e+3",
+                "1.7976931348623157e308", "123456789.123456789" };
+
+        private final Class<?> _intType;
+        private final Class<?> _longType;
+        private final Class<?> _bigIntegerType;
+        private final Class<?> _decimalType;
+
+        private Numbers(Class<?> intType, Class<?> longType, Class<?> bigIntegerType, Class<?> decimalType)
+        {
+            _intType = intType;
+            _longType = longType;
+            _bigIntegerType = bigIntegerType;
+            _decimalType = decimalType;
+        }
+
+        /**
+         * @return the numbers of the Json service, or null if they cannot be built the same way
+         */
+        @Nullable
+        static Numbers probe(Json json)
+        {
+            try
+            {
+                Numbers numbers = new Numbers(decodeWithJson(json, "-7").getClass(),
+                        decodeWithJson(json, "2147483648").getClass(),
+                        decodeWithJson(json, "9223372036854775808").getClass(),
+                        decodeWithJson(json, "1.5").getClass());
+
+                for (String[] probes : new String[][] { INTEGER_PROBES, DECIMAL_PROBES })
+                {
+                    for (String probe : probes)
+                    {
+                        Object expected = decodeWithJson(json, probe);
+                        Object decoded = numbers.decode(probe);
+
+                        if (!expected.equals(decoded) || expected.getClass() != decoded.getClass())
+                        {
+                            _logger.debug("Numbers are decoded by the Json service, as it decodes {} to {} {}",
+                                    probe, expected.getClass().getSimpleName(), expected);
+
+                            return null;
+                        }
+                    }
+                }
+
+                return numbers;
+            }
+            catch (RuntimeException e)
+            {
+                _logger.debug("Numbers are decoded by the Json service: {}", e.getMessage());
+
+                return null;
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException if the number cannot be built as the type of its size
+         */
+        Object decode(String text)
+        {
+            boolean integer = text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0;
+
+            if (!integer)
+            {
+                return decode(text, _decimalType);
+            }
+
+            long value;
+
+            try
+            {
+                value = Long.parseLong(text);
+            }
+            catch (NumberFormatException e)
+            {
+                return decode(text, _bigIntegerType);
+            }
+
+            return decode(text, value == (int) value ? _intType : _longType);
+        }
+
+        private static Object decode(String text, Class<?> type)
+        {
+            if (type == Integer.class)
+            {
+                return Integer.valueOf(text);
+            }
+            else if (type == Long.class)
+            {
+                return Long.valueOf(text);
+            }
+            else if (type == BigInteger.class)
+            {
+                return new BigInteger(text);
+            }
+            else if (type == Double.class)
+            {
+                return Double.valueOf(text);
+            }
+            else if (type == BigDecimal.class)
+            {
+                return new BigDecimal(text);
+            }
+
+            throw new IllegalArgumentException("Numbers of type " + type.getName() + " are not built");
+        }
+
+        private static Object decodeWithJson(Json json, String number)
+        {
+            @Nullable Object value = json.fromJson("{\"value\":" + number + "}").get("value");
+
+            if (value == null)
+            {
+                throw new IllegalArgumentException("The Json service decoded " + number + " to null");
+            }
+
+            return value;
+        }
+    }
+
+    /**
+     * Thrown when a document does not match the shape. It has no stack trace, as it is thrown for control flow.
+     */
+    private static final class Mismatch extends RuntimeException
+    {
+        private Mismatch()
+        {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.curity.identityserver.plugin.data.access.rest;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runtime state that plugin instances share when they use the same backend, such as transports and caches.
+ *
+ * <p>State is shared in parts, each keyed by the backend, the name of the part and a fingerprint of the settings
+ * that it is built from, so that instances whose settings for a part differ get a part of their own. A part is
+ * created by the first instance that acquires it, and released when the last instance that holds it lets go.
+ *
+ * <p>Parts are created and released without holding a lock, as that may take seconds, for example when warming up
+ * connections. Only instances that acquire the same part wait for it to be created, and a part is only created again
+ * once the previous one with the same key has been released, so that, for example, a peer cache that listens on a
+ * port has let go of it.
+ */
+final class SharedBackendRegistry implements ThreadSafe
+{
+    private static final Logger _logger = LoggerFactory.getLogger(SharedBackendRegistry.class);
+
+    // the references of an entry are counted while computing its key, which ConcurrentHashMap does atomically
+    private final ConcurrentHashMap<Key, Entry<?>> _entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param settings the settings that the part is built from
+     * @param create   creates the part, if no instance holds one with the same settings
+     * @param release  releases the part, when the last instance that holds it lets go
+     */
+    <T> Lease<T> acquire(String backend, String part, List<?> settings, Supplier<T> create,
+                         Consumer<? super T> release)
+    {
+        Key key = new Key(backend, part, ConfigurationFingerprint.of(settings));
+        List<Entry<T>> created = new ArrayList<>(1);
+        @SuppressWarnings("unchecked")
+        Entry<T> entry = (Entry<T>) _entries.compute(key, (ignored, existing) ->
+        {
+            if (existing != null && existing._references > 0)
+            {
+                existing._references++;
+
+                return existing;
+            }
+
+            // an entry without references is still being released
+            Entry<T> newEntry = new Entry<>(release, existing == null ? null : existing._released);
+
+            newEntry._references = 1;
+            created.add(newEntry);
+
+            return newEntry;
+        });
+
+        if (!created.isEmpty())
+        {
+            create(entry, create);
+
+            _logger.debug("Created {} of shared backend {}", part, backend);
+        }
+
+        try
+        {
+            return new Lease<>(entry._value.join(), () -> release(key, entry));
+        }
+        catch (CompletionException e)
+        {
+            // the part could not be created, by this instance or another one that acquired it at the same time
+            release(key, entry);
+
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private static <T> void create(Entry<T> entry, Supplier<T> create)
+    {
+        try
+        {
+            if (entry._previousReleased != null)
+            {
+                entry._previousReleased.join();
+            }
+
+            entry._value.complete(create.get());
+        }
+        catch (RuntimeException | Error e)
+        {
+            // also completes the instances that wait for the part, which then fail the same way
+            entry._value.completeExceptionally(e);
+        }
+    }
+
+    private void release(Key key, Entry<?> entry)
+    {
+        List<Entry<?>> unreferenced = new ArrayList<>(1);
+
+        _entries.computeIfPresent(key, (ignored, current) ->
+        {
+            if (--entry._references == 0)
+            {
+                unreferenced.add(entry);
+            }
+
+            return current;
+        });
+
+        if (unreferenced.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            if (!entry._value.isCompletedExceptionally())
+            {
+                entry.release();
+
+                _logger.debug("Released {} of shared backend {}", key._part, key._backend);
+            }
+        }
+        finally
+        {
+            // unless another instance has already created a new part with the same key, which waits for this one
+            _entries.remove(key, entry);
+            entry._released.complete(null);
+        }
+    }
+
+    /**
+     * @return the number of instances that hold the part, 0 if it is not there
+     */
+    @VisibleForTesting
+    int references(String backend, String part)
+    {
+        return _entries.entrySet().stream()
+                .filter(entry -> entry.getKey()._backend.equals(backend) && entry.getKey()._part.equals(part))
+                .mapToInt(entry -> entry.getValue()._references)
+                .sum();
+    }
+
+    /**
+     * A part of the state that a plugin instance holds until it is closed.
+     */
+    static final class Lease<T> implements Closeable
+    {
+        private final T _value;
+        private final Runnable _release;
+        private final AtomicBoolean _closed = new AtomicBoolean();
+
+        private Lease(T value, Runnable release)
+        {
+            _value = value;
+            _release = release;
+        }
+
+        /**
+         * @return a lease of state that is not shared, which is released when the lease is closed
+         */
+        static <T> Lease<T> unshared(T value, Consumer<? super T> release)
+        {
+            return new Lease<>(value, () -> release.accept(value));
+        }
+
+        T get()
+        {
+            return _value;
+        }
+
+        @Override
+        public void close()
+        {
+            if (_closed.compareAndSet(false, true))
+            {
+                _release.run();
+            }
+        }
+    }
+
+    private static final class Entry<T>
+    {
+        private final CompletableFuture<T> _value = new CompletableFuture<>();
+        private final CompletableFuture<Void> _released = new CompletableFuture<>();
+        private final Consumer<? super T> _release;
+
+        // set when this entry replaces one with the same key that is still being released
+        @Nullable
+        private final CompletableFuture<Void> _previousReleased;
+
+        // only changed while computing the key of the entry
+        private volatile int _references;
+
+        private Entry(Consumer<? super T> release, @Nullable CompletableFuture<Void> previousReleased)
+        {
+            _release = release;
+            _previousReleased = previousReleased;
+        }
+
+        private void release()
+        {
+            _release.accept(_value.join());
+        }
+    }
+
+    private static final class Key
+    {
+        private final String _backend;
+        private final String _part;
+        private final ConfigurationFingerprint _fingerprint;
+
+        private Key(String backend, String part, ConfigurationFingerprint fingerprint)
+        {
+            _backend = backend;
+            _part = part;
+            _fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (this == other)
+            {
+                return true;
+            }
+
+            if (!(other instanceof Key))
+            {
+                return false;
+            }
+
+            Key key = (Key) other;
+
+            return _backend.equals(key._backend) && _part.equals(key._part) && _fingerprint.equals(key._fingerprint);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(_backend, _part, _fingerprint);
+        }
+    }
+}
@@ -16,9 +16,9 @@
 
 package io.curity.identityserver.plugin.data.access.rest;
 
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import se.curity.identityserver.sdk.http.HttpResponse;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
@@ -79,9 +79,9 @@ final class WebUtils
         return stringBuilder.toString();
     }
 
-    static boolean isSuccessfulJsonResponse(HttpResponse response)
+    static boolean isSuccessfulJsonResponse(TransportResponse response)
     {
-        List<String> contentTypes = response.headers().allValues("Content-Type");
+        List<String> contentTypes = response.headerValues("Content-Type");
 
         if (contentTypes.isEmpty())
         {
@@ -102,12 +102,24 @@ final class WebUtils
         return hasSuccessStatusCode(response);
     }
 
-    static boolean hasSuccessStatusCode(HttpResponse response)
+    static boolean hasSuccessStatusCode(TransportResponse response)
     {
         return response.statusCode() >= 200
                 && response.statusCode() < 300;
     }
 
+    static boolean isClientError(TransportResponse response)
+    {
+        return response.statusCode() >= 400
+                && response.statusCode() < 500;
+    }
+
+    static boolean isServerError(TransportResponse response)
+    {
+        return response.statusCode() >= 500
+                && response.statusCode() < 600;
+    }
+
     static boolean isJson(String contentType)
     {
         return Stream.of(contentType.split(","))
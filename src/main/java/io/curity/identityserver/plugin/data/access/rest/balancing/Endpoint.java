@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.balancing;
+
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A transport that requests are balanced over, with the statistics that it is chosen and ejected by.
+ *
+ * <p>An endpoint is admitted until it is {@link #eject(long, long) ejected}. Once its ejection time has passed, a
+ * single request may {@link #tryStartProbe(long) probe} it, and it is admitted again if that request succeeds.
+ */
+final class Endpoint implements ThreadSafe
+{
+    // weight of the latest response time in the average
+    private static final int LATENCY_SMOOTHING_DIVISOR = 5;
+
+    private final Transport _transport;
+
+    private final AtomicInteger _outstanding = new AtomicInteger();
+    private final AtomicLong _averageLatencyNanos = new AtomicLong();
+
+    private final AtomicLong _windowStart;
+    private final AtomicInteger _windowRequests = new AtomicInteger();
+    private final AtomicInteger _windowFailures = new AtomicInteger();
+
+    private final AtomicBoolean _ejected = new AtomicBoolean();
+    private final AtomicBoolean _probing = new AtomicBoolean();
+    private volatile long _ejectedUntil;
+
+    Endpoint(Transport transport, long now)
+    {
+        _transport = transport;
+        _windowStart = new AtomicLong(now);
+    }
+
+    Transport transport()
+    {
+        return _transport;
+    }
+
+    int outstanding()
+    {
+        return _outstanding.get();
+    }
+
+    long averageLatencyNanos()
+    {
+        return _averageLatencyNanos.get();
+    }
+
+    boolean isAdmitted()
+    {
+        return !_ejected.get();
+    }
+
+    boolean tryStartProbe(long now)
+    {
+        return _ejected.get() && now - _ejectedUntil >= 0 && _probing.compareAndSet(false, true);
+    }
+
+    void started()
+    {
+        _outstanding.incrementAndGet();
+    }
+
+    void completed(long latencyNanos, boolean failed, long now, long windowNanos)
+    {
+        _outstanding.decrementAndGet();
+        _averageLatencyNanos.getAndUpdate(average -> average == 0 ? latencyNanos :
+                average + (latencyNanos - average) / LATENCY_SMOOTHING_DIVISOR);
+
+        long windowStart = _windowStart.get();
+
+        if (now - windowStart >= windowNanos && _windowStart.compareAndSet(windowStart, now))
+        {
+            _windowRequests.set(0);
+            _windowFailures.set(0);
+        }
+
+        _windowRequests.incrementAndGet();
+
+        if (failed)
+        {
+            _windowFailures.incrementAndGet();
+        }
+    }
+
+    int windowRequests()
+    {
+        return _windowRequests.get();
+    }
+
+    int windowFailures()
+    {
+        return _windowFailures.get();
+    }
+
+    /**
+     * @return true if the endpoint was admitted until now
+     */
+    boolean eject(long now, long ejectionNanos)
+    {
+        _ejectedUntil = now + ejectionNanos;
+
+        boolean wasAdmitted = _ejected.compareAndSet(false, true);
+
+        _probing.set(false);
+
+        return wasAdmitted;
+    }
+
+    void admit(long now, long latencyNanos)
+    {
+        _windowStart.set(now);
+        _windowRequests.set(0);
+        _windowFailures.set(0);
+        _averageLatencyNanos.set(latencyNanos);
+
+        _ejected.set(false);
+        _probing.set(false);
+    }
+}
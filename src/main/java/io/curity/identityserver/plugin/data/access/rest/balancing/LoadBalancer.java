@@ -0,0 +1,323 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.balancing;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration.LoadBalancing;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends requests through one of several transports, each to its own JSON service, chosen by the configured
+ * {@link LoadBalancing.Strategy strategy}.
+ *
+ * <p>A transport whose error rate or average response time passes its threshold is ejected for the ejection time,
+ * and then admitted again after a successful probing request. The last admitted transport is never ejected, so that
+ * requests are always sent somewhere.
+ *
+ * <p>A GET request whose transport throws, such as when its JSON service cannot be reached, is sent once more through
+ * another admitted transport, so that a dead endpoint does not fail requests until it is ejected. Other requests are
+ * not retried, since they may have been received.
+ */
+public final class LoadBalancer implements Transport, ThreadSafe
+{
+    private static final Logger _logger = LoggerFactory.getLogger(LoadBalancer.class);
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Endpoint[] _endpoints;
+    private final Ticker _ticker;
+
+    private final LoadBalancing.Strategy _strategy;
+    private final int _errorRateThreshold;
+    private final long _latencyThresholdNanos;
+    private final int _minimumRequests;
+    private final long _ejectionNanos;
+
+    private final LongAdder[] _requests;
+    private final LongAdder[] _failures;
+    private final LongAdder[] _ejections;
+    private final LongAdder _retries;
+
+    public LoadBalancer(List<Transport> transports, LoadBalancing configuration, Metrics metrics)
+    {
+        this(transports, configuration, metrics, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    LoadBalancer(List<Transport> transports, LoadBalancing configuration, Metrics metrics, Ticker ticker)
+    {
+        long now = ticker.read();
+
+        _ticker = ticker;
+        _endpoints = transports.stream()
+                .map(transport -> new Endpoint(transport, now))
+                .toArray(Endpoint[]::new);
+
+        _strategy = configuration.strategy();
+        _errorRateThreshold = configuration.errorRateThreshold();
+        _latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(configuration.latencyThreshold());
+        _minimumRequests = Math.max(1, configuration.minimumRequests());
+        _ejectionNanos = TimeUnit.SECONDS.toNanos(configuration.ejectionTime());
+
+        _requests = new LongAdder[_endpoints.length];
+        _failures = new LongAdder[_endpoints.length];
+        _ejections = new LongAdder[_endpoints.length];
+        _retries = metrics.counter("loadBalancing.retries");
+
+        for (int i = 0; i < _endpoints.length; i++)
+        {
+            Endpoint endpoint = _endpoints[i];
+            String prefix = "loadBalancing.endpoint" + i + ".";
+
+            _requests[i] = metrics.counter(prefix + "requests");
+            _failures[i] = metrics.counter(prefix + "failures");
+            _ejections[i] = metrics.counter(prefix + "ejections");
+            metrics.gauge(prefix + "outstanding", endpoint::outstanding);
+            metrics.gauge(prefix + "averageLatencyMicros",
+                    () -> TimeUnit.NANOSECONDS.toMicros(endpoint.averageLatencyNanos()));
+            metrics.gauge(prefix + "admitted", () -> endpoint.isAdmitted() ? 1 : 0);
+        }
+    }
+
+    @Override
+    public TransportResponse send(TransportRequest request)
+    {
+        int choice = choose(_ticker.read());
+
+        try
+        {
+            return send(request, choice);
+        }
+        catch (RuntimeException e)
+        {
+            int index = choice < 0 ? ~choice : choice;
+            int retry = "GET".equals(request.method()) ? chooseLeastOutstanding(index) : -1;
+
+            if (retry < 0)
+            {
+                throw e;
+            }
+
+            _retries.increment();
+            _logger.debug("Request to endpoint {} failed, retrying it on endpoint {}: {}", index, retry,
+                    e.getMessage());
+
+            try
+            {
+                return send(request, retry);
+            }
+            catch (RuntimeException retryFailure)
+            {
+                retryFailure.addSuppressed(e);
+
+                throw retryFailure;
+            }
+        }
+    }
+
+    /**
+     * @param choice the index of the endpoint, or its complement if the request probes it
+     */
+    private TransportResponse send(TransportRequest request, int choice)
+    {
+        long start = _ticker.read();
+        boolean probe = choice < 0;
+        int index = probe ? ~choice : choice;
+        Endpoint endpoint = _endpoints[index];
+        boolean failed = true;
+
+        endpoint.started();
+
+        try
+        {
+            TransportResponse response = endpoint.transport().send(request);
+
+            failed = response.statusCode() >= 500;
+
+            return response;
+        }
+        finally
+        {
+            completed(index, probe, start, failed);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        for (Endpoint endpoint : _endpoints)
+        {
+            endpoint.transport().close();
+        }
+    }
+
+    @VisibleForTesting
+    boolean isAdmitted(int index)
+    {
+        return _endpoints[index].isAdmitted();
+    }
+
+    /**
+     * @return the index of the endpoint to use, or its complement if the request probes an ejected endpoint
+     */
+    private int choose(long now)
+    {
+        for (int i = 0; i < _endpoints.length; i++)
+        {
+            if (_endpoints[i].tryStartProbe(now))
+            {
+                return ~i;
+            }
+        }
+
+        int choice = _strategy == LoadBalancing.Strategy.POWER_OF_TWO_CHOICES ?
+                chooseOfTwo() : chooseLeastOutstanding(-1);
+
+        // if all endpoints were ejected concurrently, any of them is better than none
+        return choice >= 0 ? choice : ThreadLocalRandom.current().nextInt(_endpoints.length);
+    }
+
+    /**
+     * @param excluded the index of an endpoint not to choose, or -1
+     * @return the index of the admitted endpoint with the fewest outstanding requests, or -1 if there is none
+     */
+    private int chooseLeastOutstanding(int excluded)
+    {
+        // start at a random endpoint, so that ties are not always won by the same one
+        int offset = ThreadLocalRandom.current().nextInt(_endpoints.length);
+        int choice = -1;
+        int fewestOutstanding = Integer.MAX_VALUE;
+
+        for (int i = 0; i < _endpoints.length; i++)
+        {
+            int index = (offset + i) % _endpoints.length;
+            Endpoint endpoint = _endpoints[index];
+
+            if (index != excluded && endpoint.isAdmitted() && endpoint.outstanding() < fewestOutstanding)
+            {
+                choice = index;
+                fewestOutstanding = endpoint.outstanding();
+            }
+        }
+
+        return choice;
+    }
+
+    private int chooseOfTwo()
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(_endpoints.length);
+        int second = random.nextInt(_endpoints.length - 1);
+
+        if (second >= first)
+        {
+            second++;
+        }
+
+        if (!_endpoints[first].isAdmitted() || !_endpoints[second].isAdmitted())
+        {
+            return chooseLeastOutstanding(-1);
+        }
+
+        return cost(_endpoints[first]) <= cost(_endpoints[second]) ? first : second;
+    }
+
+    private static double cost(Endpoint endpoint)
+    {
+        // endpoints without a response time yet are tried early
+        return (endpoint.averageLatencyNanos() + 1.0) * (endpoint.outstanding() + 1);
+    }
+
+    private void completed(int index, boolean probe, long start, boolean failed)
+    {
+        Endpoint endpoint = _endpoints[index];
+        long now = _ticker.read();
+        long latencyNanos = now - start;
+        boolean slow = _latencyThresholdNanos > 0 && latencyNanos >= _latencyThresholdNanos;
+
+        endpoint.completed(latencyNanos, failed, now, WINDOW_NANOS);
+        _requests[index].increment();
+
+        if (failed)
+        {
+            _failures[index].increment();
+        }
+
+        if (probe)
+        {
+            if (failed || slow)
+            {
+                _logger.debug("Probing request to endpoint {} failed, ejecting it again", index);
+
+                endpoint.eject(now, _ejectionNanos);
+            }
+            else
+            {
+                _logger.info("Endpoint {} answered a probing request, admitting it again", index);
+
+                endpoint.admit(now, latencyNanos);
+            }
+        }
+        else if (endpoint.isAdmitted() && shouldEject(endpoint) && hasOtherAdmitted(index) &&
+                endpoint.eject(now, _ejectionNanos))
+        {
+            _ejections[index].increment();
+            _logger.warn("Ejecting endpoint {} for {} seconds, after {} failures in {} requests with an " +
+                            "average response time of {} ms", index, TimeUnit.NANOSECONDS.toSeconds(_ejectionNanos),
+                    endpoint.windowFailures(), endpoint.windowRequests(),
+                    TimeUnit.NANOSECONDS.toMillis(endpoint.averageLatencyNanos()));
+        }
+    }
+
+    private boolean shouldEject(Endpoint endpoint)
+    {
+        int requests = endpoint.windowRequests();
+
+        if (requests < _minimumRequests)
+        {
+            return false;
+        }
+
+        return endpoint.windowFailures() * 100L >= (long) _errorRateThreshold * requests ||
+                _latencyThresholdNanos > 0 && endpoint.averageLatencyNanos() >= _latencyThresholdNanos;
+    }
+
+    private boolean hasOtherAdmitted(int index)
+    {
+        for (int i = 0; i < _endpoints.length; i++)
+        {
+            if (i != index && _endpoints[i].isAdmitted())
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
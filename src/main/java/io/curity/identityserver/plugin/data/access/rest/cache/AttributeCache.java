@@ -0,0 +1,553 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.Striped;
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+import se.curity.identityserver.sdk.attribute.Attributes;
+
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Caches the attributes of subjects, so that they can be shared between the providers of a plugin instance.
+ *
+ * <p>Entries have their own time to live, as attributes seeded from a verification are kept for a shorter time than
+ * the ones looked up from the JSON service. Expired entries are kept for the configured stale-if-error time, in
+ * case the JSON service is unavailable when they are looked up again.
+ *
+ * <p>If a snapshot is configured, entries are also written to an {@link AttributeSnapshot}, from which they are
+ * read when they are not in memory, such as after a restart.
+ *
+ * <p>Attributes are only cached if their subject was not invalidated while they were being looked up, as they may
+ * then be older than the change that caused the invalidation. Lookups take a token from {@link #startLookup()}
+ * before they are sent, in the same way as verifications do from the {@link VerifiedCredentialCache}. When more
+ * subjects are invalidated than can be remembered, no lookup that started before the forgotten invalidations is
+ * cached.
+ */
+public final class AttributeCache implements Closeable, ThreadSafe
+{
+    private static final Logger _logger = LoggerFactory.getLogger(AttributeCache.class);
+
+    private static final long MAXIMUM_SYMBOLS = 50_000;
+    // a lookup in flight does not take longer than this, so older invalidations need not be remembered
+    private static final long INVALIDATION_RETENTION_MINUTES = 10;
+    private static final int SUBJECT_LOCKS = 64;
+
+    private final Cache<String, CachedAttributes> _cache;
+    private final SymbolTable _symbols = new SymbolTable(MAXIMUM_SYMBOLS);
+    private final Ticker _ticker;
+    private final Clock _clock;
+    private final long _timeToLiveNanos;
+    private final long _staleIfErrorNanos;
+    @Nullable
+    private final AttributeSnapshot _snapshot;
+
+    // serializes the puts, invalidations and loads from the snapshot of a subject, so that the entry in memory and the
+    // one in the snapshot are replaced together. Clearing holds all of them
+    private final Striped<Lock> _subjectLocks = Striped.lock(SUBJECT_LOCKS);
+    private final Cache<String, Invalidation> _invalidations;
+    private final AtomicLong _sequence = new AtomicLong();
+
+    // the newest invalidation that was forgotten because too many subjects were invalidated, or because the cache was
+    // cleared. Invalidations are remembered, forgotten and looked up while holding the lock of _invalidations, so that
+    // no put can find an invalidation gone before these have been raised
+    private long _forgottenInvalidation;
+    private long _forgottenInvalidationMillis;
+
+    private final LongAdder _hits;
+    private final LongAdder _misses;
+    private final LongAdder _staleHits;
+    private final LongAdder _snapshotLoads;
+    private final LongAdder _invalidatedLookups;
+
+    public AttributeCache(AttributesConfiguration.AttributeCache configuration, Metrics metrics)
+    {
+        this(configuration, metrics, Ticker.systemTicker(), Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    AttributeCache(AttributesConfiguration.AttributeCache configuration, Metrics metrics, Ticker ticker)
+    {
+        this(configuration, metrics, ticker, Clock.systemUTC());
+    }
+
+    /**
+     * @param clock the wall clock of the times in the snapshot, which, unlike those of the ticker, survive restarts
+     */
+    @VisibleForTesting
+    AttributeCache(AttributesConfiguration.AttributeCache configuration, Metrics metrics, Ticker ticker, Clock clock)
+    {
+        _ticker = ticker;
+        _clock = clock;
+        _timeToLiveNanos = TimeUnit.SECONDS.toNanos(configuration.timeToLive());
+        _staleIfErrorNanos = TimeUnit.SECONDS.toNanos(Math.max(0, configuration.staleIfError()));
+
+        long longestTimeToLive = Math.max(configuration.timeToLive(), configuration.seedFromVerification()
+                .map(AttributesConfiguration.AttributeCache.SeedFromVerification::timeToLive)
+                .orElse(0));
+
+        _cache = CacheBuilder.newBuilder()
+                .maximumSize(configuration.maximumSize())
+                // entries check their own expiry, this only makes sure that expired entries are cleaned up
+                .expireAfterWrite(TimeUnit.SECONDS.toNanos(longestTimeToLive) + _staleIfErrorNanos,
+                        TimeUnit.NANOSECONDS)
+                .ticker(ticker)
+                .build();
+
+        _invalidations = CacheBuilder.newBuilder()
+                .maximumSize(configuration.maximumSize())
+                .expireAfterWrite(INVALIDATION_RETENTION_MINUTES, TimeUnit.MINUTES)
+                .ticker(ticker)
+                .removalListener((RemovalNotification<String, Invalidation> notification) ->
+                {
+                    if (notification.getCause() == RemovalCause.SIZE)
+                    {
+                        forget(notification.getValue());
+                    }
+                })
+                .build();
+
+        _hits = metrics.counter("attributeCache.hits");
+        _misses = metrics.counter("attributeCache.misses");
+        _staleHits = metrics.counter("attributeCache.staleHits");
+        _snapshotLoads = metrics.counter("attributeCache.snapshot.loads");
+        _invalidatedLookups = metrics.counter("attributeCache.invalidatedLookups");
+        metrics.gauge("attributeCache.size", _cache::size);
+        metrics.gauge("attributeCache.symbols", _symbols::size);
+
+        _snapshot = configuration.snapshot()
+                .map(snapshot -> openSnapshot(snapshot, TimeUnit.NANOSECONDS.toMillis(_staleIfErrorNanos), clock,
+                        metrics))
+                .orElse(null);
+    }
+
+    /**
+     * @return the cached attributes of the subject, or null if there are none that have not expired
+     */
+    @Nullable
+    public Attributes getIfFresh(String subject)
+    {
+        @Nullable CachedAttributes entry = getEntry(subject);
+
+        if (entry == null)
+        {
+            _misses.increment();
+
+            return null;
+        }
+
+        long now = _ticker.read();
+
+        if (!entry.isFresh(now))
+        {
+            if (!entry.isUsableOnError(now, _staleIfErrorNanos))
+            {
+                _cache.asMap().remove(subject, entry);
+            }
+
+            _misses.increment();
+
+            return null;
+        }
+
+        _hits.increment();
+
+        return entry.getAttributes();
+    }
+
+    /**
+     * @return the cached attributes of the subject, even if they have expired, as long as that was no longer ago than
+     * the stale-if-error time, or null if there are none. For when the JSON service cannot be reached.
+     */
+    @Nullable
+    public Attributes getIfUsableOnError(String subject)
+    {
+        @Nullable CachedAttributes entry = getEntry(subject);
+
+        if (entry == null || !entry.isUsableOnError(_ticker.read(), _staleIfErrorNanos))
+        {
+            return null;
+        }
+
+        _staleHits.increment();
+
+        return entry.getAttributes();
+    }
+
+    /**
+     * @return true if there are cached attributes of the subject that have not expired. Unlike
+     * {@link #getIfFresh(String)}, this is not counted as a hit or miss.
+     */
+    public boolean isCached(String subject)
+    {
+        @Nullable CachedAttributes entry = getEntry(subject);
+
+        return entry != null && entry.isFresh(_ticker.read());
+    }
+
+    /**
+     * @return the entry of the subject if it has not expired, for sharing it with other nodes. Unlike
+     * {@link #getIfFresh(String)}, this is not counted as a hit or miss.
+     */
+    @Nullable
+    CachedAttributes getFreshEntry(String subject)
+    {
+        @Nullable CachedAttributes entry = getEntry(subject);
+
+        return entry != null && entry.isFresh(_ticker.read()) ? entry : null;
+    }
+
+    long remainingTimeToLiveNanos(CachedAttributes entry)
+    {
+        return entry.remainingTimeToLive(_ticker.read());
+    }
+
+    long timeToLiveNanos()
+    {
+        return _timeToLiveNanos;
+    }
+
+    /**
+     * @return a token to pass to {@link #put(String, Attributes, long)} once the lookup that is about to start has
+     * completed
+     */
+    public long startLookup()
+    {
+        return _sequence.incrementAndGet();
+    }
+
+    /**
+     * Record that the attributes of the subject have changed, without invalidating them, so that lookups that are in
+     * flight are not cached, for when the new attributes are about to be looked up.
+     *
+     * @return a token to pass to {@link #put(String, Attributes, long)} once the new attributes have been looked up
+     */
+    public long startRefresh(String subject)
+    {
+        recordInvalidation(subject);
+
+        return startLookup();
+    }
+
+    /**
+     * Cache attributes that were looked up from the JSON service, unless the subject was invalidated after the lookup
+     * started.
+     *
+     * @param lookupToken the token that {@link #startLookup()} returned before the lookup was sent
+     */
+    public void put(String subject, Attributes attributes, long lookupToken)
+    {
+        put(subject, attributes, _timeToLiveNanos, lookupToken);
+    }
+
+    /**
+     * Cache attributes that are known to be up to date, for tests.
+     */
+    @VisibleForTesting
+    void put(String subject, Attributes attributes)
+    {
+        put(subject, attributes, startLookup());
+    }
+
+    void put(String subject, Attributes attributes, long timeToLiveNanos, long lookupToken)
+    {
+        put(subject, attributes, timeToLiveNanos, lookupToken, Long.MAX_VALUE);
+    }
+
+    /**
+     * Cache attributes that another node looked up, unless the subject was invalidated at this node after the lookup
+     * started.
+     *
+     * @param lookupStartedAtMillis when the lookup started, by the wall clock of this node
+     */
+    void putLookedUpAt(String subject, Attributes attributes, long timeToLiveNanos, long lookupStartedAtMillis)
+    {
+        put(subject, attributes, timeToLiveNanos, Long.MAX_VALUE, lookupStartedAtMillis);
+    }
+
+    private void put(String subject, Attributes attributes, long timeToLiveNanos, long lookupToken,
+                     long lookupStartedAtMillis)
+    {
+        if (timeToLiveNanos <= 0)
+        {
+            return;
+        }
+
+        Lock lock = _subjectLocks.get(subject);
+
+        lock.lock();
+
+        try
+        {
+            if (isInvalidatedSince(subject, lookupToken, lookupStartedAtMillis))
+            {
+                _invalidatedLookups.increment();
+                _logger.debug("Not caching the attributes of {}, as they were invalidated while being looked up",
+                        subject);
+
+                return;
+            }
+
+            _cache.put(subject, new CachedAttributes(CompactAttributes.of(attributes.asMap(), _symbols),
+                    _ticker.read() + timeToLiveNanos));
+
+            if (_snapshot != null)
+            {
+                long now = _clock.millis();
+
+                _snapshot.put(subject, attributes.asMap(), now, now + TimeUnit.NANOSECONDS.toMillis(timeToLiveNanos));
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(String subject)
+    {
+        Lock lock = _subjectLocks.get(subject);
+
+        lock.lock();
+
+        try
+        {
+            // the snapshot first, so that the entry is not loaded from it again once it is gone from memory
+            if (_snapshot != null)
+            {
+                _snapshot.remove(subject);
+            }
+
+            recordInvalidation(subject);
+            _cache.invalidate(subject);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Invalidate the entries in memory. Those in the snapshot are kept, as this is done when the plugin is stopped.
+     */
+    public void invalidateAll()
+    {
+        _cache.invalidateAll();
+    }
+
+    /**
+     * Invalidate all entries, also those in the snapshot, for when it is not known which have changed.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < _subjectLocks.size(); i++)
+        {
+            _subjectLocks.getAt(i).lock();
+        }
+
+        try
+        {
+            if (_snapshot != null)
+            {
+                _snapshot.clear();
+            }
+
+            synchronized (_invalidations)
+            {
+                forget(new Invalidation(_sequence.incrementAndGet(), _clock.millis()));
+            }
+
+            _cache.invalidateAll();
+        }
+        finally
+        {
+            for (int i = _subjectLocks.size() - 1; i >= 0; i--)
+            {
+                _subjectLocks.getAt(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * Remember the cursor of the change feed in the snapshot, if one is configured, so that the feed can be read from
+     * it after a restart rather than clearing the entries that are restored.
+     */
+    public void putChangeFeedCursor(String cursor)
+    {
+        if (_snapshot != null)
+        {
+            _snapshot.putCursor(cursor);
+        }
+    }
+
+    /**
+     * @return the cursor of the change feed that the entries in the snapshot are up to date with, or null if there is
+     * none
+     */
+    @Nullable
+    public String changeFeedCursor()
+    {
+        return _snapshot == null ? null : _snapshot.cursor();
+    }
+
+    public long size()
+    {
+        return _cache.size();
+    }
+
+    @Override
+    public void close()
+    {
+        if (_snapshot != null)
+        {
+            _snapshot.close();
+        }
+    }
+
+    /**
+     * @return the entry of the subject in memory, or else the one in the snapshot, which is then kept in memory
+     */
+    @Nullable
+    private CachedAttributes getEntry(String subject)
+    {
+        @Nullable CachedAttributes entry = _cache.getIfPresent(subject);
+
+        if (entry != null || _snapshot == null)
+        {
+            return entry;
+        }
+
+        // holding the lock of the subject, so that an entry that is being invalidated is not loaded again
+        Lock lock = _subjectLocks.get(subject);
+
+        lock.lock();
+
+        try
+        {
+            @Nullable CachedAttributes existing = _cache.getIfPresent(subject);
+
+            if (existing != null)
+            {
+                return existing;
+            }
+
+            @Nullable AttributeSnapshot.Entry stored = _snapshot.get(subject);
+
+            if (stored == null)
+            {
+                return null;
+            }
+
+            // the ticker does not survive restarts, so the remaining time to live is moved over from the wall clock
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(stored.expiresAtMillis - _clock.millis());
+            CachedAttributes loaded = new CachedAttributes(CompactAttributes.of(stored.attributes, _symbols),
+                    _ticker.read() + remainingNanos);
+
+            _cache.put(subject, loaded);
+            _snapshotLoads.increment();
+
+            return loaded;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void recordInvalidation(String subject)
+    {
+        // an invalidation that is evicted to make room is passed to the removal listener before this returns
+        synchronized (_invalidations)
+        {
+            _invalidations.put(subject, new Invalidation(_sequence.incrementAndGet(), _clock.millis()));
+        }
+    }
+
+    /**
+     * @return true if the subject was invalidated after the given token was taken, or at or after the given time
+     */
+    private boolean isInvalidatedSince(String subject, long lookupToken, long lookupStartedAtMillis)
+    {
+        synchronized (_invalidations)
+        {
+            if (lookupToken <= _forgottenInvalidation || lookupStartedAtMillis <= _forgottenInvalidationMillis)
+            {
+                return true;
+            }
+
+            @Nullable Invalidation invalidation = _invalidations.getIfPresent(subject);
+
+            return invalidation != null &&
+                    (lookupToken <= invalidation._sequence || lookupStartedAtMillis <= invalidation._atMillis);
+        }
+    }
+
+    // called while holding the lock of _invalidations
+    private void forget(Invalidation invalidation)
+    {
+        _forgottenInvalidation = Math.max(_forgottenInvalidation, invalidation._sequence);
+        _forgottenInvalidationMillis = Math.max(_forgottenInvalidationMillis, invalidation._atMillis);
+    }
+
+    @Nullable
+    private static AttributeSnapshot openSnapshot(AttributesConfiguration.AttributeCache.Snapshot configuration,
+                                                  long retainMillis, Clock clock, Metrics metrics)
+    {
+        try
+        {
+            int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(1, configuration.maximumSize()) * 1024L * 1024L);
+
+            return new AttributeSnapshot(Paths.get(configuration.file()), capacity, retainMillis, clock, metrics);
+        }
+        catch (UncheckedIOException e)
+        {
+            _logger.warn("Caching attributes in memory only: {}", e.getMessage());
+
+            return null;
+        }
+    }
+
+    private static final class Invalidation
+    {
+        private final long _sequence;
+        private final long _atMillis;
+
+        private Invalidation(long sequence, long atMillis)
+        {
+            _sequence = sequence;
+            _atMillis = atMillis;
+        }
+    }
+}
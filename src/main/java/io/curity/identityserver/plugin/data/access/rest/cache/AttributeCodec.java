@@ -0,0 +1,240 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the JSON-like values of attributes, i.e. strings, numbers, booleans, lists and maps, in a compact tagged
+ * binary form.
+ */
+final class AttributeCodec
+{
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte LIST = 6;
+    private static final byte MAP = 7;
+    private static final byte DECIMAL = 8;
+
+    private AttributeCodec()
+    {
+    }
+
+    static byte[] encode(Map<String, ?> attributes)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream output = new DataOutputStream(bytes);
+
+        try
+        {
+            writeValue(output, attributes);
+        }
+        catch (IOException e)
+        {
+            // not thrown by a ByteArrayOutputStream
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param input a buffer that is backed by an array
+     * @throws IllegalArgumentException if the bytes are not an encoded map
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> decode(ByteBuffer input)
+    {
+        try
+        {
+            Object value = readValue(input);
+
+            if (!(value instanceof Map))
+            {
+                throw new IllegalArgumentException("Encoded attributes are not a map");
+            }
+
+            return (Map<String, Object>) value;
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IllegalArgumentException("Encoded attributes are truncated", e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream output, Object value) throws IOException
+    {
+        if (value == null)
+        {
+            output.writeByte(NULL);
+        }
+        else if (value instanceof String)
+        {
+            output.writeByte(STRING);
+            writeString(output, (String) value);
+        }
+        else if (value instanceof Boolean)
+        {
+            output.writeByte((Boolean) value ? TRUE : FALSE);
+        }
+        else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+        {
+            output.writeByte(LONG);
+            output.writeLong(((Number) value).longValue());
+        }
+        else if (value instanceof Double || value instanceof Float)
+        {
+            output.writeByte(DOUBLE);
+            output.writeDouble(((Number) value).doubleValue());
+        }
+        else if (value instanceof BigDecimal || value instanceof BigInteger)
+        {
+            output.writeByte(DECIMAL);
+            writeString(output, value.toString());
+        }
+        else if (value instanceof Map)
+        {
+            Map<?, ?> map = (Map<?, ?>) value;
+
+            output.writeByte(MAP);
+            output.writeInt(map.size());
+
+            for (Map.Entry<?, ?> entry : map.entrySet())
+            {
+                writeString(output, String.valueOf(entry.getKey()));
+                writeValue(output, entry.getValue());
+            }
+        }
+        else if (value instanceof Collection)
+        {
+            Collection<?> collection = (Collection<?>) value;
+
+            output.writeByte(LIST);
+            output.writeInt(collection.size());
+
+            for (Object element : collection)
+            {
+                writeValue(output, element);
+            }
+        }
+        else
+        {
+            output.writeByte(STRING);
+            writeString(output, value.toString());
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static Object readValue(ByteBuffer input)
+    {
+        byte tag = input.get();
+
+        switch (tag)
+        {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(input);
+            case LONG:
+                return input.getLong();
+            case DOUBLE:
+                return input.getDouble();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DECIMAL:
+                return new BigDecimal(readString(input));
+            case MAP:
+            {
+                int size = readSize(input);
+                Map<String, Object> map = new LinkedHashMap<>(size * 2);
+
+                for (int i = 0; i < size; i++)
+                {
+                    map.put(readString(input), readValue(input));
+                }
+
+                return map;
+            }
+            case LIST:
+            {
+                int size = readSize(input);
+                List<Object> list = new ArrayList<>(size);
+
+                for (int i = 0; i < size; i++)
+                {
+                    list.add(readValue(input));
+                }
+
+                return list;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown value tag " + tag);
+        }
+    }
+
+    private static String readString(ByteBuffer input)
+    {
+        int length = readSize(input);
+        String value = new String(input.array(), input.arrayOffset() + input.position(), length,
+                StandardCharsets.UTF_8);
+
+        input.position(input.position() + length);
+
+        return value;
+    }
+
+    /**
+     * Read a size, which can be no larger than the remaining bytes, as every element takes at least one byte.
+     */
+    private static int readSize(ByteBuffer input)
+    {
+        int size = input.getInt();
+
+        if (size < 0 || size > input.remaining())
+        {
+            throw new IllegalArgumentException("Invalid size " + size);
+        }
+
+        return size;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+import se.curity.identityserver.sdk.attribute.Attributes;
+import se.curity.identityserver.sdk.service.Json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Looks up the attributes of a set of hot subjects in the background and caches them, so that they do not all miss
+ * the cache at the same moment after a restart.
+ *
+ * <p>Lookups are limited in number and rate, and pause while attribute lookups of logins wait for the JSON service,
+ * which the attribute provider reports with {@link #liveLookupStarted()} and {@link #liveLookupFinished()}.
+ */
+public final class AttributePreloader implements Closeable, ThreadSafe
+{
+    private static final Logger _logger = LoggerFactory.getLogger(AttributePreloader.class);
+
+    private static final long PAUSE_MILLIS = 10;
+
+    private final AttributesConfiguration.AttributeCache.Preload _configuration;
+    private final AttributeCache _attributeCache;
+    private final Supplier<List<String>> _hotSubjects;
+    private final Function<String, Attributes> _lookup;
+    private final long _maximumSubjects;
+    private final RateLimiter _rateLimiter;
+    private final ExecutorService _executor;
+
+    private final AtomicInteger _liveLookups = new AtomicInteger();
+    private final AtomicInteger _subjects = new AtomicInteger();
+    private final LongAdder _loaded;
+    private final LongAdder _skipped;
+    private final LongAdder _failed;
+    private final LongAdder _pauses;
+
+    /**
+     * @param hotSubjects reads the subjects to preload
+     * @param lookup      looks up the attributes of a subject from the JSON service, returning null if it has none
+     */
+    public AttributePreloader(AttributesConfiguration.AttributeCache.Preload configuration,
+                              AttributeCache attributeCache, long maximumSubjects,
+                              Supplier<List<String>> hotSubjects, Function<String, Attributes> lookup,
+                              String instanceId, Metrics metrics)
+    {
+        _configuration = configuration;
+        _attributeCache = attributeCache;
+        _maximumSubjects = maximumSubjects;
+        _hotSubjects = hotSubjects;
+        _lookup = lookup;
+        _rateLimiter = RateLimiter.create(Math.max(1, configuration.requestsPerSecond()));
+        _executor = Executors.newFixedThreadPool(Math.max(1, configuration.maximumConcurrentRequests()),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("rest-data-access-preload-" + instanceId + "-%d")
+                        .setDaemon(true)
+                        .build());
+
+        metrics.gauge("attributeCache.preload.subjects", _subjects::get);
+        _loaded = metrics.counter("attributeCache.preload.loaded");
+        _skipped = metrics.counter("attributeCache.preload.skipped");
+        _failed = metrics.counter("attributeCache.preload.failed");
+        _pauses = metrics.counter("attributeCache.preload.pauses");
+    }
+
+    /**
+     * @return the subjects in the configured file
+     */
+    public static Supplier<List<String>> fromFile(String file)
+    {
+        return () ->
+        {
+            try
+            {
+                return Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8).stream()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                        .collect(Collectors.toList());
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Could not read the hot subjects from " + file, e);
+            }
+        };
+    }
+
+    /**
+     * @return the subjects in the JSON array that the JSON service returns for the path
+     */
+    public static Supplier<List<String>> fromJsonService(String urlPath, Transport transport, Json json)
+    {
+        return () ->
+        {
+            TransportResponse response = transport.send(TransportRequest.builder("GET", urlPath).build());
+
+            if (response.statusCode() / 100 != 2)
+            {
+                throw new IllegalStateException("The JSON service responded to the hot subject request with status "
+                        + response.statusCode());
+            }
+
+            return json.fromJsonArray(response.body()).stream()
+                    .filter(Objects::nonNull)
+                    .map(Object::toString)
+                    .collect(Collectors.toList());
+        };
+    }
+
+    /**
+     * Start preloading in the background.
+     */
+    public void start()
+    {
+        _executor.execute(this::preload);
+    }
+
+    public void liveLookupStarted()
+    {
+        _liveLookups.incrementAndGet();
+    }
+
+    public void liveLookupFinished()
+    {
+        _liveLookups.decrementAndGet();
+    }
+
+    @Override
+    public void close()
+    {
+        _executor.shutdownNow();
+    }
+
+    private void preload()
+    {
+        Set<String> subjects;
+
+        try
+        {
+            subjects = new LinkedHashSet<>(_hotSubjects.get());
+        }
+        catch (RuntimeException e)
+        {
+            _logger.warn("Could not read the subjects to preload: {}", e.getMessage());
+            _executor.shutdown();
+
+            return;
+        }
+
+        Queue<String> remaining = subjects.stream()
+                .limit(_maximumSubjects)
+                .collect(Collectors.toCollection(ConcurrentLinkedQueue::new));
+
+        if (subjects.size() > remaining.size())
+        {
+            _logger.warn("Only preloading {} of {} subjects, as more do not fit in the attribute cache",
+                    remaining.size(), subjects.size());
+        }
+
+        _subjects.set(remaining.size());
+        _logger.info("Preloading the attributes of {} subjects", remaining.size());
+
+        long started = System.nanoTime();
+        int workers = Math.max(1, Math.min(_configuration.maximumConcurrentRequests(), remaining.size()));
+        AtomicInteger runningWorkers = new AtomicInteger(workers);
+        Runnable worker = () ->
+        {
+            preload(remaining);
+
+            if (runningWorkers.decrementAndGet() == 0)
+            {
+                _logger.info("Preloaded the attributes of {} subjects in {} ms, {} were already cached and {} failed",
+                        _loaded.sum(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), _skipped.sum(),
+                        _failed.sum());
+                _executor.shutdown();
+            }
+        };
+
+        for (int i = 1; i < workers; i++)
+        {
+            _executor.execute(worker);
+        }
+
+        worker.run();
+    }
+
+    private void preload(Queue<String> remaining)
+    {
+        @Nullable String subject;
+
+        while ((subject = remaining.poll()) != null && !Thread.currentThread().isInterrupted())
+        {
+            if (!awaitQuietBackend())
+            {
+                return;
+            }
+
+            _rateLimiter.acquire();
+
+            // a login may have looked it up in the meantime
+            if (_attributeCache.isCached(subject))
+            {
+                _skipped.increment();
+
+                continue;
+            }
+
+            long lookupToken = _attributeCache.startLookup();
+
+            try
+            {
+                @Nullable Attributes attributes = _lookup.apply(subject);
+
+                if (attributes != null)
+                {
+                    _attributeCache.put(subject, attributes, lookupToken);
+                    _loaded.increment();
+                }
+                else
+                {
+                    _failed.increment();
+                }
+            }
+            catch (RuntimeException e)
+            {
+                _failed.increment();
+                _logger.debug("Could not preload the attributes of {}: {}", subject, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Wait until fewer attribute lookups of logins than the configured limit wait for the JSON service.
+     *
+     * @return false if interrupted while waiting
+     */
+    private boolean awaitQuietBackend()
+    {
+        boolean paused = false;
+
+        while (_configuration.pauseAtLiveRequests() > 0
+                && _liveLookups.get() >= _configuration.pauseAtLiveRequests())
+        {
+            if (!paused)
+            {
+                _pauses.increment();
+                paused = true;
+            }
+
+            try
+            {
+                Thread.sleep(PAUSE_MILLIS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
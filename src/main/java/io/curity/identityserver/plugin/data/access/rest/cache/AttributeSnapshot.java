@@ -0,0 +1,776 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * A memory-mapped file of cached attributes that survives restarts.
+ *
+ * <p>The file starts with a header of a magic number and the format version. Records are appended after it as
+ * attributes are cached or invalidated:
+ * <pre>
+ * int     the length of the rest of the record, written last, so that a record is only seen once it is complete
+ * int     the CRC32C checksum of the rest of the record after this field
+ * byte    the kind of record, attributes, removal or change feed cursor
+ * long    when the attributes were looked up, in milliseconds since the epoch
+ * long    when they expire, in milliseconds since the epoch
+ * int     the length of the subject, followed by the subject in UTF-8
+ * ...     the attributes, encoded by {@link AttributeCodec}
+ * </pre>
+ * A change feed cursor record has the cursor in place of the subject, and no attributes. It is appended after the
+ * removals of the changes that it covers, so that a file that is read up to its first incomplete record never has a
+ * cursor that is newer than its entries.
+ * When the file is opened, only the subjects of its records are read, to find the newest record of each subject. The
+ * checksum of a record is verified, and its attributes decoded, when the subject is first asked for. A file of
+ * another format version is discarded, and so is everything from the first record that is incomplete.
+ *
+ * <p>When the file is full, it is rewritten with the newest record of each subject that has not expired.
+ *
+ * <p>The file is locked while it is open, so that two snapshots never map it at the same time. One that cannot lock
+ * it cannot be created.
+ */
+final class AttributeSnapshot implements Closeable, ThreadSafe
+{
+    static final int MAGIC = 0x52444153;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    private static final Logger _logger = LoggerFactory.getLogger(AttributeSnapshot.class);
+
+    // the length and checksum before the body of a record
+    private static final int RECORD_PREFIX_SIZE = 8;
+    // the kind, times and subject length at the start of the body of a record
+    private static final int BODY_FIXED_SIZE = 1 + 8 + 8 + 4;
+    private static final int EXPIRES_AT_OFFSET = RECORD_PREFIX_SIZE + 1 + 8;
+
+    private static final byte ATTRIBUTES = 1;
+    private static final byte REMOVAL = 2;
+    private static final byte CURSOR = 3;
+
+    private static final long COMPACTION_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Path _file;
+    private final int _capacity;
+    private final long _retainMillis;
+    private final Clock _clock;
+
+    // appends and reads hold the read lock, compaction replaces the file while holding the write lock
+    private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> _index = new ConcurrentHashMap<>();
+    private final AtomicInteger _position = new AtomicInteger();
+    // the position of the newest cursor record, or -1 if there is none
+    private final AtomicInteger _cursorPosition = new AtomicInteger(-1);
+    private FileChannel _channel;
+    private MappedByteBuffer _buffer;
+    private volatile long _nextCompaction;
+
+    private final LongAdder _corruptRecords;
+    private final LongAdder _droppedWrites;
+    private final LongAdder _compactions;
+
+    /**
+     * @param capacity     the maximum size of the file in bytes
+     * @param retainMillis how long after they expire that entries are kept
+     * @throws UncheckedIOException if the file cannot be opened or created, or is in use by another snapshot
+     */
+    AttributeSnapshot(Path file, int capacity, long retainMillis, Clock clock, Metrics metrics)
+    {
+        _file = file;
+        _capacity = Math.max(capacity, HEADER_SIZE);
+        _retainMillis = retainMillis;
+        _clock = clock;
+
+        _corruptRecords = metrics.counter("attributeCache.snapshot.corruptRecords");
+        _droppedWrites = metrics.counter("attributeCache.snapshot.droppedWrites");
+        _compactions = metrics.counter("attributeCache.snapshot.compactions");
+        metrics.gauge("attributeCache.snapshot.entries", _index::size);
+        metrics.gauge("attributeCache.snapshot.usedBytes", _position::get);
+
+        try
+        {
+            open();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Could not open the attribute snapshot " + file + ": " + e.getMessage(),
+                    e);
+        }
+    }
+
+    /**
+     * An entry of the snapshot, with the attributes as decoded by {@link AttributeCodec}.
+     */
+    static final class Entry
+    {
+        final Map<String, Object> attributes;
+        final long fetchedAtMillis;
+        final long expiresAtMillis;
+
+        private Entry(Map<String, Object> attributes, long fetchedAtMillis, long expiresAtMillis)
+        {
+            this.attributes = attributes;
+            this.fetchedAtMillis = fetchedAtMillis;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    /**
+     * @return the newest entry of the subject, or null if there is none that is intact and kept
+     */
+    @Nullable
+    Entry get(String subject)
+    {
+        _lock.readLock().lock();
+
+        try
+        {
+            @Nullable Integer position = _index.get(subject);
+
+            if (position == null)
+            {
+                return null;
+            }
+
+            if (!hasValidLength(position, BODY_FIXED_SIZE))
+            {
+                return discardCorrupt(subject, position, "its length is out of bounds");
+            }
+
+            byte[] body = new byte[_buffer.getInt(position) - 4];
+
+            _buffer.get(position + RECORD_PREFIX_SIZE, body);
+
+            if (checksum(body) != _buffer.getInt(position + 4))
+            {
+                return discardCorrupt(subject, position, "its checksum does not match");
+            }
+
+            ByteBuffer input = ByteBuffer.wrap(body);
+            input.get();
+            long fetchedAtMillis = input.getLong();
+            long expiresAtMillis = input.getLong();
+
+            if (expiresAtMillis + _retainMillis - _clock.millis() <= 0)
+            {
+                _index.remove(subject, position);
+
+                return null;
+            }
+
+            int subjectLength = input.getInt();
+
+            input.position(input.position() + subjectLength);
+
+            return new Entry(AttributeCodec.decode(input), fetchedAtMillis, expiresAtMillis);
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException | BufferUnderflowException
+               | NegativeArraySizeException e)
+        {
+            return discardCorrupt(subject, _index.getOrDefault(subject, -1), String.valueOf(e.getMessage()));
+        }
+        finally
+        {
+            _lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append the attributes of the subject, which replace any that were appended before.
+     */
+    void put(String subject, Map<String, ?> attributes, long fetchedAtMillis, long expiresAtMillis)
+    {
+        append(ATTRIBUTES, subject, AttributeCodec.encode(attributes), fetchedAtMillis, expiresAtMillis);
+    }
+
+    /**
+     * Append a removal of the attributes of the subject, so that they are not returned after a restart either.
+     */
+    void remove(String subject)
+    {
+        _index.remove(subject);
+
+        long now = _clock.millis();
+
+        append(REMOVAL, subject, new byte[0], now, now);
+    }
+
+    /**
+     * Append the cursor of the change feed, up to which the removals of changed subjects have been appended.
+     */
+    void putCursor(String cursor)
+    {
+        long now = _clock.millis();
+
+        append(CURSOR, cursor, new byte[0], now, now);
+    }
+
+    /**
+     * @return the newest cursor of the change feed, or null if there is none that is intact
+     */
+    @Nullable
+    String cursor()
+    {
+        _lock.readLock().lock();
+
+        try
+        {
+            int position = _cursorPosition.get();
+
+            if (position < 0)
+            {
+                return null;
+            }
+
+            try
+            {
+                if (!hasValidLength(position, BODY_FIXED_SIZE))
+                {
+                    return discardCorruptCursor(position);
+                }
+
+                byte[] body = new byte[_buffer.getInt(position) - 4];
+
+                _buffer.get(position + RECORD_PREFIX_SIZE, body);
+
+                if (checksum(body) != _buffer.getInt(position + 4))
+                {
+                    return discardCorruptCursor(position);
+                }
+
+                int cursorLength = ByteBuffer.wrap(body).getInt(BODY_FIXED_SIZE - 4);
+
+                return new String(body, BODY_FIXED_SIZE, cursorLength, StandardCharsets.UTF_8);
+            }
+            catch (IndexOutOfBoundsException | NegativeArraySizeException e)
+            {
+                return discardCorruptCursor(position);
+            }
+        }
+        finally
+        {
+            _lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all records, also the cursor, so that no attributes are returned after a restart either.
+     */
+    void clear()
+    {
+        _lock.writeLock().lock();
+
+        try
+        {
+            int end = _position.get();
+            byte[] zeros = new byte[Math.min(Math.max(0, end - HEADER_SIZE), 64 * 1024)];
+
+            // so that records that are appended next are not followed by the old ones when the file is scanned
+            for (int position = HEADER_SIZE; position < end; position += zeros.length)
+            {
+                _buffer.put(position, zeros, 0, Math.min(zeros.length, end - position));
+            }
+
+            _index.clear();
+            _cursorPosition.set(-1);
+            _position.set(HEADER_SIZE);
+        }
+        finally
+        {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    int size()
+    {
+        return _index.size();
+    }
+
+    @Override
+    public void close()
+    {
+        _lock.writeLock().lock();
+
+        try
+        {
+            _buffer.force();
+            _channel.close();
+        }
+        catch (IOException e)
+        {
+            _logger.debug("Could not close the attribute snapshot {}", _file, e);
+        }
+        finally
+        {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    private void append(byte kind, String subject, byte[] attributes, long fetchedAtMillis, long expiresAtMillis)
+    {
+        byte[] subjectBytes = subject.getBytes(StandardCharsets.UTF_8);
+        byte[] body = ByteBuffer.allocate(BODY_FIXED_SIZE + subjectBytes.length + attributes.length)
+                .put(kind)
+                .putLong(fetchedAtMillis)
+                .putLong(expiresAtMillis)
+                .putInt(subjectBytes.length)
+                .put(subjectBytes)
+                .put(attributes)
+                .array();
+
+        if (!tryAppend(kind, subject, body) && (!compact() || !tryAppend(kind, subject, body)))
+        {
+            _droppedWrites.increment();
+        }
+    }
+
+    private boolean tryAppend(byte kind, String subject, byte[] body)
+    {
+        _lock.readLock().lock();
+
+        try
+        {
+            int size = RECORD_PREFIX_SIZE + body.length;
+            int position = reserve(size);
+
+            if (position < 0)
+            {
+                return false;
+            }
+
+            _buffer.putInt(position + 4, checksum(body));
+            _buffer.put(position + RECORD_PREFIX_SIZE, body);
+            // publishes the record
+            _buffer.putInt(position, 4 + body.length);
+
+            if (kind == ATTRIBUTES)
+            {
+                // of two concurrent appends for the same subject, the later one in the file wins after a restart
+                _index.merge(subject, position, Math::max);
+            }
+            else if (kind == CURSOR)
+            {
+                _cursorPosition.accumulateAndGet(position, Math::max);
+            }
+
+            return true;
+        }
+        finally
+        {
+            _lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the position of the reserved space, or -1 if the file is full
+     */
+    private int reserve(int size)
+    {
+        while (true)
+        {
+            int position = _position.get();
+
+            if (position + (long) size > _buffer.capacity())
+            {
+                return -1;
+            }
+
+            if (_position.compareAndSet(position, position + size))
+            {
+                return position;
+            }
+        }
+    }
+
+    /**
+     * Rewrite the file with the newest record of each subject that is kept, unless that was recently tried without
+     * freeing enough space.
+     *
+     * @return true if there may be space for more records
+     */
+    private boolean compact()
+    {
+        _lock.writeLock().lock();
+
+        Path temporaryFile = _file.resolveSibling(_file.getFileName() + ".compacting");
+        @Nullable FileChannel channel = null;
+
+        try
+        {
+            long now = _clock.millis();
+
+            if (now - _nextCompaction < 0)
+            {
+                return false;
+            }
+
+            channel = openChannel(temporaryFile, StandardOpenOption.TRUNCATE_EXISTING);
+            // before it replaces the file, so that the file is never unlocked
+            lock(channel);
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, _capacity);
+            Map<String, Integer> index = new HashMap<>();
+            int position = writeHeader(buffer);
+
+            for (Map.Entry<String, Integer> entry : _index.entrySet())
+            {
+                int from = entry.getValue();
+
+                // corrupt entries are dropped, rather than copied
+                if (!hasValidLength(from, BODY_FIXED_SIZE))
+                {
+                    continue;
+                }
+
+                int size = 4 + _buffer.getInt(from);
+
+                if (_buffer.getLong(from + EXPIRES_AT_OFFSET) + _retainMillis - now <= 0
+                        || position + size > _capacity)
+                {
+                    continue;
+                }
+
+                byte[] record = new byte[size];
+
+                _buffer.get(from, record);
+                buffer.put(position, record);
+                index.put(entry.getKey(), position);
+                position += size;
+            }
+
+            // after the entries, which it is not newer than
+            int cursorFrom = _cursorPosition.get();
+            int cursorPosition = -1;
+
+            if (cursorFrom >= 0 && hasValidLength(cursorFrom, BODY_FIXED_SIZE)
+                    && position + 4 + _buffer.getInt(cursorFrom) <= _capacity)
+            {
+                byte[] record = new byte[4 + _buffer.getInt(cursorFrom)];
+
+                _buffer.get(cursorFrom, record);
+                buffer.put(position, record);
+                cursorPosition = position;
+                position += record.length;
+            }
+
+            buffer.force();
+            Files.move(temporaryFile, _file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            closeQuietly(_channel);
+
+            _channel = channel;
+            _buffer = buffer;
+            _index.clear();
+            _index.putAll(index);
+            _cursorPosition.set(cursorPosition);
+            _position.set(position);
+            _compactions.increment();
+
+            // if less than a quarter is free, writes are dropped for a while rather than compacting on every write
+            if (position > _capacity - _capacity / 4)
+            {
+                _nextCompaction = now + COMPACTION_RETRY_MILLIS;
+
+                _logger.info("Attribute snapshot {} is full with {} subjects, not writing to it for a while", _file,
+                        index.size());
+            }
+
+            return true;
+        }
+        catch (IOException e)
+        {
+            _logger.warn("Could not compact the attribute snapshot {}: {}", _file, e.getMessage());
+            _nextCompaction = _clock.millis() + COMPACTION_RETRY_MILLIS;
+
+            if (channel != null)
+            {
+                closeQuietly(channel);
+            }
+
+            try
+            {
+                Files.deleteIfExists(temporaryFile);
+            }
+            catch (IOException deleteFailure)
+            {
+                _logger.debug("Could not delete {}", temporaryFile, deleteFailure);
+            }
+
+            return false;
+        }
+        finally
+        {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    private void open() throws IOException
+    {
+        _channel = openChannel(_file);
+
+        try
+        {
+            lock(_channel);
+        }
+        catch (IOException e)
+        {
+            closeQuietly(_channel);
+
+            throw e;
+        }
+
+        boolean compatible = hasCompatibleHeader(_channel);
+
+        if (!compatible)
+        {
+            if (_channel.size() > 0)
+            {
+                _logger.info("Discarding attribute snapshot {}, as it is not of format version {}", _file,
+                        FORMAT_VERSION);
+            }
+
+            _channel.truncate(0);
+        }
+
+        _buffer = _channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(_capacity, Math.min(_channel.size(), Integer.MAX_VALUE)));
+
+        if (compatible)
+        {
+            _position.set(scan());
+        }
+        else
+        {
+            _position.set(writeHeader(_buffer));
+        }
+    }
+
+    /**
+     * Find the newest record of each subject, without verifying or decoding it.
+     *
+     * @return the position after the last complete record
+     */
+    private int scan()
+    {
+        int position = HEADER_SIZE;
+        int limit = _buffer.capacity();
+
+        while (position + RECORD_PREFIX_SIZE + BODY_FIXED_SIZE <= limit)
+        {
+            int length = _buffer.getInt(position);
+
+            if (length == 0)
+            {
+                break;
+            }
+
+            int bodyLength = length - 4;
+            byte kind = bodyLength >= BODY_FIXED_SIZE && position + 4L + length <= limit ?
+                    _buffer.get(position + RECORD_PREFIX_SIZE) : 0;
+            int subjectLength = kind != 0 ?
+                    _buffer.getInt(position + RECORD_PREFIX_SIZE + BODY_FIXED_SIZE - 4) : -1;
+
+            if ((kind != ATTRIBUTES && kind != REMOVAL && kind != CURSOR) || subjectLength < 0
+                    || subjectLength > bodyLength - BODY_FIXED_SIZE)
+            {
+                _logger.info("Attribute snapshot {} has an incomplete record at {}, discarding the rest of it",
+                        _file, position);
+                _corruptRecords.increment();
+
+                // so that what is appended next is not followed by the remains of the incomplete record
+                for (int i = position; i < limit; i++)
+                {
+                    _buffer.put(i, (byte) 0);
+                }
+
+                break;
+            }
+
+            byte[] subject = new byte[subjectLength];
+
+            _buffer.get(position + RECORD_PREFIX_SIZE + BODY_FIXED_SIZE, subject);
+
+            if (kind == ATTRIBUTES)
+            {
+                _index.put(new String(subject, StandardCharsets.UTF_8), position);
+            }
+            else if (kind == CURSOR)
+            {
+                _cursorPosition.set(position);
+            }
+            else
+            {
+                _index.remove(new String(subject, StandardCharsets.UTF_8));
+            }
+
+            position += 4 + length;
+        }
+
+        _logger.debug("Opened attribute snapshot {} with {} subjects", _file, _index.size());
+
+        return position;
+    }
+
+    @Nullable
+    private Entry discardCorrupt(String subject, int position, String reason)
+    {
+        _index.remove(subject, position);
+        _corruptRecords.increment();
+        _logger.debug("Discarding the snapshot entry of {}, as {}", subject, reason);
+
+        return null;
+    }
+
+    @Nullable
+    private String discardCorruptCursor(int position)
+    {
+        _cursorPosition.compareAndSet(position, -1);
+        _corruptRecords.increment();
+        _logger.debug("Discarding the change feed cursor of the snapshot, as it is corrupt");
+
+        return null;
+    }
+
+    /**
+     * @return true if the record at the position has a body of at least the minimum length, and ends before the
+     * records that have been appended so far do
+     */
+    private boolean hasValidLength(int position, int minimumBodyLength)
+    {
+        int length = _buffer.getInt(position);
+
+        return length - 4 >= minimumBodyLength && position + 4L + length <= _position.get();
+    }
+
+    private void closeQuietly(FileChannel channel)
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            _logger.debug("Could not close a channel of the attribute snapshot {}", _file, e);
+        }
+    }
+
+    /**
+     * Lock the file, so that no other snapshot, of this or another process, can map it while it is locked. The lock
+     * is released when the channel is closed.
+     *
+     * @throws IOException if the file is locked by another snapshot
+     */
+    private static void lock(FileChannel channel) throws IOException
+    {
+        @Nullable FileLock lock;
+
+        try
+        {
+            lock = channel.tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            // locked by another channel of this process
+            lock = null;
+        }
+
+        if (lock == null)
+        {
+            throw new IOException("it is in use by another attribute snapshot");
+        }
+    }
+
+    private static int writeHeader(ByteBuffer buffer)
+    {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putLong(8, 0);
+
+        return HEADER_SIZE;
+    }
+
+    private static boolean hasCompatibleHeader(FileChannel channel) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(8);
+
+        return channel.read(header, 0) == 8 && header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION;
+    }
+
+    private static FileChannel openChannel(Path file, OpenOption... additionalOptions) throws IOException
+    {
+        Set<OpenOption> options = new HashSet<>(EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+
+        options.addAll(Arrays.asList(additionalOptions));
+
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+        {
+            // the file holds the attributes of subjects, so only the server may read it
+            FileAttribute<?> ownerOnly = PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rw-------"));
+
+            return FileChannel.open(file, options, ownerOnly);
+        }
+
+        return FileChannel.open(file, options);
+    }
+
+    private static int checksum(byte[] body)
+    {
+        CRC32C crc = new CRC32C();
+
+        crc.update(body);
+
+        return (int) crc.getValue();
+    }
+}
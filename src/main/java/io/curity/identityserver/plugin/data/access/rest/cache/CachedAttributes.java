@@ -0,0 +1,61 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import se.curity.identityserver.sdk.attribute.AttributeName;
+import se.curity.identityserver.sdk.attribute.Attributes;
+
+/**
+ * An entry of the {@link AttributeCache}. Times are in nanoseconds of the cache's ticker.
+ */
+final class CachedAttributes
+{
+    private final CompactAttributes _attributes;
+    private final long _expiresAt;
+
+    CachedAttributes(CompactAttributes attributes, long expiresAt)
+    {
+        _attributes = attributes;
+        _expiresAt = expiresAt;
+    }
+
+    /**
+     * @return the attributes, rebuilt from their compact form
+     */
+    Attributes getAttributes()
+    {
+        return Attributes.fromMap(_attributes.toMap(), AttributeName.Format.JSON);
+    }
+
+    boolean isFresh(long now)
+    {
+        return now - _expiresAt < 0;
+    }
+
+    long remainingTimeToLive(long now)
+    {
+        return _expiresAt - now;
+    }
+
+    /**
+     * @return true if the attributes have not expired, or expired no longer ago than the stale-if-error time
+     */
+    boolean isUsableOnError(long now, long staleIfErrorNanos)
+    {
+        return now - _expiresAt - staleIfErrorNanos < 0;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+import se.curity.identityserver.sdk.attribute.Attributes;
+import se.curity.identityserver.sdk.service.Json;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Polls a feed of the subjects whose attributes have changed in the JSON service, and invalidates or refreshes their
+ * cached attributes.
+ *
+ * <p>The cursor of the last response is sent with the next request. It is also kept in the snapshot of the cache, if
+ * one is configured, so that after a restart the feed is read from where the restored entries are up to date. Without
+ * a cursor, such as on the first poll after a start without a snapshot, or when the feed responds with status 410
+ * because it no longer has the changes since the cursor, it is not known what has changed, so the whole cache is
+ * cleared. When the feed cannot be reached, the cursor is kept and the poll is retried at the next interval.
+ */
+public final class ChangeFeedPoller implements Closeable, ThreadSafe
+{
+    private static final Logger _logger = LoggerFactory.getLogger(ChangeFeedPoller.class);
+
+    private static final int CURSOR_LOST_STATUS = 410;
+    // when the feed has more changes than it returns at once, it is read again right away up to this many times
+    private static final int MAXIMUM_REQUESTS_PER_POLL = 100;
+
+    private final AttributesConfiguration.AttributeCache.ChangeFeed _configuration;
+    private final AttributeCache _attributeCache;
+    private final Transport _transport;
+    private final Json _json;
+    private final Function<String, Attributes> _lookup;
+    private final ScheduledExecutorService _executor;
+
+    // only used by the polling thread
+    @Nullable
+    private String _cursor;
+
+    private final LongAdder _polls;
+    private final LongAdder _failedPolls;
+    private final LongAdder _changes;
+    private final LongAdder _refreshes;
+    private final LongAdder _clears;
+
+    /**
+     * @param lookup looks up the attributes of a subject from the JSON service, returning null if it has none
+     */
+    public ChangeFeedPoller(AttributesConfiguration.AttributeCache.ChangeFeed configuration,
+                            AttributeCache attributeCache, Transport transport, Json json,
+                            Function<String, Attributes> lookup, String instanceId, Metrics metrics)
+    {
+        _configuration = configuration;
+        _attributeCache = attributeCache;
+        _transport = transport;
+        _json = json;
+        _lookup = lookup;
+        _cursor = attributeCache.changeFeedCursor();
+        _executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("rest-data-access-change-feed-" + instanceId + "-%d")
+                .setDaemon(true)
+                .build());
+
+        _polls = metrics.counter("attributeCache.changeFeed.polls");
+        _failedPolls = metrics.counter("attributeCache.changeFeed.failedPolls");
+        _changes = metrics.counter("attributeCache.changeFeed.changes");
+        _refreshes = metrics.counter("attributeCache.changeFeed.refreshes");
+        _clears = metrics.counter("attributeCache.changeFeed.clears");
+    }
+
+    /**
+     * Start polling in the background, with the first poll right away.
+     */
+    public void start()
+    {
+        start(() -> { });
+    }
+
+    /**
+     * Start polling in the background, with the first poll right away.
+     *
+     * @param afterFirstPoll run once the first poll has completed, whether or not the feed could be read, such as to
+     *                       start preloading entries that the first poll would otherwise clear
+     */
+    public void start(Runnable afterFirstPoll)
+    {
+        long interval = Math.max(1, _configuration.pollInterval());
+
+        _executor.execute(() ->
+        {
+            poll();
+            afterFirstPoll.run();
+        });
+        _executor.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close()
+    {
+        _executor.shutdownNow();
+    }
+
+    /**
+     * Read the feed until it has no more changes.
+     */
+    @VisibleForTesting
+    void poll()
+    {
+        _polls.increment();
+
+        try
+        {
+            for (int i = 0; i < MAXIMUM_REQUESTS_PER_POLL && !Thread.currentThread().isInterrupted(); i++)
+            {
+                if (!readChanges())
+                {
+                    return;
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            _failedPolls.increment();
+            _logger.debug("Could not read the change feed: {}", e.getMessage());
+        }
+    }
+
+    @VisibleForTesting
+    @Nullable
+    String cursor()
+    {
+        return _cursor;
+    }
+
+    /**
+     * @return true if the feed had changes, and may have more
+     */
+    private boolean readChanges()
+    {
+        @Nullable String cursor = _cursor;
+        Map<String, Collection<String>> queryParameters = cursor == null ? Collections.emptyMap() :
+                Collections.singletonMap(_configuration.cursorParameter(), Collections.singletonList(cursor));
+        TransportResponse response = _transport.send(TransportRequest.builder("GET", _configuration.urlPath())
+                .queryParameters(queryParameters)
+                .build());
+
+        if (response.statusCode() == CURSOR_LOST_STATUS && cursor != null)
+        {
+            _logger.info("The change feed no longer has the changes since the last poll, clearing the attribute "
+                    + "cache");
+            _cursor = null;
+
+            // the next request, without a cursor, clears the cache once the feed responds
+            return true;
+        }
+
+        if (response.statusCode() / 100 != 2)
+        {
+            _failedPolls.increment();
+            _logger.debug("The change feed responded with status {}", response.statusCode());
+
+            return false;
+        }
+
+        Map<String, Object> feed = _json.fromJson(response.body());
+        @Nullable Object nextCursor = feed.get(_configuration.cursorAttribute());
+        @Nullable Object changes = feed.get(_configuration.changesAttribute());
+
+        if (nextCursor == null)
+        {
+            _failedPolls.increment();
+            _logger.warn("The response of the change feed has no {}, ignoring it", _configuration.cursorAttribute());
+
+            return false;
+        }
+
+        if (cursor == null)
+        {
+            // what changed before the first cursor is not known
+            _attributeCache.clear();
+            _clears.increment();
+        }
+        else if (changes instanceof Collection)
+        {
+            for (Object subject : (Collection<?>) changes)
+            {
+                if (subject != null)
+                {
+                    changed(subject.toString());
+                }
+            }
+        }
+
+        _cursor = nextCursor.toString();
+
+        if (!_cursor.equals(cursor))
+        {
+            // after the invalidations of the changes, so that a snapshot never has a cursor newer than its entries
+            _attributeCache.putChangeFeedCursor(_cursor);
+        }
+
+        return changes instanceof Collection && !((Collection<?>) changes).isEmpty() && !_cursor.equals(cursor);
+    }
+
+    private void changed(String subject)
+    {
+        _changes.increment();
+
+        if (_configuration.onChange() == AttributesConfiguration.AttributeCache.ChangeFeed.OnChange.REFRESH
+                && _attributeCache.isCached(subject))
+        {
+            // so that lookups of the old attributes that are in flight do not overwrite the new ones
+            long lookupToken = _attributeCache.startRefresh(subject);
+
+            try
+            {
+                @Nullable Attributes attributes = _lookup.apply(subject);
+
+                if (attributes != null)
+                {
+                    _attributeCache.put(subject, attributes, lookupToken);
+                    _refreshes.increment();
+
+                    return;
+                }
+            }
+            catch (RuntimeException e)
+            {
+                _logger.debug("Could not refresh the attributes of {}: {}", subject, e.getMessage());
+            }
+        }
+
+        _attributeCache.invalidate(subject);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A map of attribute values in the compact form that the {@link AttributeCache} keeps them in.
+ *
+ * <p>The names of the map are kept in a {@link Shape}, which is shared by all maps with the same names in the same
+ * order, and the values in a flat array in that order. Strings, and lists of simple values such as group names, are
+ * interned in a {@link SymbolTable}. Nested maps are compacted in the same way. Booleans and small numbers use the
+ * shared instances of the JDK.
+ *
+ * <p>The original map is rebuilt by {@link #toMap()}, with new lists and maps, so that the interned ones are never
+ * handed out.
+ */
+final class CompactAttributes
+{
+    private final Shape _shape;
+    private final Object[] _values;
+
+    private CompactAttributes(Shape shape, Object[] values)
+    {
+        _shape = shape;
+        _values = values;
+    }
+
+    static CompactAttributes of(Map<String, ?> attributes, SymbolTable symbols)
+    {
+        String[] names = new String[attributes.size()];
+        Object[] values = new Object[attributes.size()];
+        int i = 0;
+
+        for (Map.Entry<String, ?> entry : attributes.entrySet())
+        {
+            names[i] = symbols.intern(entry.getKey());
+            values[i] = compact(entry.getValue(), symbols);
+            i++;
+        }
+
+        return new CompactAttributes(symbols.internObject(new Shape(names)), values);
+    }
+
+    Map<String, Object> toMap()
+    {
+        String[] names = _shape._names;
+        Map<String, Object> map = new LinkedHashMap<>(names.length * 2);
+
+        for (int i = 0; i < names.length; i++)
+        {
+            map.put(names[i], expand(_values[i]));
+        }
+
+        return map;
+    }
+
+    private static Object compact(Object value, SymbolTable symbols)
+    {
+        if (value instanceof String)
+        {
+            return symbols.intern((String) value);
+        }
+        else if (value instanceof Boolean)
+        {
+            return Boolean.valueOf((Boolean) value);
+        }
+        else if (value instanceof Long)
+        {
+            return Long.valueOf((Long) value);
+        }
+        else if (value instanceof Integer)
+        {
+            return Integer.valueOf((Integer) value);
+        }
+        else if (value instanceof Map)
+        {
+            @SuppressWarnings("unchecked")
+            Map<String, ?> map = (Map<String, ?>) value;
+
+            return of(map, symbols);
+        }
+        else if (value instanceof Collection)
+        {
+            Collection<?> collection = (Collection<?>) value;
+            Object[] elements = new Object[collection.size()];
+            boolean simple = true;
+            int i = 0;
+
+            for (Object element : collection)
+            {
+                Object compacted = compact(element, symbols);
+
+                simple &= !(compacted instanceof CompactAttributes);
+                elements[i++] = compacted;
+            }
+
+            List<Object> list = Arrays.asList(elements);
+
+            // lists of maps are unlikely to be shared, and do not have a cheap equals
+            return simple ? symbols.internObject(list) : list;
+        }
+
+        return value;
+    }
+
+    private static Object expand(Object value)
+    {
+        if (value instanceof CompactAttributes)
+        {
+            return ((CompactAttributes) value).toMap();
+        }
+        else if (value instanceof List)
+        {
+            List<?> list = (List<?>) value;
+            List<Object> expanded = new ArrayList<>(list.size());
+
+            for (Object element : list)
+            {
+                expanded.add(expand(element));
+            }
+
+            return expanded;
+        }
+
+        return value;
+    }
+
+    /**
+     * The names of a map, in order.
+     */
+    private static final class Shape
+    {
+        private final String[] _names;
+        private final int _hashCode;
+
+        Shape(String[] names)
+        {
+            _names = names;
+            _hashCode = Arrays.hashCode(names);
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof Shape && Arrays.equals(_names, ((Shape) other)._names);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return _hashCode;
+        }
+    }
+}
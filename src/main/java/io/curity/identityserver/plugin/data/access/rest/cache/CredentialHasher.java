@@ -0,0 +1,107 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Computes an HMAC-SHA256 over a subject and password, with a secret that is generated when the process starts and
+ * never leaves it. The hash identifies a credential without storing the password or anything it can be recovered
+ * from, also not after a restart.
+ */
+public final class CredentialHasher
+{
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final SecretKeySpec SECRET = generateSecret();
+
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(CredentialHasher::newMac);
+
+    private CredentialHasher()
+    {
+    }
+
+    public static byte[] hash(String subject, String password)
+    {
+        Mac mac = MAC.get();
+
+        updateWithSubject(mac, subject);
+        mac.update(password.getBytes(StandardCharsets.UTF_8));
+
+        return mac.doFinal();
+    }
+
+    /**
+     * Computes the keyed hash of a subject only. Since the key is secret, the hashes of different subjects cannot be
+     * made to collide on purpose.
+     */
+    public static byte[] hashSubject(String subject)
+    {
+        Mac mac = MAC.get();
+
+        updateWithSubject(mac, subject);
+
+        return mac.doFinal();
+    }
+
+    /**
+     * Compares two hashes in constant time.
+     */
+    public static boolean matches(byte[] hash, byte[] otherHash)
+    {
+        return MessageDigest.isEqual(hash, otherHash);
+    }
+
+    private static void updateWithSubject(Mac mac, String subject)
+    {
+        byte[] subjectBytes = subject.getBytes(StandardCharsets.UTF_8);
+
+        // the length prefix keeps ("ab", "c") and ("a", "bc") apart
+        mac.update((byte) (subjectBytes.length >>> 24));
+        mac.update((byte) (subjectBytes.length >>> 16));
+        mac.update((byte) (subjectBytes.length >>> 8));
+        mac.update((byte) subjectBytes.length);
+        mac.update(subjectBytes);
+    }
+
+    private static SecretKeySpec generateSecret()
+    {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+
+        return new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    private static Mac newMac()
+    {
+        try
+        {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(SECRET);
+
+            return mac;
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException("Cannot create " + ALGORITHM + ", which every JVM supports", e);
+        }
+    }
+}
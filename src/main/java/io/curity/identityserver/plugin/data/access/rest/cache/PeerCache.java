@@ -0,0 +1,755 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+import se.curity.identityserver.sdk.attribute.AttributeName;
+import se.curity.identityserver.sdk.attribute.Attributes;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A second level of the {@link AttributeCache}, made up of the caches of the other nodes of the cluster.
+ *
+ * <p>Each subject is owned by one of the configured peers, chosen by a {@link RendezvousHash} of the subject, so
+ * that every node agrees on the owner without coordination. When the attributes of a subject are not cached locally,
+ * its owner is asked for them, and when a node looks them up from the JSON service, it sends them to the owner, so
+ * that the other nodes get them from there. Attributes that are received from the owner are also cached locally,
+ * for the rest of their time to live on the owner.
+ *
+ * <p>Peers are asked with a short timeout, and a peer that could not be reached is left out for the retry interval,
+ * while its subjects are owned by the peers with the next highest score. When this node owns a subject, or no peer
+ * can be asked, the attributes are looked up from the JSON service as without a peer cache.
+ *
+ * <p>Each request is signed with an HMAC of the shared secret, over the request, the time it was sent and a nonce,
+ * so that the secret is never sent, and a request cannot be changed, or sent again once it is older than the allowed
+ * clock skew. A request is rejected if its nonce was already seen within that time. Responses are not signed, and
+ * attributes are personal data, so unless TLS is configured, which the peers use with client certificates, plain HTTP
+ * is only suitable when all peers are on the loopback interface, such as in tests.
+ *
+ * <p>Attributes that are sent to the owner carry the time that their lookup started. The owner does not cache them
+ * if it invalidated the subject after that time, less the allowed clock skew, so that a lookup that was in flight
+ * when the attributes were changed cannot bring the old ones back.
+ */
+public final class PeerCache implements Closeable, ThreadSafe
+{
+    private static final Logger _logger = LoggerFactory.getLogger(PeerCache.class);
+
+    private static final String PATH = "/attributes";
+    private static final String SIGNATURE_HEADER = "Peer-Cache-Signature";
+    private static final String TIME_TO_LIVE_HEADER = "Peer-Cache-Time-To-Live";
+    private static final String LOOKED_UP_AT_HEADER = "Peer-Cache-Looked-Up-At";
+    private static final int SERVER_THREADS = 4;
+    private static final int MAXIMUM_BODY_SIZE = 1024 * 1024;
+
+    private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+    private static final long MAXIMUM_CLOCK_SKEW_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    // a nonce that was evicted to make room can be replayed until the request is older than the clock skew
+    private static final int MAXIMUM_SEEN_NONCES = 100_000;
+    private static final int NONCE_SIZE = 12;
+    private static final SecureRandom _random = new SecureRandom();
+
+    private final AttributesConfiguration.AttributeCache.PeerCache _configuration;
+    private final AttributeCache _attributeCache;
+    private final RendezvousHash<Peer> _peers;
+    private final SecretKeySpec _signingKey;
+    private final Cache<String, Boolean> _seenNonces;
+    @Nullable
+    private final SSLContext _sslContext;
+    private final Duration _timeout;
+    private final long _retryIntervalNanos;
+    private final HttpClient _httpClient;
+    private final ExecutorService _serverExecutor;
+    @Nullable
+    private HttpServer _server;
+
+    private final LongAdder _hits;
+    private final LongAdder _misses;
+    private final LongAdder _failures;
+    private final LongAdder _offers;
+    private final LongAdder _served;
+    private final LongAdder _stored;
+    private final LongAdder _rejected;
+
+    public PeerCache(AttributesConfiguration.AttributeCache.PeerCache configuration, AttributeCache attributeCache,
+                     String instanceId, Metrics metrics)
+    {
+        _configuration = configuration;
+        _attributeCache = attributeCache;
+        _sslContext = configuration.tls().map(PeerCache::sslContext).orElse(null);
+        _peers = new RendezvousHash<>(configuration.peer().stream()
+                .map(address -> Peer.parse(address, configuration.listenPort(), _sslContext != null))
+                .toList(), Peer::address);
+        _signingKey = new SecretKeySpec(configuration.sharedSecret().getBytes(StandardCharsets.UTF_8),
+                SIGNATURE_ALGORITHM);
+        _seenNonces = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_SEEN_NONCES)
+                .expireAfterWrite(2 * MAXIMUM_CLOCK_SKEW_MILLIS, TimeUnit.MILLISECONDS)
+                .build();
+        _timeout = Duration.ofMillis(Math.max(1, configuration.timeout()));
+        _retryIntervalNanos = TimeUnit.SECONDS.toNanos(Math.max(0, configuration.retryInterval()));
+
+        HttpClient.Builder httpClient = HttpClient.newBuilder()
+                .connectTimeout(_timeout)
+                .followRedirects(HttpClient.Redirect.NEVER);
+
+        if (_sslContext != null)
+        {
+            httpClient.sslContext(_sslContext);
+        }
+
+        _httpClient = httpClient.build();
+        _serverExecutor = Executors.newFixedThreadPool(SERVER_THREADS, new ThreadFactoryBuilder()
+                .setNameFormat("rest-data-access-peer-cache-" + instanceId + "-%d")
+                .setDaemon(true)
+                .build());
+
+        if (_peers.nodes().stream().noneMatch(Peer::isSelf))
+        {
+            _logger.warn("None of the peers of the peer cache is this node, which has the listen port {}, so it "
+                    + "owns no subjects", configuration.listenPort());
+        }
+
+        if (_sslContext == null && !_peers.nodes().stream().allMatch(Peer::isLoopback))
+        {
+            _logger.warn("The peer cache sends attributes to peers on other hosts in plain text, configure TLS for "
+                    + "it");
+        }
+
+        _hits = metrics.counter("peerCache.hits");
+        _misses = metrics.counter("peerCache.misses");
+        _failures = metrics.counter("peerCache.failures");
+        _offers = metrics.counter("peerCache.offers");
+        _served = metrics.counter("peerCache.served");
+        _stored = metrics.counter("peerCache.stored");
+        _rejected = metrics.counter("peerCache.rejected");
+        metrics.gauge("peerCache.unavailablePeers", () -> _peers.nodes().stream()
+                .filter(peer -> !peer.isAvailable(System.nanoTime()))
+                .count());
+    }
+
+    /**
+     * Start serving the cached attributes of this node to the peers.
+     */
+    public void start()
+    {
+        try
+        {
+            InetSocketAddress address = new InetSocketAddress(_configuration.listenAddress(),
+                    _configuration.listenPort());
+            HttpServer server = _sslContext == null ? HttpServer.create(address, 0) : httpsServer(address);
+
+            server.createContext(PATH, this::handle);
+            server.setExecutor(_serverExecutor);
+            server.start();
+            _server = server;
+        }
+        catch (IOException e)
+        {
+            // the peers will leave this node out once they cannot reach it
+            _logger.warn("Could not serve cached attributes to the peers on port {}: {}",
+                    _configuration.listenPort(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (_server != null)
+        {
+            _server.stop(0);
+        }
+
+        _serverExecutor.shutdownNow();
+        _httpClient.close();
+    }
+
+    /**
+     * Ask the owner of the subject for its attributes, and cache them locally if it has them.
+     *
+     * @return the attributes, or null if this node owns the subject, or the owner does not have them or could not
+     * be reached
+     */
+    @Nullable
+    public Attributes get(String subject)
+    {
+        @Nullable Peer owner = owner(subject);
+
+        if (owner == null || owner.isSelf())
+        {
+            return null;
+        }
+
+        long lookupToken = _attributeCache.startLookup();
+
+        try
+        {
+            HttpResponse<byte[]> response = _httpClient.send(request(owner, subject, "GET", null, null, new byte[0]),
+                    HttpResponse.BodyHandlers.ofByteArray());
+
+            if (response.statusCode() == 404)
+            {
+                _misses.increment();
+
+                return null;
+            }
+
+            if (response.statusCode() != 200)
+            {
+                failed(owner, "status " + response.statusCode());
+
+                return null;
+            }
+
+            long timeToLiveNanos = Math.min(_attributeCache.timeToLiveNanos(), TimeUnit.MILLISECONDS.toNanos(
+                    Long.parseLong(response.headers().firstValue(TIME_TO_LIVE_HEADER).orElse("0"))));
+            Attributes attributes = Attributes.fromMap(AttributeCodec.decode(ByteBuffer.wrap(response.body())),
+                    AttributeName.Format.JSON);
+
+            _attributeCache.put(subject, attributes, timeToLiveNanos, lookupToken);
+            _hits.increment();
+
+            return attributes;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            failed(owner, e.getMessage());
+
+            return null;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            return null;
+        }
+    }
+
+    /**
+     * Send attributes that this node looked up from the JSON service to the owner of the subject, without waiting
+     * for it.
+     *
+     * @param lookupStartedAtMillis when the lookup was sent, by the wall clock
+     */
+    public void offer(String subject, Attributes attributes, long lookupStartedAtMillis)
+    {
+        @Nullable Peer owner = owner(subject);
+
+        if (owner != null && !owner.isSelf())
+        {
+            _offers.increment();
+            sendAsync(owner, request(owner, subject, "PUT",
+                    Long.toString(TimeUnit.NANOSECONDS.toMillis(_attributeCache.timeToLiveNanos())),
+                    Long.toString(lookupStartedAtMillis), AttributeCodec.encode(attributes.asMap())));
+        }
+    }
+
+    /**
+     * Invalidate the attributes of the subject at its owner, without waiting for it. Copies that other nodes have
+     * cached are kept until they expire.
+     */
+    public void invalidate(String subject)
+    {
+        @Nullable Peer owner = owner(subject);
+
+        if (owner != null && !owner.isSelf())
+        {
+            sendAsync(owner, request(owner, subject, "DELETE", null, null, new byte[0]));
+        }
+    }
+
+    /**
+     * @return the owner of the subject among the peers that are not left out, or null if all of them are
+     */
+    @VisibleForTesting
+    @Nullable
+    Peer owner(String subject)
+    {
+        long now = System.nanoTime();
+
+        return _peers.owner(subject, peer -> peer.isAvailable(now));
+    }
+
+    private HttpRequest request(Peer peer, String subject, String method, @Nullable String timeToLive,
+                                @Nullable String lookedUpAt, byte[] body)
+    {
+        URI uri = peer.uri(subject);
+        long timestamp = System.currentTimeMillis();
+        byte[] nonce = new byte[NONCE_SIZE];
+
+        _random.nextBytes(nonce);
+
+        String encodedNonce = Base64.getUrlEncoder().withoutPadding().encodeToString(nonce);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(_timeout)
+                .header(SIGNATURE_HEADER, timestamp + "." + encodedNonce + "."
+                        + signature(method, pathAndQuery(uri), timestamp, encodedNonce, timeToLive, lookedUpAt,
+                        body));
+
+        if (timeToLive != null)
+        {
+            builder.header(TIME_TO_LIVE_HEADER, timeToLive);
+        }
+
+        if (lookedUpAt != null)
+        {
+            builder.header(LOOKED_UP_AT_HEADER, lookedUpAt);
+        }
+
+        return builder
+                .method(method, body.length == 0 ? HttpRequest.BodyPublishers.noBody() :
+                        HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    /**
+     * @return the HMAC of the request, encoded in base64url
+     */
+    @VisibleForTesting
+    String signature(String method, String pathAndQuery, long timestamp, String nonce, @Nullable String timeToLive,
+                     @Nullable String lookedUpAt, byte[] body)
+    {
+        try
+        {
+            Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+
+            mac.init(_signingKey);
+            mac.update((method + "\n" + pathAndQuery + "\n" + timestamp + "\n" + nonce + "\n"
+                    + (timeToLive == null ? "" : timeToLive) + "\n" + (lookedUpAt == null ? "" : lookedUpAt) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(body));
+        }
+        catch (GeneralSecurityException e)
+        {
+            // every Java platform supports HmacSHA256
+            throw new IllegalStateException("Could not sign a request to a peer", e);
+        }
+    }
+
+    /**
+     * @return true if the request is signed with the shared secret, was sent no longer ago than the allowed clock
+     * skew, and was not received before
+     */
+    private boolean isSigned(HttpExchange exchange, byte[] body)
+    {
+        @Nullable String header = exchange.getRequestHeaders().getFirst(SIGNATURE_HEADER);
+        String[] parts = header == null ? new String[0] : header.split("\\.", -1);
+
+        if (parts.length != 3)
+        {
+            return false;
+        }
+
+        long timestamp;
+
+        try
+        {
+            timestamp = Long.parseLong(parts[0]);
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+
+        if (Math.abs(System.currentTimeMillis() - timestamp) > MAXIMUM_CLOCK_SKEW_MILLIS)
+        {
+            return false;
+        }
+
+        String expected = signature(exchange.getRequestMethod(), pathAndQuery(exchange.getRequestURI()), timestamp,
+                parts[1], exchange.getRequestHeaders().getFirst(TIME_TO_LIVE_HEADER),
+                exchange.getRequestHeaders().getFirst(LOOKED_UP_AT_HEADER), body);
+
+        if (!MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+                parts[2].getBytes(StandardCharsets.UTF_8)))
+        {
+            return false;
+        }
+
+        // only once the signature is verified, so that others cannot fill the seen nonces
+        return _seenNonces.asMap().putIfAbsent(parts[1], Boolean.TRUE) == null;
+    }
+
+    private HttpServer httpsServer(InetSocketAddress address) throws IOException
+    {
+        HttpsServer server = HttpsServer.create(address, 0);
+
+        server.setHttpsConfigurator(new HttpsConfigurator(_sslContext)
+        {
+            @Override
+            public void configure(HttpsParameters parameters)
+            {
+                SSLParameters sslParameters = getSSLContext().getDefaultSSLParameters();
+
+                // only the peers, whose certificates are trusted, can connect
+                sslParameters.setNeedClientAuth(true);
+                parameters.setSSLParameters(sslParameters);
+            }
+        });
+
+        return server;
+    }
+
+    private void sendAsync(Peer peer, HttpRequest request)
+    {
+        _httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, e) ->
+                {
+                    if (e != null)
+                    {
+                        failed(peer, e.getMessage());
+                    }
+                    else if (response.statusCode() != 204)
+                    {
+                        failed(peer, "status " + response.statusCode());
+                    }
+                });
+    }
+
+    private void failed(Peer peer, @Nullable String reason)
+    {
+        _failures.increment();
+        peer.leaveOutUntil(System.nanoTime() + _retryIntervalNanos);
+
+        _logger.debug("Peer {} could not be reached, leaving it out for {} seconds: {}", peer.address(),
+                _configuration.retryInterval(), reason);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            byte[] body;
+
+            try (InputStream input = exchange.getRequestBody())
+            {
+                body = input.readNBytes(MAXIMUM_BODY_SIZE + 1);
+            }
+
+            if (body.length > MAXIMUM_BODY_SIZE)
+            {
+                exchange.sendResponseHeaders(413, -1);
+
+                return;
+            }
+
+            if (!isSigned(exchange, body))
+            {
+                _rejected.increment();
+                exchange.sendResponseHeaders(403, -1);
+
+                return;
+            }
+
+            @Nullable String subject = subjectOf(exchange.getRequestURI());
+
+            if (subject == null)
+            {
+                exchange.sendResponseHeaders(400, -1);
+
+                return;
+            }
+
+            switch (exchange.getRequestMethod())
+            {
+                case "GET":
+                    serve(exchange, subject);
+                    break;
+                case "PUT":
+                    store(exchange, subject, body);
+                    break;
+                case "DELETE":
+                    _attributeCache.invalidate(subject);
+                    exchange.sendResponseHeaders(204, -1);
+                    break;
+                default:
+                    exchange.sendResponseHeaders(405, -1);
+            }
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    private void serve(HttpExchange exchange, String subject) throws IOException
+    {
+        @Nullable CachedAttributes entry = _attributeCache.getFreshEntry(subject);
+
+        if (entry == null)
+        {
+            exchange.sendResponseHeaders(404, -1);
+
+            return;
+        }
+
+        byte[] body = AttributeCodec.encode(entry.getAttributes().asMap());
+
+        _served.increment();
+        exchange.getResponseHeaders().set(TIME_TO_LIVE_HEADER, Long.toString(TimeUnit.NANOSECONDS.toMillis(
+                _attributeCache.remainingTimeToLiveNanos(entry))));
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private void store(HttpExchange exchange, String subject, byte[] body) throws IOException
+    {
+        Map<String, Object> attributes;
+        long timeToLiveMillis;
+        long lookedUpAtMillis;
+
+        try
+        {
+            attributes = AttributeCodec.decode(ByteBuffer.wrap(body));
+            timeToLiveMillis = Long.parseLong(exchange.getRequestHeaders().getFirst(TIME_TO_LIVE_HEADER));
+            lookedUpAtMillis = Long.parseLong(exchange.getRequestHeaders().getFirst(LOOKED_UP_AT_HEADER));
+        }
+        catch (IllegalArgumentException e)
+        {
+            exchange.sendResponseHeaders(400, -1);
+
+            return;
+        }
+
+        // the clock of the sender may be behind, so invalidations up to the allowed skew before the lookup also count
+        _attributeCache.putLookedUpAt(subject, Attributes.fromMap(attributes, AttributeName.Format.JSON),
+                Math.min(_attributeCache.timeToLiveNanos(), TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis)),
+                lookedUpAtMillis - MAXIMUM_CLOCK_SKEW_MILLIS);
+        _stored.increment();
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private static String pathAndQuery(URI uri)
+    {
+        return uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+    }
+
+    private static SSLContext sslContext(AttributesConfiguration.AttributeCache.PeerCache.Tls configuration)
+    {
+        try
+        {
+            KeyStore keyStore = keyStore(configuration.keyStore(), configuration.keyStorePassword());
+            KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(
+                    TrustManagerFactory.getDefaultAlgorithm());
+
+            keyManagers.init(keyStore, configuration.keyStorePassword().toCharArray());
+            trustManagers.init(configuration.trustStore().isPresent()
+                    ? keyStore(configuration.trustStore().get(), configuration.trustStorePassword().orElse(""))
+                    : keyStore);
+
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+
+            sslContext.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+
+            return sslContext;
+        }
+        catch (IOException | GeneralSecurityException e)
+        {
+            throw new IllegalArgumentException("Could not load the key or trust store of the peer cache: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    private static KeyStore keyStore(String path, String password) throws IOException, GeneralSecurityException
+    {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+
+        try (InputStream input = Files.newInputStream(Paths.get(path)))
+        {
+            keyStore.load(input, password.toCharArray());
+        }
+
+        return keyStore;
+    }
+
+    @Nullable
+    private static String subjectOf(URI uri)
+    {
+        @Nullable String query = uri.getRawQuery();
+
+        if (query == null || !query.startsWith("subject="))
+        {
+            return null;
+        }
+
+        return URLDecoder.decode(query.substring("subject=".length()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A node of the cluster, which is left out of the owners of subjects for a while once it could not be reached.
+     */
+    @VisibleForTesting
+    static final class Peer
+    {
+        private final String _address;
+        private final URI _baseUri;
+        private final boolean _self;
+        private final boolean _loopback;
+
+        // written before _leftOut, so that it is up to date when _leftOut is read as true
+        private volatile long _leftOutUntil;
+        private volatile boolean _leftOut;
+
+        private Peer(String address, URI baseUri, boolean self, boolean loopback)
+        {
+            _address = address;
+            _baseUri = baseUri;
+            _self = self;
+            _loopback = loopback;
+        }
+
+        /**
+         * @param address the host and port of the peer
+         * @param listenPort the port of this node, which is the peer if the host is one of its addresses
+         * @param secure whether the peer is asked over HTTPS
+         */
+        static Peer parse(String address, int listenPort, boolean secure)
+        {
+            URI baseUri = URI.create((secure ? "https://" : "http://") + address.trim());
+
+            if (baseUri.getHost() == null || baseUri.getPort() < 0)
+            {
+                throw new IllegalArgumentException("The peer '" + address + "' is not a host:port");
+            }
+
+            @Nullable InetAddress resolved = resolve(baseUri.getHost());
+
+            return new Peer(address.trim(), baseUri,
+                    baseUri.getPort() == listenPort && resolved != null && isLocalAddress(resolved),
+                    resolved != null && resolved.isLoopbackAddress());
+        }
+
+        String address()
+        {
+            return _address;
+        }
+
+        boolean isSelf()
+        {
+            return _self;
+        }
+
+        boolean isLoopback()
+        {
+            return _loopback;
+        }
+
+        URI uri(String subject)
+        {
+            return _baseUri.resolve(PATH + "?subject=" + URLEncoder.encode(subject, StandardCharsets.UTF_8));
+        }
+
+        boolean isAvailable(long now)
+        {
+            return !_leftOut || now - _leftOutUntil >= 0;
+        }
+
+        void leaveOutUntil(long until)
+        {
+            if (!_self)
+            {
+                _leftOutUntil = until;
+                _leftOut = true;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return _address;
+        }
+
+        @Nullable
+        private static InetAddress resolve(String host)
+        {
+            try
+            {
+                return InetAddress.getByName(host);
+            }
+            catch (IOException e)
+            {
+                _logger.debug("Could not resolve the peer {}: {}", host, e.getMessage());
+
+                return null;
+            }
+        }
+
+        private static boolean isLocalAddress(InetAddress address)
+        {
+            try
+            {
+                return address.isLoopbackAddress() || address.isAnyLocalAddress() ||
+                        NetworkInterface.getByInetAddress(address) != null;
+            }
+            catch (IOException e)
+            {
+                _logger.debug("Could not find the network interface of {}: {}", address, e.getMessage());
+
+                return false;
+            }
+        }
+    }
+}
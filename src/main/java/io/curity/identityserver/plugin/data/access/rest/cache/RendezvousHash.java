@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Chooses the owner of a key among a set of nodes by rendezvous, or highest random weight, hashing: each node gets a
+ * score for the key, and the node with the highest score owns it.
+ *
+ * <p>As the score of a node does not depend on the other nodes, adding a node only moves the keys that it wins to
+ * it, and removing a node only moves its own keys, each to the node with the next highest score. Leaving out nodes
+ * that are unavailable therefore moves their keys the same way.
+ */
+final class RendezvousHash<T> implements ThreadSafe
+{
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final List<T> _nodes;
+    private final long[] _seeds;
+
+    /**
+     * @param name gives the name of a node, which its scores are derived from, so that each node scores the same on
+     *             every other node
+     */
+    RendezvousHash(List<T> nodes, Function<T, String> name)
+    {
+        _nodes = List.copyOf(nodes);
+        _seeds = _nodes.stream()
+                .mapToLong(node -> HASH_FUNCTION.hashString(name.apply(node), StandardCharsets.UTF_8).asLong())
+                .toArray();
+    }
+
+    /**
+     * @return the available node with the highest score for the key, or null if no node is available
+     */
+    @Nullable
+    T owner(String key, Predicate<T> available)
+    {
+        long keyHash = HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8).asLong();
+        @Nullable T owner = null;
+        long highestScore = Long.MIN_VALUE;
+
+        for (int i = 0; i < _seeds.length; i++)
+        {
+            long score = mix(keyHash ^ _seeds[i]);
+            T node = _nodes.get(i);
+
+            if ((owner == null || score > highestScore) && available.test(node))
+            {
+                owner = node;
+                highestScore = score;
+            }
+        }
+
+        return owner;
+    }
+
+    List<T> nodes()
+    {
+        return _nodes;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which spreads each bit of the input over the whole output.
+     */
+    private static long mix(long value)
+    {
+        long mixed = value;
+
+        mixed ^= mixed >>> 33;
+        mixed *= 0xff51afd7ed558ccdL;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xc4ceb9fe1a85ec53L;
+        mixed ^= mixed >>> 33;
+
+        return mixed;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Interns the attribute names and values that many subjects share, such as group names, roles and tenant ids, so that
+ * the {@link AttributeCache} keeps a single copy of each.
+ *
+ * <p>A value is only interned when it is seen for the second time. Values that are unique to a subject, such as
+ * subject ids and email addresses, are seen once, and would otherwise fill the table and evict the shared ones, since
+ * a full table evicts roughly the symbols that were least recently used. Whether a value was seen is kept in a bit
+ * set indexed by its hash, which is cleared after as many first sightings as the table holds, so that it does not
+ * fill up either. A hash collision can let a value in on its first sighting, and the first subject with a shared
+ * value keeps its own copy of it. A symbol that is evicted is still referenced by the entries that use it.
+ */
+final class SymbolTable implements ThreadSafe
+{
+    /**
+     * Longer strings are rarely shared, and are not interned.
+     */
+    static final int MAXIMUM_INTERNED_LENGTH = 128;
+
+    // bits per symbol in the set of values seen once, which keeps it at most an eighth full
+    private static final int SEEN_BITS_PER_SYMBOL = 8;
+    private static final int MAXIMUM_SEEN_BITS = 1 << 30;
+
+    private final Cache<Object, Object> _symbols;
+    private final AtomicLongArray _seen;
+    private final int _seenShift;
+    private final int _firstSightingsPerClear;
+    private final AtomicInteger _firstSightings = new AtomicInteger();
+
+    SymbolTable(long maximumSize)
+    {
+        _symbols = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+
+        long wantedSeenBits = Math.min(MAXIMUM_SEEN_BITS, Math.max(Long.SIZE, maximumSize * SEEN_BITS_PER_SYMBOL));
+        int seenBits = Integer.highestOneBit((int) wantedSeenBits - 1) << 1;
+
+        _seen = new AtomicLongArray(seenBits / Long.SIZE);
+        _seenShift = Integer.SIZE - Integer.numberOfTrailingZeros(seenBits);
+        _firstSightingsPerClear = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maximumSize));
+    }
+
+    /**
+     * @return an equal string that is shared with other entries, or the string itself
+     */
+    String intern(String value)
+    {
+        return value.length() > MAXIMUM_INTERNED_LENGTH ? value : internObject(value);
+    }
+
+    /**
+     * @param value an immutable value with equals and hashCode, such as a shape of attribute names or a list of
+     *              interned values
+     * @return an equal value that is shared with other entries, or the value itself
+     */
+    @SuppressWarnings("unchecked")
+    <T> T internObject(T value)
+    {
+        @Nullable Object existing = _symbols.getIfPresent(value);
+
+        if (existing != null)
+        {
+            return (T) existing;
+        }
+
+        if (!seenBefore(value))
+        {
+            return value;
+        }
+
+        existing = _symbols.asMap().putIfAbsent(value, value);
+
+        return existing == null ? value : (T) existing;
+    }
+
+    long size()
+    {
+        return _symbols.size();
+    }
+
+    /**
+     * Mark the value as seen.
+     *
+     * @return true if it, or a value with a colliding hash, was seen before
+     */
+    private boolean seenBefore(Object value)
+    {
+        // Fibonacci hashing spreads hash codes that only differ in their high or low bits
+        int bit = (value.hashCode() * 0x9E3779B9) >>> _seenShift;
+        long mask = 1L << bit;
+        int word = bit / Long.SIZE;
+
+        if ((_seen.get(word) & mask) != 0)
+        {
+            return true;
+        }
+
+        if (_firstSightings.incrementAndGet() >= _firstSightingsPerClear)
+        {
+            _firstSightings.set(0);
+
+            for (int i = 0; i < _seen.length(); i++)
+            {
+                _seen.set(i, 0);
+            }
+        }
+
+        _seen.getAndAccumulate(word, mask, (bits, newBit) -> bits | newBit);
+
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration.AttributeCache.SeedFromVerification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.ThreadSafe;
+import se.curity.identityserver.sdk.attribute.AttributeName;
+import se.curity.identityserver.sdk.attribute.Attributes;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills in the {@link AttributeCache} from the user document that a successful password verification returned, so
+ * that the attribute lookup of the same login does not have to fetch it again.
+ */
+public final class VerificationSeeder implements ThreadSafe
+{
+    private static final Logger _logger = LoggerFactory.getLogger(VerificationSeeder.class);
+
+    private final AttributeCache _cache;
+    private final long _timeToLiveNanos;
+    private final Map<String, String> _renames = new HashMap<>();
+    private final Set<String> _excluded;
+    private final boolean _keepOtherAttributes;
+
+    public VerificationSeeder(AttributeCache cache, SeedFromVerification configuration)
+    {
+        _cache = cache;
+        _timeToLiveNanos = TimeUnit.SECONDS.toNanos(configuration.timeToLive());
+        _excluded = new HashSet<>(configuration.excludeAttribute());
+        _keepOtherAttributes = configuration.keepOtherAttributes();
+
+        configuration.renameAttribute().forEach(rename ->
+                _renames.put(rename.verificationAttribute(), rename.lookupAttribute()));
+    }
+
+    /**
+     * @return a token to pass to {@link #seed(String, Attributes, long)} once the verification that is about to start
+     * has completed
+     */
+    public long startVerification()
+    {
+        return _cache.startLookup();
+    }
+
+    /**
+     * Seed the cache, unless the subject was invalidated after the verification started.
+     */
+    public void seed(String subject, Attributes verifiedAttributes, long verificationToken)
+    {
+        _cache.put(subject, toLookupAttributes(verifiedAttributes), _timeToLiveNanos, verificationToken);
+
+        _logger.trace("Seeded attribute cache for {} from password verification", subject);
+    }
+
+    @VisibleForTesting
+    Attributes toLookupAttributes(Attributes verifiedAttributes)
+    {
+        Map<String, Object> lookupAttributes = new HashMap<>();
+
+        verifiedAttributes.asMap().forEach((name, value) ->
+        {
+            if (_excluded.contains(name))
+            {
+                return;
+            }
+
+            String renamed = _renames.get(name);
+
+            if (renamed != null)
+            {
+                lookupAttributes.put(renamed, value);
+            }
+            else if (_keepOtherAttributes)
+            {
+                // a renamed attribute wins over one that already had the name
+                lookupAttributes.putIfAbsent(name, value);
+            }
+        });
+
+        return Attributes.fromMap(lookupAttributes, AttributeName.Format.JSON);
+    }
+}
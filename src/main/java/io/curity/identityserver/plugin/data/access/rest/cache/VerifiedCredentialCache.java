@@ -0,0 +1,179 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import io.curity.identityserver.plugin.data.access.rest.config.CredentialAccessConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+import se.curity.identityserver.sdk.datasource.CredentialVerifyingDataAccessProvider.VerifyResult;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers accepted verifications for a short time, so that a subject that verifies the same password over and over
+ * again only reaches the JSON service once per time to live.
+ *
+ * <p>There is at most one entry per subject, holding the {@link CredentialHasher keyed hash} of the accepted
+ * password. Verifications that started before the subject was last {@link #invalidate(String) invalidated} are not
+ * cached, so that a password change cannot be undone by a verification of the old password that was in flight. When
+ * more subjects are invalidated than can be remembered, no verification that started before the forgotten
+ * invalidations is cached.
+ */
+public final class VerifiedCredentialCache implements ThreadSafe
+{
+    private final Cache<String, Entry> _cache;
+    private final Cache<String, Long> _invalidations;
+    private final AtomicLong _sequence = new AtomicLong();
+
+    // the newest invalidation that was forgotten because too many subjects were invalidated. Invalidations are
+    // remembered, forgotten and looked up while holding the lock of _invalidations, so that no verification can find
+    // an invalidation gone before this has been raised
+    private long _forgottenInvalidation;
+
+    private final LongAdder _hits;
+    private final LongAdder _misses;
+    private final LongAdder _mismatches;
+    private final LongAdder _invalidationCount;
+
+    public VerifiedCredentialCache(CredentialAccessConfiguration.VerifiedCredentialCache configuration, Metrics metrics)
+    {
+        this(configuration, metrics, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    VerifiedCredentialCache(CredentialAccessConfiguration.VerifiedCredentialCache configuration, Metrics metrics,
+                            Ticker ticker)
+    {
+        _cache = CacheBuilder.newBuilder()
+                .maximumSize(configuration.maximumSize())
+                .expireAfterWrite(configuration.timeToLive(), TimeUnit.SECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+
+        // a verification in flight does not take longer than this, so older invalidations need not be remembered
+        _invalidations = CacheBuilder.newBuilder()
+                .maximumSize(configuration.maximumSize())
+                .expireAfterWrite(configuration.timeToLive() + 60L, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .removalListener((RemovalNotification<String, Long> notification) ->
+                {
+                    if (notification.getCause() == RemovalCause.SIZE)
+                    {
+                        _forgottenInvalidation = Math.max(_forgottenInvalidation, notification.getValue());
+                    }
+                })
+                .build();
+
+        _hits = metrics.counter("verifiedCredentialCache.hits");
+        _misses = metrics.counter("verifiedCredentialCache.misses");
+        _mismatches = metrics.counter("verifiedCredentialCache.passwordMismatches");
+        _invalidationCount = metrics.counter("verifiedCredentialCache.invalidations");
+        metrics.gauge("verifiedCredentialCache.size", _cache::size);
+        metrics.gauge("verifiedCredentialCache.evictions", () -> _cache.stats().evictionCount());
+    }
+
+    /**
+     * @return a token to pass to {@link #put(String, String, VerifyResult.Accepted, long)} once the verification
+     * that is about to start has completed
+     */
+    public long startVerification()
+    {
+        return _sequence.incrementAndGet();
+    }
+
+    /**
+     * @return the cached result of a verification of the same subject and password, or null if there is none
+     */
+    @Nullable
+    public VerifyResult.Accepted getIfVerified(String subject, String password)
+    {
+        @Nullable Entry entry = _cache.getIfPresent(subject);
+
+        if (entry == null)
+        {
+            _misses.increment();
+
+            return null;
+        }
+
+        if (!CredentialHasher.matches(entry._credentialHash, CredentialHasher.hash(subject, password)))
+        {
+            _mismatches.increment();
+
+            return null;
+        }
+
+        _hits.increment();
+
+        return entry._result;
+    }
+
+    public void put(String subject, String password, VerifyResult.Accepted result, long verificationToken)
+    {
+        Entry entry = new Entry(CredentialHasher.hash(subject, password), result);
+
+        // computing on the subject's entry serializes this with invalidate
+        _cache.asMap().compute(subject, (key, existing) ->
+        {
+            synchronized (_invalidations)
+            {
+                @Nullable Long invalidatedAt = _invalidations.getIfPresent(key);
+
+                return verificationToken > _forgottenInvalidation &&
+                        (invalidatedAt == null || invalidatedAt < verificationToken) ? entry : existing;
+            }
+        });
+    }
+
+    public void invalidate(String subject)
+    {
+        _cache.asMap().compute(subject, (key, existing) ->
+        {
+            // an invalidation that is evicted to make room is passed to the removal listener before this returns
+            synchronized (_invalidations)
+            {
+                _invalidations.put(key, _sequence.incrementAndGet());
+            }
+
+            return null;
+        });
+
+        _invalidationCount.increment();
+    }
+
+    private static final class Entry
+    {
+        private final byte[] _credentialHash;
+        private final VerifyResult.Accepted _result;
+
+        private Entry(byte[] credentialHash, VerifyResult.Accepted result)
+        {
+            _credentialHash = credentialHash;
+            _result = result;
+        }
+    }
+}
@@ -18,7 +18,9 @@ package io.curity.identityserver.plugin.data.access.rest.config;
 
 import se.curity.identityserver.sdk.config.Configuration;
 import se.curity.identityserver.sdk.config.OneOf;
+import se.curity.identityserver.sdk.config.annotation.DefaultBoolean;
 import se.curity.identityserver.sdk.config.annotation.DefaultEnum;
+import se.curity.identityserver.sdk.config.annotation.DefaultInteger;
 import se.curity.identityserver.sdk.config.annotation.DefaultOption;
 import se.curity.identityserver.sdk.config.annotation.DefaultString;
 import se.curity.identityserver.sdk.config.annotation.Description;
@@ -36,6 +38,287 @@ public interface AttributesConfiguration
             + "Defaults to substituting the subject in the url-path.")
     ProvideSubject provideSubject();
 
+    @Description("Cache the attributes of a subject in memory, so that repeated lookups of the same subject do not "
+            + "reach the JSON service. Entries are keyed by subject only, so this cannot be used with "
+            + "parameter-mappings that take their value from an attribute, only with static values. Not cached if "
+            + "not set.")
+    Optional<AttributeCache> attributeCache();
+
+    @Description("Only index the response of the JSON service, and decode each attribute when it is first read, "
+            + "rather than all of them when the response arrives. Lowers the CPU use of lookups of large user "
+            + "documents of which only a few attributes are used. Has no effect with the attribute-cache, which "
+            + "decodes all attributes when caching them.")
+    @DefaultBoolean(false)
+    boolean lazyDecoding();
+
+    @Description("Decode the responses of the JSON service with a decoder that is specialized to their shape, which "
+            + "is learned from the responses that are decoded as usual: the names of their members, and whether "
+            + "their values are strings, numbers, booleans, objects or arrays. Lowers the CPU use of lookups when the "
+            + "responses of the JSON service have a fixed schema. Responses that do not match the shape are decoded "
+            + "as usual, and extend it. Has no effect with lazy-decoding, which is used instead.")
+    @DefaultBoolean(false)
+    boolean specializedDecoding();
+
+    @Description("Return one row per element of a JSON array in the response, rather than a single row of the "
+            + "response object, and follow the pagination of the JSON service. Rows are not cached. A single row is "
+            + "returned if not set.")
+    Optional<MultipleRows> multipleRows();
+
+    interface MultipleRows
+    {
+        @Description("The attribute of the response object that holds the array of rows, such as 'items'. A dot "
+                + "separates the names of nested objects. If not set, the response itself must be the array.")
+        Optional<String> rowsAttribute();
+
+        @Description("How the JSON service refers to the next page. Only the first page is requested if not set.")
+        Optional<Pagination> pagination();
+
+        @Description("The maximum number of pages that are requested for a lookup. The rows of further pages are "
+                + "not returned.")
+        @DefaultInteger(10)
+        int maximumPages();
+
+        @Description("Request the next page while the rows of the current one are decoded.")
+        @DefaultBoolean(true)
+        boolean prefetch();
+
+        interface Pagination extends OneOf
+        {
+            @Description("The attribute of the response object with the link to the next page, such as 'next' or "
+                    + "'links.next'. A dot separates the names of nested objects. Only the path and query of the "
+                    + "link are used, and are sent to the web service like the url-path.")
+            Optional<String> nextLinkAttribute();
+
+            @Description("The relation of the link to the next page in the Link header of the response, usually "
+                    + "'next'. Only the path and query of the link are used, and are sent to the web service like "
+                    + "the url-path.")
+            Optional<String> linkHeaderRelation();
+
+            Optional<Cursor> cursor();
+
+            interface Cursor
+            {
+                @Description("The attribute of the response object with the cursor of the next page. A dot "
+                        + "separates the names of nested objects. There are no more pages if it is missing, null "
+                        + "or empty.")
+                String cursorAttribute();
+
+                @Description("The query parameter that the cursor is sent in, in the request for the next page.")
+                @DefaultString("cursor")
+                String cursorParameter();
+            }
+        }
+    }
+
+    interface AttributeCache
+    {
+        @Description("The number of seconds that the attributes returned by the JSON service are cached.")
+        @DefaultInteger(60)
+        int timeToLive();
+
+        @Description("The maximum number of subjects to keep in the cache.")
+        @DefaultInteger(10000)
+        int maximumSize();
+
+        @Description("The number of seconds after their time to live that cached attributes are still returned when "
+                + "the JSON service cannot be reached or responds with a server error. 0 to not return expired "
+                + "attributes.")
+        @DefaultInteger(0)
+        int staleIfError();
+
+        @Description("Also write the cached attributes to a file, so that they survive a restart and can be "
+                + "returned while the JSON service is unavailable right after it. Entries keep the time they were "
+                + "looked up, so their time to live still applies. Kept in memory only if not set.")
+        Optional<Snapshot> snapshot();
+
+        interface Snapshot
+        {
+            @Description("The path of the snapshot file, which is created if it does not exist. It holds the "
+                    + "attributes of subjects, so it should only be readable by the server. A file that is in use by "
+                    + "another data source, or another server, is not used, and attributes are cached in memory only.")
+            String file();
+
+            @Description("The maximum size of the snapshot file in megabytes. When it is full, it is rewritten with "
+                    + "only the newest entry of each subject that has not expired.")
+            @DefaultInteger(64)
+            int maximumSize();
+        }
+
+        @Description("Also cache the user document that the credential-access request returns when a password is "
+                + "verified, so that the attribute lookup that usually follows in the same login does not reach "
+                + "the JSON service.")
+        Optional<SeedFromVerification> seedFromVerification();
+
+        interface SeedFromVerification
+        {
+            @Description("The number of seconds that attributes from a verification are cached.")
+            @DefaultInteger(10)
+            int timeToLive();
+
+            @Description("Attributes of the verification response that are cached under a different name, for "
+                    + "services whose verification and attribute responses differ in shape.")
+            List<AttributeRename> renameAttribute();
+
+            @Description("Attributes of the verification response that are not cached, such as password hashes.")
+            List<String> excludeAttribute();
+
+            @Description("Whether attributes that are not renamed are cached with their name unchanged. If "
+                    + "false, only renamed attributes are cached.")
+            @DefaultBoolean(true)
+            boolean keepOtherAttributes();
+
+            interface AttributeRename extends Configuration
+            {
+                @ListKey
+                @Description("The name of the attribute in the verification response.")
+                String verificationAttribute();
+
+                @Description("The name that the attribute has in the attribute lookup response.")
+                String lookupAttribute();
+            }
+        }
+
+        @Description("Look up the attributes of a set of frequently used subjects, such as service accounts and "
+                + "kiosk users, in the background when the plugin starts, so that they are cached before they are "
+                + "needed. Nothing is preloaded if not set.")
+        Optional<Preload> preload();
+
+        interface Preload
+        {
+            @Description("Where the subjects to preload are read from.")
+            HotSubjects hotSubjects();
+
+            @Description("The maximum number of preloading requests to the JSON service at the same time.")
+            @DefaultInteger(2)
+            int maximumConcurrentRequests();
+
+            @Description("The maximum number of preloading requests to the JSON service per second.")
+            @DefaultInteger(20)
+            int requestsPerSecond();
+
+            @Description("Preloading pauses while at least this many attribute lookups of logins wait for the JSON "
+                    + "service, so that logins are not slowed down by it. 0 to never pause.")
+            @DefaultInteger(4)
+            int pauseAtLiveRequests();
+
+            interface HotSubjects extends OneOf
+            {
+                @Description("A local file with one subject per line. Empty lines and lines that start with # are "
+                        + "ignored.")
+                Optional<String> file();
+
+                @Description("The path of a request to the JSON service that returns the subjects as a JSON array "
+                        + "of strings.")
+                Optional<String> urlPath();
+            }
+        }
+
+        @Description("Poll a feed of the subjects whose attributes have changed, and invalidate or refresh only "
+                + "their cached attributes, so that a longer time to live can be used. The feed responds with a JSON "
+                + "object with the changed subjects and a cursor to send with the next request, and with status 410 "
+                + "if it no longer has the changes since the cursor, in which case the whole cache is cleared. The "
+                + "cache is also cleared on the first poll after a start, as changes may have been missed while the "
+                + "plugin was not running. Only the time to live applies if not set.")
+        Optional<ChangeFeed> changeFeed();
+
+        interface ChangeFeed
+        {
+            @Description("The path of the feed request to the JSON service.")
+            @DefaultString("/changes")
+            String urlPath();
+
+            @Description("The query parameter that the cursor of the previous response is sent in.")
+            @DefaultString("since")
+            String cursorParameter();
+
+            @Description("The member of the response with the JSON array of the subjects that have changed.")
+            @DefaultString("changes")
+            String changesAttribute();
+
+            @Description("The member of the response with the cursor to send with the next request.")
+            @DefaultString("cursor")
+            String cursorAttribute();
+
+            @Description("The number of seconds between polls of the feed.")
+            @DefaultInteger(10)
+            int pollInterval();
+
+            @Description("What is done with the cached attributes of a subject that has changed.")
+            @DefaultEnum("INVALIDATE")
+            OnChange onChange();
+
+            enum OnChange
+            {
+                @Description("Remove them, so that they are looked up again the next time they are needed.")
+                INVALIDATE,
+
+                @Description("Look them up again right away, if they are cached.")
+                REFRESH
+            }
+        }
+
+        @Description("Share the cached attributes with the other nodes of the cluster, so that the attributes of a "
+                + "subject are looked up from the JSON service by about one node rather than by each of them. "
+                + "Each subject is owned by one node, chosen by rendezvous hashing of the subject over the peers, "
+                + "which is asked for the attributes when they are not cached locally, and is sent the attributes "
+                + "that other nodes look up. Requests between peers are signed with the shared secret. Unless TLS is "
+                + "configured, the attributes travel between them in plain text, which is only suitable when all "
+                + "peers are on this host, such as in tests. Attributes are not shared if not set.")
+        Optional<PeerCache> peerCache();
+
+        interface PeerCache
+        {
+            @Description("The address that this node serves its cached attributes to the peers on.")
+            @DefaultString("0.0.0.0")
+            String listenAddress();
+
+            @Description("The port that this node serves its cached attributes to the peers on.")
+            int listenPort();
+
+            @Description("The nodes that share their cached attributes, as host:port, including this node, which is "
+                    + "the one with a local address and the listen-port. Adding or removing a peer only moves the "
+                    + "subjects that it owns, or will own.")
+            List<String> peer();
+
+            @Description("A secret that all peers share. Each request between them is signed with it, together "
+                    + "with the time it was sent, and a request that is older than 30 seconds, or sent again, is "
+                    + "rejected. The secret itself is not sent.")
+            String sharedSecret();
+
+            @Description("Serve the cached attributes to the peers, and ask the peers for them, over HTTPS, with "
+                    + "certificates that both sides verify. Plain HTTP is used if not set.")
+            Optional<Tls> tls();
+
+            @Description("The number of milliseconds that a peer is waited for, after which the attributes are "
+                    + "looked up from the JSON service instead.")
+            @DefaultInteger(50)
+            int timeout();
+
+            @Description("The number of seconds that a peer that could not be reached is not asked, while its "
+                    + "subjects are owned by the other peers.")
+            @DefaultInteger(10)
+            int retryInterval();
+
+            interface Tls
+            {
+                @Description("The path of a PKCS#12 key store with the private key and certificate of this node. The "
+                        + "certificate must be issued for the host that the peers have this node as.")
+                String keyStore();
+
+                @Description("The password of the key store.")
+                String keyStorePassword();
+
+                @Description("The path of a PKCS#12 trust store with the certificates that the certificates of the "
+                        + "peers are verified with. The certificate in the key store is trusted if not set, for when "
+                        + "all peers share one certificate.")
+                Optional<String> trustStore();
+
+                @Description("The password of the trust store.")
+                Optional<String> trustStorePassword();
+            }
+        }
+    }
+
     interface ParameterMappings
     {
         @Description("Specifies a parameter name and how to get the value for it.")
@@ -18,9 +18,12 @@ package io.curity.identityserver.plugin.data.access.rest.config;
 
 import se.curity.identityserver.sdk.config.annotation.DefaultBoolean;
 import se.curity.identityserver.sdk.config.annotation.DefaultEnum;
+import se.curity.identityserver.sdk.config.annotation.DefaultInteger;
 import se.curity.identityserver.sdk.config.annotation.DefaultString;
 import se.curity.identityserver.sdk.config.annotation.Description;
 
+import java.util.Optional;
+
 public interface CredentialAccessConfiguration
 {
 
@@ -43,6 +46,54 @@ public interface CredentialAccessConfiguration
     @DefaultString("/")
     String urlPath();
 
+    @Description("Cache accepted verifications for a short time, so that a subject that verifies the same password "
+            + "repeatedly, such as a service account, does not reach the JSON service every time. Only a keyed hash "
+            + "of the username and password is kept, with a key that is generated when the server starts. An entry "
+            + "is removed as soon as the password of the subject is updated. Not cached if not set.")
+    Optional<VerifiedCredentialCache> verifiedCredentialCache();
+
+    interface VerifiedCredentialCache
+    {
+        @Description("The number of seconds that an accepted verification is cached.")
+        @DefaultInteger(30)
+        int timeToLive();
+
+        @Description("The maximum number of subjects to keep in the cache.")
+        @DefaultInteger(1000)
+        int maximumSize();
+    }
+
+    @Description("Count the verifications that the JSON service rejects, and reject further verifications of the "
+            + "same subject, or of the same username and password, without calling the service once a threshold "
+            + "is passed. Rejections are counted in sketches of a fixed size, so the memory that is used does not "
+            + "depend on how many different usernames are tried. Not tracked if not set.")
+    Optional<FailureTracking> failureTracking();
+
+    interface FailureTracking
+    {
+        @Description("The number of rejected verifications of a subject after which all verifications of that "
+                + "subject are rejected locally. 0 to not lock out subjects.")
+        @DefaultInteger(20)
+        int subjectThreshold();
+
+        @Description("The number of rejected verifications of the same username and password after which that "
+                + "password is rejected locally. Only a keyed hash of the username and password is kept. "
+                + "0 to not track passwords.")
+        @DefaultInteger(3)
+        int credentialThreshold();
+
+        @Description("The number of seconds that a subject or password is rejected locally once its threshold is "
+                + "reached, which is also how often the counted rejections are halved.")
+        @DefaultInteger(300)
+        int coolingPeriod();
+
+        @Description("The number of counters in each of the four rows of a sketch, rounded up to a power of two. "
+                + "Every counter takes 8 bytes, with the time its subjects are locked out until. Wider sketches make it "
+                + "less likely that the rejections of one subject are counted for another.")
+        @DefaultInteger(16384)
+        int sketchWidth();
+    }
+
     enum SubmitAs
     {
         @Description("POST the data and encode the data using 'application/json' content-type")
@@ -17,10 +17,17 @@
 package io.curity.identityserver.plugin.data.access.rest.config;
 
 import se.curity.identityserver.sdk.config.Configuration;
+import se.curity.identityserver.sdk.config.annotation.DefaultEnum;
+import se.curity.identityserver.sdk.config.annotation.DefaultInteger;
+import se.curity.identityserver.sdk.config.annotation.DefaultString;
+import se.curity.identityserver.sdk.config.annotation.Description;
 import se.curity.identityserver.sdk.config.annotation.Name;
 import se.curity.identityserver.sdk.service.Json;
 import se.curity.identityserver.sdk.service.WebServiceClient;
 
+import java.util.List;
+import java.util.Optional;
+
 public interface RestDataAccessProviderConfiguration extends Configuration
 {
 
@@ -34,4 +41,168 @@ public interface RestDataAccessProviderConfiguration extends Configuration
     @Name("attributes")
     AttributesConfiguration getAttributesConfiguration();
 
+    @Description("Send requests with a built-in HTTP client, which can multiplex requests over HTTP/2 connections, "
+            + "instead of the web service client. It trusts the certificates in the trust store of the JVM and does "
+            + "not raise alarms. The web service client is used if not set.")
+    Optional<HttpClientTransport> httpClientTransport();
+
+    interface HttpClientTransport
+    {
+        @Description("The URL that request paths are appended to, such as https://users.example.com/api.")
+        String baseUrl();
+
+        @Description("More base URLs that requests are spread over when load balancing is configured. They are used "
+                + "instead of the additional web service clients of load balancing.")
+        List<String> additionalBaseUrl();
+
+        @Description("The HTTP version to use. HTTP/2 is negotiated with TLS, or with an upgrade from HTTP/1.1 for "
+                + "http URLs, and HTTP/1.1 is used if the JSON service does not support it.")
+        @DefaultEnum("HTTP_2")
+        HttpVersion httpVersion();
+
+        @Description("The maximum number of requests in flight to each base URL. With HTTP/1.1, this is also the "
+                + "maximum number of connections.")
+        @DefaultInteger(64)
+        int maximumConcurrentRequests();
+
+        @Description("The number of milliseconds to wait for a connection to be established.")
+        @DefaultInteger(5000)
+        int connectTimeout();
+
+        @Description("The number of milliseconds to wait for a response, including the time waiting for a "
+                + "request slot.")
+        @DefaultInteger(10000)
+        int requestTimeout();
+
+        @Description("Ask the JSON service to compress its responses with gzip or deflate, which are decompressed as "
+                + "they are received. Responses are not compressed if not set.")
+        Optional<Compression> compression();
+
+        interface Compression
+        {
+            @Description("The maximum number of kilobytes that a compressed response may decompress to. Larger "
+                    + "responses fail, so that a small response cannot exhaust the memory of the server.")
+            @DefaultInteger(1024)
+            int maximumDecompressedSize();
+        }
+
+        enum HttpVersion
+        {
+            HTTP_1_1,
+            HTTP_2
+        }
+    }
+
+    @Description("Warm up the plugin when it is created, so that the first logins after a restart are not slow: "
+            + "the code that builds requests and reads responses is run with made-up data, and connections to the "
+            + "JSON service are opened. No warm-up is done if not set.")
+    Optional<WarmUp> warmUp();
+
+    interface WarmUp
+    {
+        @Description("The number of times that requests are built and responses are read with made-up data.")
+        @DefaultInteger(2000)
+        int iterations();
+
+        @Description("The number of health requests that are sent at the same time, each of which opens a connection "
+                + "to the JSON service.")
+        @DefaultInteger(4)
+        int connections();
+
+        @Description("The path of a cheap request to the JSON service. Any response, also an error, opens a "
+                + "connection.")
+        @DefaultString("/health")
+        String healthPath();
+
+        @Description("The maximum number of milliseconds that warm-up delays the plugin from becoming ready. "
+                + "Warm-up stops when it is reached.")
+        @DefaultInteger(5000)
+        int timeLimit();
+
+        @Description("The number of seconds between health requests that keep idle connections open. 0 to not keep "
+                + "idle connections open.")
+        @DefaultInteger(30)
+        int keepAliveInterval();
+    }
+
+    @Description("Spread the requests of both credential access and attributes over more than one JSON service. "
+            + "Only the web service client above is used if not set.")
+    Optional<LoadBalancing> loadBalancing();
+
+    interface LoadBalancing
+    {
+        @Description("More web service clients that requests are spread over, together with the one above.")
+        List<WebServiceClient> additionalWebServiceClient();
+
+        @Description("How the web service client of a request is chosen.")
+        @DefaultEnum("LEAST_OUTSTANDING_REQUESTS")
+        Strategy strategy();
+
+        @Description("The percentage of failed requests, i.e. server errors and requests that could not be sent, "
+                + "at which a web service client is ejected.")
+        @DefaultInteger(50)
+        int errorRateThreshold();
+
+        @Description("The average response time in milliseconds at which a web service client is ejected. "
+                + "0 to not eject web service clients because they are slow.")
+        @DefaultInteger(0)
+        int latencyThreshold();
+
+        @Description("The number of requests that a web service client must have answered since it was last "
+                + "admitted, or during the last 10 seconds, before it can be ejected.")
+        @DefaultInteger(10)
+        int minimumRequests();
+
+        @Description("The number of seconds that an ejected web service client gets no requests. After that, a single "
+                + "probing request is sent to it, and it is admitted again if that request succeeds.")
+        @DefaultInteger(30)
+        int ejectionTime();
+
+        enum Strategy
+        {
+            @Description("Send each request to the web service client with the fewest requests in flight.")
+            LEAST_OUTSTANDING_REQUESTS,
+
+            @Description("Pick two web service clients at random and send the request to the one with the lowest "
+                    + "average response time, weighted by its requests in flight.")
+            POWER_OF_TWO_CHOICES
+        }
+    }
+
+    @Description("Limit the logging of the bodies of responses from the JSON service, which may be large and contain "
+            + "personal data. Bodies are logged in full, whenever the log level allows it, if not set.")
+    Optional<DiagnosticLogging> diagnosticLogging();
+
+    interface DiagnosticLogging
+    {
+        @Description("The percentage of response bodies that are logged at debug and trace level.")
+        @DefaultInteger(100)
+        int responseBodySampleRate();
+
+        @Description("The percentage of responses that cannot be parsed that are logged, with their body.")
+        @DefaultInteger(100)
+        int parseFailureSampleRate();
+
+        @Description("The maximum number of characters of a body that are logged. The rest is left out.")
+        @DefaultInteger(1024)
+        int maximumBodyLength();
+
+        @Description("The names of JSON members, at any depth, whose values are replaced with [redacted] in logged "
+                + "bodies, such as password or social_security_number.")
+        List<String> redactedMember();
+
+        @Description("The maximum number of response bodies, and of parse failures, that are logged per minute. "
+                + "The number of lines left out is logged with the next line.")
+        @DefaultInteger(60)
+        int maximumLinesPerMinute();
+    }
+
+    @Description("Share the connections, limits on concurrent requests, caches and metrics of this plugin instance with "
+            + "the other instances that are configured with the same backend, which is any name that identifies the "
+            + "JSON service. State is only shared by instances with the same settings for it, so that, for example, "
+            + "instances with different parameter mappings keep separate attribute caches. Web service clients and "
+            + "the JSON service count as the same settings only if the server gives the instances the same ones. "
+            + "Metrics are published under the name of the backend, and add up those of all its instances. Nothing "
+            + "is shared if not set.")
+    Optional<String> sharedBackend();
 }
@@ -0,0 +1,165 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.lockout;
+
+import com.google.common.base.Ticker;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count-min sketch whose counters are halved every decay interval, with the time until which each key is locked
+ * out kept in a second sketch of the same shape.
+ *
+ * <p>Keys are hashes of at least {@value #DEPTH} * 4 bytes, whose bytes are uniformly distributed, such as the
+ * keyed hashes of {@link io.curity.identityserver.plugin.data.access.rest.cache.CredentialHasher}. Each row takes its
+ * counter index from its own four bytes of the hash. Estimates are never lower than the true count, and
+ * conservative updates keep them as close to it as the collisions allow. In the same way, a key is never unlocked
+ * before the time it was locked out until, in whole seconds since the sketch was created.
+ */
+final class DecayingCountMinSketch implements ThreadSafe
+{
+    static final int DEPTH = 4;
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicIntegerArray _counters;
+    private final AtomicIntegerArray _lockedOutUntil;
+    private final int _width;
+    private final int _mask;
+
+    private final Ticker _ticker;
+    private final long _decayIntervalNanos;
+    private final AtomicLong _nextDecay;
+    private final long _createdAt;
+
+    DecayingCountMinSketch(int width, long decayIntervalNanos, Ticker ticker)
+    {
+        _width = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        _mask = _width - 1;
+        _counters = new AtomicIntegerArray(DEPTH * _width);
+        _lockedOutUntil = new AtomicIntegerArray(DEPTH * _width);
+
+        _ticker = ticker;
+        _decayIntervalNanos = decayIntervalNanos;
+        _createdAt = ticker.read();
+        _nextDecay = new AtomicLong(_createdAt + decayIntervalNanos);
+    }
+
+    /**
+     * Counts one more occurrence of the key.
+     *
+     * @return the estimated count of the key, including this occurrence
+     */
+    int increment(byte[] hash)
+    {
+        decayIfDue();
+
+        int target = estimateWithoutDecay(hash) + 1;
+
+        // conservative update: only raise the counters that are below the new estimate
+        for (int row = 0; row < DEPTH; row++)
+        {
+            _counters.accumulateAndGet(index(hash, row), target, Math::max);
+        }
+
+        return target;
+    }
+
+    int estimate(byte[] hash)
+    {
+        decayIfDue();
+
+        return estimateWithoutDecay(hash);
+    }
+
+    /**
+     * Lock the key out for at least the given time from now, or longer if it already is.
+     */
+    void lockOut(byte[] hash, long durationNanos)
+    {
+        // rounded up, so that the key is not unlocked early
+        long untilNanos = _ticker.read() - _createdAt + durationNanos;
+        int until = (int) Math.min(Integer.MAX_VALUE, (untilNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+
+        for (int row = 0; row < DEPTH; row++)
+        {
+            _lockedOutUntil.accumulateAndGet(index(hash, row), until, Math::max);
+        }
+    }
+
+    boolean isLockedOut(byte[] hash)
+    {
+        long now = _ticker.read() - _createdAt;
+        int until = Integer.MAX_VALUE;
+
+        for (int row = 0; row < DEPTH; row++)
+        {
+            until = Math.min(until, _lockedOutUntil.get(index(hash, row)));
+        }
+
+        return until * NANOS_PER_SECOND - now > 0;
+    }
+
+    int width()
+    {
+        return _width;
+    }
+
+    private int estimateWithoutDecay(byte[] hash)
+    {
+        int estimate = Integer.MAX_VALUE;
+
+        for (int row = 0; row < DEPTH; row++)
+        {
+            estimate = Math.min(estimate, _counters.get(index(hash, row)));
+        }
+
+        return estimate;
+    }
+
+    private void decayIfDue()
+    {
+        long now = _ticker.read();
+        long nextDecay = _nextDecay.get();
+
+        // only the thread that moves the deadline halves the counters
+        if (now - nextDecay >= 0 && _nextDecay.compareAndSet(nextDecay, now + _decayIntervalNanos))
+        {
+            long intervals = (now - nextDecay) / _decayIntervalNanos + 1;
+            int shift = (int) Math.min(intervals, Integer.SIZE - 1);
+
+            for (int i = 0; i < _counters.length(); i++)
+            {
+                _counters.getAndUpdate(i, count -> count >>> shift);
+            }
+        }
+    }
+
+    private int index(byte[] hash, int row)
+    {
+        int offset = row * 4;
+        int value = (hash[offset] & 0xFF) << 24
+                | (hash[offset + 1] & 0xFF) << 16
+                | (hash[offset + 2] & 0xFF) << 8
+                | (hash[offset + 3] & 0xFF);
+
+        return row * _width + (value & _mask);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.lockout;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.curity.identityserver.plugin.data.access.rest.cache.CredentialHasher;
+import io.curity.identityserver.plugin.data.access.rest.config.CredentialAccessConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the verifications that the JSON service rejected, by subject and by keyed hash of subject and password, so
+ * that a subject or password that keeps being rejected can be rejected without calling the service.
+ *
+ * <p>The counts are kept in {@link DecayingCountMinSketch sketches} of a fixed size, so an attacker that tries many
+ * different usernames cannot make this use more memory. The keys are hashed with a secret key, so an attacker also
+ * cannot choose usernames that are counted together with the one of a victim.
+ *
+ * <p>A subject or password whose count reaches its threshold is locked out for one cooling period from that
+ * rejection. The counts are halved every cooling period, so that what is left of them after the lock-out is over
+ * makes a subject that is tried again reach its threshold sooner.
+ */
+public final class FailureTracker implements ThreadSafe
+{
+    private final int _subjectThreshold;
+    private final int _credentialThreshold;
+    private final long _coolingPeriodNanos;
+
+    @Nullable
+    private final DecayingCountMinSketch _subjectRejections;
+
+    @Nullable
+    private final DecayingCountMinSketch _credentialRejections;
+
+    private final LongAdder _recordedRejections;
+    private final LongAdder _subjectLockouts;
+    private final LongAdder _credentialLockouts;
+
+    public FailureTracker(CredentialAccessConfiguration.FailureTracking configuration, Metrics metrics)
+    {
+        this(configuration, metrics, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    FailureTracker(CredentialAccessConfiguration.FailureTracking configuration, Metrics metrics, Ticker ticker)
+    {
+        long coolingPeriodNanos = TimeUnit.SECONDS.toNanos(configuration.coolingPeriod());
+
+        _coolingPeriodNanos = coolingPeriodNanos;
+        _subjectThreshold = configuration.subjectThreshold();
+        _credentialThreshold = configuration.credentialThreshold();
+        _subjectRejections = _subjectThreshold > 0 ?
+                new DecayingCountMinSketch(configuration.sketchWidth(), coolingPeriodNanos, ticker) : null;
+        _credentialRejections = _credentialThreshold > 0 ?
+                new DecayingCountMinSketch(configuration.sketchWidth(), coolingPeriodNanos, ticker) : null;
+
+        _recordedRejections = metrics.counter("failureTracking.recordedRejections");
+        _subjectLockouts = metrics.counter("failureTracking.subjectLockouts");
+        _credentialLockouts = metrics.counter("failureTracking.credentialLockouts");
+    }
+
+    /**
+     * @return true if the subject, or this password of the subject, has been rejected so often that the verification
+     * should be rejected without calling the JSON service
+     */
+    public boolean isLockedOut(String subject, String password)
+    {
+        if (_subjectRejections != null && _subjectRejections.isLockedOut(CredentialHasher.hashSubject(subject)))
+        {
+            _subjectLockouts.increment();
+
+            return true;
+        }
+
+        if (_credentialRejections != null &&
+                _credentialRejections.isLockedOut(CredentialHasher.hash(subject, password)))
+        {
+            _credentialLockouts.increment();
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Count a verification that the JSON service rejected. Verifications that were rejected because of
+     * {@link #isLockedOut(String, String)} must not be counted, or a locked out subject would never cool down.
+     */
+    public void recordRejection(String subject, String password)
+    {
+        if (_subjectRejections != null)
+        {
+            record(_subjectRejections, CredentialHasher.hashSubject(subject), _subjectThreshold);
+        }
+
+        if (_credentialRejections != null)
+        {
+            record(_credentialRejections, CredentialHasher.hash(subject, password), _credentialThreshold);
+        }
+
+        _recordedRejections.increment();
+    }
+
+    private void record(DecayingCountMinSketch rejections, byte[] hash, int threshold)
+    {
+        if (rejections.increment(hash) >= threshold)
+        {
+            rejections.lockOut(hash, _coolingPeriodNanos);
+        }
+    }
+}
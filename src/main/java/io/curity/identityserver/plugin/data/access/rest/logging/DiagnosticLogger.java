@@ -0,0 +1,258 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.logging;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration.DiagnosticLogging;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs the bodies of responses from the JSON service, which may be large and contain personal data, for diagnosing
+ * problems with the service.
+ *
+ * <p>Only a sample of the bodies of each {@link Category} is logged, no more than a maximum number of lines of each
+ * per minute, and only the start of each body, with the values of configured JSON members redacted. Nothing is done
+ * unless the log level of the line is enabled, and bodies are only redacted and cut once a line has been sampled and
+ * is within the rate limit.
+ *
+ * <p>Without configuration, see {@link #unrestricted()}, bodies are logged in full whenever the log level allows it.
+ */
+public final class DiagnosticLogger implements ThreadSafe
+{
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final DiagnosticLogger UNRESTRICTED = new DiagnosticLogger();
+
+    private final Map<Category, Integer> _sampleRates;
+    private final int _maximumBodyLength;
+    @Nullable
+    private final JsonRedactor _redactor;
+    private final Map<Category, RateLimit> _rateLimits;
+    private final LongAdder _sampledOut;
+    private final LongAdder _rateLimited;
+
+    public enum Category
+    {
+        /**
+         * Bodies that are logged at debug or trace level, to follow what the JSON service responds.
+         */
+        RESPONSE_BODY,
+
+        /**
+         * Bodies that could not be parsed, which are logged as warnings.
+         */
+        PARSE_FAILURE
+    }
+
+    public DiagnosticLogger(DiagnosticLogging configuration, Metrics metrics)
+    {
+        this(configuration, metrics, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    DiagnosticLogger(DiagnosticLogging configuration, Metrics metrics, Ticker ticker)
+    {
+        _sampleRates = new EnumMap<>(Category.class);
+        _sampleRates.put(Category.RESPONSE_BODY, configuration.responseBodySampleRate());
+        _sampleRates.put(Category.PARSE_FAILURE, configuration.parseFailureSampleRate());
+        _maximumBodyLength = Math.max(0, configuration.maximumBodyLength());
+        _redactor = configuration.redactedMember().isEmpty() ? null : new JsonRedactor(configuration.redactedMember());
+        _rateLimits = new EnumMap<>(Category.class);
+
+        for (Category category : Category.values())
+        {
+            _rateLimits.put(category, new RateLimit(configuration.maximumLinesPerMinute(), ticker));
+        }
+
+        _sampledOut = metrics.counter("diagnosticLogging.sampledOut");
+        _rateLimited = metrics.counter("diagnosticLogging.rateLimited");
+    }
+
+    private DiagnosticLogger()
+    {
+        _sampleRates = Collections.emptyMap();
+        _maximumBodyLength = Integer.MAX_VALUE;
+        _redactor = null;
+        _rateLimits = Collections.emptyMap();
+        _sampledOut = new LongAdder();
+        _rateLimited = new LongAdder();
+    }
+
+    /**
+     * @return a logger that logs every body in full, for when diagnostic logging is not configured
+     */
+    public static DiagnosticLogger unrestricted()
+    {
+        return UNRESTRICTED;
+    }
+
+    /**
+     * Log a line with a body, like {@code logger.debug(format, body)} for the debug level.
+     *
+     * @param format the message of the line, with a {@code {}} where the body goes
+     */
+    public void log(Logger logger, Level level, Category category, String format, String body)
+    {
+        if (logger.isEnabledForLevel(level) && shouldLog(logger, level, category))
+        {
+            write(logger, level, format, loggable(body));
+        }
+    }
+
+    /**
+     * Log a line with an argument and a body, like {@code logger.debug(format, argument, body)} for the debug level.
+     *
+     * @param format the message of the line, with a {@code {}} for the argument followed by one where the body goes
+     */
+    public void log(Logger logger, Level level, Category category, String format, @Nullable Object argument,
+                    String body)
+    {
+        if (logger.isEnabledForLevel(level) && shouldLog(logger, level, category))
+        {
+            write(logger, level, format, argument, loggable(body));
+        }
+    }
+
+    private boolean shouldLog(Logger logger, Level level, Category category)
+    {
+        int sampleRate = _sampleRates.getOrDefault(category, 100);
+
+        if (sampleRate < 100 && ThreadLocalRandom.current().nextInt(100) >= sampleRate)
+        {
+            _sampledOut.increment();
+
+            return false;
+        }
+
+        @Nullable RateLimit rateLimit = _rateLimits.get(category);
+
+        if (rateLimit == null)
+        {
+            return true;
+        }
+
+        long suppressed = rateLimit.tryAcquire();
+
+        if (suppressed < 0)
+        {
+            _rateLimited.increment();
+
+            return false;
+        }
+
+        if (suppressed > 0)
+        {
+            write(logger, level, "{} lines of the kind below were not logged, to log no more than the configured "
+                    + "number per minute", suppressed);
+        }
+
+        return true;
+    }
+
+    @VisibleForTesting
+    String loggable(String body)
+    {
+        String start = body.length() > _maximumBodyLength ? body.substring(0, _maximumBodyLength) : body;
+        String redacted = _redactor == null ? start : _redactor.redact(start);
+
+        return start.length() == body.length() ? redacted :
+                redacted + "... (" + (body.length() - start.length()) + " more characters)";
+    }
+
+    private static void write(Logger logger, Level level, String format, Object... arguments)
+    {
+        switch (level)
+        {
+            case ERROR:
+                logger.error(format, arguments);
+                break;
+            case WARN:
+                logger.warn(format, arguments);
+                break;
+            case INFO:
+                logger.info(format, arguments);
+                break;
+            case DEBUG:
+                logger.debug(format, arguments);
+                break;
+            default:
+                logger.trace(format, arguments);
+        }
+    }
+
+    /**
+     * Allows a number of lines in each minute, counting minutes from when the limit is created.
+     */
+    private static final class RateLimit
+    {
+        private final int _linesPerMinute;
+        private final Ticker _ticker;
+
+        private long _minuteStart;
+        private int _lines;
+        private long _suppressed;
+
+        private RateLimit(int linesPerMinute, Ticker ticker)
+        {
+            _linesPerMinute = linesPerMinute;
+            _ticker = ticker;
+            _minuteStart = ticker.read();
+        }
+
+        /**
+         * @return -1 if the line should not be logged, or else the number of lines that were not logged since the
+         * last one that was
+         */
+        synchronized long tryAcquire()
+        {
+            long now = _ticker.read();
+
+            if (now - _minuteStart >= MINUTE_NANOS)
+            {
+                _minuteStart = now;
+                _lines = 0;
+            }
+
+            if (_lines >= _linesPerMinute)
+            {
+                _suppressed++;
+
+                return -1;
+            }
+
+            _lines++;
+
+            long suppressed = _suppressed;
+
+            _suppressed = 0;
+
+            return suppressed;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.logging;
+
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replaces the values of JSON members with given names, without parsing the JSON.
+ *
+ * <p>The text is scanned once, only keeping track of where strings start and end, so that a member name is a string
+ * that is followed by a colon. The value after it is skipped up to where it ends, counting brackets outside of
+ * strings. The text need not be valid, or complete: a value that is cut off is redacted up to the end of the text.
+ * Names are compared as they are written in the text, so names with escapes are not found.
+ */
+final class JsonRedactor implements ThreadSafe
+{
+    static final String REDACTED = "\"[redacted]\"";
+
+    private final Set<String> _names;
+    private final List<String> _quotedNames;
+
+    JsonRedactor(Collection<String> names)
+    {
+        _names = Set.copyOf(names);
+        _quotedNames = _names.stream().map(name -> '"' + name + '"').toList();
+    }
+
+    String redact(String json)
+    {
+        if (!mayContainName(json))
+        {
+            return json;
+        }
+
+        StringBuilder redacted = new StringBuilder(json.length());
+        int length = json.length();
+        int position = 0;
+
+        while (position < length)
+        {
+            char c = json.charAt(position);
+
+            if (c != '"')
+            {
+                redacted.append(c);
+                position++;
+
+                continue;
+            }
+
+            int stringEnd = endOfString(json, position);
+            int colon = skipWhitespace(json, stringEnd);
+
+            redacted.append(json, position, stringEnd);
+
+            if (colon < length && json.charAt(colon) == ':' &&
+                    _names.contains(json.substring(position + 1, stringEnd - 1)))
+            {
+                int valueStart = skipWhitespace(json, colon + 1);
+
+                redacted.append(json, stringEnd, valueStart).append(REDACTED);
+                position = endOfValue(json, valueStart);
+            }
+            else
+            {
+                position = stringEnd;
+            }
+        }
+
+        return redacted.toString();
+    }
+
+    private boolean mayContainName(String json)
+    {
+        for (String quotedName : _quotedNames)
+        {
+            if (json.contains(quotedName))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param start the position of the opening quote
+     * @return the position after the closing quote, or the length of the text if the string is not closed
+     */
+    private static int endOfString(String json, int start)
+    {
+        int position = start + 1;
+
+        while (position < json.length())
+        {
+            char c = json.charAt(position++);
+
+            if (c == '\\')
+            {
+                position++;
+            }
+            else if (c == '"')
+            {
+                return position;
+            }
+        }
+
+        return json.length();
+    }
+
+    private static int endOfValue(String json, int start)
+    {
+        int length = json.length();
+
+        if (start >= length)
+        {
+            return length;
+        }
+
+        char first = json.charAt(start);
+
+        if (first == '"')
+        {
+            return endOfString(json, start);
+        }
+
+        if (first == '{' || first == '[')
+        {
+            int depth = 0;
+            int position = start;
+
+            while (position < length)
+            {
+                char c = json.charAt(position);
+
+                if (c == '"')
+                {
+                    position = endOfString(json, position);
+
+                    continue;
+                }
+
+                if (c == '{' || c == '[')
+                {
+                    depth++;
+                }
+                else if ((c == '}' || c == ']') && --depth == 0)
+                {
+                    return position + 1;
+                }
+
+                position++;
+            }
+
+            return length;
+        }
+
+        int position = start;
+
+        while (position < length && ",}] \t\r\n".indexOf(json.charAt(position)) < 0)
+        {
+            position++;
+        }
+
+        return position;
+    }
+
+    private static int skipWhitespace(String json, int start)
+    {
+        int position = start;
+
+        while (position < json.length() && Character.isWhitespace(json.charAt(position)))
+        {
+            position++;
+        }
+
+        return position;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and gauges of a plugin instance. They are published over JMX, under the
+ * {@value #DOMAIN} domain with the id of the plugin instance, and can be read with {@link #snapshot()}.
+ *
+ * <p>Parts of the state that are released before the metrics are, such as the caches of a shared backend, register
+ * their gauges through a {@link #scope()}, which removes them again when it is closed. A gauge that is registered
+ * more than once reads as the sum of its values.
+ */
+public final class Metrics implements Closeable, ThreadSafe
+{
+    static final String DOMAIN = "io.curity.identityserver.plugin.data.access.rest";
+
+    private static final Logger _logger = LoggerFactory.getLogger(Metrics.class);
+
+    // the metrics that are published under each name. A reconfigured plugin instance publishes its metrics before
+    // the previous instance is closed, which must then leave them published. Guarded by itself
+    private static final Map<ObjectName, Metrics> _published = new HashMap<>();
+
+    private final Map<String, LongAdder> _counters = new ConcurrentHashMap<>();
+    private final Map<String, List<LongSupplier>> _gauges = new ConcurrentHashMap<>();
+
+    // only set for scopes, which register their gauges with it
+    @Nullable
+    private final Metrics _parent;
+    private final List<Map.Entry<String, LongSupplier>> _scopedGauges = new CopyOnWriteArrayList<>();
+
+    @Nullable
+    private final ObjectName _objectName;
+
+    public Metrics(String instanceId)
+    {
+        _parent = null;
+        _objectName = register(instanceId);
+    }
+
+    private Metrics(Metrics parent)
+    {
+        _parent = parent;
+        _objectName = null;
+    }
+
+    /**
+     * @return metrics that count with these, and whose gauges are removed from these when they are closed
+     */
+    public Metrics scope()
+    {
+        return new Metrics(_parent == null ? this : _parent);
+    }
+
+    /**
+     * @return the counter with the given name, which is created the first time it is asked for
+     */
+    public LongAdder counter(String name)
+    {
+        if (_parent != null)
+        {
+            return _parent.counter(name);
+        }
+
+        return _counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Publish a value that is read when the metrics are, such as the size of a cache.
+     */
+    public void gauge(String name, LongSupplier value)
+    {
+        if (_parent != null)
+        {
+            _parent.gauge(name, value);
+            _scopedGauges.add(Map.entry(name, value));
+
+            return;
+        }
+
+        _gauges.compute(name, (key, values) ->
+        {
+            List<LongSupplier> gauges = values == null ? new CopyOnWriteArrayList<>() : values;
+
+            gauges.add(value);
+
+            return gauges;
+        });
+    }
+
+    public Map<String, Long> snapshot()
+    {
+        if (_parent != null)
+        {
+            return _parent.snapshot();
+        }
+
+        Map<String, Long> snapshot = new TreeMap<>();
+
+        _counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        _gauges.forEach((name, gauges) -> snapshot.put(name, gauges.stream()
+                .mapToLong(LongSupplier::getAsLong)
+                .sum()));
+
+        return snapshot;
+    }
+
+    @Override
+    public void close()
+    {
+        if (_parent != null)
+        {
+            // so that the parent no longer reads, or keeps reachable, what the gauges of this scope measure
+            _scopedGauges.forEach(gauge -> _parent.removeGauge(gauge.getKey(), gauge.getValue()));
+            _scopedGauges.clear();
+        }
+
+        if (_objectName != null)
+        {
+            synchronized (_published)
+            {
+                if (!_published.remove(_objectName, this))
+                {
+                    // replaced by the metrics of a newer instance with the same id
+                    return;
+                }
+
+                try
+                {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(_objectName);
+                }
+                catch (JMException e)
+                {
+                    _logger.debug("Could not unregister metrics {}", _objectName, e);
+                }
+            }
+        }
+    }
+
+    private void removeGauge(String name, LongSupplier value)
+    {
+        _gauges.computeIfPresent(name, (key, gauges) ->
+        {
+            gauges.remove(value);
+
+            return gauges.isEmpty() ? null : gauges;
+        });
+    }
+
+    @Nullable
+    private ObjectName register(String instanceId)
+    {
+        try
+        {
+            ObjectName objectName = new ObjectName(DOMAIN, "instance", ObjectName.quote(instanceId));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            synchronized (_published)
+            {
+                // a reconfigured plugin instance replaces the metrics of the previous one
+                if (server.isRegistered(objectName))
+                {
+                    server.unregisterMBean(objectName);
+                }
+
+                server.registerMBean(new MetricsMBean(this), objectName);
+                _published.put(objectName, this);
+            }
+
+            return objectName;
+        }
+        catch (JMException | RuntimeException e)
+        {
+            _logger.info("Metrics of plugin instance {} are not published over JMX: {}", instanceId, e.getMessage());
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import java.util.Map;
+
+/**
+ * Publishes every metric as a read-only JMX attribute. The attributes are listed when the bean is inspected, so
+ * metrics created later show up the next time.
+ */
+final class MetricsMBean implements DynamicMBean
+{
+    private final Metrics _metrics;
+
+    MetricsMBean(Metrics metrics)
+    {
+        _metrics = metrics;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+    {
+        Long value = _metrics.snapshot().get(attribute);
+
+        if (value == null)
+        {
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute)
+    {
+        throw new UnsupportedOperationException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes)
+    {
+        Map<String, Long> snapshot = _metrics.snapshot();
+        AttributeList result = new AttributeList();
+
+        for (String attribute : attributes)
+        {
+            Long value = snapshot.get(attribute);
+
+            if (value != null)
+            {
+                result.add(new Attribute(attribute, value));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature)
+    {
+        throw new UnsupportedOperationException("Metrics have no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo()
+    {
+        MBeanAttributeInfo[] attributes = _metrics.snapshot().keySet().stream()
+                .map(name -> new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false))
+                .toArray(MBeanAttributeInfo[]::new);
+
+        return new MBeanInfo(Metrics.class.getName(), "REST data access plugin metrics", attributes,
+                null, new MBeanOperationInfo[0], null);
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.transport;
+
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration.HttpClientTransport;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends requests with a {@link HttpClient} of its own, so that connections are reused and, with HTTP/2, requests
+ * are multiplexed over a single connection. Request and response bodies are sent and received as bytes.
+ *
+ * <p>The number of requests in flight is limited by the configured maximum, and requests wait for a slot within
+ * their request timeout.
+ *
+ * <p>With compression, responses are asked for with gzip or deflate and are decompressed as they are received, see
+ * {@link ResponseDecompression}.
+ */
+public final class JdkHttpClientTransport implements Transport, ThreadSafe
+{
+    private static final Logger _logger = LoggerFactory.getLogger(JdkHttpClientTransport.class);
+
+    private final HttpClient _httpClient;
+    private final String _baseUrl;
+    private final Semaphore _requestSlots;
+    private final long _requestTimeoutNanos;
+    @Nullable
+    private final ResponseDecompression _decompression;
+
+    public JdkHttpClientTransport(HttpClientTransport configuration, String baseUrl, Metrics metrics)
+    {
+        _httpClient = HttpClient.newBuilder()
+                .version(configuration.httpVersion() == HttpClientTransport.HttpVersion.HTTP_2 ?
+                        HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(configuration.connectTimeout()))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        _baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        _requestSlots = new Semaphore(Math.max(1, configuration.maximumConcurrentRequests()));
+        _requestTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(configuration.requestTimeout());
+        _decompression = configuration.compression()
+                .map(compression -> new ResponseDecompression(compression, metrics))
+                .orElse(null);
+    }
+
+    /**
+     * @return a transport for the base URL and one for each additional base URL of the configuration
+     */
+    public static List<Transport> forAllBaseUrls(HttpClientTransport configuration, Metrics metrics)
+    {
+        List<Transport> transports = new ArrayList<>();
+
+        transports.add(new JdkHttpClientTransport(configuration, configuration.baseUrl(), metrics));
+        configuration.additionalBaseUrl().forEach(baseUrl ->
+                transports.add(new JdkHttpClientTransport(configuration, baseUrl, metrics)));
+
+        return transports;
+    }
+
+    @Override
+    public TransportResponse send(TransportRequest request)
+    {
+        URI uri = createUri(request);
+        long deadline = System.nanoTime() + _requestTimeoutNanos;
+
+        acquireRequestSlot(uri);
+
+        try
+        {
+            long remainingNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), deadline - System.nanoTime());
+            HttpRequest httpRequest = createHttpRequest(request, uri, Duration.ofNanos(remainingNanos),
+                    _decompression != null);
+
+            if (_decompression == null)
+            {
+                HttpResponse<byte[]> response = _httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+
+                return new Response(response.statusCode(), response.headers(), response.body());
+            }
+
+            HttpResponse<InputStream> response = _httpClient.send(httpRequest,
+                    HttpResponse.BodyHandlers.ofInputStream());
+            byte[] body = _decompression.read(response.headers().firstValue("Content-Encoding").orElse(null),
+                    response.body());
+
+            return new Response(response.statusCode(), response.headers(), body);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Request to " + uri + " failed", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException("Interrupted while waiting for a response from " + uri, e);
+        }
+        finally
+        {
+            _requestSlots.release();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        _httpClient.close();
+    }
+
+    private void acquireRequestSlot(URI uri)
+    {
+        try
+        {
+            if (!_requestSlots.tryAcquire(_requestTimeoutNanos, TimeUnit.NANOSECONDS))
+            {
+                _logger.debug("No request slot became available for {} within the request timeout", uri);
+
+                throw new UncheckedIOException(new IOException(
+                        "Too many requests in flight to " + _baseUrl + ", no slot became available in time"));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException("Interrupted while waiting for a request slot for " + uri, e);
+        }
+    }
+
+    private static HttpRequest createHttpRequest(TransportRequest request, URI uri, Duration timeout,
+                                                 boolean acceptCompressed)
+    {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Accept", request.accept());
+        String[] headers = request.headers();
+
+        if (acceptCompressed)
+        {
+            builder.header("Accept-Encoding", ResponseDecompression.ACCEPT_ENCODING);
+        }
+
+        for (int i = 0; i + 1 < headers.length; i += 2)
+        {
+            builder.header(headers[i], headers[i + 1]);
+        }
+
+        if (request.body() != null && request.contentType() != null && request.bodyCharset() != null)
+        {
+            builder.header("Content-Type", request.contentType())
+                    .method(request.method(), HttpRequest.BodyPublishers.ofByteArray(
+                            request.body().getBytes(request.bodyCharset())));
+        }
+        else
+        {
+            builder.method(request.method(), HttpRequest.BodyPublishers.noBody());
+        }
+
+        return builder.build();
+    }
+
+    private URI createUri(TransportRequest request)
+    {
+        StringBuilder uri = new StringBuilder(_baseUrl.length() + request.path().length() + 32)
+                .append(_baseUrl);
+
+        if (!request.path().startsWith("/"))
+        {
+            uri.append('/');
+        }
+
+        uri.append(request.path());
+
+        boolean first = request.path().indexOf('?') < 0;
+
+        for (Map.Entry<String, Collection<String>> parameter : request.queryParameters().entrySet())
+        {
+            for (String value : parameter.getValue())
+            {
+                uri.append(first ? '?' : '&')
+                        .append(URLEncoder.encode(parameter.getKey(), StandardCharsets.UTF_8))
+                        .append('=')
+                        .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+                first = false;
+            }
+        }
+
+        return URI.create(uri.toString());
+    }
+
+    private static final class Response implements TransportResponse
+    {
+        private final int _statusCode;
+        private final HttpHeaders _headers;
+        @Nullable
+        private final byte[] _body;
+
+        private Response(int statusCode, HttpHeaders headers, @Nullable byte[] body)
+        {
+            _statusCode = statusCode;
+            _headers = headers;
+            _body = body;
+        }
+
+        @Override
+        public int statusCode()
+        {
+            return _statusCode;
+        }
+
+        @Override
+        public List<String> headerValues(String name)
+        {
+            return _headers.allValues(name);
+        }
+
+        @Override
+        public String body()
+        {
+            return _body == null || _body.length == 0 ? "" : new String(_body, charsetOf(_headers));
+        }
+
+        private static Charset charsetOf(HttpHeaders headers)
+        {
+            String contentType = headers.firstValue("Content-Type").orElse("");
+            int charsetIndex = contentType.toLowerCase().indexOf("charset=");
+
+            if (charsetIndex < 0)
+            {
+                return StandardCharsets.UTF_8;
+            }
+
+            String charset = contentType.substring(charsetIndex + "charset=".length()).split(";")[0].trim()
+                    .replace("\"", "");
+
+            try
+            {
+                return Charset.forName(charset);
+            }
+            catch (IllegalArgumentException e)
+            {
+                _logger.debug("Unsupported charset '{}' in response, reading it as UTF-8", charset);
+
+                return StandardCharsets.UTF_8;
+            }
+        }
+    }
+}
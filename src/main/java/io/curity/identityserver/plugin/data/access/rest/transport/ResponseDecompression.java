@@ -0,0 +1,166 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.transport;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration.HttpClientTransport.Compression;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads response bodies that are compressed with gzip or deflate, decompressing them as they are received so that
+ * the compressed body is never held in full.
+ *
+ * <p>A response that decompresses to more than the configured maximum fails, which guards against responses that are
+ * made to decompress to much more than they weigh. Uncompressed responses are read as they are.
+ */
+final class ResponseDecompression implements ThreadSafe
+{
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final long _maximumDecompressedBytes;
+    private final LongAdder _compressedResponses;
+    private final LongAdder _compressedBytes;
+    private final LongAdder _decompressedBytes;
+    private final LongAdder _rejectedResponses;
+
+    ResponseDecompression(Compression configuration, Metrics metrics)
+    {
+        _maximumDecompressedBytes = configuration.maximumDecompressedSize() * 1024L;
+        _compressedResponses = metrics.counter("transport.compression.responses");
+        _compressedBytes = metrics.counter("transport.compression.compressedBytes");
+        _decompressedBytes = metrics.counter("transport.compression.decompressedBytes");
+        _rejectedResponses = metrics.counter("transport.compression.rejectedResponses");
+        metrics.gauge("transport.compression.savedBytes", () -> _decompressedBytes.sum() - _compressedBytes.sum());
+        // the number of times larger responses are when decompressed, in percent so that it can be published as a long
+        metrics.gauge("transport.compression.ratioPercent", () ->
+        {
+            long compressedBytes = _compressedBytes.sum();
+
+            return compressedBytes == 0 ? 0 : _decompressedBytes.sum() * 100 / compressedBytes;
+        });
+    }
+
+    /**
+     * @param contentEncoding the Content-Encoding header of the response, or null if it has none
+     * @param body the body as it is received, which is closed when it has been read
+     * @throws IOException if the body cannot be read or decompressed, is compressed in an unsupported way, or
+     * decompresses to more than the maximum size
+     */
+    byte[] read(@Nullable String contentEncoding, InputStream body) throws IOException
+    {
+        String encoding = contentEncoding == null ? "identity" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+
+        if (encoding.isEmpty() || encoding.equals("identity"))
+        {
+            try (InputStream input = body)
+            {
+                return input.readAllBytes();
+            }
+        }
+
+        CountingInputStream compressed = new CountingInputStream(body);
+        @Nullable Inflater inflater = null;
+        InputStream decompressed;
+
+        try
+        {
+            switch (encoding)
+            {
+                case "gzip":
+                case "x-gzip":
+                    decompressed = new GZIPInputStream(compressed, BUFFER_SIZE);
+                    break;
+                case "deflate":
+                    PushbackInputStream input = new PushbackInputStream(compressed, 2);
+
+                    inflater = new Inflater(!hasZlibHeader(input));
+                    decompressed = new InflaterInputStream(input, inflater, BUFFER_SIZE);
+                    break;
+                default:
+                    throw new IOException("Unsupported content encoding of response: " + contentEncoding);
+            }
+        }
+        catch (IOException e)
+        {
+            // e.g. a gzip header that is not valid
+            body.close();
+
+            throw e;
+        }
+
+        try (InputStream input = decompressed)
+        {
+            byte[] bytes = ByteStreams.toByteArray(ByteStreams.limit(input, _maximumDecompressedBytes + 1));
+
+            if (bytes.length > _maximumDecompressedBytes)
+            {
+                _rejectedResponses.increment();
+
+                throw new IOException("The response decompresses to more than " + _maximumDecompressedBytes
+                        + " bytes");
+            }
+
+            _compressedResponses.increment();
+            _compressedBytes.add(compressed.getCount());
+            _decompressedBytes.add(bytes.length);
+
+            return bytes;
+        }
+        finally
+        {
+            if (inflater != null)
+            {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Deflate is meant to be sent in the zlib format, but some services send raw deflate data, which has no header.
+     */
+    private static boolean hasZlibHeader(PushbackInputStream input) throws IOException
+    {
+        byte[] header = new byte[2];
+        int read = input.readNBytes(header, 0, 2);
+
+        input.unread(header, 0, read);
+
+        if (read < 2)
+        {
+            return true;
+        }
+
+        int compressionMethod = header[0] & 0x0F;
+        int check = ((header[0] & 0xFF) << 8) | (header[1] & 0xFF);
+
+        return compressionMethod == 8 && check % 31 == 0;
+    }
+}
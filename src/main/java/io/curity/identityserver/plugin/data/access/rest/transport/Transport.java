@@ -0,0 +1,38 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.transport;
+
+import java.io.Closeable;
+
+/**
+ * Sends the requests of the providers to the JSON service.
+ *
+ * <p>Implementations are thread safe. A request that cannot be sent, or whose response cannot be read, fails with a
+ * runtime exception.
+ */
+public interface Transport extends Closeable
+{
+    TransportResponse send(TransportRequest request);
+
+    /**
+     * Release the connections and threads of this transport. Transports that hold none need not implement this.
+     */
+    @Override
+    default void close()
+    {
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.transport;
+
+import se.curity.identityserver.sdk.Nullable;
+import se.curity.identityserver.sdk.alarm.AlarmType;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A request to the JSON service, relative to the base URL of the {@link Transport} that sends it.
+ */
+public final class TransportRequest
+{
+    private static final String[] NO_HEADERS = new String[0];
+
+    private final String _method;
+    private final String _path;
+    private final Map<String, Collection<String>> _queryParameters;
+    private final String[] _headers;
+    private final String _accept;
+
+    @Nullable
+    private final String _contentType;
+
+    @Nullable
+    private final String _body;
+
+    @Nullable
+    private final Charset _bodyCharset;
+
+    @Nullable
+    private final AlarmType _suppressedAlarm;
+
+    private TransportRequest(Builder builder)
+    {
+        _method = builder._method;
+        _path = builder._path;
+        _queryParameters = builder._queryParameters;
+        _headers = builder._headers;
+        _accept = builder._accept;
+        _contentType = builder._contentType;
+        _body = builder._body;
+        _bodyCharset = builder._bodyCharset;
+        _suppressedAlarm = builder._suppressedAlarm;
+    }
+
+    public static Builder builder(String method, String path)
+    {
+        return new Builder(method, path);
+    }
+
+    public String method()
+    {
+        return _method;
+    }
+
+    /**
+     * @return the path, which may contain a query string of its own
+     */
+    public String path()
+    {
+        return _path;
+    }
+
+    public Map<String, Collection<String>> queryParameters()
+    {
+        return _queryParameters;
+    }
+
+    /**
+     * @return header names and values, alternating
+     */
+    public String[] headers()
+    {
+        return _headers;
+    }
+
+    public String accept()
+    {
+        return _accept;
+    }
+
+    @Nullable
+    public String contentType()
+    {
+        return _contentType;
+    }
+
+    @Nullable
+    public String body()
+    {
+        return _body;
+    }
+
+    @Nullable
+    public Charset bodyCharset()
+    {
+        return _bodyCharset;
+    }
+
+    /**
+     * @return the alarm that must not be raised if the request fails, or null to raise alarms as usual
+     */
+    @Nullable
+    public AlarmType suppressedAlarm()
+    {
+        return _suppressedAlarm;
+    }
+
+    public static final class Builder
+    {
+        private final String _method;
+        private final String _path;
+        private Map<String, Collection<String>> _queryParameters = Collections.emptyMap();
+        private String[] _headers = NO_HEADERS;
+        private String _accept = "application/json";
+
+        @Nullable
+        private String _contentType;
+
+        @Nullable
+        private String _body;
+
+        @Nullable
+        private Charset _bodyCharset;
+
+        @Nullable
+        private AlarmType _suppressedAlarm;
+
+        private Builder(String method, String path)
+        {
+            _method = method;
+            _path = path;
+        }
+
+        public Builder queryParameters(Map<String, Collection<String>> queryParameters)
+        {
+            _queryParameters = queryParameters;
+
+            return this;
+        }
+
+        /**
+         * @param headers header names and values, alternating
+         */
+        public Builder headers(String... headers)
+        {
+            _headers = headers;
+
+            return this;
+        }
+
+        public Builder accept(String accept)
+        {
+            _accept = accept;
+
+            return this;
+        }
+
+        public Builder body(String body, String contentType, Charset charset)
+        {
+            _body = body;
+            _contentType = contentType;
+            _bodyCharset = charset;
+
+            return this;
+        }
+
+        public Builder withoutAlarm(AlarmType alarm)
+        {
+            _suppressedAlarm = alarm;
+
+            return this;
+        }
+
+        public TransportRequest build()
+        {
+            return new TransportRequest(this);
+        }
+    }
+}
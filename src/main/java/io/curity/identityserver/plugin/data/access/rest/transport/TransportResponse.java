@@ -0,0 +1,41 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.transport;
+
+import se.curity.identityserver.sdk.http.HttpResponse;
+
+import java.util.List;
+
+public interface TransportResponse
+{
+    int statusCode();
+
+    /**
+     * @return the values of the header with the given name, which is matched regardless of case
+     */
+    List<String> headerValues(String name);
+
+    /**
+     * @return the body as text, or the empty string if there is none
+     */
+    String body();
+
+    static TransportResponse of(HttpResponse response)
+    {
+        return new WebServiceClientTransport.Response(response);
+    }
+}
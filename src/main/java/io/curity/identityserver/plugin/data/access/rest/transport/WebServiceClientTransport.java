@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.transport;
+
+import se.curity.identityserver.sdk.ThreadSafe;
+import se.curity.identityserver.sdk.http.HttpRequest;
+import se.curity.identityserver.sdk.http.HttpResponse;
+import se.curity.identityserver.sdk.service.WebServiceClient;
+
+import java.util.List;
+
+/**
+ * Sends requests with a {@link WebServiceClient} of the server, which takes care of TLS, proxies and alarms as
+ * configured for the HTTP client of that web service.
+ */
+public final class WebServiceClientTransport implements Transport, ThreadSafe
+{
+    private final WebServiceClient _webServiceClient;
+
+    public WebServiceClientTransport(WebServiceClient webServiceClient)
+    {
+        _webServiceClient = webServiceClient;
+    }
+
+    @Override
+    public TransportResponse send(TransportRequest request)
+    {
+        WebServiceClient webServiceClient = _webServiceClient.withPath(request.path());
+
+        if (!request.queryParameters().isEmpty())
+        {
+            webServiceClient = webServiceClient.withQueries(request.queryParameters());
+        }
+
+        HttpRequest.Builder builder = webServiceClient.request();
+
+        if (request.suppressedAlarm() != null)
+        {
+            builder = builder.withoutAlarm(request.suppressedAlarm());
+        }
+
+        if (request.headers().length > 0)
+        {
+            builder = builder.header(request.headers());
+        }
+
+        if (request.contentType() != null)
+        {
+            builder = builder.contentType(request.contentType());
+        }
+
+        builder = builder.accept(request.accept());
+
+        if (request.body() != null)
+        {
+            builder = builder.body(HttpRequest.fromString(request.body(), request.bodyCharset()));
+        }
+
+        return new Response(builder.method(request.method()).response());
+    }
+
+    static final class Response implements TransportResponse
+    {
+        private final HttpResponse _response;
+
+        Response(HttpResponse response)
+        {
+            _response = response;
+        }
+
+        @Override
+        public int statusCode()
+        {
+            return _response.statusCode();
+        }
+
+        @Override
+        public List<String> headerValues(String name)
+        {
+            return _response.headers().allValues(name);
+        }
+
+        @Override
+        public String body()
+        {
+            return _response.body(HttpResponse.asString());
+        }
+    }
+}
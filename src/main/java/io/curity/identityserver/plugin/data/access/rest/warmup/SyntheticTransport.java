@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.warmup;
+
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration.MultipleRows;
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse;
+import se.curity.identityserver.sdk.ThreadSafe;
+import se.curity.identityserver.sdk.service.Json;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Answers every request with a made-up user document, without sending it anywhere, so that the providers can be
+ * warmed up without calling the JSON service.
+ *
+ * <p>When multiple rows are looked up, the document is the only row of a response in the configured shape, an array,
+ * or an object with the array in the rows attribute. There is no next page.
+ */
+public final class SyntheticTransport implements Transport, ThreadSafe
+{
+    private static final List<String> JSON_CONTENT_TYPE = Collections.singletonList("application/json");
+
+    private final Json _json;
+    private final Optional<MultipleRows> _multipleRows;
+
+    public SyntheticTransport(Json json, Optional<MultipleRows> multipleRows)
+    {
+        _json = json;
+        _multipleRows = multipleRows;
+    }
+
+    @Override
+    public TransportResponse send(TransportRequest request)
+    {
+        String path = request.path();
+        String subject = path.substring(path.lastIndexOf('/') + 1);
+        Map<String, Object> user = new LinkedHashMap<>();
+
+        user.put("subject", subject);
+        user.put("email", subject + "@example.com");
+        user.put("name", Collections.singletonMap("formatted", "Warm Up " + subject));
+        user.put("groups", Arrays.asList("users", "employees"));
+
+        String body = _multipleRows
+                .map(multipleRows -> rows(user, multipleRows))
+                .orElseGet(() -> _json.toJson(user));
+
+        return new TransportResponse()
+        {
+            @Override
+            public int statusCode()
+            {
+                return 200;
+            }
+
+            @Override
+            public List<String> headerValues(String name)
+            {
+                return "Content-Type".equalsIgnoreCase(name) ? JSON_CONTENT_TYPE : Collections.emptyList();
+            }
+
+            @Override
+            public String body()
+            {
+                return body;
+            }
+        };
+    }
+
+    private String rows(Map<String, Object> row, MultipleRows multipleRows)
+    {
+        // the rows attribute is the names of nested objects, separated by dots
+        Object page = Collections.singletonList(row);
+        String[] names = multipleRows.rowsAttribute().map(rowsAttribute -> rowsAttribute.split("\\."))
+                .orElse(new String[0]);
+
+        for (int i = names.length - 1; i >= 0; i--)
+        {
+            page = Collections.singletonMap(names[i], page);
+        }
+
+        return _json.toJson(page);
+    }
+}
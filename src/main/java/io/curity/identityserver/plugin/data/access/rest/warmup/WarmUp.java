@@ -0,0 +1,240 @@
+/*
+ *  Copyright 2026 Curity AB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.warmup;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration;
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics;
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport;
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.curity.identityserver.sdk.ThreadSafe;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Warms up a plugin instance before it gets its first requests, and keeps its connections open while it is idle.
+ *
+ * <p>Warm-up runs the code that builds requests and reads responses with made-up data, so that it is compiled by the
+ * JIT, while health requests open connections to the JSON service at the same time. {@link #run()} waits for both at
+ * most the configured time limit, after which warm-up is stopped and the plugin becomes ready anyway.
+ */
+public final class WarmUp implements Closeable, ThreadSafe
+{
+    private static final Logger _logger = LoggerFactory.getLogger(WarmUp.class);
+
+    private final RestDataAccessProviderConfiguration.WarmUp _configuration;
+    private final Transport _transport;
+    private final IntConsumer _exercise;
+    private final ScheduledThreadPoolExecutor _executor;
+
+    private final LongAdder _iterations;
+    private final LongAdder _healthRequests;
+    private final LongAdder _healthFailures;
+    private final LongAdder _keepAlivePings;
+
+    /**
+     * @param exercise builds a request and reads a response with the made-up data of the given iteration, without
+     *                 calling the JSON service
+     */
+    public WarmUp(RestDataAccessProviderConfiguration.WarmUp configuration, Transport transport, IntConsumer exercise,
+                  String instanceId, Metrics metrics)
+    {
+        _configuration = configuration;
+        _transport = transport;
+        _exercise = exercise;
+
+        // one thread for each health request, and one that runs the exercise and waits for them
+        _executor = new ScheduledThreadPoolExecutor(Math.max(1, configuration.connections()) + 1,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("rest-data-access-warm-up-" + instanceId + "-%d")
+                        .setDaemon(true)
+                        .build());
+        _executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+        _executor.allowCoreThreadTimeOut(true);
+
+        _iterations = metrics.counter("warmUp.iterations");
+        _healthRequests = metrics.counter("warmUp.healthRequests");
+        _healthFailures = metrics.counter("warmUp.healthFailures");
+        _keepAlivePings = metrics.counter("warmUp.keepAlivePings");
+    }
+
+    /**
+     * Warm up, waiting at most the configured time limit, and start keeping idle connections open.
+     *
+     * @return true if warm-up finished within the time limit
+     */
+    public boolean run()
+    {
+        long timeLimitNanos = TimeUnit.MILLISECONDS.toNanos(_configuration.timeLimit());
+        long deadline = System.nanoTime() + timeLimitNanos;
+        Future<?> warmUp = _executor.submit(() -> warmUp(deadline));
+        boolean finished = false;
+
+        try
+        {
+            warmUp.get(timeLimitNanos, TimeUnit.NANOSECONDS);
+            finished = true;
+        }
+        catch (TimeoutException e)
+        {
+            _logger.info("Warm-up did not finish within {} ms, continuing without it", _configuration.timeLimit());
+        }
+        catch (ExecutionException e)
+        {
+            _logger.warn("Warm-up failed, continuing without it", e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            warmUp.cancel(true);
+        }
+
+        scheduleKeepAlive();
+
+        return finished;
+    }
+
+    @Override
+    public void close()
+    {
+        _executor.shutdownNow();
+    }
+
+    private void warmUp(long deadline)
+    {
+        // the connections are opened while the exercise runs, as both mostly wait for something else
+        List<Future<Boolean>> healthRequests = sendHealthRequests();
+        int iterations = 0;
+
+        try
+        {
+            while (iterations < _configuration.iterations() && System.nanoTime() - deadline < 0
+                    && !Thread.currentThread().isInterrupted())
+            {
+                _exercise.accept(iterations++);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            _logger.debug("Warm-up exercise failed after {} iterations", iterations, e);
+        }
+
+        _iterations.add(iterations);
+
+        int openedConnections = awaitHealthRequests(healthRequests, deadline);
+
+        _logger.debug("Warm-up ran {} iterations and opened {} connections", iterations, openedConnections);
+    }
+
+    private void scheduleKeepAlive()
+    {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(_configuration.keepAliveInterval());
+
+        if (intervalNanos <= 0 || _executor.isShutdown())
+        {
+            return;
+        }
+
+        _executor.scheduleWithFixedDelay(() ->
+        {
+            _keepAlivePings.increment();
+            awaitHealthRequests(sendHealthRequests(), System.nanoTime() + intervalNanos);
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Send the health requests at the same time, so that each of them needs a connection of its own.
+     */
+    private List<Future<Boolean>> sendHealthRequests()
+    {
+        int connections = Math.max(0, _configuration.connections());
+        List<Future<Boolean>> healthRequests = new ArrayList<>(connections);
+
+        for (int i = 0; i < connections; i++)
+        {
+            healthRequests.add(_executor.submit(this::sendHealthRequest));
+        }
+
+        return healthRequests;
+    }
+
+    /**
+     * @return the number of health requests that got a response before the deadline
+     */
+    private static int awaitHealthRequests(List<Future<Boolean>> healthRequests, long deadline)
+    {
+        int answered = 0;
+
+        for (Future<Boolean> healthRequest : healthRequests)
+        {
+            try
+            {
+                if (healthRequest.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS))
+                {
+                    answered++;
+                }
+            }
+            catch (TimeoutException | ExecutionException e)
+            {
+                healthRequest.cancel(true);
+            }
+            catch (InterruptedException e)
+            {
+                healthRequests.forEach(request -> request.cancel(true));
+                Thread.currentThread().interrupt();
+
+                break;
+            }
+        }
+
+        return answered;
+    }
+
+    private boolean sendHealthRequest()
+    {
+        _healthRequests.increment();
+
+        try
+        {
+            // the status does not matter, any response means that a connection is open
+            _transport.send(TransportRequest.builder("GET", _configuration.healthPath()).build());
+
+            return true;
+        }
+        catch (RuntimeException e)
+        {
+            _healthFailures.increment();
+            _logger.debug("Health request to {} failed: {}", _configuration.healthPath(), e.getMessage());
+
+            return false;
+        }
+    }
+}
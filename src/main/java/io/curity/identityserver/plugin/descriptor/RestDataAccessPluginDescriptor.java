@@ -18,15 +18,18 @@ package io.curity.identityserver.plugin.descriptor;
 
 import io.curity.identityserver.plugin.data.access.rest.RestAttributeDataAccessProvider;
 import io.curity.identityserver.plugin.data.access.rest.RestCredentialDataAccessProvider;
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject;
 import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration;
 import se.curity.identityserver.sdk.Nullable;
-import se.curity.identityserver.sdk.config.Configuration;
 import se.curity.identityserver.sdk.datasource.AttributeDataAccessProvider;
 import se.curity.identityserver.sdk.datasource.CredentialDataAccessProviderFactory;
+import se.curity.identityserver.sdk.plugin.ManagedObject;
 import se.curity.identityserver.sdk.plugin.descriptor.DataAccessProviderPluginDescriptor;
 
+import java.util.Optional;
+
 @SuppressWarnings("unused")
-public class RestDataAccessPluginDescriptor implements DataAccessProviderPluginDescriptor<Configuration>
+public class RestDataAccessPluginDescriptor implements DataAccessProviderPluginDescriptor<RestDataAccessProviderConfiguration>
 {
     @Override
     public String getPluginImplementationType()
@@ -35,7 +38,7 @@ public class RestDataAccessPluginDescriptor implements DataAccessProviderPluginD
     }
 
     @Override
-    public Class<? extends Configuration> getConfigurationType()
+    public Class<? extends RestDataAccessProviderConfiguration> getConfigurationType()
     {
         return RestDataAccessProviderConfiguration.class;
     }
@@ -52,4 +55,11 @@ public class RestDataAccessPluginDescriptor implements DataAccessProviderPluginD
         return RestAttributeDataAccessProvider.class;
     }
 
+    @Override
+    public Optional<? extends ManagedObject<RestDataAccessProviderConfiguration>> createManagedObject(
+            RestDataAccessProviderConfiguration configuration)
+    {
+        return Optional.of(new RestDataAccessManagedObject(configuration));
+    }
+
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest
+
+import io.curity.identityserver.plugin.data.access.rest.AllocationProfiles.Profile
+import se.curity.identityserver.sdk.attribute.Attributes
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+
+/**
+ * Checks that the bytes allocated per provider call stay within the budgets in {@code allocation-budgets.properties}.
+ *
+ * <p>Run with {@code -Dallocation.budgets.update=true} to write the measured values, plus headroom, back to the
+ * budget file after a deliberate change.
+ *
+ * <p>What a call allocates depends on the JDK and the SDK, so the budget file records the Java version and SDK that
+ * it was measured with, and is only accepted when the tests run with the same ones.
+ */
+@Requires({ AllocationProfiles.supported })
+class AllocationBudgetSpecification extends Specification {
+
+    static final String BUDGET_RESOURCE = '/allocation-budgets.properties'
+    static final Path BUDGET_SOURCE = Paths.get('src', 'test', 'resources', 'allocation-budgets.properties')
+
+    static final int WARM_UP_ITERATIONS = 20_000
+    static final int MEASURED_ITERATIONS = 10_000
+
+    // Allowed growth over the measured value when budgets are rewritten
+    static final double HEADROOM = 1.25
+
+    static final boolean UPDATE = Boolean.getBoolean('allocation.budgets.update')
+
+    static final String MEASURED_JAVA = 'measuredOn.java'
+    static final String MEASURED_SDK = 'measuredOn.sdk'
+
+    @Shared
+    Properties budgets = loadBudgets()
+
+    @Shared
+    Map<String, Long> measuredBudgets = new TreeMap<>()
+
+    def 'The budgets were measured with the Java version and SDK that the tests run with'() {
+        expect: 'budgets from another environment are refused, rather than compared in the other features'
+        assert UPDATE || measuredHere(),
+                "The budgets were measured on Java ${budgets.getProperty(MEASURED_JAVA)} with SDK " +
+                        "${budgets.getProperty(MEASURED_SDK)}, but the tests run on " +
+                        "Java ${javaVersion()} with SDK ${sdkVersion()}. Run with " +
+                        "-Dallocation.budgets.update=true to measure them again."
+    }
+
+    @Unroll
+    'Allocations of #profile stay within budget'() {
+        when: 'the bytes allocated per call are measured for every stage'
+        Map<String, Long> measured = profile.measure(WARM_UP_ITERATIONS, MEASURED_ITERATIONS)
+        measured.each { stage, bytes -> measuredBudgets["${profile.name}.$stage".toString()] = bytes }
+
+        and: 'compared to the checked-in budget'
+        def overBudget = measured.findAll { stage, bytes -> bytes > budgetOf(profile, stage) }
+
+        then: 'no stage allocates more than its budget'
+        assert UPDATE || !measuredHere() || overBudget.isEmpty(), report(profile, measured)
+
+        where:
+        profile << AllocationProfiles.all()
+    }
+
+    def cleanupSpec() {
+        if (UPDATE && !measuredBudgets.isEmpty()) {
+            writeBudgets()
+        }
+    }
+
+    private long budgetOf(Profile profile, String stage) {
+        def budget = budgets.getProperty("${profile.name}.$stage".toString())
+
+        // a stage without a budget is over budget, so that new stages get one
+        budget == null ? -1 : Long.parseLong(budget)
+    }
+
+    private String report(Profile profile, Map<String, Long> measured) {
+        def lines = ["Allocations of ${profile.name}, in bytes per call:".toString()]
+
+        measured.each { stage, bytes ->
+            long budget = budgetOf(profile, stage)
+            String status = budget < 0 ? 'NO BUDGET' : (bytes > budget ? 'OVER BUDGET' : 'ok')
+
+            lines << String.format('  %-20s %8d  (budget %8s)  %s', stage, bytes, budget < 0 ? '-' : budget, status)
+        }
+
+        lines << "Run with -Dallocation.budgets.update=true to accept the measured values.".toString()
+        lines.join('\n')
+    }
+
+    private static Properties loadBudgets() {
+        def properties = new Properties()
+        def stream = AllocationBudgetSpecification.getResourceAsStream(BUDGET_RESOURCE)
+
+        if (stream != null) {
+            stream.withCloseable { properties.load(it) }
+        }
+
+        properties
+    }
+
+    private void writeBudgets() {
+        List<String> header = Files.exists(BUDGET_SOURCE) ?
+                Files.readAllLines(BUDGET_SOURCE).takeWhile { it.startsWith('#') } :
+                []
+
+        // keep the budgets of operations that were not measured in this run
+        Map<String, Long> updated = new TreeMap<>()
+        budgets.stringPropertyNames()
+                .findAll { !it.startsWith('measuredOn.') }
+                .each { updated[it] = Long.parseLong(budgets.getProperty(it)) }
+        measuredBudgets.each { key, bytes -> updated[key] = withHeadroom(bytes) }
+
+        List<String> environment = ["$MEASURED_JAVA=${javaVersion()}".toString(),
+                                    "$MEASURED_SDK=${sdkVersion()}".toString()]
+
+        Files.write(BUDGET_SOURCE, header + environment + updated.collect { key, bytes -> "$key=$bytes".toString() })
+
+        println "Wrote updated allocation budgets to ${BUDGET_SOURCE.toAbsolutePath()}"
+    }
+
+    private boolean measuredHere() {
+        budgets.getProperty(MEASURED_JAVA) == javaVersion() && budgets.getProperty(MEASURED_SDK) == sdkVersion()
+    }
+
+    private static String javaVersion() {
+        System.getProperty('java.specification.version')
+    }
+
+    /**
+     * @return the version of the SDK, or the name of the jar or directory that it was loaded from
+     */
+    private static String sdkVersion() {
+        def version = Attributes.package?.implementationVersion
+
+        if (version != null) {
+            return version
+        }
+
+        def location = Attributes.protectionDomain?.codeSource?.location
+
+        location == null ? 'unknown' : Paths.get(location.toURI()).fileName.toString()
+    }
+
+    private static long withHeadroom(long bytes) {
+        // round up to whole 64 byte blocks, so that small fluctuations do not change the file
+        long budget = (long) Math.ceil(bytes * HEADROOM)
+        ((budget + 63).intdiv(64) as long) * 64
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest
+
+import groovy.transform.CompileStatic
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration.ProvideSubject.Parameter.ProvideAs
+import io.curity.identityserver.plugin.data.access.rest.config.CredentialAccessConfiguration
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.transport.WebServiceClientTransport
+import se.curity.identityserver.sdk.attribute.Attributes
+import se.curity.identityserver.sdk.attribute.SubjectAttributes
+
+import java.lang.management.ManagementFactory
+import java.util.function.Supplier
+
+/**
+ * The provider operations whose allocations are budgeted, each split into the stages it goes through.
+ *
+ * <p>This class is statically compiled, so that the measuring loops do not allocate anything themselves.
+ */
+@CompileStatic
+final class AllocationProfiles {
+
+    private static final String SUBJECT = 'johndoe'
+    private static final String PASSWORD = 'Password1'
+    private static final String TOTAL = 'total'
+
+    private AllocationProfiles() {
+    }
+
+    static boolean isSupported() {
+        def threadMXBean = ManagementFactory.threadMXBean
+
+        threadMXBean instanceof com.sun.management.ThreadMXBean &&
+                (threadMXBean as com.sun.management.ThreadMXBean).threadAllocatedMemorySupported
+    }
+
+    static List<Profile> all() {
+        List<Profile> profiles = []
+
+        CredentialAccessConfiguration.SubmitAs.values().each { profiles << verify(it) }
+        profiles << set()
+        profiles << attributes(ProvideAs.QUERY_PARAMETER)
+        profiles << attributes(ProvideAs.HEADER_PARAMETER)
+
+        profiles
+    }
+
+    static Profile verify(CredentialAccessConfiguration.SubmitAs submitAs) {
+        def backend = new CannedBackend()
+        def provider = new RestCredentialDataAccessProvider(credentialConfiguration(backend, submitAs))
+        def subject = SubjectAttributes.of(SUBJECT, Attributes.empty())
+        def parameters = provider.createRequestParameterMap(SUBJECT, PASSWORD)
+        def transport = new WebServiceClientTransport(backend.client)
+
+        Map<String, Supplier<?>> stages = [:]
+        stages.requestPath = (Supplier<?>) (() -> provider.createRequestPath(SUBJECT, PASSWORD))
+        stages.parameters = (Supplier<?>) (() -> provider.createRequestParameterMap(SUBJECT, PASSWORD))
+        stages.request = (Supplier<?>) (() ->
+                transport.send(provider.createVerifyRequest('/users/johndoe', parameters)))
+        stages.response = (Supplier<?>) (() -> provider.getVerifyResult(backend.response, SUBJECT))
+        stages[TOTAL] = (Supplier<?>) (() -> provider.verify(subject, PASSWORD))
+
+        new Profile("verify.$submitAs".toString(), stages)
+    }
+
+    static Profile set() {
+        def backend = new CannedBackend(200, '{}', [:])
+        def provider = new RestCredentialDataAccessProvider(credentialConfiguration(backend,
+                CredentialAccessConfiguration.SubmitAs.POST_AS_JSON))
+        def subject = SubjectAttributes.of(SUBJECT, Attributes.empty())
+
+        Map<String, Supplier<?>> stages = [:]
+        stages.requestPath = (Supplier<?>) (() -> provider.createRequestPath(SUBJECT, PASSWORD))
+        stages.parameters = (Supplier<?>) (() -> provider.createRequestParameterMap(SUBJECT, PASSWORD))
+        stages[TOTAL] = (Supplier<?>) (() -> provider.set(subject, PASSWORD))
+
+        new Profile('set', stages)
+    }
+
+    static Profile attributes(ProvideAs provideAs) {
+        def backend = new CannedBackend()
+        def provider = new RestAttributeDataAccessProvider(attributesConfiguration(backend, provideAs))
+        def subject = SubjectAttributes.of(SUBJECT, Attributes.of('tenant', 'tenant-1'))
+
+        Map<String, Supplier<?>> stages = [:]
+        stages.requestPath = (Supplier<?>) (() -> provider.createRequestPath(SUBJECT))
+        stages.queryParameters = (Supplier<?>) (() -> provider.createQueryParameters(subject))
+        stages.headerParameters = (Supplier<?>) (() -> provider.createHeaderParameters(subject))
+        stages.response = (Supplier<?>) (() -> provider.getAttributesFrom(backend.response))
+        stages[TOTAL] = (Supplier<?>) (() -> provider.getAttributes(subject))
+
+        new Profile("attributes.$provideAs".toString(), stages)
+    }
+
+    private static RestDataAccessProviderConfiguration credentialConfiguration(
+            CannedBackend backend, CredentialAccessConfiguration.SubmitAs submitAs) {
+        ConfigurationStub.of(RestDataAccessProviderConfiguration, [
+                id                              : 'allocations',
+                webServiceClient                : backend.client,
+                json                            : backend.json,
+                getCredentialAccessConfiguration: [urlPath: '/users/:subject', submitAs: submitAs]
+        ] as Map<String, Object>)
+    }
+
+    private static RestDataAccessProviderConfiguration attributesConfiguration(CannedBackend backend,
+                                                                               ProvideAs provideAs) {
+        def tenantMapping = ConfigurationStub.of(AttributesConfiguration.ParameterMappingConfiguration, [
+                parameterName: 'tenant',
+                value        : [useValueOfAttribute: 'tenant']
+        ] as Map<String, Object>)
+
+        ConfigurationStub.of(RestDataAccessProviderConfiguration, [
+                id                        : 'allocations',
+                webServiceClient          : backend.client,
+                json                      : backend.json,
+                getAttributesConfiguration: [
+                        parameterMappings: [parameterMapping: [tenantMapping]],
+                        provideSubject   : [parameter: [
+                                urlPath          : '/users',
+                                usernameParameter: 'subject',
+                                provideAs        : provideAs
+                        ]]
+                ]
+        ] as Map<String, Object>)
+    }
+
+    /**
+     * An operation and the stages it is made up of. The {@code total} stage is the complete provider call.
+     */
+    static final class Profile {
+
+        private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+                (com.sun.management.ThreadMXBean) ManagementFactory.threadMXBean
+
+        // results are stored here, so that the JIT cannot remove the allocations of an unused result
+        private static volatile Object sink
+
+        final String name
+        final Map<String, Supplier<?>> stages
+
+        Profile(String name, Map<String, Supplier<?>> stages) {
+            this.name = name
+            this.stages = stages
+        }
+
+        /**
+         * @return the average number of bytes allocated per call, by stage
+         */
+        Map<String, Long> measure(int warmUpIterations, int iterations) {
+            Map<String, Long> result = new LinkedHashMap<>()
+
+            // warm up all stages first, so that later stages do not pay for the JIT compilation of earlier ones
+            for (int i = 0; i < warmUpIterations; i++) {
+                for (Supplier<?> stage : stages.values()) {
+                    sink = stage.get()
+                }
+            }
+
+            stages.each { String stage, Supplier<?> call -> result[stage] = bytesPerCall(call, iterations) }
+
+            result
+        }
+
+        @Override
+        String toString() {
+            name
+        }
+
+        private static long bytesPerCall(Supplier<?> call, int iterations) {
+            long threadId = Thread.currentThread().id
+            long before = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId)
+
+            for (int i = 0; i < iterations; i++) {
+                sink = call.get()
+            }
+
+            (THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - before).intdiv(iterations) as long
+        }
+    }
+}
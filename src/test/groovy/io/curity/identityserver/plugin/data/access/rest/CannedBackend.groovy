@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest
+
+import groovy.transform.CompileStatic
+import se.curity.identityserver.sdk.http.HttpHeaders
+import se.curity.identityserver.sdk.http.HttpRequest
+import se.curity.identityserver.sdk.http.HttpResponse
+import se.curity.identityserver.sdk.service.Json
+import se.curity.identityserver.sdk.service.WebServiceClient
+
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A {@link WebServiceClient} and {@link Json} service that answer every request with the same response. Used where the
+ * cost of the providers must be measured in isolation.
+ *
+ * <p>The responses are created up front, but calls are not free: they go through a dynamic {@link Proxy}, which
+ * allocates an {@code Object[]} for the arguments of every call that has any, and boxes primitive arguments. That is
+ * included in the measured allocations of the stages that call the backend.
+ */
+@CompileStatic
+final class CannedBackend implements InvocationHandler {
+
+    static final String USER_DOCUMENT = '{"subject":"johndoe","email":"johndoe@example.com","tenant":"tenant-1",' +
+            '"active":true,"groups":["users","employees","vpn"],"address":{"country":"SE"},"loginCount":42}'
+
+    static final Map<String, Object> PARSED_USER_DOCUMENT = Collections.unmodifiableMap([
+            subject   : 'johndoe',
+            email     : 'johndoe@example.com',
+            tenant    : 'tenant-1',
+            active    : true,
+            groups    : ['users', 'employees', 'vpn'],
+            address   : [country: 'SE'],
+            loginCount: 42
+    ] as Map<String, Object>)
+
+    final WebServiceClient client
+    final Json json
+
+    /**
+     * The number of requests that were sent.
+     */
+    final LongAdder requests = new LongAdder()
+
+    private final HttpRequest.Builder _builder
+    private final HttpRequest _request
+    private final HttpResponse _response
+    private final HttpHeaders _headers
+
+    private final Integer _statusCode
+    private final String _body
+    private final Map<String, Object> _parsedBody
+    private final List<String> _contentTypes = Collections.singletonList('application/json')
+    private final Optional<String> _firstContentType = Optional.of('application/json')
+    private final Map<String, List<String>> _headerMap = Collections.singletonMap('Content-Type', _contentTypes)
+
+    CannedBackend(int statusCode = 200, String body = USER_DOCUMENT, Map<String, Object> parsedBody = PARSED_USER_DOCUMENT) {
+        _statusCode = statusCode
+        _body = body
+        _parsedBody = parsedBody
+
+        client = proxy(WebServiceClient)
+        json = proxy(Json)
+        _builder = proxy(HttpRequest.Builder)
+        _request = proxy(HttpRequest)
+        _response = proxy(HttpResponse)
+        _headers = proxy(HttpHeaders)
+    }
+
+    HttpResponse getResponse() {
+        _response
+    }
+
+    @Override
+    Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.name) {
+            case 'withPath':
+            case 'withQueries':
+                return client
+            case 'request':
+                return _builder
+            case 'method':
+                return _request
+            case 'response':
+                requests.increment()
+                return _response
+            case 'statusCode':
+                return _statusCode
+            case 'headers':
+                return _headers
+            case 'allValues':
+                return _contentTypes
+            case 'firstValue':
+                return _firstContentType
+            case 'map':
+                return _headerMap
+            case 'fromJson':
+                return _parsedBody
+            case 'toJson':
+                return _body
+            case 'body':
+                return method.declaringClass == HttpResponse ? _body : proxy
+            case 'hashCode':
+                return System.identityHashCode(proxy)
+            case 'equals':
+                return proxy.is(args[0])
+            case 'toString':
+                return 'CannedBackend'
+            default:
+                // the remaining builder methods return the builder itself
+                return method.returnType.isInstance(proxy) ? proxy : null
+        }
+    }
+
+    private <T> T proxy(Class<T> type) {
+        (T) Proxy.newProxyInstance(type.classLoader, [type] as Class[], this)
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest
+
+import groovy.json.JsonOutput
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse
+import se.curity.identityserver.sdk.attribute.AttributeName
+import se.curity.identityserver.sdk.attribute.Attributes
+import se.curity.identityserver.sdk.service.WebServiceClient
+import spock.lang.Specification
+
+import java.math.RoundingMode
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class LazyJsonObjectSpecification extends Specification {
+
+    def json = StubBackedProviders.json()
+
+    def 'Lazily decoded documents equal eagerly decoded ones'() {
+        when:
+        def lazy = LazyJsonObject.parse(document, json)
+        def eager = json.fromJson(document)
+
+        then:
+        lazy == eager
+        lazy.keySet() as List == eager.keySet() as List
+        Attributes.fromMap(lazy, AttributeName.Format.JSON).asMap() ==
+                Attributes.fromMap(eager, AttributeName.Format.JSON).asMap()
+
+        where:
+        document << [
+                '{}',
+                ' {\n  "sub" : "johndoe" ,\t"age":42 }\n',
+                '{"name":"J\\u00f6rgen \\"JJ\\" Sm\\u00e5","path":"C:\\\\Users\\/john","tab":"a\\tb"}',
+                '{"numbers":[0,-1,1.5,-2.25e3,1E-2,12345678901234567890]}',
+                '{"flags":{"active":true,"locked":false,"deleted":null},"empty":{},"none":[]}',
+                '{"sub":"first","sub":"second","other":1}',
+                '{"k\\u00e9y":"value","\\u0041":"a"}',
+                '{"nested":[[[{"deep":[{"deeper":"yes"}]}]]]}'
+        ] + randomDocuments(200)
+    }
+
+    def 'Members are only decoded when they are read'() {
+        given:
+        def lazy = LazyJsonObject.parse('{"sub":"johndoe","groups":["admins"],"address":{"country":"SE"}}', json)
+
+        expect:
+        lazy.size() == 3
+        lazy.containsKey('groups')
+        lazy.decodedCount() == 0
+
+        when:
+        def groups = lazy.get('groups')
+
+        then:
+        groups == ['admins']
+        lazy.decodedCount() == 1
+
+        and: 'a member is decoded once'
+        lazy.get('groups').is(groups)
+        lazy.get('missing') == null
+    }
+
+    def 'Concurrent readers get the same decoded value'() {
+        given:
+        def lazy = LazyJsonObject.parse('{"groups":["admins","users"],"address":{"country":"SE"}}', json)
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def values = executor.invokeAll((1..64).collect {
+            { -> lazy.get(it % 2 == 0 ? 'groups' : 'address') } as Callable
+        })*.get()
+
+        then:
+        values.findAll { it instanceof List }.every { it.is(lazy.get('groups')) }
+        values.findAll { it instanceof Map }.every { it.is(lazy.get('address')) }
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def 'Documents that are not JSON objects are rejected when they are indexed'() {
+        when:
+        LazyJsonObject.parse(document, json)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        document << ['', 'not json', '[1,2]', '{"a":}', '{"a":1', '{"a" 1}', '{"a":tru}', '{"a":01}', '{"a":1}x',
+                     '{"a":"\\x"}', '{"a":"unterminated}', '{a:1}', '{"a":1,}', '{"a":[1,]}', '{"a":"\u0001"}',
+                     '{"a":' + '['.repeat(600) + ']'.repeat(600) + '}']
+    }
+
+    def 'The attribute provider returns the same attributes with lazy decoding'() {
+        given:
+        def provider = new RestAttributeDataAccessProvider(StubBackedProviders.configuration(
+                (WebServiceClient) null))
+        def body = JsonOutput.toJson([sub: 'johndoe', groups: ['admins'], address: [country: 'SE'], age: 42])
+        def response = Stub(TransportResponse) {
+            statusCode() >> 200
+            body() >> body
+            headerValues('Content-Type') >> ['application/json']
+        }
+        def failed = Stub(TransportResponse) {
+            statusCode() >> 503
+            body() >> ''
+            headerValues('Content-Type') >> []
+        }
+
+        expect:
+        provider.getLazyAttributesFrom(response) == provider.getAttributesFrom(response).asMap()
+        provider.getLazyAttributesFrom(failed) == null
+    }
+
+    private static List<String> randomDocuments(int count) {
+        def random = new Random(17)
+
+        (1..count).collect {
+            def document = (0..<random.nextInt(12)).collectEntries {
+                ["attribute-${random.nextInt(20)}".toString(), value(random, 0)]
+            }
+            random.nextBoolean() ? JsonOutput.toJson(document) : JsonOutput.prettyPrint(JsonOutput.toJson(document))
+        }
+    }
+
+    private static Object value(Random random, int depth) {
+        switch (random.nextInt(depth < 3 ? 9 : 7)) {
+            case 0: return null
+            case 1: return random.nextBoolean()
+            case 2: return random.nextInt()
+            case 3: return random.nextLong()
+            case 4: return new BigDecimal(random.nextGaussian() * 1000).setScale(random.nextInt(6), RoundingMode.HALF_UP)
+            case 5: return randomString(random)
+            case 6: return randomString(random) + '\\"\n\t/é€😀'
+            case 7: return (0..random.nextInt(5)).collect { value(random, depth + 1) }
+            default: return (0..random.nextInt(5)).collectEntries { ["key-$it".toString(), value(random, depth + 1)] }
+        }
+    }
+
+    private static String randomString(Random random) {
+        (0..<random.nextInt(16)).collect { ('a'..'z')[random.nextInt(26)] }.join()
+    }
+}
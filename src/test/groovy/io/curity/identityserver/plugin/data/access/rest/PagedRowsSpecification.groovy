@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest
+
+import groovy.json.JsonOutput
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration.MultipleRows
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.logging.DiagnosticLogger
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse
+import io.curity.identityserver.plugin.data.access.rest.transport.WebServiceClientTransport
+import se.curity.identityserver.sdk.http.HttpHeaders
+import se.curity.identityserver.sdk.http.HttpRequest
+import se.curity.identityserver.sdk.http.HttpResponse
+import se.curity.identityserver.sdk.service.WebServiceClient
+import spock.lang.Specification
+
+import java.util.concurrent.Executor
+
+class PagedRowsSpecification extends Specification {
+
+    def json = StubBackedProviders.json()
+    def firstRequest = TransportRequest.builder('GET', '/users')
+            .queryParameters([group: ['admins']])
+            .build()
+    List<TransportRequest> sent = []
+
+    def 'Rows of a response that is an array are returned, following the link header'() {
+        given:
+        def transport = backend { request ->
+            request.path() == '/users'
+                    ? response(200, [[sub: 'john'], [sub: 'jane']], ['<https://example.com/users?page=2>; rel="next"'])
+                    : response(200, [[sub: 'jim']])
+        }
+        def rows = pagedRows([pagination: [linkHeaderRelation: 'next'], prefetch: false], transport)
+
+        expect:
+        rows.collect { it.sub } == ['john', 'jane', 'jim']
+        rows.pages() == 2
+        sent*.path() == ['/users', '/users']
+        sent[1].queryParameters() == [page: ['2']]
+    }
+
+    def 'Next links are read from nested attributes and only their path and query are followed'() {
+        given:
+        def pages = [
+                '/users'     : [data: [[sub: 'john']], links: [next: 'https://other.example.com/users/next?p=2&q=%26']],
+                '/users/next': [data: [[sub: 'jane']], links: [next: '']]
+        ]
+        def transport = backend { request -> response(200, pages[request.path()]) }
+        def rows = pagedRows([rowsAttribute: 'data', pagination: [nextLinkAttribute: 'links.next']], transport)
+
+        expect:
+        rows.collect { it.sub } == ['john', 'jane']
+        sent*.path() == ['/users', '/users/next']
+        sent[1].queryParameters() == [p: ['2'], q: ['&']]
+    }
+
+    def 'Links are followed through a web service client with their query sent as query parameters'() {
+        given:
+        def requested = []
+        def current = [:]
+        def client = Stub(WebServiceClient)
+        def builder = Stub(HttpRequest.Builder)
+        def httpRequest = Stub(HttpRequest)
+        client.withPath(_) >> { String path ->
+            current = [path: path, queries: [:]]
+            client
+        }
+        client.withQueries(_) >> { Map queries ->
+            current.queries = queries
+            client
+        }
+        client.request() >> builder
+        builder.method(_) >> httpRequest
+        builder._ >> builder
+        httpRequest.response() >> {
+            requested << current
+            httpResponse(current.queries.page == null
+                    ? [items: [[sub: 'john']], next: 'https://example.com/users?page=2&filter=a%26b']
+                    : [items: [[sub: 'jane']]])
+        }
+        def rows = pagedRows([rowsAttribute: 'items', pagination: [nextLinkAttribute: 'next']],
+                new WebServiceClientTransport(client))
+
+        expect:
+        rows.collect { it.sub } == ['john', 'jane']
+        requested == [
+                [path: '/users', queries: [group: ['admins']]],
+                [path: '/users', queries: [page: ['2'], filter: ['a&b']]]
+        ]
+    }
+
+    def 'Cursors are sent with the query parameters of the first request'() {
+        given:
+        def transport = backend { request ->
+            def cursor = request.queryParameters().after?.first()
+
+            response(200, cursor == null ? [rows: [[sub: 'john']], meta: [cursor: 'c1']] : [rows: [[sub: 'jane']]])
+        }
+        def rows = pagedRows([rowsAttribute: 'rows',
+                              pagination   : [cursor: [cursorAttribute: 'meta.cursor', cursorParameter: 'after']]],
+                transport)
+
+        expect:
+        rows.collect { it.sub } == ['john', 'jane']
+        sent[1].path() == '/users'
+        sent[1].queryParameters() == [group: ['admins'], after: ['c1']]
+    }
+
+    def 'No more than the maximum number of pages are requested'() {
+        given:
+        def transport = backend { request ->
+            response(200, [items: [[sub: request.path()]], next: "/users/${sent.size() + 1}".toString()])
+        }
+        def rows = pagedRows([rowsAttribute: 'items', pagination: [nextLinkAttribute: 'next'], maximumPages: 3],
+                transport)
+
+        expect:
+        rows.collect { it.sub } == ['/users', '/users/2', '/users/3']
+        sent.size() == 3
+    }
+
+    def 'The next page is requested before the rows of the current page are consumed'() {
+        given:
+        List<Runnable> scheduled = []
+        def executor = { Runnable task -> scheduled << task } as Executor
+        def transport = backend { request ->
+            request.path() == '/users'
+                    ? response(200, [items: [[sub: 'john'], [sub: 'jane']], next: '/users/2'])
+                    : response(200, [items: [[sub: 'jim']]])
+        }
+        def rows = new PagedRows(multipleRows([rowsAttribute: 'items', pagination: [nextLinkAttribute: 'next']]),
+                firstRequest, transport, json, executor, DiagnosticLogger.unrestricted())
+
+        when:
+        def first = rows.next()
+
+        then:
+        first.sub == 'john'
+        scheduled.size() == 1
+        sent.size() == 1
+
+        when:
+        scheduled.each { it.run() }
+
+        then:
+        sent*.path() == ['/users', '/users/2']
+        rows.collect { it.sub } == ['jane', 'jim']
+    }
+
+    def 'Closing the rows cancels the prefetched page'() {
+        given:
+        def executor = { Runnable task -> } as Executor
+        def transport = backend { request -> response(200, [items: [[sub: 'john']], next: '/users/2']) }
+        def rows = new PagedRows(multipleRows([rowsAttribute: 'items', pagination: [nextLinkAttribute: 'next']]),
+                firstRequest, transport, json, executor, DiagnosticLogger.unrestricted())
+
+        when:
+        rows.next()
+        rows.close()
+
+        then:
+        !rows.hasNext()
+        sent.size() == 1
+    }
+
+    def 'There are no rows if the first page is unsuccessful or not JSON'() {
+        given:
+        def transport = backend { request -> first }
+        def rows = pagedRows([rowsAttribute: 'items', pagination: [nextLinkAttribute: 'next']], transport)
+
+        expect:
+        !rows.hasNext()
+
+        where:
+        first << [response(503, [:]), response(200, 'not json'), response(200, [items: 'not an array'])]
+    }
+
+    def 'A failing later page fails the lookup rather than returning some of the rows'() {
+        given:
+        def transport = backend { request ->
+            request.path() == '/users' ? response(200, [items: [[sub: 'john']], next: '/users/2']) : later
+        }
+        def rows = pagedRows([rowsAttribute: 'items', pagination: [nextLinkAttribute: 'next'], prefetch: prefetch],
+                transport)
+
+        when:
+        rows.collect()
+
+        then:
+        thrown(IllegalStateException)
+
+        where:
+        later                    | prefetch
+        response(500, [:])       | true
+        response(500, [:])       | false
+        response(200, 'invalid') | true
+    }
+
+    def 'Rows that are not objects are skipped'() {
+        given:
+        def transport = backend { request -> response(200, [[sub: 'john'], 'text', 42, null, [sub: 'jane']]) }
+
+        expect:
+        pagedRows([:], transport).collect { it.sub } == ['john', 'jane']
+    }
+
+    private PagedRows pagedRows(Map<String, ?> configuration, Transport transport) {
+        new PagedRows(multipleRows(configuration), firstRequest, transport, json, { Runnable task -> task.run() },
+                DiagnosticLogger.unrestricted())
+    }
+
+    private static MultipleRows multipleRows(Map<String, ?> configuration) {
+        ConfigurationStub.of(MultipleRows, configuration)
+    }
+
+    private Transport backend(Closure<TransportResponse> respond) {
+        return { TransportRequest request ->
+            synchronized (sent) {
+                sent << request
+            }
+            respond(request)
+        } as Transport
+    }
+
+    private HttpResponse httpResponse(Object body) {
+        def headers = Stub(HttpHeaders) {
+            allValues(_) >> []
+        }
+
+        Stub(HttpResponse) {
+            statusCode() >> 200
+            body(_) >> JsonOutput.toJson(body)
+            headers() >> headers
+        }
+    }
+
+    private static TransportResponse response(int statusCode, Object body, List<String> links = []) {
+        def text = body instanceof String ? body : JsonOutput.toJson(body)
+
+        [
+                statusCode  : { -> statusCode },
+                body        : { -> text },
+                headerValues: { String name -> name == 'Link' ? links : name == 'Content-Type' ? ['application/json'] : [] }
+        ] as TransportResponse
+    }
+}
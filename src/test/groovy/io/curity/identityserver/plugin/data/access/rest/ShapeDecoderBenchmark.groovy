@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest
+
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.lang.management.ManagementFactory
+import java.util.function.Function
+
+/**
+ * Compares the time and allocations of decoding attribute responses with the Json service and with a decoder that
+ * is specialized to their shape.
+ *
+ * <p>This is not part of the regular test run, as its numbers depend on the machine and on the Json service. Run it
+ * with {@code mvn test -Dtest=ShapeDecoderBenchmark}, optionally with {@code -Dbenchmark.iterations} to change the
+ * number of decoded documents.
+ */
+@Requires({ AllocationProfiles.supported })
+class ShapeDecoderBenchmark extends Specification {
+
+    static final int ITERATIONS = Integer.getInteger('benchmark.iterations', 200_000)
+
+    static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.threadMXBean
+
+    // results are stored here, so that the JIT cannot remove the decoding of an unused result
+    static volatile Object sink
+
+    @Shared
+    List<String> documents = {
+        def random = new Random(3)
+        (1..1_000).collect { ShapeDecoderSpecification.userDocument(random) }
+    }()
+
+    def 'decoding user documents'() {
+        given:
+        def json = StubBackedProviders.json()
+        def decoder = new ShapeDecoder(json)
+
+        when:
+        def generic = measure { String document -> json.fromJson(document) }
+        def specialized = measure { String document -> decoder.decode(document) }
+
+        then:
+        println()
+        println "Json service: ${generic.nanos} ns and ${generic.bytes} bytes per document"
+        println "Specialized:  ${specialized.nanos} ns and ${specialized.bytes} bytes per document"
+        println "Learned members: ${decoder.learnedMembers()}"
+
+        specialized.nanos > 0
+    }
+
+    private Map<String, Long> measure(Function<String, Object> decode) {
+        // warm up, so that the JIT has compiled the decoding before it is measured
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink = decode.apply(documents[i % documents.size()])
+        }
+
+        long threadId = Thread.currentThread().id
+        long bytesBefore = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId)
+        long start = System.nanoTime()
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink = decode.apply(documents[i % documents.size()])
+        }
+
+        long nanos = System.nanoTime() - start
+        long bytes = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - bytesBefore
+
+        [nanos: nanos.intdiv(ITERATIONS) as long, bytes: bytes.intdiv(ITERATIONS) as long]
+    }
+}
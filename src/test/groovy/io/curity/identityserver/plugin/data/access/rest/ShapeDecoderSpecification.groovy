@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest
+
+import groovy.json.JsonOutput
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse
+import se.curity.identityserver.sdk.service.Json
+import se.curity.identityserver.sdk.service.WebServiceClient
+import spock.lang.Specification
+
+import java.math.RoundingMode
+
+class ShapeDecoderSpecification extends Specification {
+
+    def json = StubBackedProviders.json()
+    def metrics = new Metrics('test')
+
+    def cleanup() {
+        metrics.close()
+    }
+
+    def 'Documents of a learned shape are decoded like the Json service decodes them'() {
+        given:
+        def decoder = new ShapeDecoder(json, metrics)
+        def random = new Random(23)
+        def documents = (1..300).collect { userDocument(random) }
+
+        when:
+        def mismatches = documents.findAll { !decodesLikeJson(decoder, it) }
+
+        then:
+        mismatches.isEmpty()
+        decoder.decodesNumbers()
+
+        and: 'once the optional members and the kinds of their values have been seen, the shape is used'
+        metrics.snapshot()['specializedDecoding.specialized'] > 250
+        metrics.snapshot()['specializedDecoding.fallbacks'] < 30
+    }
+
+    def 'Documents of varying shapes are decoded like the Json service decodes them'() {
+        given:
+        def decoder = new ShapeDecoder(json, metrics)
+
+        expect:
+        randomDocuments(300).every { decodesLikeJson(decoder, it) }
+        decoder.learnedMembers() <= ShapeDecoder.MAXIMUM_MEMBERS
+    }
+
+    def 'A document with a member that is not in the shape is decoded by the Json service, and extends the shape'() {
+        given:
+        def decoder = new ShapeDecoder(json, metrics)
+        decoder.decode('{"sub":"johndoe","groups":["admins"]}')
+
+        when:
+        def decoded = decoder.decode('{"sub":"janedoe","groups":["users"],"email":"jane@example.com"}')
+
+        then:
+        decoded == [sub: 'janedoe', groups: ['users'], email: 'jane@example.com']
+        metrics.snapshot()['specializedDecoding.fallbacks'] == 1
+        decoder.learnedMembers() == 3
+
+        when:
+        decoder.decode('{"email":"jim@example.com","sub":"jim"}')
+
+        then:
+        metrics.snapshot()['specializedDecoding.specialized'] == 1
+    }
+
+    def 'Values of another kind than the learned one are decoded by the Json service'() {
+        given:
+        def decoder = new ShapeDecoder(json, metrics)
+        decoder.decode('{"id":"abc","tags":["a"],"address":{"country":"SE"}}')
+
+        expect:
+        decoder.decode(document) == json.fromJson(document)
+        metrics.snapshot()['specializedDecoding.fallbacks'] == 1
+
+        where:
+        document << ['{"id":42,"tags":["a"],"address":{"country":"SE"}}',
+                     '{"id":"abc","tags":[1],"address":{"country":"SE"}}',
+                     '{"id":"abc","tags":"a","address":{"country":"SE"}}',
+                     '{"id":"abc","tags":["a"],"address":{"country":"SE","city":"Stockholm"}}']
+    }
+
+    def 'The names of the members are shared by the decoded documents'() {
+        given:
+        def decoder = new ShapeDecoder(json)
+        decoder.decode('{"subject":"johndoe","address":{"country":"SE"}}')
+
+        when:
+        def first = decoder.decode('{"subject":"janedoe","address":{"country":"NO"}}')
+        def second = decoder.decode('{"subject":"jim","address":{"country":"DK"}}')
+
+        then:
+        first.keySet()[0].is(second.keySet()[0])
+        first.address.keySet()[0].is(second.address.keySet()[0])
+    }
+
+    def 'Numbers are built like those of a Json service that decodes all of them as doubles'() {
+        given:
+        def doubles = [fromJson: { String body -> asDoubles(json.fromJson(body)) }] as Json
+        def decoder = new ShapeDecoder(doubles)
+        def document = '{"count":42,"ratio":0.5,"big":12345678901234567890,"values":[1,-2.5e3]}'
+        decoder.decode(document)
+
+        expect:
+        decoder.decodesNumbers()
+        decoder.decode(document) == doubles.fromJson(document)
+        decoder.decode(document).count.getClass() == Double
+    }
+
+    def 'Numbers are decoded by the Json service when they cannot be built like it does'() {
+        given: 'a Json service that decodes numbers to a type of its own'
+        def wrapping = [fromJson: { String body -> wrapNumbers(json.fromJson(body)) }] as Json
+        def decoder = new ShapeDecoder(wrapping)
+        def document = '{"count":42,"name":"johndoe"}'
+        decoder.decode(document)
+
+        expect:
+        !decoder.decodesNumbers()
+        decoder.decode(document) == wrapping.fromJson(document)
+    }
+
+    def 'Documents that do not match the shape are handed to the Json service, also when they are invalid'() {
+        given:
+        def decoder = new ShapeDecoder(json)
+        decoder.decode('{"a":1,"b":"text"}')
+
+        expect:
+        outcome { decoder.decode(document) } == outcome { json.fromJson(document) }
+
+        where:
+        document << ['', 'not json', '[1,2]', '{"a":}', '{"a":1', '{"a" 1}', '{"a":tru}', '{"a":1}x', '{"a":1,}',
+                     '{"a":"\\x"}', '{"b":"unterminated}', '{"a":1,"b":"\u0001"}']
+    }
+
+    def 'The attribute provider returns the same attributes with specialized decoding'() {
+        given:
+        def generic = new RestAttributeDataAccessProvider(StubBackedProviders.configuration((WebServiceClient) null))
+        def specialized = new RestAttributeDataAccessProvider(StubBackedProviders.configuration(
+                (WebServiceClient) null, [getAttributesConfiguration: [
+                provideSubject     : [urlPath: '/users/:subject'],
+                specializedDecoding: true
+        ]]))
+        def random = new Random(5)
+
+        expect:
+        (1..20).collect { response(userDocument(random)) }.every {
+            specialized.getAttributesFrom(it).asMap() == generic.getAttributesFrom(it).asMap()
+        }
+    }
+
+    private boolean decodesLikeJson(ShapeDecoder decoder, String document) {
+        def decoded = decoder.decode(document)
+        def expected = json.fromJson(document)
+
+        decoded == expected && decoded.keySet() as List == expected.keySet() as List && types(decoded) == types(expected)
+    }
+
+    private static Object types(Object value) {
+        if (value instanceof Map) {
+            value.collectEntries { name, memberValue -> [name, types(memberValue)] }
+        } else if (value instanceof List) {
+            value.collect { types(it) }
+        } else {
+            value?.getClass()
+        }
+    }
+
+    private TransportResponse response(String body) {
+        Stub(TransportResponse) {
+            statusCode() >> 200
+            body() >> body
+            headerValues('Content-Type') >> ['application/json']
+        }
+    }
+
+    /**
+     * @return the decoded document, or the type of the exception that decoding it threw
+     */
+    private static Object outcome(Closure<?> decoding) {
+        try {
+            decoding()
+        } catch (Exception e) {
+            e.getClass()
+        }
+    }
+
+    /**
+     * A user document of a fixed schema, with optional members and random values.
+     */
+    static String userDocument(Random random) {
+        def document = [
+                sub       : randomString(random),
+                email     : "${randomString(random)}@example.com".toString(),
+                active    : random.nextBoolean(),
+                loginCount: random.nextInt(1000),
+                lastLogin : random.nextLong(),
+                score     : new BigDecimal(random.nextGaussian() * 100).setScale(2, RoundingMode.HALF_UP),
+                groups    : (0..<random.nextInt(4)).collect { randomString(random) },
+                address   : [street: randomString(random) + ' 1', country: ['SE', 'NO', 'DK'][random.nextInt(3)]]
+        ]
+
+        if (random.nextInt(4) == 0) {
+            document.phone = random.nextBoolean() ? null : '+46 70 ' + random.nextInt(1_000_000)
+        }
+
+        if (random.nextInt(10) == 0) {
+            document.displayName = randomString(random) + ' \\"\u00e9\u20ac'
+        }
+
+        JsonOutput.toJson(document)
+    }
+
+    private static List<String> randomDocuments(int count) {
+        def random = new Random(17)
+
+        (1..count).collect {
+            def document = (0..<random.nextInt(12)).collectEntries {
+                ["attribute-${random.nextInt(20)}".toString(), value(random, 0)]
+            }
+            random.nextBoolean() ? JsonOutput.toJson(document) : JsonOutput.prettyPrint(JsonOutput.toJson(document))
+        }
+    }
+
+    private static Object value(Random random, int depth) {
+        switch (random.nextInt(depth < 3 ? 9 : 7)) {
+            case 0: return null
+            case 1: return random.nextBoolean()
+            case 2: return random.nextInt()
+            case 3: return random.nextLong()
+            case 4: return new BigDecimal(random.nextGaussian() * 1000).setScale(random.nextInt(6), RoundingMode.HALF_UP)
+            case 5: return randomString(random)
+            case 6: return randomString(random) + '\\"\n\t/é€😀'
+            case 7: return (0..random.nextInt(5)).collect { value(random, depth + 1) }
+            default: return (0..random.nextInt(5)).collectEntries { ["key-$it".toString(), value(random, depth + 1)] }
+        }
+    }
+
+    private static String randomString(Random random) {
+        (1..1 + random.nextInt(12)).collect { ('a'..'z')[random.nextInt(26)] }.join()
+    }
+
+    private static Object asDoubles(Object value) {
+        if (value instanceof Map) {
+            value.collectEntries { name, memberValue -> [name, asDoubles(memberValue)] }
+        } else if (value instanceof List) {
+            value.collect { asDoubles(it) }
+        } else {
+            value instanceof Number ? (value as Number).doubleValue() : value
+        }
+    }
+
+    private static Object wrapNumbers(Object value) {
+        if (value instanceof Map) {
+            value.collectEntries { name, memberValue -> [name, wrapNumbers(memberValue)] }
+        } else if (value instanceof List) {
+            value.collect { wrapNumbers(it) }
+        } else {
+            value instanceof Number ? new WrappedNumber(value as Number) : value
+        }
+    }
+
+    static final class WrappedNumber extends Number {
+        final Number value
+
+        WrappedNumber(Number value) {
+            this.value = value
+        }
+
+        int intValue() { value.intValue() }
+
+        long longValue() { value.longValue() }
+
+        float floatValue() { value.floatValue() }
+
+        double doubleValue() { value.doubleValue() }
+
+        boolean equals(Object other) { other instanceof WrappedNumber && other.value == value }
+
+        int hashCode() { value.hashCode() }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+package io.curity.identityserver.plugin.data.access.rest
+
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import se.curity.identityserver.sdk.attribute.Attributes
+import se.curity.identityserver.sdk.service.WebServiceClient
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class SharedBackendRegistrySpecification extends Specification {
+
+    // the server gives every instance the same JSON service
+    def json = StubBackedProviders.json()
+    def managedObjects = []
+
+    def cleanup() {
+        managedObjects.each { it.close() }
+    }
+
+    def 'Instances of the same backend with the same settings share their state'() {
+        when:
+        def first = managedObject('tenant-1', 'users')
+        def second = managedObject('tenant-2', 'users')
+
+        then:
+        first.transport.is(second.transport)
+        first.metrics.is(second.metrics)
+        first.attributeCache.get().is(second.attributeCache.get())
+        first.failureTracker.get().is(second.failureTracker.get())
+        RestDataAccessManagedObject.SHARED_BACKENDS.references('users', 'attributes') == 2
+    }
+
+    def 'Instances with different attribute settings keep separate caches, but share the backend'() {
+        when:
+        def first = managedObject('tenant-1', 'users', [tenantMapping('tenant-1')])
+        def second = managedObject('tenant-2', 'users', [tenantMapping('tenant-2')])
+
+        then:
+        !first.attributeCache.get().is(second.attributeCache.get())
+        first.failureTracker.get().is(second.failureTracker.get())
+        first.transport.is(second.transport)
+        first.metrics.is(second.metrics)
+    }
+
+    def 'Gauges of differently configured parts add up, and are removed when their part is released'() {
+        given:
+        def first = managedObject('tenant-1', 'users', [tenantMapping('tenant-1')])
+        def second = managedObject('tenant-2', 'users', [tenantMapping('tenant-2')])
+        first.attributeCache.get().put('johndoe', Attributes.of('email', 'johndoe@example.com'))
+        second.attributeCache.get().put('janedoe', Attributes.of('email', 'janedoe@example.com'))
+        second.attributeCache.get().put('jim', Attributes.of('email', 'jim@example.com'))
+
+        expect:
+        first.metrics.snapshot()['attributeCache.size'] == 3
+
+        when:
+        first.close()
+
+        then:
+        second.metrics.snapshot()['attributeCache.size'] == 2
+    }
+
+    def 'Instances that are given different services do not share the state that uses them'() {
+        given:
+        def usersClient = Stub(WebServiceClient)
+        def otherClient = Stub(WebServiceClient)
+
+        when:
+        def first = managedObject('tenant-1', 'users', [], usersClient)
+        def second = managedObject('tenant-2', 'users', [], usersClient)
+        def third = managedObject('tenant-3', 'users', [], otherClient)
+
+        then:
+        first.transport.is(second.transport)
+        !first.transport.is(third.transport)
+        !first.attributeCache.get().is(third.attributeCache.get())
+        first.metrics.is(third.metrics)
+    }
+
+    def 'Instances of different backends, or without a shared backend, do not share anything'() {
+        when:
+        def first = managedObject('tenant-1', 'users')
+        def second = managedObject('tenant-2', 'customers')
+        def unshared = managedObject('tenant-3', null)
+
+        then:
+        [[first, second], [first, unshared], [second, unshared]].every { a, b ->
+            !a.transport.is(b.transport) && !a.metrics.is(b.metrics) &&
+                    !a.attributeCache.get().is(b.attributeCache.get())
+        }
+    }
+
+    def 'Shared state is released when the last instance that holds it is closed'() {
+        given:
+        def first = managedObject('tenant-1', 'users')
+        def second = managedObject('tenant-2', 'users')
+        def cache = first.attributeCache.get()
+        cache.put('johndoe', Attributes.of('email', 'johndoe@example.com'))
+
+        when:
+        first.close()
+        first.close()
+
+        then:
+        RestDataAccessManagedObject.SHARED_BACKENDS.references('users', 'attributes') == 1
+        RestDataAccessManagedObject.SHARED_BACKENDS.references('users', 'backend') == 1
+        second.attributeCache.get().isCached('johndoe')
+
+        when:
+        second.close()
+
+        then:
+        ['metrics', 'backend', 'credentials', 'attributes'].every {
+            RestDataAccessManagedObject.SHARED_BACKENDS.references('users', it) == 0
+        }
+
+        and: 'the next instance of the backend gets new state'
+        !managedObject('tenant-3', 'users').attributeCache.get().is(cache)
+    }
+
+    def 'A part is created once, and released once when every lease is closed'() {
+        given:
+        def registry = new SharedBackendRegistry()
+        def created = 0
+        def released = []
+
+        when:
+        def leases = (1..3).collect {
+            registry.acquire('users', 'part', [Optional.of('setting')], { ++created }, { released << it })
+        }
+
+        then:
+        created == 1
+        leases*.get() == [1, 1, 1]
+
+        when:
+        leases[0].close()
+        leases[0].close()
+        leases[1].close()
+
+        then:
+        released.isEmpty()
+        registry.references('users', 'part') == 1
+
+        when:
+        leases[2].close()
+
+        then:
+        released == [1]
+        registry.references('users', 'part') == 0
+    }
+
+    def 'Creating a part only holds up the instances that acquire the same part'() {
+        given:
+        def registry = new SharedBackendRegistry()
+        def creating = new CountDownLatch(1)
+        def proceed = new CountDownLatch(1)
+        def created = new AtomicInteger()
+        def slowPart = {
+            creating.countDown()
+            proceed.await()
+            created.incrementAndGet()
+        }
+        def executor = Executors.newFixedThreadPool(2)
+
+        when:
+        def first = executor.submit({ registry.acquire('users', 'part', [], slowPart, {}).get() } as Callable)
+        creating.await()
+        def second = executor.submit({ registry.acquire('users', 'part', [], slowPart, {}).get() } as Callable)
+        def other = registry.acquire('customers', 'part', [], { 'other' }, {})
+
+        then: 'other backends are not held up'
+        other.get() == 'other'
+        !first.done
+        !second.done
+
+        when:
+        proceed.countDown()
+
+        then: 'the instances that waited get the part that was created'
+        first.get(5, TimeUnit.SECONDS) == 1
+        second.get(5, TimeUnit.SECONDS) == 1
+        created.get() == 1
+        registry.references('users', 'part') == 2
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def 'A part is created again only once the previous one with the same key has been released'() {
+        given:
+        def registry = new SharedBackendRegistry()
+        def releasing = new CountDownLatch(1)
+        def proceed = new CountDownLatch(1)
+        def events = Collections.synchronizedList([])
+        def lease = registry.acquire('users', 'part', [], { 'first' }, {
+            releasing.countDown()
+            proceed.await()
+            events << "released $it".toString()
+        })
+        def executor = Executors.newSingleThreadExecutor()
+
+        when:
+        def closing = executor.submit({ lease.close() } as Runnable)
+        releasing.await()
+        def acquiring = Thread.start {
+            registry.acquire('users', 'part', [], { events << 'created second'; 'second' }, {})
+        }
+        Thread.sleep(100)
+        proceed.countDown()
+        closing.get(5, TimeUnit.SECONDS)
+        acquiring.join(5_000)
+
+        then:
+        events == ['released first', 'created second']
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def 'A part that could not be created is not held'() {
+        given:
+        def registry = new SharedBackendRegistry()
+
+        when:
+        registry.acquire('users', 'part', [], { throw new IllegalStateException('port in use') }, {})
+
+        then:
+        thrown(IllegalStateException)
+        registry.references('users', 'part') == 0
+
+        when:
+        def lease = registry.acquire('users', 'part', [], { 'created' }, {})
+
+        then:
+        lease.get() == 'created'
+    }
+
+    def 'Settings with the same values have the same fingerprint, also when their services differ'() {
+        expect:
+        ConfigurationFingerprint.of([attributes(first)]) == ConfigurationFingerprint.of([attributes(second)])
+
+        where:
+        first                              | second
+        [:]                                | [:]
+        [attributeCache: [timeToLive: 60]] | [attributeCache: [timeToLive: 60]]
+        mappings('tenant-1')               | mappings('tenant-1')
+    }
+
+    def 'Services are the same settings only if they are the same objects'() {
+        given:
+        def json = StubBackedProviders.json()
+        def otherJson = StubBackedProviders.json()
+
+        expect:
+        ConfigurationFingerprint.of([Optional.of(json)]) == ConfigurationFingerprint.of([Optional.of(json)])
+        ConfigurationFingerprint.of([Optional.of(json)]) != ConfigurationFingerprint.of([Optional.of(otherJson)])
+    }
+
+    def 'Settings with different values have different fingerprints'() {
+        expect:
+        ConfigurationFingerprint.of([attributes(first)]) != ConfigurationFingerprint.of([attributes(second)])
+
+        where:
+        first                              | second
+        [:]                                | [attributeCache: [:]]
+        [attributeCache: [timeToLive: 60]] | [attributeCache: [timeToLive: 61]]
+        [specializedDecoding: true]        | [specializedDecoding: false]
+        mappings('tenant-1')               | mappings('tenant-2')
+    }
+
+    private RestDataAccessManagedObject managedObject(String id, String sharedBackend, List<?> parameterMappings = [],
+                                                      WebServiceClient webServiceClient = null) {
+        def configuration = StubBackedProviders.configuration(webServiceClient, [
+                id                              : id,
+                json                            : json,
+                sharedBackend                   : sharedBackend,
+                getCredentialAccessConfiguration: [urlPath: '/users/:subject/verify', failureTracking: [:]],
+                getAttributesConfiguration      : [
+                        provideSubject   : [urlPath: '/users/:subject'],
+                        attributeCache   : [timeToLive: 60],
+                        parameterMappings: [parameterMapping: parameterMappings]
+                ]
+        ])
+        def managedObject = new RestDataAccessManagedObject(configuration)
+        managedObjects << managedObject
+
+        managedObject
+    }
+
+    private static AttributesConfiguration attributes(Map<String, ?> settings) {
+        ConfigurationStub.of(AttributesConfiguration, [provideSubject: [urlPath: '/users/:subject']] + settings)
+    }
+
+    private static Map<String, ?> mappings(String tenant) {
+        [parameterMappings: [parameterMapping: [tenantMapping(tenant)]]]
+    }
+
+    private static AttributesConfiguration.ParameterMappingConfiguration tenantMapping(String tenant) {
+        ConfigurationStub.of(AttributesConfiguration.ParameterMappingConfiguration, [
+                parameterName: 'tenant',
+                value        : [staticValue: tenant]
+        ])
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.balancing
+
+import io.curity.identityserver.plugin.data.access.rest.RestAttributeDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.cache.AttributeCacheSpecification.ManualTicker
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration.LoadBalancing
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration.LoadBalancing.Strategy
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.loadtest.HttpClientWebServiceClient
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubUserStore
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class LoadBalancerSpecification extends Specification {
+
+    def ticker = new ManualTicker()
+    def metrics = new Metrics('test')
+    def request = TransportRequest.builder('GET', '/users/johndoe').build()
+
+    def ok = Stub(TransportResponse) { statusCode() >> 200 }
+    def unavailable = Stub(TransportResponse) { statusCode() >> 503 }
+
+    List<StubUserStore> stores = []
+
+    def cleanup() {
+        metrics.close()
+        stores*.close()
+    }
+
+    def 'A failing transport is ejected, and admitted again after a successful probe'() {
+        given: 'a load balancer over a healthy and a failing transport'
+        List<String> sentTo = []
+        def failingAnswers = unavailable
+        def healthy = { TransportRequest request -> sentTo << 'healthy'; ok } as Transport
+        def failing = { TransportRequest request -> sentTo << 'failing'; failingAnswers } as Transport
+        def loadBalancer = loadBalancer([healthy, failing], minimumRequests: 4, errorRateThreshold: 50, ejectionTime: 30)
+
+        when: 'requests are sent until the failing one has answered enough of them'
+        40.times { loadBalancer.send(request) }
+
+        then: 'it is ejected'
+        !loadBalancer.isAdmitted(1)
+        loadBalancer.isAdmitted(0)
+        metrics.snapshot()['loadBalancing.endpoint1.ejections'] == 1
+
+        when: 'more requests are sent during the ejection time'
+        sentTo.clear()
+        20.times { loadBalancer.send(request) }
+
+        then: 'they all go to the healthy one'
+        sentTo.unique() == ['healthy']
+
+        when: 'the ejection time has passed, and the failing transport is still failing'
+        ticker.advance(30, TimeUnit.SECONDS)
+        sentTo.clear()
+        loadBalancer.send(request)
+
+        then: 'the probe went to it, and it is ejected again'
+        sentTo == ['failing']
+        !loadBalancer.isAdmitted(1)
+
+        when: 'it recovers and is probed after the next ejection time'
+        failingAnswers = ok
+        ticker.advance(30, TimeUnit.SECONDS)
+        loadBalancer.send(request)
+
+        then: 'it is admitted again'
+        loadBalancer.isAdmitted(1)
+    }
+
+    def 'A transport that cannot send requests is ejected'() {
+        given:
+        def healthy = { TransportRequest request -> ok } as Transport
+        def broken = { TransportRequest request -> throw new UncheckedIOException(new IOException('refused')) } as Transport
+        def loadBalancer = loadBalancer([healthy, broken], minimumRequests: 2)
+
+        when:
+        20.times {
+            try {
+                loadBalancer.send(request)
+            } catch (UncheckedIOException ignored) {
+            }
+        }
+
+        then:
+        !loadBalancer.isAdmitted(1)
+        metrics.snapshot()['loadBalancing.endpoint1.failures'] >= 2
+    }
+
+    def 'A GET request whose transport cannot send it is retried once on another transport'() {
+        given:
+        def healthy = { TransportRequest request -> ok } as Transport
+        def broken = { TransportRequest request -> throw new UncheckedIOException(new IOException('refused')) } as Transport
+        def loadBalancer = loadBalancer([broken, healthy], strategy: Strategy.LEAST_OUTSTANDING_REQUESTS)
+
+        when:
+        def responses = (1..20).collect { loadBalancer.send(request) }
+
+        then: 'every request was answered, including those first sent to the broken transport'
+        responses*.statusCode().every { it == 200 }
+        metrics.snapshot()['loadBalancing.retries'] > 0
+        metrics.snapshot()['loadBalancing.retries'] == metrics.snapshot()['loadBalancing.endpoint0.failures']
+    }
+
+    def 'A POST request whose transport cannot send it is not retried'() {
+        given:
+        def healthy = { TransportRequest request -> ok } as Transport
+        def broken = { TransportRequest request -> throw new UncheckedIOException(new IOException('refused')) } as Transport
+        def loadBalancer = loadBalancer([broken, healthy], strategy: Strategy.LEAST_OUTSTANDING_REQUESTS)
+        def post = TransportRequest.builder('POST', '/users/johndoe/verify').build()
+        def thrown = 0
+
+        when:
+        20.times {
+            try {
+                loadBalancer.send(post)
+            } catch (UncheckedIOException ignored) {
+                thrown++
+            }
+        }
+
+        then: 'every request sent to the broken transport failed'
+        thrown > 0
+        thrown == metrics.snapshot()['loadBalancing.endpoint0.failures']
+        metrics.snapshot()['loadBalancing.retries'] == 0
+    }
+
+    def 'The last admitted transport is never ejected'() {
+        given:
+        def failing = { TransportRequest request -> unavailable } as Transport
+        def loadBalancer = loadBalancer([failing, failing], minimumRequests: 2)
+
+        when: 'all requests fail'
+        20.times { loadBalancer.send(request) }
+
+        then: 'one of the transports is still admitted'
+        loadBalancer.isAdmitted(0) || loadBalancer.isAdmitted(1)
+    }
+
+    def 'A slow transport is ejected when a latency threshold is set'() {
+        given:
+        def fast = { TransportRequest request -> ticker.advance(5, TimeUnit.MILLISECONDS); ok } as Transport
+        def slow = { TransportRequest request -> ticker.advance(500, TimeUnit.MILLISECONDS); ok } as Transport
+        def loadBalancer = loadBalancer([fast, slow], minimumRequests: 2, latencyThreshold: 100)
+
+        when:
+        20.times { loadBalancer.send(request) }
+
+        then:
+        !loadBalancer.isAdmitted(1)
+        loadBalancer.isAdmitted(0)
+    }
+
+    def 'Closing the load balancer closes its transports'() {
+        given:
+        def first = Mock(Transport)
+        def second = Mock(Transport)
+
+        when:
+        loadBalancer([:], [first, second]).close()
+
+        then:
+        1 * first.close()
+        1 * second.close()
+    }
+
+    @Unroll
+    def 'With #strategy over #transport, the fastest of several stub backends gets the most requests and a broken one few'() {
+        given: 'stub backends of different speeds, and one that fails every request'
+        def fast = startStore(2)
+        def medium = startStore(10)
+        def slow = startStore(40)
+        def broken = startStore(2)
+        broken.errorRate = 1
+
+        and: 'an attribute provider that balances over them'
+        def additional = [medium, slow, broken]
+        def settings = [loadBalancing: [
+                additionalWebServiceClient: additional.collect { HttpClientWebServiceClient.create(it.baseUri) },
+                strategy                  : strategy,
+                minimumRequests           : 5
+        ]]
+
+        if (transport == 'http-client-transport') {
+            settings.httpClientTransport = [
+                    baseUrl          : fast.baseUri.toString(),
+                    additionalBaseUrl: additional.collect { it.baseUri.toString() }
+            ]
+        }
+
+        def configuration = StubBackedProviders.configuration(fast, settings)
+        def managedObject = new RestDataAccessManagedObject(configuration)
+        def provider = new RestAttributeDataAccessProvider(configuration, managedObject)
+
+        when: 'eight threads look up attributes concurrently'
+        def executor = Executors.newFixedThreadPool(8)
+        def lookups = (1..8).collect {
+            executor.submit { 40.times { provider.getAttributes("user-$it".toString()) } }
+        }
+        lookups*.get()
+        executor.shutdown()
+
+        then: 'the fastest backend answered more requests than the slowest'
+        def calls = [fast, medium, slow, broken].collect { it.totalBackendCalls() }
+        calls[0] > calls[2]
+
+        and: 'the broken backend was ejected after a few requests'
+        calls[3] < 40
+        managedObject.metrics.snapshot()['loadBalancing.endpoint3.ejections'] >= 1
+
+        cleanup:
+        managedObject?.close()
+
+        where:
+        [strategy, transport] << [Strategy.values(), ['web-service-client', 'http-client-transport']].combinations()
+    }
+
+    private LoadBalancer loadBalancer(Map settings, List<Transport> transports) {
+        new LoadBalancer(transports, ConfigurationStub.of(LoadBalancing, settings), metrics, ticker)
+    }
+
+    private StubUserStore startStore(double latencyMillis) {
+        def store = StubUserStore.start()
+        store.latency = StubUserStore.LatencyDistribution.fixed(latencyMillis)
+        stores << store
+        store
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import org.openjdk.jol.info.GraphLayout
+import se.curity.identityserver.sdk.attribute.AttributeName
+import se.curity.identityserver.sdk.attribute.Attributes
+import spock.lang.Specification
+
+/**
+ * Measures the bytes per cached subject of the compact form that the attribute cache keeps attributes in, compared
+ * with caching the parsed {@link Attributes}, for a profile where most values are shared between users.
+ *
+ * <p>Each subject is parsed from its own JSON document, so that, like in a running server, no strings are shared
+ * between the plain attributes of different subjects. The size of the compact form includes the symbol table.
+ *
+ * <p>Like the other benchmarks, this is not part of the regular test run. Run it with
+ * {@code mvn test -Dtest=AttributeCacheMemoryBenchmark}, optionally with {@code -Dbenchmark.subjects} to change the
+ * number of subjects.
+ */
+class AttributeCacheMemoryBenchmark extends Specification {
+
+    static final int SUBJECTS = Integer.getInteger('benchmark.subjects', 20_000)
+
+    static final List<String> GIVEN_NAMES = ['Anna', 'Erik', 'Maria', 'Lars', 'Karin', 'Johan', 'Sara', 'Anders',
+                                             'Emma', 'Per', 'Elin', 'Nils', 'Ida', 'Olof', 'Linnea', 'Gustav']
+    static final List<String> FAMILY_NAMES = ['Andersson', 'Johansson', 'Karlsson', 'Nilsson', 'Eriksson',
+                                              'Larsson', 'Olsson', 'Persson', 'Svensson', 'Gustafsson']
+    static final List<String> GROUPS = ['employees', 'engineering', 'sales', 'support', 'finance', 'admins',
+                                        'vpn-users', 'wiki-editors', 'on-call', 'contractors']
+    static final List<String> ROLES = ['user', 'manager', 'auditor', 'developer', 'operator']
+    static final List<String> TENANTS = (1..8).collect { "tenant-${it}-6f1d2c".toString() }
+    static final List<String> LOCALITIES = ['Stockholm', 'Göteborg', 'Malmö', 'Uppsala', 'Lund', 'Umeå']
+
+    def 'bytes per cached subject'() {
+        given:
+        def random = new Random(42)
+        def documents = (1..SUBJECTS).collect { document(it, random) }
+        def slurper = new JsonSlurper()
+
+        when:
+        def plain = documents.collect {
+            Attributes.fromMap(slurper.parseText(it) as Map, AttributeName.Format.JSON)
+        }
+        def symbols = new SymbolTable(50_000)
+        def compact = documents.collect {
+            def attributes = Attributes.fromMap(slurper.parseText(it) as Map, AttributeName.Format.JSON)
+            CompactAttributes.of(attributes.asMap(), symbols)
+        }
+
+        long plainBytes = GraphLayout.parseInstance(plain.toArray()).totalSize()
+        long compactBytes = GraphLayout.parseInstance(compact.toArray(), symbols).totalSize()
+
+        println()
+        println "Subjects: $SUBJECTS, symbols: ${symbols.size()}"
+        println "Attributes:         ${plainBytes.intdiv(SUBJECTS)} bytes per subject"
+        println "CompactAttributes:  ${compactBytes.intdiv(SUBJECTS)} bytes per subject, including the symbol table"
+        println "Saved:              ${100 - compactBytes * 100 / plainBytes as int} %"
+
+        then:
+        compactBytes < plainBytes
+        compact.first().toMap() == plain.first().asMap()
+    }
+
+    /**
+     * A user document of the kind that a JSON service returns, where only the identifiers and email address are
+     * unique to the user.
+     */
+    private static String document(int index, Random random) {
+        def givenName = pick(GIVEN_NAMES, random)
+        def familyName = pick(FAMILY_NAMES, random)
+
+        JsonOutput.toJson([
+                sub           : UUID.nameUUIDFromBytes("user-$index".bytes).toString(),
+                userName      : "user-$index".toString(),
+                email         : "${givenName}.${familyName}.$index@example.com".toLowerCase(),
+                given_name    : givenName,
+                family_name   : familyName,
+                email_verified: random.nextInt(10) > 0,
+                active        : true,
+                locale        : pick(['sv-SE', 'en-US', 'en-GB'], random),
+                tenant_id     : pick(TENANTS, random),
+                groups        : ['employees'] + GROUPS.subList(1, GROUPS.size()).findAll { random.nextInt(4) == 0 },
+                roles         : [pick(ROLES, random)],
+                login_count   : random.nextInt(100),
+                address       : [country: 'SE', locality: pick(LOCALITIES, random)]
+        ])
+    }
+
+    private static String pick(List<String> values, Random random) {
+        values[random.nextInt(values.size())]
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache
+
+import com.google.common.base.Ticker
+import io.curity.identityserver.plugin.data.access.rest.CannedBackend
+import io.curity.identityserver.plugin.data.access.rest.RestAttributeDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestCredentialDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubUserStore
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import se.curity.identityserver.sdk.attribute.AttributeName
+import se.curity.identityserver.sdk.attribute.Attributes
+import se.curity.identityserver.sdk.attribute.SubjectAttributes
+import se.curity.identityserver.sdk.service.WebServiceClient
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class AttributeCacheSpecification extends Specification {
+
+    def 'Cached attributes are returned until their time to live has passed'() {
+        given: 'a cache with a time to live of 60 seconds'
+        def ticker = new ManualTicker()
+        def cache = new AttributeCache(cacheConfiguration(timeToLive: 60), new Metrics('test'), ticker)
+
+        when: 'attributes are cached'
+        cache.put('johndoe', Attributes.of('email', 'johndoe@example.com'))
+
+        then: 'they are returned'
+        cache.getIfFresh('johndoe')?.get('email')?.value == 'johndoe@example.com'
+
+        when: 'the time to live has passed'
+        ticker.advance(60, TimeUnit.SECONDS)
+
+        then: 'they are no longer returned'
+        cache.getIfFresh('johndoe') == null
+    }
+
+    def 'Seeded attributes expire after the seed time to live'() {
+        given: 'a cache that keeps looked-up attributes longer than seeded ones'
+        def ticker = new ManualTicker()
+        def configuration = cacheConfiguration(timeToLive: 60, seedFromVerification: [timeToLive: 10])
+        def cache = new AttributeCache(configuration, new Metrics('test'), ticker)
+        def seeder = new VerificationSeeder(cache, configuration.seedFromVerification().get())
+
+        when: 'attributes are seeded from a verification'
+        seeder.seed('johndoe', Attributes.of('email', 'johndoe@example.com'), seeder.startVerification())
+        ticker.advance(9, TimeUnit.SECONDS)
+
+        then: 'they are cached'
+        cache.getIfFresh('johndoe') != null
+
+        when: 'the seed time to live has passed'
+        ticker.advance(1, TimeUnit.SECONDS)
+
+        then:
+        cache.getIfFresh('johndoe') == null
+    }
+
+    def 'Verification attributes are renamed and filtered before they are seeded'() {
+        given: 'a seeder that renames one attribute and excludes another'
+        def configuration = cacheConfiguration(seedFromVerification: [
+                renameAttribute    : [rename('mail', 'email')],
+                excludeAttribute   : ['password'],
+                keepOtherAttributes: keepOthers
+        ])
+        def seeder = new VerificationSeeder(new AttributeCache(configuration, new Metrics('test')),
+                configuration.seedFromVerification().get())
+
+        when:
+        def seeded = seeder.toLookupAttributes(Attributes.fromMap(
+                [mail: 'johndoe@example.com', password: 'hash', groups: ['users']],
+                AttributeName.Format.JSON))
+
+        then:
+        seeded.asMap() == expected
+
+        where:
+        keepOthers || expected
+        true       || [email: 'johndoe@example.com', groups: ['users']]
+        false      || [email: 'johndoe@example.com']
+    }
+
+    def 'An accepted verification answers the following attribute lookup of the same subject'() {
+        given: 'a plugin instance that seeds the attribute cache from verifications'
+        def verificationBackend = new CannedBackend()
+        def lookupClient = Mock(WebServiceClient)
+        def managedObject = new RestDataAccessManagedObject(configuration(verificationBackend.client, verificationBackend))
+
+        and: 'its providers, where the attribute provider uses a client that must not be called'
+        def credentialProvider = new RestCredentialDataAccessProvider(
+                configuration(verificationBackend.client, verificationBackend), managedObject)
+        def attributeProvider = new RestAttributeDataAccessProvider(
+                configuration(lookupClient, verificationBackend), managedObject)
+
+        when: 'a password is verified and the attributes of the subject are looked up'
+        credentialProvider.verify(SubjectAttributes.of('johndoe', Attributes.empty()), 'Password1')
+        def attributes = attributeProvider.getAttributes('johndoe')
+
+        then: 'the attributes come from the verification response'
+        attributes != null
+        0 * lookupClient._
+
+        and: 'other subjects are still looked up'
+        managedObject.attributeCache.get().getIfFresh('janedoe') == null
+    }
+
+    def 'The attribute cache cannot be configured with parameter mappings that take their value from an attribute'() {
+        when:
+        new RestDataAccessManagedObject(tenantMappingConfiguration(value))
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message.contains("'tenant'")
+
+        where:
+        value << [null, [useValueOfAttribute: 'account']]
+    }
+
+    def 'The attribute cache can be configured with parameter mappings of static values'() {
+        when:
+        def managedObject = new RestDataAccessManagedObject(tenantMappingConfiguration([staticValue: 'tenant-1']))
+
+        then:
+        managedObject.attributeCache.present
+
+        cleanup:
+        managedObject?.close()
+    }
+
+    def 'Attributes that were looked up while the password of the subject was updated are not cached'() {
+        given: 'a plugin instance with an attribute cache, in front of a user store that holds lookups back'
+        def store = StubUserStore.start()
+        def gate = new CountDownLatch(1)
+        store.lookupGate = gate
+        def configuration = StubBackedProviders.configuration(store, [getAttributesConfiguration: [
+                provideSubject: [urlPath: '/users/:subject'],
+                attributeCache: [timeToLive: 3600]
+        ]])
+        def managedObject = new RestDataAccessManagedObject(configuration)
+        def attributeProvider = new RestAttributeDataAccessProvider(configuration, managedObject)
+        def credentialProvider = new RestCredentialDataAccessProvider(configuration, managedObject)
+
+        when: 'the password is updated while a lookup is in flight, which completes afterwards'
+        def lookup = CompletableFuture.supplyAsync { attributeProvider.getAttributes('johndoe') }
+        new PollingConditions(timeout: 5).eventually {
+            assert store.backendCalls()['GET users'] == 1
+        }
+        credentialProvider.set(SubjectAttributes.of('johndoe', Attributes.empty()), 'new-password')
+        gate.countDown()
+
+        then: 'the lookup is answered, but what it returned is not cached'
+        lookup.get(10, TimeUnit.SECONDS) != null
+        !managedObject.attributeCache.get().isCached('johndoe')
+        managedObject.metrics.snapshot()['attributeCache.invalidatedLookups'] == 1
+
+        when: 'the attributes are looked up again'
+        attributeProvider.getAttributes('johndoe')
+
+        then: 'they are cached'
+        managedObject.attributeCache.get().isCached('johndoe')
+        store.backendCalls()['GET users'] == 2
+
+        cleanup:
+        managedObject?.close()
+        store?.close()
+    }
+
+    private static AttributesConfiguration.AttributeCache cacheConfiguration(Map settings) {
+        ConfigurationStub.of(AttributesConfiguration.AttributeCache, settings)
+    }
+
+    private static AttributesConfiguration.AttributeCache.SeedFromVerification.AttributeRename rename(String from,
+                                                                                                   String to) {
+        ConfigurationStub.of(AttributesConfiguration.AttributeCache.SeedFromVerification.AttributeRename,
+                [verificationAttribute: from, lookupAttribute: to])
+    }
+
+    private static RestDataAccessProviderConfiguration configuration(WebServiceClient client, CannedBackend backend) {
+        ConfigurationStub.of(RestDataAccessProviderConfiguration, [
+                id                              : 'seeding',
+                webServiceClient                : client,
+                json                            : backend.json,
+                getCredentialAccessConfiguration: [urlPath: '/users/:subject/verify'],
+                getAttributesConfiguration      : [
+                        provideSubject: [urlPath: '/users/:subject'],
+                        attributeCache: [seedFromVerification: [:]]
+                ]
+        ])
+    }
+
+    /**
+     * @param value the value of the mapping of the 'tenant' parameter, or null to use the attribute of that name
+     */
+    private static RestDataAccessProviderConfiguration tenantMappingConfiguration(Map<String, ?> value) {
+        def backend = new CannedBackend()
+        def mapping = ConfigurationStub.of(AttributesConfiguration.ParameterMappingConfiguration, [
+                parameterName: 'tenant',
+                value        : value
+        ])
+
+        ConfigurationStub.of(RestDataAccessProviderConfiguration, [
+                id                        : 'tenant-mapping',
+                webServiceClient          : backend.client,
+                json                      : backend.json,
+                getAttributesConfiguration: [
+                        provideSubject   : [urlPath: '/users/:subject'],
+                        attributeCache   : [timeToLive: 60],
+                        parameterMappings: [parameterMapping: [mapping]]
+                ]
+        ])
+    }
+
+    static class ManualTicker extends Ticker {
+        long nanos
+
+        @Override
+        long read() {
+            nanos
+        }
+
+        void advance(long amount, TimeUnit unit) {
+            nanos += unit.toNanos(amount)
+        }
+    }
+}
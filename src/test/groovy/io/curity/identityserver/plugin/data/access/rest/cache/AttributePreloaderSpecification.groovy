@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache
+
+import io.curity.identityserver.plugin.data.access.rest.RestAttributeDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubUserStore
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse
+import se.curity.identityserver.sdk.attribute.Attributes
+import se.curity.identityserver.sdk.service.Json
+import spock.lang.Specification
+import spock.lang.TempDir
+import spock.util.concurrent.PollingConditions
+
+import java.nio.file.Path
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Function
+import java.util.function.Supplier
+
+class AttributePreloaderSpecification extends Specification {
+
+    @TempDir
+    Path directory
+
+    def metrics = new Metrics('test')
+    def attributeCache = new AttributeCache(ConfigurationStub.of(AttributesConfiguration.AttributeCache), metrics)
+    def conditions = new PollingConditions(timeout: 5)
+
+    def cleanup() {
+        metrics.close()
+    }
+
+    def 'The hot subjects are looked up with bounded parallelism and cached'() {
+        given: 'a lookup that takes a while'
+        def inFlight = new AtomicInteger()
+        def maximumInFlight = new AtomicInteger()
+        def lookup = { String subject ->
+            maximumInFlight.accumulateAndGet(inFlight.incrementAndGet()) { a, b -> Math.max(a, b) }
+            Thread.sleep(20)
+            inFlight.decrementAndGet()
+            Attributes.of('email', "$subject@example.com".toString())
+        } as Function<String, Attributes>
+        def preloader = preloader([maximumConcurrentRequests: 3, requestsPerSecond: 1000],
+                { (1..30).collect { "kiosk-$it".toString() } } as Supplier<List<String>>, lookup)
+
+        when:
+        preloader.start()
+
+        then:
+        conditions.eventually {
+            assert metrics.snapshot()['attributeCache.preload.loaded'] == 30
+        }
+        attributeCache.getIfFresh('kiosk-17')?.get('email')?.value == 'kiosk-17@example.com'
+        maximumInFlight.get() <= 3
+        metrics.snapshot()['attributeCache.preload.subjects'] == 30
+
+        cleanup:
+        preloader?.close()
+    }
+
+    def 'Subjects that are already cached, and subjects that cannot be looked up, are reported'() {
+        given:
+        attributeCache.put('kiosk-1', Attributes.of('email', 'kiosk-1@example.com'))
+        def lookup = { String subject ->
+            if (subject == 'kiosk-2') {
+                throw new UncheckedIOException(new IOException('Connection reset'))
+            }
+            subject == 'kiosk-3' ? null : Attributes.of('email', "$subject@example.com".toString())
+        } as Function<String, Attributes>
+        def preloader = preloader([:], { ['kiosk-1', 'kiosk-2', 'kiosk-3', 'kiosk-4'] } as Supplier<List<String>>,
+                lookup)
+
+        when:
+        preloader.start()
+
+        then:
+        conditions.eventually {
+            def snapshot = metrics.snapshot()
+            assert snapshot['attributeCache.preload.loaded'] == 1
+            assert snapshot['attributeCache.preload.skipped'] == 1
+            assert snapshot['attributeCache.preload.failed'] == 2
+        }
+
+        cleanup:
+        preloader?.close()
+    }
+
+    def 'Preloading pauses while lookups of logins wait for the JSON service'() {
+        given:
+        def lookups = new AtomicInteger()
+        def preloader = preloader([pauseAtLiveRequests: 2], { ['kiosk-1', 'kiosk-2'] } as Supplier<List<String>>,
+                { String subject -> lookups.incrementAndGet(); Attributes.empty() } as Function<String, Attributes>)
+
+        when: 'two logins are waiting for the JSON service when preloading starts'
+        2.times { preloader.liveLookupStarted() }
+        preloader.start()
+        Thread.sleep(200)
+
+        then: 'nothing is preloaded'
+        lookups.get() == 0
+        metrics.snapshot()['attributeCache.preload.pauses'] >= 1
+
+        when: 'one of them gets its response'
+        preloader.liveLookupFinished()
+
+        then: 'preloading continues'
+        conditions.eventually {
+            assert lookups.get() == 2
+        }
+
+        cleanup:
+        preloader?.close()
+    }
+
+    def 'Preloading is rate limited'() {
+        given:
+        def preloader = preloader([requestsPerSecond: 10], { (1..6).collect { "kiosk-$it".toString() } } as Supplier,
+                { String subject -> Attributes.empty() } as Function<String, Attributes>)
+
+        when:
+        long started = System.nanoTime()
+        preloader.start()
+
+        then:
+        conditions.eventually {
+            assert metrics.snapshot()['attributeCache.preload.loaded'] == 6
+        }
+        (System.nanoTime() - started) / 1_000_000 >= 400
+
+        cleanup:
+        preloader?.close()
+    }
+
+    def 'Hot subjects are read from a file, ignoring comments, empty lines and duplicates when preloading'() {
+        given:
+        def file = directory.resolve('hot-subjects.txt')
+        file.text = '# service accounts\nsvc-billing\n\n  svc-reports  \n# kiosks\nkiosk-1\nsvc-billing\n'
+
+        expect:
+        AttributePreloader.fromFile(file.toString()).get() == ['svc-billing', 'svc-reports', 'kiosk-1', 'svc-billing']
+    }
+
+    def 'Hot subjects are read from the JSON service'() {
+        given:
+        def response = Stub(TransportResponse) {
+            statusCode() >> 200
+            body() >> '["svc-billing","kiosk-1"]'
+        }
+        def paths = []
+        def transport = { TransportRequest request -> paths << request.path(); response } as Transport
+        def json = Stub(Json) {
+            fromJsonArray('["svc-billing","kiosk-1"]') >> ['svc-billing', 'kiosk-1']
+        }
+
+        expect:
+        AttributePreloader.fromJsonService('/hot-subjects', transport, json).get() == ['svc-billing', 'kiosk-1']
+        paths == ['/hot-subjects']
+    }
+
+    def 'The managed object preloads the hot subjects through the attribute provider'() {
+        given:
+        def backend = StubUserStore.start()
+        def file = directory.resolve('hot-subjects.txt')
+        file.text = (1..20).collect { "kiosk-$it" }.join('\n')
+        def configuration = StubBackedProviders.configuration(backend, [
+                getAttributesConfiguration: [
+                        provideSubject: [urlPath: '/users/:subject'],
+                        attributeCache: [preload: [hotSubjects: [file: file.toString()], requestsPerSecond: 1000]]
+                ]
+        ])
+
+        when:
+        def managedObject = new RestDataAccessManagedObject(configuration)
+
+        then:
+        conditions.eventually {
+            assert managedObject.metrics.snapshot()['attributeCache.preload.loaded'] == 20
+        }
+
+        when: 'the hot subjects log in'
+        backend.resetCounters()
+        def provider = new RestAttributeDataAccessProvider(configuration, managedObject)
+        (1..20).each { provider.getAttributes("kiosk-$it".toString()) }
+
+        then: 'their attributes come from the cache'
+        backend.totalBackendCalls() == 0
+
+        cleanup:
+        managedObject?.close()
+        backend?.close()
+    }
+
+    private AttributePreloader preloader(Map settings, Supplier<List<String>> hotSubjects,
+                                         Function<String, Attributes> lookup) {
+        new AttributePreloader(ConfigurationStub.of(AttributesConfiguration.AttributeCache.Preload, settings),
+                attributeCache, 10_000, hotSubjects, lookup, 'test', metrics)
+    }
+}
@@ -0,0 +1,474 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache
+
+import io.curity.identityserver.plugin.data.access.rest.RestAttributeDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubUserStore
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import se.curity.identityserver.sdk.attribute.Attributes
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneId
+import java.time.ZoneOffset
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class AttributeSnapshotSpecification extends Specification {
+
+    static final int CAPACITY = 1024 * 1024
+
+    @TempDir
+    Path directory
+
+    def metrics = new Metrics('test')
+    def clock = new ManualClock()
+
+    def cleanup() {
+        metrics.close()
+    }
+
+    def 'Attributes are read back after the snapshot is reopened'() {
+        given:
+        def file = directory.resolve('attributes.snapshot')
+        def attributes = [
+                email   : 'jöhn.doé@example.com',
+                age     : 42L,
+                score   : 0.5d,
+                balance : 12345678901234567890.12345g,
+                verified: true,
+                phone   : null,
+                groups  : ['admins', 'users'],
+                address : [street: 'Stora gatan 1', city: 'Stockholm', location: [59.33d, 18.06d]]
+        ]
+
+        when:
+        def snapshot = snapshot(file)
+        snapshot.put('johndoe', attributes, 1_000, 61_000)
+        snapshot.close()
+        def reopened = snapshot(file)
+        def entry = reopened.get('johndoe')
+
+        then:
+        entry.attributes == attributes
+        entry.fetchedAtMillis == 1_000
+        entry.expiresAtMillis == 61_000
+        reopened.get('janedoe') == null
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def 'The newest entry of a subject wins and removals survive a restart'() {
+        given:
+        def file = directory.resolve('attributes.snapshot')
+        def snapshot = snapshot(file)
+
+        when:
+        snapshot.put('johndoe', [email: 'old@example.com'], 0, 60_000)
+        snapshot.put('johndoe', [email: 'new@example.com'], 0, 60_000)
+        snapshot.put('janedoe', [email: 'janedoe@example.com'], 0, 60_000)
+        snapshot.remove('janedoe')
+        snapshot.close()
+        def reopened = snapshot(file)
+
+        then:
+        reopened.get('johndoe').attributes.email == 'new@example.com'
+        reopened.get('janedoe') == null
+        reopened.size() == 1
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def 'Entries that expired longer ago than they are retained are not returned'() {
+        given:
+        def snapshot = new AttributeSnapshot(directory.resolve('attributes.snapshot'), CAPACITY, 30_000, clock,
+                metrics)
+        snapshot.put('johndoe', [email: 'johndoe@example.com'], 0, 60_000)
+
+        when:
+        clock.millis = 89_999
+
+        then:
+        snapshot.get('johndoe') != null
+
+        when:
+        clock.millis = 90_000
+
+        then:
+        snapshot.get('johndoe') == null
+
+        cleanup:
+        snapshot?.close()
+    }
+
+    def 'A corrupted entry is discarded when it is read'() {
+        given:
+        def file = directory.resolve('attributes.snapshot')
+        def snapshot = snapshot(file)
+        snapshot.put('johndoe', [email: 'johndoe@example.com'], 0, 60_000)
+        snapshot.put('janedoe', [email: 'janedoe@example.com'], 0, 60_000)
+        snapshot.close()
+
+        when: 'a byte of the attributes of the first entry is flipped'
+        def position = AttributeSnapshot.HEADER_SIZE + 8 + 21 + 'johndoe'.length() + 10
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE).withCloseable { channel ->
+            def value = ByteBuffer.allocate(1)
+            channel.read(value, position)
+            channel.write(ByteBuffer.wrap([(byte) (value.get(0) ^ 0x20)] as byte[]), position)
+        }
+        def reopened = snapshot(file)
+
+        then:
+        reopened.get('johndoe') == null
+        reopened.get('janedoe').attributes.email == 'janedoe@example.com'
+        metrics.snapshot()['attributeCache.snapshot.corruptRecords'] == 1
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def 'An incomplete entry at the end is discarded and overwritten'() {
+        given:
+        def file = directory.resolve('attributes.snapshot')
+        def snapshot = snapshot(file)
+        snapshot.put('johndoe', [email: 'johndoe@example.com'], 0, 60_000)
+        snapshot.close()
+
+        when: 'the length of a record that was not completely written is followed by garbage'
+        def end = AttributeSnapshot.HEADER_SIZE + 4 + ByteBuffer.wrap(file.bytes, AttributeSnapshot.HEADER_SIZE, 4).int
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE).withCloseable { channel ->
+            channel.write(ByteBuffer.allocate(12).putInt(5000).putInt(7).putInt(-1).flip(), end)
+        }
+        def reopened = snapshot(file)
+        reopened.put('janedoe', [email: 'janedoe@example.com'], 0, 60_000)
+        reopened.close()
+        reopened = snapshot(file)
+
+        then:
+        reopened.get('johndoe').attributes.email == 'johndoe@example.com'
+        reopened.get('janedoe').attributes.email == 'janedoe@example.com'
+        reopened.size() == 2
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def 'An entry or cursor whose length is corrupted while the snapshot is open is discarded when it is read'() {
+        given:
+        def file = directory.resolve('attributes.snapshot')
+        def snapshot = snapshot(file)
+        snapshot.put('johndoe', [email: 'johndoe@example.com'], 0, 60_000)
+        snapshot.putCursor('cursor-1')
+        snapshot.put('janedoe', [email: 'janedoe@example.com'], 0, 60_000)
+
+        when: 'the lengths of the first entry and of the cursor are overwritten'
+        def cursorPosition = AttributeSnapshot.HEADER_SIZE + 4 +
+                ByteBuffer.wrap(file.bytes, AttributeSnapshot.HEADER_SIZE, 4).int
+        FileChannel.open(file, StandardOpenOption.WRITE).withCloseable { channel ->
+            channel.write(ByteBuffer.allocate(4).putInt(length).flip(), AttributeSnapshot.HEADER_SIZE)
+            channel.write(ByteBuffer.allocate(4).putInt(length).flip(), cursorPosition)
+        }
+
+        then:
+        snapshot.get('johndoe') == null
+        snapshot.cursor() == null
+        snapshot.get('janedoe').attributes.email == 'janedoe@example.com'
+        metrics.snapshot()['attributeCache.snapshot.corruptRecords'] == 2
+
+        cleanup:
+        snapshot?.close()
+
+        where:
+        length << [Integer.MAX_VALUE, -1, 3, 1_000]
+    }
+
+    def 'A file that is in use by another snapshot is not used'() {
+        given:
+        def configuration = cacheConfiguration(timeToLive: 60)
+        def first = new AttributeCache(configuration, metrics)
+
+        when: 'the file is opened again, as by another data source or a reconfigured one'
+        snapshot(directory.resolve('cache.snapshot'))
+
+        then:
+        thrown(UncheckedIOException)
+
+        when: 'another cache is created with the same file'
+        def second = new AttributeCache(configuration, metrics)
+        first.put('johndoe', Attributes.of('email', 'johndoe@example.com'))
+        second.put('janedoe', Attributes.of('email', 'janedoe@example.com'))
+        first.close()
+        second.close()
+        def reopened = snapshot(directory.resolve('cache.snapshot'))
+
+        then: 'it caches in memory only'
+        reopened.get('johndoe') != null
+        reopened.get('janedoe') == null
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def 'A snapshot of another format version is discarded'() {
+        given:
+        def file = directory.resolve('attributes.snapshot')
+        def snapshot = snapshot(file)
+        snapshot.put('johndoe', [email: 'johndoe@example.com'], 0, 60_000)
+        snapshot.close()
+
+        when:
+        FileChannel.open(file, StandardOpenOption.WRITE).withCloseable { channel ->
+            channel.write(ByteBuffer.allocate(4).putInt(AttributeSnapshot.FORMAT_VERSION + 1).flip(), 4)
+        }
+        def reopened = snapshot(file)
+
+        then:
+        reopened.get('johndoe') == null
+        reopened.size() == 0
+
+        when: 'it is written to again'
+        reopened.put('janedoe', [email: 'janedoe@example.com'], 0, 60_000)
+        reopened.close()
+        reopened = snapshot(file)
+
+        then:
+        reopened.get('janedoe') != null
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def 'A full snapshot is compacted to the newest entries that have not expired'() {
+        given:
+        def file = directory.resolve('attributes.snapshot')
+        def snapshot = new AttributeSnapshot(file, 4096, 0, clock, metrics)
+        snapshot.put('expired', [email: 'expired@example.com'], 0, 1_000)
+        clock.millis = 2_000
+
+        when: 'one subject is written over and over'
+        200.times { snapshot.put('johndoe', [email: "johndoe-$it@example.com".toString()], 2_000, 62_000) }
+
+        then:
+        metrics.snapshot()['attributeCache.snapshot.compactions'] >= 1
+        metrics.snapshot()['attributeCache.snapshot.droppedWrites'] == 0
+        snapshot.get('johndoe').attributes.email == 'johndoe-199@example.com'
+        snapshot.size() == 1
+
+        when:
+        snapshot.close()
+        snapshot = new AttributeSnapshot(file, 4096, 0, clock, metrics)
+
+        then:
+        snapshot.get('johndoe').attributes.email == 'johndoe-199@example.com'
+        snapshot.get('expired') == null
+
+        cleanup:
+        snapshot?.close()
+    }
+
+    def 'The change feed cursor is read back after a restart and a compaction, and cleared with the entries'() {
+        given:
+        def file = directory.resolve('attributes.snapshot')
+        def snapshot = new AttributeSnapshot(file, 4096, 0, clock, metrics)
+        snapshot.putCursor('cursor-1')
+        snapshot.putCursor('cursor-2')
+
+        when: 'the snapshot is compacted and opened again'
+        200.times { snapshot.put('johndoe', [email: "johndoe-$it@example.com".toString()], 0, 60_000) }
+        snapshot.close()
+        snapshot = new AttributeSnapshot(file, 4096, 0, clock, metrics)
+
+        then:
+        metrics.snapshot()['attributeCache.snapshot.compactions'] >= 1
+        snapshot.cursor() == 'cursor-2'
+        snapshot.get('johndoe') != null
+
+        when:
+        snapshot.clear()
+
+        then:
+        snapshot.cursor() == null
+        snapshot.get('johndoe') == null
+
+        cleanup:
+        snapshot?.close()
+    }
+
+    def 'Writes are dropped when a compacted snapshot is still full'() {
+        given:
+        def snapshot = new AttributeSnapshot(directory.resolve('attributes.snapshot'), 4096, 0, clock, metrics)
+
+        when:
+        200.times { snapshot.put("subject-$it".toString(), [email: 'someone@example.com'], 0, 60_000) }
+
+        then:
+        metrics.snapshot()['attributeCache.snapshot.droppedWrites'] > 0
+        snapshot.get('subject-0') != null
+
+        cleanup:
+        snapshot?.close()
+    }
+
+    def 'The cache keeps the remaining time to live of entries across a restart'() {
+        given:
+        def configuration = cacheConfiguration(timeToLive: 60, staleIfError: 30)
+        def ticker = new AttributeCacheSpecification.ManualTicker()
+        def cache = new AttributeCache(configuration, metrics, ticker, clock)
+        cache.put('johndoe', Attributes.of('email', 'johndoe@example.com'))
+        cache.close()
+
+        when: 'the server restarts 50 seconds later, with a ticker that starts elsewhere'
+        clock.millis += 50_000
+        def restartedTicker = new AttributeCacheSpecification.ManualTicker(nanos: 123_456_789)
+        def restarted = new AttributeCache(configuration, metrics, restartedTicker, clock)
+
+        then:
+        restarted.getIfFresh('johndoe')?.get('email')?.value == 'johndoe@example.com'
+        metrics.snapshot()['attributeCache.snapshot.loads'] == 1
+
+        when: 'the time to live has passed'
+        restartedTicker.advance(10, TimeUnit.SECONDS)
+
+        then: 'they are only returned when the JSON service is unavailable'
+        restarted.getIfFresh('johndoe') == null
+        restarted.getIfUsableOnError('johndoe') != null
+
+        when: 'the stale-if-error time has passed as well'
+        restartedTicker.advance(30, TimeUnit.SECONDS)
+
+        then:
+        restarted.getIfUsableOnError('johndoe') == null
+
+        cleanup:
+        restarted?.close()
+    }
+
+    def 'Invalidated attributes are not read back from the snapshot'() {
+        given:
+        def configuration = cacheConfiguration(timeToLive: 60)
+        def cache = new AttributeCache(configuration, metrics, new AttributeCacheSpecification.ManualTicker(), clock)
+        cache.put('johndoe', Attributes.of('email', 'johndoe@example.com'))
+
+        when:
+        cache.invalidate('johndoe')
+        cache.close()
+        def restarted = new AttributeCache(configuration, metrics, new AttributeCacheSpecification.ManualTicker(),
+                clock)
+
+        then:
+        restarted.getIfFresh('johndoe') == null
+
+        cleanup:
+        restarted?.close()
+    }
+
+    def 'An invalidation is not undone by a read that loads the entry from the snapshot at the same time'() {
+        given:
+        def cache = new AttributeCache(cacheConfiguration(timeToLive: 60), metrics)
+        def executor = Executors.newFixedThreadPool(2)
+
+        when: 'entries that are only in the snapshot are read while they are invalidated'
+        def restored = (1..1000).count {
+            def subject = "subject-$it".toString()
+            cache.put(subject, Attributes.of('email', 'old@example.com'))
+            cache.invalidateAll()
+            def start = new CountDownLatch(1)
+            def read = executor.submit { start.await(); cache.getIfFresh(subject) }
+            def invalidation = executor.submit { start.await(); cache.invalidate(subject) }
+            start.countDown()
+            read.get()
+            invalidation.get()
+
+            cache.isCached(subject)
+        }
+
+        then:
+        restored == 0
+
+        cleanup:
+        executor?.shutdownNow()
+        cache?.close()
+    }
+
+    def 'Expired attributes are returned while the JSON service fails'() {
+        given:
+        def backend = StubUserStore.start()
+        def configuration = StubBackedProviders.configuration(backend, [
+                getAttributesConfiguration: [
+                        provideSubject: [urlPath: '/users/:subject'],
+                        attributeCache: [timeToLive: 1, staleIfError: 60]
+                ]
+        ])
+        def managedObject = new RestDataAccessManagedObject(configuration)
+        def provider = new RestAttributeDataAccessProvider(configuration, managedObject)
+
+        when: 'the attributes are looked up, and looked up again after they expired while the service fails'
+        provider.getAttributes('user-1')
+        Thread.sleep(1_100)
+        backend.errorRate = 1.0
+        def attributes = provider.getAttributes('user-1')
+
+        then:
+        attributes != null
+        managedObject.metrics.snapshot()['attributeCache.staleHits'] == 1
+
+        cleanup:
+        managedObject?.close()
+        backend?.close()
+    }
+
+    private AttributeSnapshot snapshot(Path file) {
+        new AttributeSnapshot(file, CAPACITY, 0, clock, metrics)
+    }
+
+    private AttributesConfiguration.AttributeCache cacheConfiguration(Map settings) {
+        ConfigurationStub.of(AttributesConfiguration.AttributeCache,
+                settings + [snapshot: [file: directory.resolve('cache.snapshot').toString()]])
+    }
+
+    static class ManualClock extends Clock {
+        long millis
+
+        @Override
+        ZoneId getZone() {
+            ZoneOffset.UTC
+        }
+
+        @Override
+        Clock withZone(ZoneId zone) {
+            this
+        }
+
+        @Override
+        Instant instant() {
+            Instant.ofEpochMilli(millis)
+        }
+
+        @Override
+        long millis() {
+            millis
+        }
+    }
+}
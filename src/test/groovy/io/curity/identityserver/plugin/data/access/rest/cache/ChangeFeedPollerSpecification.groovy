@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache
+
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse
+import se.curity.identityserver.sdk.attribute.Attributes
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.function.Function
+
+class ChangeFeedPollerSpecification extends Specification {
+
+    def metrics = new Metrics('test')
+    def attributeCache = new AttributeCache(ConfigurationStub.of(AttributesConfiguration.AttributeCache), metrics)
+    def requests = []
+    def responses = []
+
+    @TempDir
+    Path directory
+
+    def cleanup() {
+        metrics.close()
+    }
+
+    def 'The first poll clears the cache and keeps the cursor for the next one'() {
+        given:
+        attributeCache.put('alice', Attributes.of('email', 'alice@example.com'))
+        responses << response(200, '{"changes":[],"cursor":"c1"}')
+        responses << response(200, '{"changes":[],"cursor":"c1"}')
+        def poller = poller([:])
+
+        when:
+        poller.poll()
+
+        then:
+        !attributeCache.isCached('alice')
+        poller.cursor() == 'c1'
+        requests*.path() == ['/changes']
+        requests[0].queryParameters().isEmpty()
+        metrics.snapshot()['attributeCache.changeFeed.clears'] == 1
+
+        when:
+        poller.poll()
+
+        then:
+        requests[1].queryParameters() == [since: ['c1']]
+        metrics.snapshot()['attributeCache.changeFeed.clears'] == 1
+    }
+
+    def 'After a restart, the feed is read from the cursor in the snapshot without clearing the restored entries'() {
+        given:
+        def configuration = ConfigurationStub.of(AttributesConfiguration.AttributeCache,
+                [snapshot: [file: directory.resolve('cache.snapshot').toString()]])
+        attributeCache = new AttributeCache(configuration, metrics)
+        responses << response(200, '{"changes":[],"cursor":"c1"}')
+        poller([:]).poll()
+        attributeCache.put('alice', Attributes.of('email', 'alice@example.com'))
+        attributeCache.put('bob', Attributes.of('email', 'bob@example.com'))
+        responses << response(200, '{"changes":["bob"],"cursor":"c2"}')
+        responses << response(200, '{"changes":[],"cursor":"c2"}')
+        poller([:]).poll()
+        attributeCache.close()
+
+        when: 'the server restarts'
+        attributeCache = new AttributeCache(configuration, metrics)
+        def restarted = poller([:])
+        responses << response(200, '{"changes":[],"cursor":"c2"}')
+        restarted.poll()
+
+        then:
+        requests[3].queryParameters() == [since: ['c2']]
+        attributeCache.isCached('alice')
+        !attributeCache.isCached('bob')
+        metrics.snapshot()['attributeCache.changeFeed.clears'] == 1
+
+        cleanup:
+        attributeCache?.close()
+    }
+
+    def 'What is to be done after the first poll is run once it has completed'() {
+        given:
+        def poller = poller([:])
+        def afterFirstPoll = new CountDownLatch(1)
+        responses << response(200, '{"changes":[],"cursor":"c1"}')
+
+        when:
+        poller.start {
+            assert poller.cursor() == 'c1'
+            afterFirstPoll.countDown()
+        }
+
+        then:
+        afterFirstPoll.await(10, TimeUnit.SECONDS)
+
+        cleanup:
+        poller.close()
+    }
+
+    def 'Only the subjects that have changed are invalidated'() {
+        given:
+        def poller = started(poller(urlPath: '/feed', cursorParameter: 'after', changesAttribute: 'subjects',
+                cursorAttribute: 'next'), '{"subjects":[],"next":"c1"}')
+        ['alice', 'bob', 'carol'].each { attributeCache.put(it, Attributes.of('email', "$it@example.com".toString())) }
+        responses << response(200, '{"subjects":["alice","carol","dave"],"next":"c2"}')
+        responses << response(200, '{"subjects":[],"next":"c2"}')
+
+        when:
+        poller.poll()
+
+        then: 'the feed is read until it has no more changes'
+        requests*.path() == ['/feed', '/feed', '/feed']
+        requests*.queryParameters()[1..2] == [[after: ['c1']], [after: ['c2']]]
+        !attributeCache.isCached('alice')
+        attributeCache.isCached('bob')
+        !attributeCache.isCached('carol')
+        poller.cursor() == 'c2'
+        metrics.snapshot()['attributeCache.changeFeed.changes'] == 3
+    }
+
+    def 'Cached subjects that have changed are looked up again when refreshing'() {
+        given:
+        def lookedUp = []
+        def lookup = { String subject ->
+            lookedUp << subject
+            Attributes.of('email', "new-$subject@example.com".toString())
+        } as Function<String, Attributes>
+        def poller = started(poller([onChange: 'REFRESH'], lookup), '{"changes":[],"cursor":"c1"}')
+        attributeCache.put('alice', Attributes.of('email', 'alice@example.com'))
+        responses << response(200, '{"changes":["alice","bob"],"cursor":"c2"}')
+        responses << response(200, '{"changes":[],"cursor":"c2"}')
+
+        when:
+        poller.poll()
+
+        then: 'subjects that are not cached are not looked up'
+        lookedUp == ['alice']
+        attributeCache.getIfFresh('alice')?.get('email')?.value == 'new-alice@example.com'
+        !attributeCache.isCached('bob')
+        metrics.snapshot()['attributeCache.changeFeed.refreshes'] == 1
+    }
+
+    def 'Attributes that were looked up before a change of the subject was read from the feed are not cached'() {
+        given:
+        def lookup = { String subject ->
+            Attributes.of('email', "new-$subject@example.com".toString())
+        } as Function<String, Attributes>
+        def poller = started(poller([onChange: onChange], lookup), '{"changes":[],"cursor":"c1"}')
+        attributeCache.put('alice', Attributes.of('email', 'alice@example.com'))
+        responses << response(200, '{"changes":["alice"],"cursor":"c2"}')
+        responses << response(200, '{"changes":[],"cursor":"c2"}')
+
+        when: 'a lookup of the old attributes is in flight while the feed is polled, and completes afterwards'
+        def lookupToken = attributeCache.startLookup()
+        poller.poll()
+        attributeCache.put('alice', Attributes.of('email', 'alice@example.com'), lookupToken)
+
+        then:
+        attributeCache.getIfFresh('alice')?.get('email')?.value == expected
+        metrics.snapshot()['attributeCache.invalidatedLookups'] == 1
+
+        where:
+        onChange     || expected
+        'INVALIDATE' || null
+        'REFRESH'    || 'new-alice@example.com'
+    }
+
+    def 'A subject that cannot be refreshed is invalidated'() {
+        given:
+        def lookup = { String subject -> throw new IllegalStateException('unavailable') } as Function<String, Attributes>
+        def poller = started(poller([onChange: 'REFRESH'], lookup), '{"changes":[],"cursor":"c1"}')
+        attributeCache.put('alice', Attributes.of('email', 'alice@example.com'))
+        responses << response(200, '{"changes":["alice"],"cursor":"c2"}')
+        responses << response(200, '{"changes":[],"cursor":"c2"}')
+
+        when:
+        poller.poll()
+
+        then:
+        !attributeCache.isCached('alice')
+        metrics.snapshot()['attributeCache.changeFeed.refreshes'] == 0
+    }
+
+    def 'The cache is cleared when the feed no longer has the changes since the cursor'() {
+        given:
+        def poller = started(poller([:]), '{"changes":[],"cursor":"c1"}')
+        attributeCache.put('alice', Attributes.of('email', 'alice@example.com'))
+        responses << response(410, '')
+        responses << response(200, '{"changes":[],"cursor":"c9"}')
+
+        when:
+        poller.poll()
+
+        then:
+        requests*.queryParameters()[1..2] == [[since: ['c1']], [:]]
+        !attributeCache.isCached('alice')
+        poller.cursor() == 'c9'
+        metrics.snapshot()['attributeCache.changeFeed.clears'] == 2
+    }
+
+    def 'The cursor is kept when the feed cannot be read'() {
+        given:
+        def poller = started(poller([:]), '{"changes":[],"cursor":"c1"}')
+        attributeCache.put('alice', Attributes.of('email', 'alice@example.com'))
+        responses << response(status, body)
+
+        when:
+        poller.poll()
+
+        then:
+        attributeCache.isCached('alice')
+        poller.cursor() == 'c1'
+        metrics.snapshot()['attributeCache.changeFeed.failedPolls'] == 1
+
+        where:
+        status | body
+        503    | 'unavailable'
+        200    | '{"changes":["alice"]}'
+    }
+
+    private ChangeFeedPoller poller(Map settings,
+                                    Function<String, Attributes> lookup = { null } as Function<String, Attributes>) {
+        def transport = { TransportRequest request ->
+            requests << request
+            responses.isEmpty() ? response(503, '') : responses.remove(0)
+        } as Transport
+
+        new ChangeFeedPoller(ConfigurationStub.of(AttributesConfiguration.AttributeCache.ChangeFeed, settings),
+                attributeCache, transport, StubBackedProviders.json(), lookup, 'test', metrics)
+    }
+
+    /**
+     * Poll the feed once to get a cursor, as after a start.
+     */
+    private ChangeFeedPoller started(ChangeFeedPoller poller, String firstResponse) {
+        responses << response(200, firstResponse)
+        poller.poll()
+
+        poller
+    }
+
+    private TransportResponse response(int status, String body) {
+        Stub(TransportResponse) {
+            statusCode() >> status
+            body() >> body
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache
+
+import spock.lang.Specification
+
+class CompactAttributesSpecification extends Specification {
+
+    def symbols = new SymbolTable(1_000)
+
+    def 'The original attributes are rebuilt'() {
+        given:
+        def attributes = [
+                sub     : 'johndoe',
+                age     : 42,
+                balance : 1234.5g,
+                verified: true,
+                phone   : null,
+                groups  : ['admins', 'users'],
+                address : [country: 'SE', location: [59.33d, 18.06d]],
+                devices : [[type: 'phone'], [type: 'laptop']]
+        ]
+
+        expect:
+        CompactAttributes.of(attributes, symbols).toMap() == attributes
+    }
+
+    def 'Names, common values and lists of them are shared between subjects once they are seen again'() {
+        when:
+        def jim = CompactAttributes.of([sub: new String('jimdoe'), groups: ['admins', 'users'],
+                                        tenant: new String('tenant-1')], symbols)
+        def john = CompactAttributes.of([sub: new String('johndoe'), groups: ['admins', 'users'],
+                                         tenant: new String('tenant-1')], symbols)
+        def jane = CompactAttributes.of([sub: new String('janedoe'), groups: ['admins', 'users'],
+                                         tenant: new String('tenant-1')], symbols)
+
+        then: 'the first subject keeps its own copies'
+        !jim._shape.is(john._shape)
+        !jim._values[2].is(john._values[2])
+
+        and:
+        john._shape.is(jane._shape)
+        john._values[1].is(jane._values[1])
+        john._values[2].is(jane._values[2])
+    }
+
+    def 'Maps with other names do not share a shape'() {
+        when:
+        def john = CompactAttributes.of([sub: 'johndoe', email: 'john@example.com'], symbols)
+        def jane = CompactAttributes.of([email: 'jane@example.com', sub: 'janedoe'], symbols)
+
+        then:
+        !john._shape.is(jane._shape)
+        jane.toMap().keySet() as List == ['email', 'sub']
+    }
+
+    def 'Rebuilt lists and maps can be changed without affecting other subjects'() {
+        given:
+        def john = CompactAttributes.of([groups: ['admins'], address: [country: 'SE']], symbols)
+        def jane = CompactAttributes.of([groups: ['admins'], address: [country: 'SE']], symbols)
+
+        when:
+        def johnsAttributes = john.toMap()
+        johnsAttributes.groups << 'users'
+        johnsAttributes.address.country = 'NO'
+
+        then:
+        jane.toMap() == [groups: ['admins'], address: [country: 'SE']]
+        john.toMap() == [groups: ['admins'], address: [country: 'SE']]
+    }
+
+    def 'The symbol table is bounded and long strings are not interned'() {
+        given:
+        def symbols = new SymbolTable(10)
+        def longValue = 'x' * (SymbolTable.MAXIMUM_INTERNED_LENGTH + 1)
+
+        when:
+        (1..100).each { 2.times { symbols.intern("value-$it".toString()) } }
+
+        then:
+        symbols.size() <= 10
+
+        and:
+        !symbols.intern(new String(longValue)).is(symbols.intern(new String(longValue)))
+    }
+
+    def 'Values that are unique to a subject do not evict the shared ones'() {
+        given:
+        def symbols = new SymbolTable(100)
+        def groups = (1..10).collect { "group-$it".toString() }
+
+        when: 'many more subjects than the table holds are compacted, each with a few unique values'
+        (1..10_000).each {
+            CompactAttributes.of([sub: "subject-$it".toString(), email: "subject-$it@example.com".toString(),
+                                  group: groups[it % groups.size()]], symbols)
+        }
+
+        then:
+        groups.every { symbols.intern(new String(it)).is(symbols.intern(new String(it))) }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache
+
+import io.curity.identityserver.plugin.data.access.rest.RestAttributeDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubUserStore
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import se.curity.identityserver.sdk.attribute.Attributes
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.nio.file.Paths
+
+class PeerCacheSpecification extends Specification {
+
+    def conditions = new PollingConditions(timeout: 5)
+    List<Closeable> resources = []
+
+    def cleanup() {
+        resources.reverse().each { it.close() }
+    }
+
+    def 'Attributes that a node looked up are sent to their owner, which returns them to the other nodes'() {
+        given:
+        def nodes = startNodes(3)
+        def subject = subjectOwnedBy(nodes, nodes[2])
+
+        when: 'the first node looked them up from the JSON service'
+        nodes[0].peerCache.offer(subject, Attributes.of('email', 'alice@example.com'), System.currentTimeMillis())
+
+        then:
+        conditions.eventually {
+            assert nodes[2].attributeCache.isCached(subject)
+        }
+
+        when: 'the second node does not have them'
+        def attributes = nodes[1].peerCache.get(subject)
+
+        then:
+        attributes?.get('email')?.value == 'alice@example.com'
+        nodes[1].attributeCache.isCached(subject)
+        nodes[1].metrics.snapshot()['peerCache.hits'] == 1
+        nodes[2].metrics.snapshot()['peerCache.served'] == 1
+    }
+
+    def 'A node does not ask the peers for the subjects that it owns'() {
+        given:
+        def nodes = startNodes(2)
+        def subject = subjectOwnedBy(nodes, nodes[0])
+
+        expect:
+        nodes[0].peerCache.get(subject) == null
+        nodes[0].metrics.snapshot()['peerCache.misses'] == 0
+        nodes[1].metrics.snapshot()['peerCache.served'] == 0
+    }
+
+    def 'A subject that its owner does not have is a miss'() {
+        given:
+        def nodes = startNodes(2)
+        def subject = subjectOwnedBy(nodes, nodes[1])
+
+        expect:
+        nodes[0].peerCache.get(subject) == null
+        nodes[0].metrics.snapshot()['peerCache.misses'] == 1
+        nodes[0].metrics.snapshot()['peerCache.failures'] == 0
+    }
+
+    def 'The attributes of a subject are invalidated at its owner'() {
+        given:
+        def nodes = startNodes(2)
+        def subject = subjectOwnedBy(nodes, nodes[1])
+        nodes[1].attributeCache.put(subject, Attributes.of('email', 'alice@example.com'))
+
+        when:
+        nodes[0].peerCache.invalidate(subject)
+
+        then:
+        conditions.eventually {
+            assert !nodes[1].attributeCache.isCached(subject)
+        }
+    }
+
+    def 'Attributes whose lookup started before the subject was invalidated at its owner are not stored there'() {
+        given:
+        def nodes = startNodes(2)
+        def subject = subjectOwnedBy(nodes, nodes[1])
+        def lookupStartedAt = System.currentTimeMillis()
+
+        when: 'the subject is invalidated while the lookup is in flight'
+        nodes[1].attributeCache.invalidate(subject)
+        nodes[0].peerCache.offer(subject, Attributes.of('email', 'alice@example.com'), lookupStartedAt)
+
+        then: 'the owner receives the attributes, but does not cache them'
+        conditions.eventually {
+            assert nodes[1].metrics.snapshot()['peerCache.stored'] == 1
+        }
+        !nodes[1].attributeCache.isCached(subject)
+        nodes[1].metrics.snapshot()['attributeCache.invalidatedLookups'] == 1
+    }
+
+    def 'A peer that does not respond in time is left out, and its subjects are owned by the other peers'() {
+        given: 'a peer that accepts connections but never responds'
+        def silentPeer = new ServerSocket(0, 50, InetAddress.loopbackAddress)
+        resources << silentPeer
+        def ports = [freePort(), silentPeer.localPort]
+        def node = startNode(ports[0], ports, [timeout: 100])
+        def subject = (1..1000).collect { "subject-$it".toString() }
+                .find { node.peerCache.owner(it).address() == "127.0.0.1:${silentPeer.localPort}".toString() }
+
+        when:
+        def start = System.nanoTime()
+        def attributes = node.peerCache.get(subject)
+        def elapsedMillis = (System.nanoTime() - start) / 1_000_000
+
+        then:
+        attributes == null
+        elapsedMillis < 1000
+        node.metrics.snapshot()['peerCache.failures'] == 1
+        node.metrics.snapshot()['peerCache.unavailablePeers'] == 1
+        node.peerCache.owner(subject).isSelf()
+
+        when: 'the subject is looked up again'
+        node.peerCache.get(subject)
+
+        then: 'the peer is not asked'
+        node.metrics.snapshot()['peerCache.failures'] == 1
+    }
+
+    def 'Requests without the shared secret are rejected'() {
+        given:
+        def ports = [freePort(), freePort()]
+        def owner = startNode(ports[0], ports)
+        def intruder = startNode(ports[1], ports, [sharedSecret: 'guessed'])
+        def subject = subjectOwnedBy([owner, intruder], owner)
+        owner.attributeCache.put(subject, Attributes.of('email', 'alice@example.com'))
+
+        expect:
+        intruder.peerCache.get(subject) == null
+        owner.metrics.snapshot()['peerCache.rejected'] == 1
+        owner.metrics.snapshot()['peerCache.served'] == 0
+        intruder.metrics.snapshot()['peerCache.failures'] == 1
+    }
+
+    def 'A signed request that is sent again, or was signed too long ago, is rejected'() {
+        given:
+        def ports = [freePort(), freePort()]
+        def owner = startNode(ports[0], ports)
+        def sender = startNode(ports[1], ports)
+        def subject = subjectOwnedBy([owner, sender], owner)
+        def path = "/attributes?subject=$subject".toString()
+        def client = HttpClient.newHttpClient()
+        def send = { long timestamp, String nonce ->
+            def signature = sender.peerCache.signature('GET', path, timestamp, nonce, null, null, new byte[0])
+            def request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:${ports[0]}$path"))
+                    .header('Peer-Cache-Signature', "${timestamp}.${nonce}.${signature}".toString())
+                    .GET()
+                    .build()
+
+            client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode()
+        }
+        long now = System.currentTimeMillis()
+
+        expect:
+        send(now, 'nonce-1') == 404
+        send(now, 'nonce-1') == 403
+        send(now - 60_000, 'nonce-2') == 403
+        owner.metrics.snapshot()['peerCache.rejected'] == 2
+    }
+
+    def 'Peers share attributes over TLS, with certificates that both sides verify'() {
+        given:
+        def ports = [freePort(), freePort()]
+        def tls = [tls: [keyStore: Paths.get(getClass().getResource('/peer-cache.p12').toURI()).toString(),
+                         keyStorePassword: 'peer-cache']]
+        def nodes = ports.collect { startNode(it, ports, tls) }
+        def subject = subjectOwnedBy(nodes, nodes[1])
+
+        when:
+        nodes[0].peerCache.offer(subject, Attributes.of('email', 'alice@example.com'), System.currentTimeMillis())
+
+        then:
+        conditions.eventually {
+            assert nodes[1].attributeCache.isCached(subject)
+        }
+        nodes[0].metrics.snapshot()['peerCache.failures'] == 0
+
+        when: 'a client without the certificate of the peers connects'
+        HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create("https://127.0.0.1:${ports[1]}/attributes"))
+                .GET().build(), HttpResponse.BodyHandlers.discarding())
+
+        then:
+        thrown(IOException)
+    }
+
+    def 'Each subject is looked up from the JSON service by one of the nodes of the cluster'() {
+        given:
+        def backend = StubUserStore.start()
+        resources << backend
+        def ports = [freePort(), freePort(), freePort()]
+        def configurations = ports.withIndex().collect { int port, int index ->
+            StubBackedProviders.configuration(backend, [
+                    id                        : "node-$index".toString(),
+                    getAttributesConfiguration: [
+                            provideSubject: [urlPath: '/users/:subject'],
+                            attributeCache: [peerCache: peerCacheSettings(port, ports)]
+                    ]
+            ])
+        }
+        def managedObjects = configurations.collect { new RestDataAccessManagedObject(it) }
+        resources.addAll(managedObjects)
+        def providers = [configurations, managedObjects].transpose().collect { configuration, managedObject ->
+            new RestAttributeDataAccessProvider(configuration, managedObject)
+        }
+        def subjects = (1..30).collect { "user-$it".toString() }
+
+        when: 'the first node looks up the subjects'
+        subjects.each { providers[0].getAttributes(it) }
+
+        then: 'those that other nodes own are sent to them'
+        def offers = managedObjects[0].metrics.snapshot()['peerCache.offers']
+        offers > 0
+        conditions.eventually {
+            assert managedObjects.sum { it.metrics.snapshot()['peerCache.stored'] } == offers
+        }
+
+        when: 'the other nodes look them up'
+        def attributes = providers[1..2].collectMany { provider -> subjects.collect { provider.getAttributes(it) } }
+
+        then: 'they come from the caches of the nodes'
+        attributes.every { it != null }
+        backend.totalBackendCalls() == 30
+        managedObjects[1..2].sum { it.metrics.snapshot()['peerCache.hits'] } > 0
+    }
+
+    private List<Node> startNodes(int count) {
+        def ports = (1..count).collect { freePort() }
+
+        ports.collect { startNode(it, ports) }
+    }
+
+    private Node startNode(int port, List<Integer> ports, Map settings = [:]) {
+        def metrics = new Metrics("peer-$port")
+        def attributeCache = new AttributeCache(ConfigurationStub.of(AttributesConfiguration.AttributeCache), metrics)
+        def peerCache = new PeerCache(ConfigurationStub.of(AttributesConfiguration.AttributeCache.PeerCache,
+                peerCacheSettings(port, ports) + settings), attributeCache, "peer-$port", metrics)
+        def node = new Node(port: port, metrics: metrics, attributeCache: attributeCache, peerCache: peerCache)
+
+        peerCache.start()
+        resources << node
+
+        node
+    }
+
+    private static Map peerCacheSettings(int port, List<Integer> ports) {
+        [
+                listenAddress: '127.0.0.1',
+                listenPort   : port,
+                peer         : ports.collect { "127.0.0.1:$it".toString() },
+                sharedSecret : 'shared-secret',
+                timeout      : 1000
+        ]
+    }
+
+    private static String subjectOwnedBy(List<Node> nodes, Node owner) {
+        (1..1000).collect { "subject-$it".toString() }
+                .find { nodes[0].peerCache.owner(it).address() == "127.0.0.1:$owner.port".toString() }
+    }
+
+    private static int freePort() {
+        new ServerSocket(0, 50, InetAddress.loopbackAddress).withCloseable { it.localPort }
+    }
+
+    static class Node implements Closeable {
+        int port
+        Metrics metrics
+        AttributeCache attributeCache
+        PeerCache peerCache
+
+        @Override
+        void close() {
+            peerCache.close()
+            attributeCache.close()
+            metrics.close()
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache
+
+import spock.lang.Specification
+
+import java.util.function.Function
+import java.util.function.Predicate
+
+class RendezvousHashSpecification extends Specification {
+
+    static final List<String> KEYS = (1..10_000).collect { "subject-$it".toString() }
+    static final Predicate<String> ALL = { true } as Predicate<String>
+
+    def 'Keys are spread evenly over the nodes'() {
+        given:
+        def hash = rendezvousHash(['node-1:7800', 'node-2:7800', 'node-3:7800', 'node-4:7800'])
+
+        when:
+        def keysPerNode = KEYS.countBy { hash.owner(it, ALL) }
+
+        then:
+        keysPerNode.keySet() == ['node-1:7800', 'node-2:7800', 'node-3:7800', 'node-4:7800'] as Set
+        keysPerNode.values().every { it > 2_250 && it < 2_750 }
+    }
+
+    def 'Every node chooses the same owner, regardless of the order of the nodes'() {
+        given:
+        def hash = rendezvousHash(['node-1:7800', 'node-2:7800', 'node-3:7800'])
+        def reordered = rendezvousHash(['node-3:7800', 'node-1:7800', 'node-2:7800'])
+
+        expect:
+        KEYS.every { hash.owner(it, ALL) == reordered.owner(it, ALL) }
+    }
+
+    def 'Adding a node only moves the keys that it now owns'() {
+        given:
+        def before = rendezvousHash(['node-1:7800', 'node-2:7800', 'node-3:7800'])
+        def after = rendezvousHash(['node-1:7800', 'node-2:7800', 'node-3:7800', 'node-4:7800'])
+
+        when:
+        def moved = KEYS.findAll { before.owner(it, ALL) != after.owner(it, ALL) }
+
+        then:
+        moved.every { after.owner(it, ALL) == 'node-4:7800' }
+        moved.size() > 2_250 && moved.size() < 2_750
+    }
+
+    def 'Leaving out a node only moves its own keys'() {
+        given:
+        def hash = rendezvousHash(['node-1:7800', 'node-2:7800', 'node-3:7800'])
+        def withoutNode2 = { it != 'node-2:7800' } as Predicate<String>
+
+        expect:
+        KEYS.findAll { hash.owner(it, ALL) != hash.owner(it, withoutNode2) }
+                .every { hash.owner(it, ALL) == 'node-2:7800' }
+        KEYS.every { hash.owner(it, withoutNode2) != 'node-2:7800' }
+    }
+
+    def 'There is no owner when no node is available'() {
+        expect:
+        rendezvousHash(['node-1:7800']).owner('subject', { false } as Predicate<String>) == null
+    }
+
+    private static RendezvousHash<String> rendezvousHash(List<String> nodes) {
+        new RendezvousHash<String>(nodes, Function.identity())
+    }
+}
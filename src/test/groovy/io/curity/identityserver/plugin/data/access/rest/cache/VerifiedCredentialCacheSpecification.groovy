@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.cache
+
+import io.curity.identityserver.plugin.data.access.rest.CannedBackend
+import io.curity.identityserver.plugin.data.access.rest.RestCredentialDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.cache.AttributeCacheSpecification.ManualTicker
+import io.curity.identityserver.plugin.data.access.rest.config.CredentialAccessConfiguration
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import se.curity.identityserver.sdk.attribute.Attributes
+import se.curity.identityserver.sdk.attribute.AuthenticationAttributes
+import se.curity.identityserver.sdk.attribute.SubjectAttributes
+import se.curity.identityserver.sdk.datasource.CredentialVerifyingDataAccessProvider.VerifyResult
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class VerifiedCredentialCacheSpecification extends Specification {
+
+    def ticker = new ManualTicker()
+    def metrics = new Metrics('test')
+    def cache = new VerifiedCredentialCache(ConfigurationStub.of(CredentialAccessConfiguration.VerifiedCredentialCache,
+            [timeToLive: 30, maximumSize: 10]), metrics, ticker)
+    def accepted = new VerifyResult.Accepted(AuthenticationAttributes.fromAttributes(Attributes.empty()))
+
+    def cleanup() {
+        metrics.close()
+    }
+
+    def 'A verification is only answered from the cache for the same password and within the time to live'() {
+        given: 'an accepted verification'
+        cache.put('service-account', 'secret', accepted, cache.startVerification())
+
+        expect: 'it is cached for the same password'
+        cache.getIfVerified('service-account', 'secret').is(accepted)
+
+        and: 'not for another password or subject'
+        cache.getIfVerified('service-account', 'other') == null
+        cache.getIfVerified('other-account', 'secret') == null
+
+        when: 'the time to live has passed'
+        ticker.advance(30, TimeUnit.SECONDS)
+
+        then:
+        cache.getIfVerified('service-account', 'secret') == null
+
+        and: 'the outcomes were counted'
+        metrics.snapshot()['verifiedCredentialCache.hits'] == 1
+        metrics.snapshot()['verifiedCredentialCache.passwordMismatches'] == 1
+        metrics.snapshot()['verifiedCredentialCache.misses'] == 2
+    }
+
+    def 'A verification that was in flight when the subject was invalidated is not cached'() {
+        given: 'a verification that starts before the password is changed'
+        def token = cache.startVerification()
+
+        when: 'the password is changed and the verification completes afterwards'
+        cache.invalidate('service-account')
+        cache.put('service-account', 'old-secret', accepted, token)
+
+        then: 'the old password is not cached'
+        cache.getIfVerified('service-account', 'old-secret') == null
+
+        when: 'a verification starts after the change'
+        cache.put('service-account', 'new-secret', accepted, cache.startVerification())
+
+        then: 'it is cached'
+        cache.getIfVerified('service-account', 'new-secret') != null
+    }
+
+    def 'A verification that was in flight is not cached when its invalidation was forgotten to make room'() {
+        given: 'a verification that starts before the password is changed'
+        def token = cache.startVerification()
+
+        when: 'more subjects are invalidated than the cache remembers before the verification completes'
+        cache.invalidate('service-account')
+        (1..20).each { cache.invalidate("other-account-$it".toString()) }
+        cache.put('service-account', 'old-secret', accepted, token)
+
+        then: 'the old password is not cached'
+        cache.getIfVerified('service-account', 'old-secret') == null
+
+        when: 'a verification starts after the invalidations'
+        cache.put('service-account', 'new-secret', accepted, cache.startVerification())
+
+        then: 'it is cached'
+        cache.getIfVerified('service-account', 'new-secret') != null
+    }
+
+    def 'Keyed hashes depend on the subject and password and do not contain the password'() {
+        when:
+        def hash = CredentialHasher.hash('ab', 'c')
+
+        then:
+        CredentialHasher.matches(hash, CredentialHasher.hash('ab', 'c'))
+        !CredentialHasher.matches(hash, CredentialHasher.hash('a', 'bc'))
+        !new String(hash, 'ISO-8859-1').contains('c')
+        hash.length == 32
+    }
+
+    def 'Repeated verifications reach the JSON service once, until the password is updated'() {
+        given: 'a credential provider with a verified credential cache'
+        def backend = new CannedBackend()
+        def configuration = ConfigurationStub.of(RestDataAccessProviderConfiguration, [
+                id                              : 'credential-cache',
+                webServiceClient                : backend.client,
+                json                            : backend.json,
+                getCredentialAccessConfiguration: [urlPath: '/users/:subject', verifiedCredentialCache: [:]],
+                getAttributesConfiguration      : [:]
+        ])
+        def managedObject = new RestDataAccessManagedObject(configuration)
+        def provider = new RestCredentialDataAccessProvider(configuration, managedObject)
+        def subject = SubjectAttributes.of('service-account', Attributes.empty())
+
+        when: 'the same credentials are verified three times'
+        def results = (1..3).collect { provider.verify(subject, 'secret') }
+
+        then: 'all were accepted, but only the first reached the service'
+        results.every { it instanceof VerifyResult.Accepted }
+        backend.requests.sum() == 1
+
+        when: 'the password is updated and verified again'
+        provider.set(subject, 'new-secret')
+        provider.verify(subject, 'secret')
+
+        then: 'the update and the verification reached the service'
+        backend.requests.sum() == 3
+
+        cleanup:
+        managedObject?.close()
+    }
+}
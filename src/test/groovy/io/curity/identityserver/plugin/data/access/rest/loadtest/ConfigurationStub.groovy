@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.loadtest
+
+import groovy.transform.CompileStatic
+import se.curity.identityserver.sdk.config.annotation.DefaultBoolean
+import se.curity.identityserver.sdk.config.annotation.DefaultEnum
+import se.curity.identityserver.sdk.config.annotation.DefaultInteger
+import se.curity.identityserver.sdk.config.annotation.DefaultString
+
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+
+/**
+ * Creates configuration objects that behave the way the server would build them: settings that are not given
+ * explicitly get their annotated default value, optional settings are empty and lists are empty.
+ *
+ * <p>Unlike Spock stubs, these are cheap to call and safe to use from many threads, which matters when measuring.
+ */
+final class ConfigurationStub {
+
+    private ConfigurationStub() {
+    }
+
+    /**
+     * @param values setting values by method name. Nested configuration can be given as a map, which is
+     * stubbed recursively, and optional settings can be given without wrapping them in an {@link Optional}.
+     */
+    static <T> T of(Class<T> type, Map<String, ?> values = [:]) {
+        Map<String, Object> resolved = new HashMap<>()
+
+        type.methods.each { method ->
+            if (method.parameterCount == 0 && !method.isDefault()) {
+                resolved[method.name] = valueFor(method, values)
+            }
+        }
+
+        (T) Proxy.newProxyInstance(type.classLoader, [type] as Class[], new ResolvedValues(type, resolved))
+    }
+
+    private static Object valueFor(Method method, Map<String, ?> values) {
+        boolean optional = method.returnType == Optional
+        Class<?> valueType = optional ? optionalType(method) : method.returnType
+
+        if (values.containsKey(method.name)) {
+            def value = values[method.name]
+
+            if (value instanceof Optional) {
+                return value
+            }
+
+            def converted = value instanceof Map && valueType.isInterface() ? of(valueType, value as Map) : value
+
+            return optional ? Optional.ofNullable(converted) : converted
+        }
+
+        if (optional) {
+            return Optional.empty()
+        }
+
+        if (method.returnType == List) {
+            return []
+        }
+
+        def defaultValue = annotatedDefault(method)
+
+        if (defaultValue != null) {
+            return defaultValue
+        }
+
+        if (method.returnType == boolean) {
+            return false
+        }
+
+        if (method.returnType == int) {
+            return 0
+        }
+
+        if (method.returnType == long) {
+            return 0L
+        }
+
+        if (method.returnType.isInterface() && method.returnType.name.startsWith('io.curity')) {
+            return of(method.returnType)
+        }
+
+        return null
+    }
+
+    private static Object annotatedDefault(Method method) {
+        for (def source : [method.annotations as List, method.annotatedReturnType.annotations as List]) {
+            for (def annotation : source) {
+                switch (annotation) {
+                    case DefaultString: return (annotation as DefaultString).value()
+                    case DefaultBoolean: return (annotation as DefaultBoolean).value()
+                    case DefaultInteger: return (annotation as DefaultInteger).value()
+                    case DefaultEnum: return Enum.valueOf(method.returnType as Class<Enum>, (annotation as DefaultEnum).value())
+                }
+            }
+        }
+
+        null
+    }
+
+    /**
+     * Answers setting calls from the resolved values, without allocating, so that stubs can be used when measuring
+     * allocations.
+     */
+    @CompileStatic
+    private static final class ResolvedValues implements InvocationHandler {
+
+        private final Class<?> _type
+        private final Map<String, Object> _values
+
+        ResolvedValues(Class<?> type, Map<String, Object> values) {
+            _type = type
+            _values = values
+        }
+
+        @Override
+        Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.name) {
+                case 'toString': return "ConfigurationStub(${_type.simpleName})".toString()
+                case 'hashCode': return System.identityHashCode(proxy)
+                case 'equals': return proxy.is(args[0])
+                default: return _values.get(method.name)
+            }
+        }
+    }
+
+    private static Class<?> optionalType(Method method) {
+        def parameterType = (method.genericReturnType as java.lang.reflect.ParameterizedType).actualTypeArguments[0]
+
+        parameterType instanceof Class ? parameterType as Class<?> : Object
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.loadtest
+
+import se.curity.identityserver.sdk.http.HttpHeaders
+import se.curity.identityserver.sdk.http.HttpRequest
+import se.curity.identityserver.sdk.http.HttpResponse
+import se.curity.identityserver.sdk.service.WebServiceClient
+
+import java.net.http.HttpClient
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+
+/**
+ * Adapts a JDK {@link HttpClient} to the SDK {@link WebServiceClient}, so that the providers can be driven against a
+ * real server.
+ *
+ * <p>Only the parts of the fluent API that the providers use are implemented. Request bodies are not forwarded, as
+ * the SDK body processors are opaque; the stub backends identify the subject from the request path instead.
+ */
+class HttpClientWebServiceClient {
+
+    private final HttpClient _httpClient
+    private final URI _baseUri
+    private final String _path
+    private final Map<String, Collection<String>> _queries
+
+    HttpClientWebServiceClient(URI baseUri, HttpClient httpClient = defaultHttpClient()) {
+        this(baseUri, httpClient, '', [:])
+    }
+
+    private HttpClientWebServiceClient(URI baseUri, HttpClient httpClient, String path,
+                                       Map<String, Collection<String>> queries) {
+        _baseUri = baseUri
+        _httpClient = httpClient
+        _path = path
+        _queries = queries
+    }
+
+    static HttpClient defaultHttpClient() {
+        HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build()
+    }
+
+    static WebServiceClient create(URI baseUri, HttpClient httpClient = defaultHttpClient()) {
+        new HttpClientWebServiceClient(baseUri, httpClient).asWebServiceClient()
+    }
+
+    WebServiceClient asWebServiceClient() {
+        [
+                withPath   : { String path -> new HttpClientWebServiceClient(_baseUri, _httpClient, path, _queries).asWebServiceClient() },
+                withQueries: { Map<String, Collection<String>> queries ->
+                    new HttpClientWebServiceClient(_baseUri, _httpClient, _path, queries).asWebServiceClient()
+                },
+                request    : { -> new RequestBuilder(this).asBuilder() }
+        ] as WebServiceClient
+    }
+
+    URI requestUri() {
+        def query = _queries.collectMany { name, values ->
+            values.collect { "${encode(name)}=${encode(it)}" }
+        }.join('&')
+
+        URI.create(_baseUri.toString() + _path + (query ? (_path.contains('?') ? '&' : '?') + query : ''))
+    }
+
+    HttpClient getHttpClient() {
+        _httpClient
+    }
+
+    private static String encode(String value) {
+        URLEncoder.encode(value, StandardCharsets.UTF_8)
+    }
+
+    private static class RequestBuilder {
+
+        private final HttpClientWebServiceClient _client
+        private final java.net.http.HttpRequest.Builder _builder
+
+        RequestBuilder(HttpClientWebServiceClient client) {
+            _client = client
+            _builder = java.net.http.HttpRequest.newBuilder(client.requestUri()).timeout(Duration.ofSeconds(30))
+        }
+
+        HttpRequest.Builder asBuilder() {
+            HttpRequest.Builder proxy
+            proxy = [
+                    header      : { String[] nameValuePairs ->
+                        for (int i = 0; i + 1 < nameValuePairs.length; i += 2) {
+                            _builder.header(nameValuePairs[i], nameValuePairs[i + 1])
+                        }
+                        proxy
+                    },
+                    accept      : { String value -> _builder.header('Accept', value); proxy },
+                    contentType : { String value -> _builder.header('Content-Type', value); proxy },
+                    body        : { body -> proxy },
+                    withoutAlarm: { alarm -> proxy },
+                    method      : { String method -> request(method) }
+            ] as HttpRequest.Builder
+
+            proxy
+        }
+
+        private HttpRequest request(String method) {
+            def request = _builder.method(method, java.net.http.HttpRequest.BodyPublishers.noBody()).build()
+
+            [response: { -> adapt(_client.httpClient.send(request, java.net.http.HttpResponse.BodyHandlers.ofString())) }] as HttpRequest
+        }
+
+        private static HttpResponse adapt(java.net.http.HttpResponse<String> response) {
+            Map<String, List<String>> headerMap = response.headers().map()
+
+            def headers = [
+                    allValues : { String name -> response.headers().allValues(name) },
+                    firstValue: { String name -> response.headers().firstValue(name) },
+                    map       : { -> headerMap }
+            ] as HttpHeaders
+
+            [
+                    statusCode: { -> response.statusCode() },
+                    headers   : { -> headers },
+                    body      : { converter -> response.body() }
+            ] as HttpResponse
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.loadtest
+
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration
+import io.curity.identityserver.plugin.data.access.rest.loadtest.LoadTestHarness.Report
+import io.curity.identityserver.plugin.data.access.rest.loadtest.LoadTestHarness.Scenario
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubUserStore.ContentTypeQuirk
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubUserStore.LatencyDistribution
+import se.curity.identityserver.sdk.attribute.Attributes
+import se.curity.identityserver.sdk.attribute.SubjectAttributes
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Stepwise
+
+/**
+ * End-to-end load test of the providers against a local stub backend.
+ *
+ * <p>This is not part of the regular test run, as it takes a while and its numbers depend on the machine. Run it with
+ * {@code mvn test -Dtest=LoadTestBenchmark}, optionally with {@code -Dloadtest.threads} and
+ * {@code -Dloadtest.iterations} to change the load.
+ *
+ * <p>Each scenario builds its providers with a new managed object, configured with the settings of the scenario, and
+ * closes it when it is done, so that the caches of one scenario do not serve the next.
+ */
+@Stepwise
+class LoadTestBenchmark extends Specification {
+
+    static final int THREADS = Integer.getInteger('loadtest.threads', 32)
+    static final int ITERATIONS = Integer.getInteger('loadtest.iterations', 2_000)
+
+    @Shared
+    @AutoCleanup
+    StubUserStore backend = StubUserStore.start(THREADS * 2)
+
+    @Shared
+    List<Report> reports = []
+
+    def setup() {
+        backend.latency = LatencyDistribution.none()
+        backend.errorRate = 0
+        backend.payloadBytes = 0
+        backend.contentTypeQuirk = ContentTypeQuirk.STANDARD
+    }
+
+    def cleanupSpec() {
+        println()
+        reports.each { println it }
+    }
+
+    def 'verify against a fast backend'() {
+        expect:
+        measure('verify, fast backend', this.&verifyOperation)
+    }
+
+    def 'verify against a backend with log-normal latency'() {
+        given:
+        backend.latency = LatencyDistribution.logNormal(5, 0.6)
+
+        expect:
+        measure('verify, log-normal 5 ms', this.&verifyOperation)
+    }
+
+    def 'verify of a skewed subject population with the verified-credential cache and failure tracking'() {
+        given:
+        backend.latency = LatencyDistribution.logNormal(5, 0.6)
+
+        expect:
+        measure('verify, skewed subjects, cached', Scenario.skewedSubjects(10_000, 50, 0.8), [
+                getCredentialAccessConfiguration: [
+                        urlPath                : '/users/:subject/verify',
+                        verifiedCredentialCache: [:],
+                        failureTracking        : [:]
+                ]
+        ], this.&verifyOperation)
+    }
+
+    def 'attribute lookups against a fast backend'() {
+        expect:
+        measure('attributes, fast backend', this.&attributesOperation)
+    }
+
+    def 'attribute lookups of a skewed subject population'() {
+        given:
+        backend.latency = LatencyDistribution.logNormal(5, 0.6)
+
+        expect:
+        measure('attributes, skewed subjects', Scenario.skewedSubjects(10_000, 50, 0.8), this.&attributesOperation)
+    }
+
+    def 'attribute lookups of a skewed subject population with the attribute cache'() {
+        given:
+        backend.latency = LatencyDistribution.logNormal(5, 0.6)
+
+        expect:
+        measure('attributes, skewed subjects, cached', Scenario.skewedSubjects(10_000, 50, 0.8), [
+                getAttributesConfiguration: [
+                        provideSubject: [urlPath: '/users/:subject'],
+                        attributeCache: [timeToLive: 60]
+                ]
+        ], this.&attributesOperation)
+    }
+
+    def 'attribute lookups against a slow and flaky backend'() {
+        given:
+        backend.latency = LatencyDistribution.logNormal(20, 0.8)
+        backend.errorRate = 0.02
+
+        expect:
+        measure('attributes, log-normal 20 ms, 2% errors', this.&attributesOperation)
+    }
+
+    def 'attribute lookups balanced over two web service clients with the built-in HTTP client'() {
+        given:
+        backend.latency = LatencyDistribution.logNormal(20, 0.8)
+        backend.errorRate = 0.02
+
+        expect:
+        measure('attributes, 2% errors, balanced, HTTP/2', Scenario.uniformSubjects(10_000), [
+                httpClientTransport: [
+                        baseUrl          : backend.baseUri.toString(),
+                        additionalBaseUrl: [backend.baseUri.toString()]
+                ],
+                loadBalancing      : [:]
+        ], this.&attributesOperation)
+    }
+
+    def 'attribute lookups returning large documents'() {
+        given:
+        backend.payloadBytes = 64 * 1024
+
+        expect:
+        measure('attributes, 64 KiB documents', this.&attributesOperation)
+    }
+
+    def 'attribute lookups without a Content-Type'() {
+        given:
+        backend.contentTypeQuirk = ContentTypeQuirk.MISSING
+
+        expect:
+        measure('attributes, no Content-Type', this.&attributesOperation)
+    }
+
+    /**
+     * @param overrides top-level settings of the scenario, see {@link StubBackedProviders#configuration}
+     * @param operationFactory creates the operation to measure from the configuration and the managed object
+     */
+    private boolean measure(String name, Closure<String> subjects = Scenario.uniformSubjects(10_000),
+                            Map<String, ?> overrides = [:], Closure<Closure<?>> operationFactory) {
+        def configuration = StubBackedProviders.configuration(backend, overrides)
+        def managedObject = StubBackedProviders.managedObject(configuration)
+
+        try {
+            def report = LoadTestHarness.run(new Scenario(
+                    name: name,
+                    threads: THREADS,
+                    iterationsPerThread: ITERATIONS,
+                    subjects: subjects,
+                    operation: operationFactory.call(configuration, managedObject)
+            ), backend)
+
+            reports << report
+
+            report.operations == THREADS * ITERATIONS
+        }
+        finally {
+            managedObject.close()
+        }
+    }
+
+    private static Closure<?> verifyOperation(RestDataAccessProviderConfiguration configuration,
+                                              RestDataAccessManagedObject managedObject) {
+        def provider = StubBackedProviders.credentialProvider(configuration, managedObject)
+
+        return { String subject -> provider.verify(SubjectAttributes.of(subject, Attributes.empty()), 'secret') }
+    }
+
+    private static Closure<?> attributesOperation(RestDataAccessProviderConfiguration configuration,
+                                                  RestDataAccessManagedObject managedObject) {
+        def provider = StubBackedProviders.attributeProvider(configuration, managedObject)
+
+        return { String subject -> provider.getAttributes(subject) }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.loadtest
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Drives a provider operation from many threads and reports throughput, latency percentiles and the number of calls
+ * that reached the backend.
+ */
+class LoadTestHarness {
+
+    /**
+     * @param backend a {@link StubUserStore}, or another stub backend that counts its calls with
+     * {@code resetCounters()} and {@code backendCalls()}
+     */
+    static Report run(Scenario scenario, backend) {
+        // warm up with a single thread, so that the measured run is not dominated by class loading and JIT
+        scenario.warmUpIterations.times { scenario.operation.call(scenario.subjects.call()) }
+
+        backend.resetCounters()
+
+        def outcomes = new ConcurrentHashMap<String, LongAdder>()
+        def latencies = new long[scenario.threads][scenario.iterationsPerThread]
+        def start = new CountDownLatch(1)
+        def done = new CountDownLatch(scenario.threads)
+        def failures = new LongAdder()
+
+        def workers = (0..<scenario.threads).collect { int threadIndex ->
+            Thread.start("load-test-$threadIndex") {
+                start.await()
+
+                try {
+                    for (int i = 0; i < scenario.iterationsPerThread; i++) {
+                        String subject = scenario.subjects.call()
+                        long before = System.nanoTime()
+
+                        try {
+                            def result = scenario.operation.call(subject)
+                            outcomes.computeIfAbsent(outcomeOf(result)) { new LongAdder() }.increment()
+                        }
+                        catch (Exception e) {
+                            failures.increment()
+                            outcomes.computeIfAbsent(e.class.simpleName) { new LongAdder() }.increment()
+                        }
+
+                        latencies[threadIndex][i] = System.nanoTime() - before
+                    }
+                }
+                finally {
+                    done.countDown()
+                }
+            }
+        }
+
+        long startedAt = System.nanoTime()
+        start.countDown()
+        done.await()
+        long elapsed = System.nanoTime() - startedAt
+
+        workers*.join()
+
+        long[] allLatencies = new long[scenario.threads * scenario.iterationsPerThread]
+        latencies.eachWithIndex { long[] threadLatencies, int threadIndex ->
+            System.arraycopy(threadLatencies, 0, allLatencies, threadIndex * scenario.iterationsPerThread,
+                    scenario.iterationsPerThread)
+        }
+        Arrays.sort(allLatencies)
+
+        new Report(
+                scenario: scenario.name,
+                operations: allLatencies.length,
+                failures: failures.sum(),
+                elapsedNanos: elapsed,
+                sortedLatenciesNanos: allLatencies,
+                outcomes: outcomes.collectEntries { key, value -> [(key): value.sum()] } as Map<String, Long>,
+                backendCalls: backend.backendCalls())
+    }
+
+    private static String outcomeOf(Object result) {
+        result == null ? 'null' : result.class.simpleName
+    }
+
+    static class Scenario {
+        String name
+        int threads = 16
+        int warmUpIterations = 500
+        int iterationsPerThread = 1_000
+
+        /**
+         * Picks the subject for the next call.
+         */
+        Closure<String> subjects = uniformSubjects(10_000)
+
+        /**
+         * The provider call to measure. It is given the subject and returns the provider's result.
+         */
+        Closure<?> operation
+
+        static Closure<String> uniformSubjects(int count) {
+            return { -> "user-${ThreadLocalRandom.current().nextInt(count)}".toString() }
+        }
+
+        /**
+         * Picks subjects so that a small hot set of {@code hotCount} subjects receives {@code hotShare} of all calls,
+         * like service accounts and kiosk users do in production.
+         */
+        static Closure<String> skewedSubjects(int count, int hotCount, double hotShare) {
+            return { ->
+                def random = ThreadLocalRandom.current()
+                int index = random.nextDouble() < hotShare ? random.nextInt(hotCount) : random.nextInt(count)
+                "user-$index".toString()
+            }
+        }
+    }
+
+    static class Report {
+        String scenario
+        long operations
+        long failures
+        long elapsedNanos
+        long[] sortedLatenciesNanos
+        Map<String, Long> outcomes
+        Map<String, Long> backendCalls
+
+        double getThroughput() {
+            operations / (elapsedNanos / 1_000_000_000d)
+        }
+
+        /**
+         * @param percentile between 0 and 100, using the nearest-rank method
+         * @return the latency in milliseconds
+         */
+        double latencyMillis(double percentile) {
+            if (sortedLatenciesNanos.length == 0) {
+                return 0
+            }
+
+            int rank = (int) Math.ceil(percentile / 100 * sortedLatenciesNanos.length)
+            sortedLatenciesNanos[Math.max(0, rank - 1)] / 1_000_000d
+        }
+
+        long getTotalBackendCalls() {
+            backendCalls.values().sum(0L) as long
+        }
+
+        @Override
+        String toString() {
+            String.format('%-40s %10.0f ops/s  p50 %8.3f ms  p99 %8.3f ms  p99.9 %8.3f ms  failures %d  backend calls %d %s',
+                    scenario, throughput, latencyMillis(50), latencyMillis(99), latencyMillis(99.9),
+                    failures, totalBackendCalls, backendCalls)
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.loadtest
+
+import io.curity.identityserver.plugin.data.access.rest.loadtest.LoadTestHarness.Scenario
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubUserStore.ContentTypeQuirk
+import se.curity.identityserver.sdk.attribute.Attributes
+import se.curity.identityserver.sdk.attribute.SubjectAttributes
+import se.curity.identityserver.sdk.datasource.CredentialVerifyingDataAccessProvider.VerifyResult
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Short runs of the load-test harness, to keep it working. The real measurements are in {@link LoadTestBenchmark}.
+ */
+class LoadTestHarnessSpecification extends Specification {
+
+    @Shared
+    @AutoCleanup
+    StubUserStore backend = StubUserStore.start()
+
+    def setup() {
+        backend.errorRate = 0
+        backend.rejectRate = 0
+        backend.contentTypeQuirk = ContentTypeQuirk.STANDARD
+    }
+
+    def 'Every verify call made by the harness reaches the stub backend'() {
+        given: 'a credential provider using a real HTTP client against the stub'
+        def configuration = StubBackedProviders.configuration(backend)
+        def managedObject = StubBackedProviders.managedObject(configuration)
+        def provider = StubBackedProviders.credentialProvider(configuration, managedObject)
+
+        when: 'verify is driven from several threads'
+        def report = LoadTestHarness.run(new Scenario(
+                name: 'verify',
+                threads: 4,
+                warmUpIterations: 10,
+                iterationsPerThread: 25,
+                operation: { String subject -> provider.verify(SubjectAttributes.of(subject, Attributes.empty()), 'secret') }
+        ), backend)
+
+        then: 'all calls were accepted and measured'
+        report.operations == 100
+        report.failures == 0
+        report.outcomes == [(VerifyResult.Accepted.simpleName): 100L]
+
+        and: 'every call reached the backend'
+        report.backendCalls == ['POST verify': 100L]
+
+        and: 'the percentiles are ordered'
+        report.latencyMillis(50) <= report.latencyMillis(99)
+        report.latencyMillis(99) <= report.latencyMillis(99.9)
+        report.throughput > 0
+
+        cleanup:
+        managedObject?.close()
+    }
+
+    @Unroll
+    'Attribute lookups return the user document when the backend answers with #quirk Content-Type'() {
+        given: 'an attribute provider using a real HTTP client against the stub'
+        def configuration = StubBackedProviders.configuration(backend)
+        def managedObject = StubBackedProviders.managedObject(configuration)
+        def provider = StubBackedProviders.attributeProvider(configuration, managedObject)
+        backend.contentTypeQuirk = quirk
+
+        when:
+        def report = LoadTestHarness.run(new Scenario(
+                name: "attributes ($quirk)",
+                threads: 2,
+                warmUpIterations: 0,
+                iterationsPerThread: 10,
+                operation: { String subject -> provider.getAttributes(subject) }
+        ), backend)
+
+        then:
+        report.failures == 0
+        report.backendCalls == ['GET users': 20L]
+
+        cleanup:
+        managedObject?.close()
+
+        where:
+        quirk << ContentTypeQuirk.values()
+    }
+
+    def 'Attribute lookups that are cached by the managed object only reach the stub backend on a miss'() {
+        given: 'an attribute provider with an attribute cache'
+        def configuration = StubBackedProviders.configuration(backend, [
+                getAttributesConfiguration: [
+                        provideSubject: [urlPath: '/users/:subject'],
+                        attributeCache: [timeToLive: 60]
+                ]
+        ])
+        def managedObject = StubBackedProviders.managedObject(configuration)
+        def provider = StubBackedProviders.attributeProvider(configuration, managedObject)
+
+        when: 'ten subjects are looked up over and over'
+        def report = LoadTestHarness.run(new Scenario(
+                name: 'attributes, cached',
+                threads: 2,
+                warmUpIterations: 0,
+                iterationsPerThread: 50,
+                subjects: Scenario.uniformSubjects(10),
+                operation: { String subject -> provider.getAttributes(subject) }
+        ), backend)
+
+        then: 'each subject reached the backend at most once per thread'
+        report.failures == 0
+        report.backendCalls['GET users'] <= 20
+        managedObject.metrics.snapshot()['attributeCache.hits'] >= 80
+
+        cleanup:
+        managedObject?.close()
+    }
+
+    def 'Backend errors are visible in the report'() {
+        given:
+        def configuration = StubBackedProviders.configuration(backend)
+        def managedObject = StubBackedProviders.managedObject(configuration)
+        def provider = StubBackedProviders.credentialProvider(configuration, managedObject)
+        backend.errorRate = 1
+
+        when:
+        def report = LoadTestHarness.run(new Scenario(
+                name: 'verify against failing backend',
+                threads: 2,
+                warmUpIterations: 0,
+                iterationsPerThread: 10,
+                operation: { String subject -> provider.verify(SubjectAttributes.of(subject, Attributes.empty()), 'secret') }
+        ), backend)
+
+        then: 'the provider rejected every call, as the backend failed'
+        report.outcomes == [(VerifyResult.Rejected.simpleName): 20L]
+        report.totalBackendCalls == 20
+
+        cleanup:
+        managedObject?.close()
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.loadtest
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import io.curity.identityserver.plugin.data.access.rest.RestAttributeDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestCredentialDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration
+import se.curity.identityserver.sdk.service.Json
+import se.curity.identityserver.sdk.service.WebServiceClient
+
+/**
+ * Builds providers that talk to a {@link StubUserStore} through a real HTTP client.
+ *
+ * <p>The providers share a {@link RestDataAccessManagedObject}, as they do in the server, so that the caches, load
+ * balancing, transport and warm-up that are configured are in effect. Close it when the providers are no longer used.
+ */
+final class StubBackedProviders {
+
+    private StubBackedProviders() {
+    }
+
+    static Json json() {
+        [
+                fromJson     : { String body -> new JsonSlurper().parseText(body) as Map<String, Object> },
+                fromJsonArray: { String body -> new JsonSlurper().parseText(body) as List<?> },
+                toJson       : { Object value -> JsonOutput.toJson(value) }
+        ] as Json
+    }
+
+    /**
+     * @param overrides top-level settings that replace the defaults, e.g. {@code [getAttributesConfiguration: [...]]}
+     */
+    static RestDataAccessProviderConfiguration configuration(WebServiceClient webServiceClient,
+                                                             Map<String, ?> overrides = [:]) {
+        Map<String, ?> settings = [
+                id                             : 'load-test',
+                webServiceClient               : webServiceClient,
+                json                           : json(),
+                getCredentialAccessConfiguration: [urlPath: '/users/:subject/verify'],
+                getAttributesConfiguration     : [provideSubject: [urlPath: '/users/:subject']]
+        ]
+
+        ConfigurationStub.of(RestDataAccessProviderConfiguration, settings + overrides)
+    }
+
+    static RestDataAccessProviderConfiguration configuration(StubUserStore backend, Map<String, ?> overrides = [:]) {
+        configuration(HttpClientWebServiceClient.create(backend.baseUri), overrides)
+    }
+
+    static RestDataAccessManagedObject managedObject(RestDataAccessProviderConfiguration configuration) {
+        new RestDataAccessManagedObject(configuration)
+    }
+
+    static RestCredentialDataAccessProvider credentialProvider(RestDataAccessProviderConfiguration configuration,
+                                                               RestDataAccessManagedObject managedObject) {
+        new RestCredentialDataAccessProvider(configuration, managedObject)
+    }
+
+    static RestAttributeDataAccessProvider attributeProvider(RestDataAccessProviderConfiguration configuration,
+                                                             RestDataAccessManagedObject managedObject) {
+        new RestAttributeDataAccessProvider(configuration, managedObject)
+    }
+}
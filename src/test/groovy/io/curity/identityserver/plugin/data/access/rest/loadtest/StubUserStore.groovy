@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.loadtest
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import groovy.json.JsonOutput
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A user store backend running on a local JDK {@link HttpServer}.
+ *
+ * <p>{@code GET /users/:subject} returns the user document, {@code POST} and {@code GET} requests to a path ending in
+ * {@code /verify} verify a password and {@code PUT} updates one. Latency, error rate, payload size and the returned
+ * Content-Type can be changed while the server is running.
+ */
+class StubUserStore implements Closeable {
+
+    final HttpServer server
+    private final ExecutorService _executor
+
+    volatile LatencyDistribution latency = LatencyDistribution.none()
+
+    /**
+     * Fraction of requests, between 0 and 1, that are answered with HTTP 503.
+     */
+    volatile double errorRate = 0
+
+    /**
+     * Fraction of verify requests, between 0 and 1, that are answered with HTTP 401.
+     */
+    volatile double rejectRate = 0
+
+    /**
+     * Number of padding characters added to every user document.
+     */
+    volatile int payloadBytes = 0
+
+    volatile ContentTypeQuirk contentTypeQuirk = ContentTypeQuirk.STANDARD
+
+    /**
+     * If set, {@code GET /users/:subject} requests are held back until it is counted down, to interleave other
+     * requests with a lookup that is in flight.
+     */
+    volatile CountDownLatch lookupGate
+
+    private final Map<String, LongAdder> _calls = new ConcurrentHashMap<>()
+
+    private StubUserStore(HttpServer server, ExecutorService executor) {
+        this.server = server
+        _executor = executor
+    }
+
+    static StubUserStore start(int workerThreads = 64) {
+        def server = HttpServer.create(new InetSocketAddress(InetAddress.loopbackAddress, 0), 1024)
+        def executor = Executors.newFixedThreadPool(workerThreads)
+        def store = new StubUserStore(server, executor)
+
+        server.executor = executor
+        server.createContext('/') { HttpExchange exchange -> store.handle(exchange) }
+        server.start()
+
+        store
+    }
+
+    URI getBaseUri() {
+        URI.create("http://${server.address.hostString}:${server.address.port}")
+    }
+
+    /**
+     * @return the number of requests received per operation, e.g. {@code POST verify} or {@code GET users}
+     */
+    Map<String, Long> backendCalls() {
+        _calls.collectEntries { key, value -> [(key): value.sum()] } as Map<String, Long>
+    }
+
+    long totalBackendCalls() {
+        _calls.values().sum { it.sum() } as Long ?: 0L
+    }
+
+    void resetCounters() {
+        _calls.clear()
+    }
+
+    @Override
+    void close() {
+        server.stop(0)
+        _executor.shutdownNow()
+        _executor.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            exchange.requestBody.readAllBytes()
+
+            def method = exchange.requestMethod
+            def segments = exchange.requestURI.path.split('/').findAll { !it.isEmpty() }
+            def operation = segments.isEmpty() ? 'root' : (segments.last() == 'verify' ? 'verify' : segments[0])
+
+            _calls.computeIfAbsent("$method $operation".toString()) { new LongAdder() }.increment()
+
+            sleepMillis(latency.nextMillis())
+
+            if (lookupGate != null && method == 'GET' && operation == 'users') {
+                lookupGate.await(10, TimeUnit.SECONDS)
+            }
+
+            def random = ThreadLocalRandom.current()
+
+            if (random.nextDouble() < errorRate) {
+                respond(exchange, 503, [error: 'unavailable'])
+            } else if (operation == 'verify' && random.nextDouble() < rejectRate) {
+                respond(exchange, 401, [error: 'invalid_credentials'])
+            } else if (method == 'PUT') {
+                respond(exchange, 200, [:])
+            } else {
+                def subject = segments.size() > 1 ? URLDecoder.decode(segments[1], StandardCharsets.UTF_8) : 'anonymous'
+                respond(exchange, 200, userDocument(subject))
+            }
+        }
+        catch (IOException ignored) {
+            // the client went away, nothing to answer
+        }
+        finally {
+            exchange.close()
+        }
+    }
+
+    private Map userDocument(String subject) {
+        def document = [
+                subject : subject,
+                email   : "$subject@example.com".toString(),
+                tenant  : 'tenant-1',
+                active  : true,
+                groups  : ['users', 'employees', 'vpn'],
+                address : [country: 'SE', locality: 'Stockholm'],
+                loginCount: 42
+        ]
+
+        if (payloadBytes > 0) {
+            document.padding = 'x' * payloadBytes
+        }
+
+        document
+    }
+
+    private void respond(HttpExchange exchange, int status, Map body) {
+        byte[] bytes = JsonOutput.toJson(body).getBytes(StandardCharsets.UTF_8)
+
+        contentTypeQuirk.headerValues.each { exchange.responseHeaders.add('Content-Type', it) }
+        exchange.sendResponseHeaders(status, bytes.length)
+        exchange.responseBody.write(bytes)
+    }
+
+    private static void sleepMillis(double millis) {
+        if (millis > 0) {
+            TimeUnit.NANOSECONDS.sleep((long) (millis * 1_000_000))
+        }
+    }
+
+    enum ContentTypeQuirk {
+        STANDARD(['application/json']),
+        WITH_CHARSET(['application/json; charset=UTF-8']),
+        MISSING([]),
+        WRONG(['text/plain']),
+        MULTIPLE(['text/plain', 'application/json'])
+
+        final List<String> headerValues
+
+        ContentTypeQuirk(List<String> headerValues) {
+            this.headerValues = headerValues
+        }
+    }
+
+    /**
+     * Produces the artificial latency, in milliseconds, that the stub waits before answering a request.
+     */
+    static abstract class LatencyDistribution {
+
+        abstract double nextMillis()
+
+        static LatencyDistribution none() {
+            fixed(0)
+        }
+
+        static LatencyDistribution fixed(double millis) {
+            new LatencyDistribution() {
+                @Override
+                double nextMillis() {
+                    millis
+                }
+            }
+        }
+
+        static LatencyDistribution uniform(double minMillis, double maxMillis) {
+            new LatencyDistribution() {
+                @Override
+                double nextMillis() {
+                    ThreadLocalRandom.current().nextDouble(minMillis, maxMillis)
+                }
+            }
+        }
+
+        /**
+         * A log-normal distribution, which has the long tail that real backends show.
+         */
+        static LatencyDistribution logNormal(double medianMillis, double sigma) {
+            new LatencyDistribution() {
+                @Override
+                double nextMillis() {
+                    medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian())
+                }
+            }
+        }
+    }
+}
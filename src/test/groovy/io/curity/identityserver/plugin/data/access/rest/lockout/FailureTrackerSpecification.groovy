@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.lockout
+
+import io.curity.identityserver.plugin.data.access.rest.CannedBackend
+import io.curity.identityserver.plugin.data.access.rest.RestCredentialDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.cache.AttributeCacheSpecification.ManualTicker
+import io.curity.identityserver.plugin.data.access.rest.cache.CredentialHasher
+import io.curity.identityserver.plugin.data.access.rest.config.CredentialAccessConfiguration
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import se.curity.identityserver.sdk.attribute.Attributes
+import se.curity.identityserver.sdk.attribute.SubjectAttributes
+import se.curity.identityserver.sdk.datasource.CredentialVerifyingDataAccessProvider.VerifyResult
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class FailureTrackerSpecification extends Specification {
+
+    def ticker = new ManualTicker()
+    def metrics = new Metrics('test')
+
+    def cleanup() {
+        metrics.close()
+    }
+
+    def 'A subject is locked out once its rejections reach the threshold, and cools down after the cooling period'() {
+        given:
+        def tracker = tracker(subjectThreshold: 5, credentialThreshold: 0, coolingPeriod: 60)
+
+        when: 'the subject is rejected one time less than the threshold, with different passwords'
+        4.times { tracker.recordRejection('johndoe', "guess-$it") }
+
+        then:
+        !tracker.isLockedOut('johndoe', 'Password1')
+
+        when: 'it is rejected once more'
+        tracker.recordRejection('johndoe', 'guess-4')
+
+        then: 'every password of the subject is locked out, but other subjects are not'
+        tracker.isLockedOut('johndoe', 'Password1')
+        !tracker.isLockedOut('janedoe', 'Password1')
+
+        when: 'the cooling period is over'
+        ticker.advance(60, TimeUnit.SECONDS)
+
+        then:
+        !tracker.isLockedOut('johndoe', 'Password1')
+        metrics.snapshot()['failureTracking.subjectLockouts'] == 1
+    }
+
+    def 'A subject that reaches its threshold just before the counts are halved stays locked out for a cooling period'() {
+        given:
+        def tracker = tracker(subjectThreshold: 5, credentialThreshold: 0, coolingPeriod: 60)
+
+        when: 'the subject reaches its threshold one second before the counts are halved'
+        ticker.advance(59, TimeUnit.SECONDS)
+        5.times { tracker.recordRejection('johndoe', "guess-$it") }
+        ticker.advance(2, TimeUnit.SECONDS)
+
+        then: 'it is still locked out after they were'
+        tracker.isLockedOut('johndoe', 'Password1')
+
+        when: 'almost a cooling period has passed since it reached the threshold'
+        ticker.advance(57, TimeUnit.SECONDS)
+
+        then:
+        tracker.isLockedOut('johndoe', 'Password1')
+
+        when: 'a full cooling period has passed'
+        ticker.advance(1, TimeUnit.SECONDS)
+
+        then:
+        !tracker.isLockedOut('johndoe', 'Password1')
+    }
+
+    def 'Only the password that is rejected repeatedly is locked out when tracking credentials'() {
+        given:
+        def tracker = tracker(subjectThreshold: 0, credentialThreshold: 3)
+
+        when:
+        3.times { tracker.recordRejection('johndoe', 'guess') }
+
+        then:
+        tracker.isLockedOut('johndoe', 'guess')
+        !tracker.isLockedOut('johndoe', 'Password1')
+        !tracker.isLockedOut('janedoe', 'guess')
+    }
+
+    def 'Counts are never underestimated and memory does not grow with the number of subjects'() {
+        given: 'a narrow sketch'
+        def sketch = new DecayingCountMinSketch(64, TimeUnit.MINUTES.toNanos(5), ticker)
+        def victim = CredentialHasher.hashSubject('victim')
+
+        when: 'the victim is rejected twice while an attacker tries many usernames'
+        sketch.increment(victim)
+        (1..100_000).each { sketch.increment(CredentialHasher.hashSubject("user-$it")) }
+        sketch.increment(victim)
+
+        then: 'the victim count is at least the true count'
+        sketch.estimate(victim) >= 2
+
+        and: 'the sketch still has four rows of 64 counters'
+        sketch.width() == 64
+    }
+
+    def 'The sketch width is rounded up to a power of two'() {
+        expect:
+        new DecayingCountMinSketch(width, 1, ticker).width() == expected
+
+        where:
+        width || expected
+        1     || 2
+        64    || 64
+        1000  || 1024
+    }
+
+    def 'Verifications of a locked out subject are rejected without calling the JSON service'() {
+        given: 'a JSON service that rejects every verification'
+        def backend = new CannedBackend(401, '{"error":"invalid_credentials"}', [error: 'invalid_credentials'])
+        def configuration = ConfigurationStub.of(RestDataAccessProviderConfiguration, [
+                id                              : 'failure-tracking',
+                webServiceClient                : backend.client,
+                json                            : backend.json,
+                getCredentialAccessConfiguration: [urlPath: '/users/:subject', failureTracking: [subjectThreshold: 5]],
+                getAttributesConfiguration      : [:]
+        ])
+        def managedObject = new RestDataAccessManagedObject(configuration)
+        def provider = new RestCredentialDataAccessProvider(configuration, managedObject)
+        def subject = SubjectAttributes.of('johndoe', Attributes.empty())
+
+        when: 'the subject is tried with many passwords'
+        def results = (1..50).collect { provider.verify(subject, "guess-$it") }
+
+        then: 'all were rejected, but only the ones up to the threshold reached the service'
+        results.every { it instanceof VerifyResult.Rejected }
+        backend.requests.sum() == 5
+
+        cleanup:
+        managedObject?.close()
+    }
+
+    def 'Server errors are not counted as rejections'() {
+        given: 'a JSON service that fails'
+        def backend = new CannedBackend(503, '{"error":"unavailable"}', [error: 'unavailable'])
+        def configuration = ConfigurationStub.of(RestDataAccessProviderConfiguration, [
+                id                              : 'failure-tracking',
+                webServiceClient                : backend.client,
+                json                            : backend.json,
+                getCredentialAccessConfiguration: [urlPath: '/users/:subject', failureTracking: [subjectThreshold: 5]],
+                getAttributesConfiguration      : [:]
+        ])
+        def managedObject = new RestDataAccessManagedObject(configuration)
+        def provider = new RestCredentialDataAccessProvider(configuration, managedObject)
+
+        when:
+        10.times { provider.verify(SubjectAttributes.of('johndoe', Attributes.empty()), 'Password1') }
+
+        then: 'every verification reached the service'
+        backend.requests.sum() == 10
+
+        cleanup:
+        managedObject?.close()
+    }
+
+    private FailureTracker tracker(Map settings) {
+        new FailureTracker(ConfigurationStub.of(CredentialAccessConfiguration.FailureTracking, settings), metrics, ticker)
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.logging
+
+import io.curity.identityserver.plugin.data.access.rest.cache.AttributeCacheSpecification.ManualTicker
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration.DiagnosticLogging
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.logging.DiagnosticLogger.Category
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import org.slf4j.Logger
+import org.slf4j.event.Level
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class DiagnosticLoggerSpecification extends Specification {
+
+    def ticker = new ManualTicker()
+    def metrics = new Metrics('test')
+    def logger = Mock(Logger) {
+        isEnabledForLevel(_) >> true
+    }
+
+    def cleanup() {
+        metrics.close()
+    }
+
+    def 'Configured members are redacted at any depth without parsing the JSON'() {
+        given:
+        def redactor = new JsonRedactor(['password', 'ssn'])
+
+        expect:
+        redactor.redact(json) == redacted
+
+        where:
+        json                                                     || redacted
+        '{"sub":"john","password":"s3cr\\"et","x":1}'            || '{"sub":"john","password":"[redacted]","x":1}'
+        '{"ssn" : 123456, "a":{"password":{"b":[1,"}"]},"c":2}}' || '{"ssn" : "[redacted]", "a":{"password":"[redacted]","c":2}}'
+        '[{"password":null},{"note":"password"}]'                || '[{"password":"[redacted]"},{"note":"password"}]'
+        '{"password":"cut off'                                   || '{"password":"[redacted]"'
+        '{"password":[1,2'                                       || '{"password":"[redacted]"'
+        '{"passwords":"x","sub":"ssn"}'                          || '{"passwords":"x","sub":"ssn"}'
+        'not json "password": value, more'                       || 'not json "password": "[redacted]", more'
+    }
+
+    def 'Logged bodies are cut at the maximum length and redacted'() {
+        given:
+        def diagnosticLogger = diagnosticLogger(maximumBodyLength: 30, redactedMember: ['password'])
+        def body = '{"sub":"john","password":"secret","groups":["admins","users"]}'
+
+        when:
+        diagnosticLogger.log(logger, Level.DEBUG, Category.RESPONSE_BODY, 'Response:\n{}', body)
+
+        then:
+        1 * logger.debug('Response:\n{}', '{"sub":"john","password":"[redacted]"... (32 more characters)')
+    }
+
+    def 'Nothing is done if the level is not enabled'() {
+        given:
+        def logger = Mock(Logger)
+        def diagnosticLogger = diagnosticLogger(maximumLinesPerMinute: 1)
+
+        when:
+        3.times { diagnosticLogger.log(logger, Level.TRACE, Category.RESPONSE_BODY, '{}', 'body') }
+
+        then:
+        3 * logger.isEnabledForLevel(Level.TRACE) >> false
+        0 * logger.trace(*_)
+        metrics.snapshot()['diagnosticLogging.rateLimited'] == 0
+    }
+
+    def 'Only a sample of each category is logged'() {
+        given:
+        def diagnosticLogger = diagnosticLogger(responseBodySampleRate: 0, maximumLinesPerMinute: 1000)
+
+        when:
+        100.times {
+            diagnosticLogger.log(logger, Level.DEBUG, Category.RESPONSE_BODY, '{}', 'body')
+            diagnosticLogger.log(logger, Level.WARN, Category.PARSE_FAILURE, '{}: {}', 'reason', 'body')
+        }
+
+        then:
+        0 * logger.debug(*_)
+        100 * logger.warn('{}: {}', 'reason', 'body')
+        metrics.snapshot()['diagnosticLogging.sampledOut'] == 100
+    }
+
+    def 'Lines over the rate limit are counted and reported with the next line that is logged'() {
+        given:
+        def diagnosticLogger = diagnosticLogger(maximumLinesPerMinute: 2)
+
+        when: 'a flood of identical parse failures'
+        10.times { diagnosticLogger.log(logger, Level.WARN, Category.PARSE_FAILURE, '{}: {}', 'reason', 'body') }
+
+        then:
+        2 * logger.warn('{}: {}', 'reason', 'body')
+        metrics.snapshot()['diagnosticLogging.rateLimited'] == 8
+
+        when: 'a response body is logged, which has a limit of its own'
+        diagnosticLogger.log(logger, Level.DEBUG, Category.RESPONSE_BODY, '{}', 'body')
+
+        then:
+        1 * logger.debug('{}', 'body')
+
+        when: 'a minute has passed'
+        ticker.advance(1, TimeUnit.MINUTES)
+        diagnosticLogger.log(logger, Level.WARN, Category.PARSE_FAILURE, '{}: {}', 'reason', 'body')
+
+        then:
+        1 * logger.warn({ it.contains('not logged') }, 8L)
+
+        then:
+        1 * logger.warn('{}: {}', 'reason', 'body')
+    }
+
+    def 'Without configuration, bodies are logged in full'() {
+        given:
+        def body = '{"password":"secret"}' * 1000
+
+        when:
+        100.times { DiagnosticLogger.unrestricted().log(logger, Level.WARN, Category.PARSE_FAILURE, '{}', body) }
+
+        then:
+        100 * logger.warn('{}', body)
+    }
+
+    private DiagnosticLogger diagnosticLogger(Map<String, ?> settings) {
+        new DiagnosticLogger(ConfigurationStub.of(DiagnosticLogging, settings), metrics, ticker)
+    }
+}
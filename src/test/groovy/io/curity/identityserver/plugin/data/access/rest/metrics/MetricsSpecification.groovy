@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+package io.curity.identityserver.plugin.data.access.rest.metrics
+
+import spock.lang.Specification
+
+import javax.management.ObjectName
+import java.lang.management.ManagementFactory
+
+class MetricsSpecification extends Specification {
+
+    def server = ManagementFactory.platformMBeanServer
+    def objectName = new ObjectName(Metrics.DOMAIN, 'instance', ObjectName.quote('reconfigured'))
+
+    def 'The metrics of a reconfigured instance stay published when the previous instance is closed'() {
+        given:
+        def previous = new Metrics('reconfigured')
+        previous.counter('logins').increment()
+
+        when: 'the new instance is created before the previous one is closed'
+        def current = new Metrics('reconfigured')
+        current.counter('logins').add(2)
+        previous.close()
+
+        then:
+        server.isRegistered(objectName)
+        server.getAttribute(objectName, 'logins') == 2L
+
+        when:
+        current.close()
+
+        then:
+        !server.isRegistered(objectName)
+    }
+
+    def 'The gauges of a scope are removed when it is closed'() {
+        given:
+        def metrics = new Metrics('scoped')
+        def first = metrics.scope()
+        def second = metrics.scope()
+        first.gauge('size', { 1L })
+        second.gauge('size', { 2L })
+        first.counter('hits').increment()
+
+        expect:
+        metrics.snapshot() == [hits: 1L, size: 3L]
+
+        when:
+        first.close()
+
+        then:
+        metrics.snapshot() == [hits: 1L, size: 2L]
+
+        cleanup:
+        metrics.close()
+    }
+}
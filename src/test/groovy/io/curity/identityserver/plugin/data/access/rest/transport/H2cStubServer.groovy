@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.transport
+
+import groovy.json.JsonOutput
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubUserStore.LatencyDistribution
+import org.eclipse.jetty.http.HttpHeader
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory
+import org.eclipse.jetty.io.Content
+import org.eclipse.jetty.server.Handler
+import org.eclipse.jetty.server.HttpConfiguration
+import org.eclipse.jetty.server.HttpConnectionFactory
+import org.eclipse.jetty.server.Request
+import org.eclipse.jetty.server.Response
+import org.eclipse.jetty.server.Server
+import org.eclipse.jetty.server.ServerConnector
+import org.eclipse.jetty.util.Callback
+import org.eclipse.jetty.util.thread.QueuedThreadPool
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A user store backend on Jetty that speaks both HTTP/1.1 and HTTP/2 over cleartext (h2c), either upgraded from
+ * HTTP/1.1 or with prior knowledge. Every request is answered with the user document of the last path segment.
+ *
+ * <p>The JDK {@link com.sun.net.httpserver.HttpServer} behind the other stubs only speaks HTTP/1.1.
+ */
+class H2cStubServer implements Closeable {
+
+    final Server server
+    private final ServerConnector _connector
+
+    volatile LatencyDistribution latency = LatencyDistribution.none()
+
+    private final Map<String, LongAdder> _requestsByVersion = new ConcurrentHashMap<>()
+
+    private H2cStubServer(Server server, ServerConnector connector) {
+        this.server = server
+        _connector = connector
+    }
+
+    static H2cStubServer start(int workerThreads = 256) {
+        def server = new Server(new QueuedThreadPool(workerThreads))
+        def httpConfiguration = new HttpConfiguration()
+        def connector = new ServerConnector(server, new HttpConnectionFactory(httpConfiguration),
+                new HTTP2CServerConnectionFactory(httpConfiguration))
+
+        connector.host = InetAddress.loopbackAddress.hostAddress
+        connector.port = 0
+        server.addConnector(connector)
+
+        def stub = new H2cStubServer(server, connector)
+
+        server.handler = new Handler.Abstract() {
+            @Override
+            boolean handle(Request request, Response response, Callback callback) {
+                stub.handle(request, response, callback)
+                true
+            }
+        }
+        server.start()
+
+        stub
+    }
+
+    URI getBaseUri() {
+        URI.create("http://${_connector.host}:${_connector.localPort}")
+    }
+
+    /**
+     * @return the number of requests received per HTTP version, e.g. {@code HTTP/2.0}
+     */
+    Map<String, Long> requestsByVersion() {
+        _requestsByVersion.collectEntries { key, value -> [(key): value.sum()] } as Map<String, Long>
+    }
+
+    /**
+     * @return the calls that reached this backend, by HTTP version
+     */
+    Map<String, Long> backendCalls() {
+        requestsByVersion()
+    }
+
+    void resetCounters() {
+        _requestsByVersion.clear()
+    }
+
+    @Override
+    void close() {
+        server.stop()
+    }
+
+    private void handle(Request request, Response response, Callback callback) {
+        Content.Source.asString(request, StandardCharsets.UTF_8)
+
+        _requestsByVersion.computeIfAbsent(request.connectionMetaData.httpVersion.asString()) { new LongAdder() }
+                .increment()
+
+        double millis = latency.nextMillis()
+
+        if (millis > 0) {
+            TimeUnit.NANOSECONDS.sleep((long) (millis * 1_000_000))
+        }
+
+        def subject = URLDecoder.decode(request.httpURI.path.split('/').last(), StandardCharsets.UTF_8)
+        def body = JsonOutput.toJson([
+                subject: subject,
+                email  : "$subject@example.com".toString(),
+                tenant : 'tenant-1',
+                groups : ['users', 'employees', 'vpn']
+        ]).getBytes(StandardCharsets.UTF_8)
+
+        response.status = 200
+        response.headers.put(HttpHeader.CONTENT_TYPE, 'application/json')
+        response.write(true, ByteBuffer.wrap(body), callback)
+    }
+}
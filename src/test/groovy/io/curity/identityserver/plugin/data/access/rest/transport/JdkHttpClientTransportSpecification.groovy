@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.transport
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import io.curity.identityserver.plugin.data.access.rest.RestAttributeDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration.HttpClientTransport
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubUserStore.LatencyDistribution
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import se.curity.identityserver.sdk.service.WebServiceClient
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.GZIPOutputStream
+
+class JdkHttpClientTransportSpecification extends Specification {
+
+    @Shared
+    @AutoCleanup
+    H2cStubServer h2cServer = H2cStubServer.start()
+
+    HttpServer recordingServer
+    Map<String, Object> recorded = [:]
+    CountDownLatch release = new CountDownLatch(0)
+    Metrics metrics = new Metrics('test')
+
+    def setup() {
+        recordingServer = HttpServer.create(new InetSocketAddress(InetAddress.loopbackAddress, 0), 16)
+        recordingServer.executor = Executors.newCachedThreadPool()
+        recordingServer.createContext('/') { HttpExchange exchange ->
+            recorded.method = exchange.requestMethod
+            recorded.uri = exchange.requestURI.toString()
+            recorded.headers = exchange.requestHeaders
+            recorded.body = new String(exchange.requestBody.readAllBytes(), StandardCharsets.UTF_8)
+
+            release.await(5, TimeUnit.SECONDS)
+
+            byte[] body = '{"name":"Björn"}'.getBytes(StandardCharsets.ISO_8859_1)
+            exchange.responseHeaders.add('Content-Type', 'application/json; charset=ISO-8859-1')
+            exchange.sendResponseHeaders(200, body.length)
+            exchange.responseBody.write(body)
+            exchange.close()
+        }
+        recordingServer.createContext('/compressed') { HttpExchange exchange ->
+            recorded.headers = exchange.requestHeaders
+
+            def encoding = exchange.requestURI.query
+            def body = new ByteArrayOutputStream()
+            def document = encoding == 'bomb' ? new byte[4 * 1024 * 1024] : compressibleDocument().bytes
+            def output = encoding == 'deflate' ? new DeflaterOutputStream(body) :
+                    encoding == 'raw-deflate' ? new DeflaterOutputStream(body, new Deflater(6, true)) :
+                            new GZIPOutputStream(body)
+            output.withCloseable { it.write(document) }
+
+            exchange.responseHeaders.add('Content-Type', 'application/json')
+            exchange.responseHeaders.add('Content-Encoding', encoding == 'raw-deflate' ? 'deflate' :
+                    encoding == 'bomb' ? 'gzip' : encoding)
+            exchange.sendResponseHeaders(200, body.size())
+            exchange.responseBody.write(body.toByteArray())
+            exchange.close()
+        }
+        recordingServer.start()
+    }
+
+    def cleanup() {
+        metrics.close()
+        recordingServer.stop(0)
+        recordingServer.executor.shutdownNow()
+    }
+
+    def 'The path, query parameters, headers and body of a request are sent to the base URL'() {
+        given:
+        def transport = transport(recordingBaseUrl() + '/api/', [httpVersion: HttpClientTransport.HttpVersion.HTTP_1_1])
+
+        when:
+        def response = transport.send(TransportRequest.builder('POST', '/users/johndoe?active=true')
+                .queryParameters([tenant: ['tenant 1'], group: ['a', 'b']])
+                .headers('X-Tenant', 'tenant-1')
+                .body('{"password":"secret"}', 'application/json', StandardCharsets.UTF_8)
+                .build())
+
+        then: 'the request was sent as given'
+        recorded.method == 'POST'
+        recorded.uri == '/api/users/johndoe?active=true&tenant=tenant+1&group=a&group=b'
+        recorded.headers.getFirst('X-Tenant') == 'tenant-1'
+        recorded.headers.getFirst('Content-Type') == 'application/json'
+        recorded.headers.getFirst('Accept') == 'application/json'
+        recorded.body == '{"password":"secret"}'
+        !recorded.headers.containsKey('Accept-Encoding')
+
+        and: 'the response body is read with the charset of its Content-Type'
+        response.statusCode() == 200
+        response.headerValues('content-type') == ['application/json; charset=ISO-8859-1']
+        response.body() == '{"name":"Björn"}'
+
+        cleanup:
+        transport?.close()
+    }
+
+    def 'Compressed responses are decompressed and the bytes saved are counted'() {
+        given:
+        def transport = transport(recordingBaseUrl(), [compression: [:]])
+
+        when:
+        def response = transport.send(TransportRequest.builder('GET', "/compressed?$encoding").build())
+
+        then:
+        recorded.headers.getFirst('Accept-Encoding') == 'gzip, deflate'
+        response.body() == compressibleDocument()
+
+        and:
+        def snapshot = metrics.snapshot()
+        snapshot['transport.compression.responses'] == 1
+        snapshot['transport.compression.decompressedBytes'] == compressibleDocument().length()
+        snapshot['transport.compression.savedBytes'] > 0
+        snapshot['transport.compression.ratioPercent'] > 100
+
+        cleanup:
+        transport?.close()
+
+        where:
+        encoding << ['gzip', 'deflate', 'raw-deflate']
+    }
+
+    def 'Responses that decompress to more than the maximum size fail'() {
+        given:
+        def transport = transport(recordingBaseUrl(), [compression: [maximumDecompressedSize: 1024]])
+
+        when:
+        transport.send(TransportRequest.builder('GET', '/compressed?bomb').build())
+
+        then:
+        thrown(UncheckedIOException)
+        metrics.snapshot()['transport.compression.rejectedResponses'] == 1
+
+        cleanup:
+        transport?.close()
+    }
+
+    def 'Requests wait for a slot, and fail if none becomes available within the request timeout'() {
+        given: 'a transport that allows one request in flight, to a server that does not answer yet'
+        release = new CountDownLatch(1)
+        def transport = transport(recordingBaseUrl(), [maximumConcurrentRequests: 1, requestTimeout: 200])
+        def first = CompletableFuture.runAsync { transport.send(TransportRequest.builder('GET', '/first').build()) }
+
+        when: 'a second request is sent while the first is in flight'
+        Thread.sleep(50)
+        transport.send(TransportRequest.builder('GET', '/second').build())
+
+        then:
+        thrown(UncheckedIOException)
+
+        cleanup:
+        release.countDown()
+        first?.handle { result, error -> null }?.get(5, TimeUnit.SECONDS)
+        transport?.close()
+    }
+
+    def 'Requests are multiplexed over HTTP/2 with a server that supports cleartext HTTP/2'() {
+        given:
+        h2cServer.resetCounters()
+        def transport = transport(h2cServer.baseUri.toString(), [:])
+
+        when:
+        def responses = (1..20).collect { transport.send(TransportRequest.builder('GET', "/users/user-$it").build()) }
+
+        then:
+        responses.every { it.statusCode() == 200 }
+        responses.last().body().contains('"subject":"user-20"')
+        h2cServer.requestsByVersion()['HTTP/2.0'] >= 19
+
+        cleanup:
+        transport?.close()
+    }
+
+    def 'Providers send their requests with the built-in HTTP client when it is configured'() {
+        given:
+        h2cServer.resetCounters()
+        h2cServer.latency = LatencyDistribution.none()
+        def configuration = StubBackedProviders.configuration((WebServiceClient) null, [
+                httpClientTransport: [baseUrl: h2cServer.baseUri.toString()]
+        ])
+        def managedObject = new RestDataAccessManagedObject(configuration)
+        def provider = new RestAttributeDataAccessProvider(configuration, managedObject)
+
+        when:
+        def attributes = provider.getAttributes('johndoe')
+
+        then:
+        attributes != null
+        h2cServer.requestsByVersion().values().sum() == 1
+
+        cleanup:
+        managedObject?.close()
+    }
+
+    private String recordingBaseUrl() {
+        "http://${recordingServer.address.hostString}:${recordingServer.address.port}"
+    }
+
+    private JdkHttpClientTransport transport(String baseUrl, Map settings) {
+        new JdkHttpClientTransport(ConfigurationStub.of(HttpClientTransport, settings + [baseUrl: baseUrl]), baseUrl,
+                metrics)
+    }
+
+    private static String compressibleDocument() {
+        '{"sub":"johndoe","groups":[' + (1..200).collect { '"group-' + it % 5 + '"' }.join(',') + ']}'
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.transport
+
+import io.curity.identityserver.plugin.data.access.rest.RestAttributeDataAccessProvider
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration.HttpClientTransport.HttpVersion
+import io.curity.identityserver.plugin.data.access.rest.loadtest.HttpClientWebServiceClient
+import io.curity.identityserver.plugin.data.access.rest.loadtest.LoadTestHarness
+import io.curity.identityserver.plugin.data.access.rest.loadtest.LoadTestHarness.Report
+import io.curity.identityserver.plugin.data.access.rest.loadtest.LoadTestHarness.Scenario
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubUserStore.LatencyDistribution
+import se.curity.identityserver.sdk.service.WebServiceClient
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Stepwise
+
+/**
+ * Compares the throughput and latency of attribute lookups through the server's web service client with the
+ * built-in HTTP client, over HTTP/1.1 and HTTP/2, against a backend that speaks both.
+ *
+ * <p>Like {@code LoadTestBenchmark}, this is not part of the regular test run. Run it with
+ * {@code mvn test -Dtest=TransportBenchmark}, optionally with {@code -Dloadtest.threads} and
+ * {@code -Dloadtest.iterations} to change the load.
+ */
+@Stepwise
+class TransportBenchmark extends Specification {
+
+    static final int THREADS = Integer.getInteger('loadtest.threads', 64)
+    static final int ITERATIONS = Integer.getInteger('loadtest.iterations', 2_000)
+
+    @Shared
+    @AutoCleanup
+    H2cStubServer backend = H2cStubServer.start(THREADS * 2)
+
+    @Shared
+    List<Report> reports = []
+
+    @Shared
+    List<RestDataAccessManagedObject> managedObjects = []
+
+    def setup() {
+        backend.latency = LatencyDistribution.none()
+    }
+
+    def cleanupSpec() {
+        managedObjects*.close()
+
+        println()
+        reports.each { println it }
+    }
+
+    def 'attribute lookups against a fast backend'() {
+        expect:
+        measure("$transportName, fast backend") { attributesOperation(transportSettings) }
+
+        where:
+        transportName           | transportSettings
+        'web service client'    | null
+        'HTTP client, HTTP/1.1' | [httpVersion: HttpVersion.HTTP_1_1]
+        'HTTP client, HTTP/2'   | [httpVersion: HttpVersion.HTTP_2]
+    }
+
+    def 'attribute lookups against a backend with log-normal latency'() {
+        given:
+        backend.latency = LatencyDistribution.logNormal(5, 0.6)
+
+        expect:
+        measure("$transportName, log-normal 5 ms") { attributesOperation(transportSettings) }
+
+        where:
+        transportName           | transportSettings
+        'web service client'    | null
+        'HTTP client, HTTP/1.1' | [httpVersion: HttpVersion.HTTP_1_1]
+        'HTTP client, HTTP/2'   | [httpVersion: HttpVersion.HTTP_2]
+    }
+
+    private boolean measure(String name, Closure<Closure<?>> operationFactory) {
+        def report = LoadTestHarness.run(new Scenario(
+                name: name,
+                threads: THREADS,
+                iterationsPerThread: ITERATIONS,
+                operation: operationFactory.call()
+        ), backend)
+
+        reports << report
+
+        report.operations == THREADS * ITERATIONS
+    }
+
+    /**
+     * @param transportSettings settings of the built-in HTTP client, or null to use the web service client
+     */
+    private Closure<?> attributesOperation(Map transportSettings) {
+        def configuration = transportSettings == null ?
+                StubBackedProviders.configuration(HttpClientWebServiceClient.create(backend.baseUri)) :
+                StubBackedProviders.configuration((WebServiceClient) null, [
+                        httpClientTransport: transportSettings + [
+                                baseUrl                  : backend.baseUri.toString(),
+                                maximumConcurrentRequests: THREADS
+                        ]
+                ])
+        def managedObject = new RestDataAccessManagedObject(configuration)
+        def provider = new RestAttributeDataAccessProvider(configuration, managedObject)
+
+        managedObjects << managedObject
+
+        return { String subject -> provider.getAttributes(subject) }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2026 Curity AB. All rights reserved.
+ *
+ * The contents of this file are the property of Curity AB.
+ * You may not copy or use this file, in either source code
+ * or executable form, except in compliance with terms
+ * set by Curity AB.
+ *
+ * For further information, please contact Curity AB.
+ */
+
+package io.curity.identityserver.plugin.data.access.rest.warmup
+
+import io.curity.identityserver.plugin.data.access.rest.CannedBackend
+import io.curity.identityserver.plugin.data.access.rest.RestDataAccessManagedObject
+import io.curity.identityserver.plugin.data.access.rest.config.AttributesConfiguration.MultipleRows
+import io.curity.identityserver.plugin.data.access.rest.config.RestDataAccessProviderConfiguration
+import io.curity.identityserver.plugin.data.access.rest.loadtest.ConfigurationStub
+import io.curity.identityserver.plugin.data.access.rest.loadtest.StubBackedProviders
+import io.curity.identityserver.plugin.data.access.rest.metrics.Metrics
+import io.curity.identityserver.plugin.data.access.rest.transport.Transport
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportRequest
+import io.curity.identityserver.plugin.data.access.rest.transport.TransportResponse
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.IntConsumer
+
+class WarmUpSpecification extends Specification {
+
+    def metrics = new Metrics('test')
+
+    def cleanup() {
+        metrics.close()
+    }
+
+    def 'Warm-up runs the exercise and opens connections with health requests sent at the same time'() {
+        given: 'a transport that only answers once all health requests have been sent'
+        def response = Stub(TransportResponse)
+        def allSent = new CountDownLatch(3)
+        def paths = Collections.synchronizedList([])
+        def transport = { TransportRequest request ->
+            paths << request.path()
+            allSent.countDown()
+            allSent.await(5, TimeUnit.SECONDS)
+            response
+        } as Transport
+        def iterations = new AtomicInteger()
+        def warmUp = warmUp([iterations: 100, connections: 3, keepAliveInterval: 0], transport,
+                { int iteration -> iterations.incrementAndGet() } as IntConsumer)
+
+        when:
+        def finished = warmUp.run()
+
+        then:
+        finished
+        iterations.get() == 100
+        allSent.count == 0
+        paths == ['/health'] * 3
+
+        and:
+        metrics.snapshot()['warmUp.iterations'] == 100
+        metrics.snapshot()['warmUp.healthRequests'] == 3
+        metrics.snapshot()['warmUp.healthFailures'] == 0
+
+        cleanup:
+        warmUp?.close()
+    }
+
+    def 'Warm-up stops at the time limit'() {
+        given: 'an exercise that is too slow to finish in time'
+        def response = Stub(TransportResponse)
+        def transport = { TransportRequest request -> response } as Transport
+        def warmUp = warmUp([iterations: 1000, timeLimit: 200, keepAliveInterval: 0], transport,
+                { int iteration -> Thread.sleep(20) } as IntConsumer)
+
+        when:
+        long started = System.nanoTime()
+        def finished = warmUp.run()
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)
+
+        then:
+        !finished
+        elapsedMillis < 1000
+
+        cleanup:
+        warmUp?.close()
+    }
+
+    def 'Failing health requests do not fail warm-up'() {
+        given:
+        def transport = { TransportRequest request ->
+            throw new UncheckedIOException(new IOException('Connection refused'))
+        } as Transport
+        def warmUp = warmUp([iterations: 10, connections: 2, keepAliveInterval: 0], transport,
+                { int iteration -> } as IntConsumer)
+
+        expect:
+        warmUp.run()
+        metrics.snapshot()['warmUp.healthFailures'] == 2
+
+        cleanup:
+        warmUp?.close()
+    }
+
+    def 'Idle connections are kept open with periodic health requests'() {
+        given:
+        def response = Stub(TransportResponse)
+        def healthRequests = new AtomicInteger()
+        def transport = { TransportRequest request ->
+            healthRequests.incrementAndGet()
+            response
+        } as Transport
+        def warmUp = warmUp([iterations: 0, connections: 2, keepAliveInterval: 1], transport,
+                { int iteration -> } as IntConsumer)
+
+        when:
+        warmUp.run()
+
+        then:
+        new PollingConditions(timeout: 5).eventually {
+            assert metrics.snapshot()['warmUp.keepAlivePings'] >= 1
+            assert healthRequests.get() >= 4
+        }
+
+        cleanup:
+        warmUp?.close()
+    }
+
+    def 'The managed object warms up the providers without sending their requests to the JSON service'() {
+        given:
+        def backend = new CannedBackend()
+        def configuration = ConfigurationStub.of(RestDataAccessProviderConfiguration, [
+                id                              : 'warm-up',
+                webServiceClient                : backend.client,
+                json                            : backend.json,
+                getCredentialAccessConfiguration: [urlPath: '/users/:subject/verify'],
+                getAttributesConfiguration      : [provideSubject: [urlPath: '/users/:subject']],
+                warmUp                          : [iterations: 50, connections: 3, keepAliveInterval: 0]
+        ])
+
+        when:
+        def managedObject = new RestDataAccessManagedObject(configuration)
+
+        then: 'only the health requests reached the JSON service'
+        backend.requests.sum() == 3
+        managedObject.metrics.snapshot()['warmUp.iterations'] == 50
+
+        cleanup:
+        managedObject?.close()
+    }
+
+    def 'Made-up responses have rows in the configured shape when multiple rows are looked up'() {
+        given:
+        def json = StubBackedProviders.json()
+        def request = TransportRequest.builder('GET', '/users/warm-up-1').build()
+        def send = { Optional<MultipleRows> multipleRows ->
+            new SyntheticTransport(json, multipleRows).send(request).body()
+        }
+
+        expect:
+        json.fromJson(send(Optional.empty())).subject == 'warm-up-1'
+        json.fromJsonArray(send(Optional.of(ConfigurationStub.of(MultipleRows))))*.subject == ['warm-up-1']
+        json.fromJson(send(Optional.of(ConfigurationStub.of(MultipleRows, [rowsAttribute: 'data.items']))))
+                .data.items*.subject == ['warm-up-1']
+    }
+
+    private WarmUp warmUp(Map settings, Transport transport, IntConsumer exercise) {
+        new WarmUp(ConfigurationStub.of(RestDataAccessProviderConfiguration.WarmUp, settings), transport, exercise,
+                'test', metrics)
+    }
+}